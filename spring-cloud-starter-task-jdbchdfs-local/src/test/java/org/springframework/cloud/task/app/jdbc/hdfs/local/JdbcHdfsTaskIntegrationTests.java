@@ -23,6 +23,9 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
 import javax.sql.DataSource;
 
 import org.hsqldb.Server;
@@ -64,6 +67,99 @@ import static org.junit.Assert.assertNotNull;
 @IntegrationTest
 public abstract class JdbcHdfsTaskIntegrationTests {
 
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	ConfigurableApplicationContext applicationContext;
+
+	@Value("${directory}")
+	private String testDir;
+
+	@Autowired
+	FsShell fsShell;
+
+	@After
+	public void cleanup() {
+		if (fsShell.test(testDir)) {
+			fsShell.rmr(testDir);
+		}
+
+		JdbcTemplate template = new JdbcTemplate(this.dataSource);
+		template.execute("drop table TASK_TASK_BATCH");
+		template.execute("drop table TASK_SEQ");
+		template.execute("drop table TASK_EXECUTION_PARAMS");
+		template.execute("drop table TASK_EXECUTION");
+		template.execute("drop table BATCH_STEP_EXECUTION_SEQ");
+		template.execute("drop table BATCH_STEP_EXECUTION_CONTEXT");
+		template.execute("drop table BATCH_STEP_EXECUTION");
+		template.execute("drop table BATCH_JOB_SEQ");
+		template.execute("drop table BATCH_JOB_EXECUTION_SEQ");
+		template.execute("drop table BATCH_JOB_EXECUTION_PARAMS");
+		template.execute("drop table BATCH_JOB_EXECUTION_CONTEXT");
+		template.execute("drop table BATCH_JOB_EXECUTION");
+		template.execute("drop table BATCH_JOB_INSTANCE");
+		if (applicationContext != null && applicationContext.isActive()) {
+			applicationContext.close();
+		}
+
+	}
+
+	protected void checkPartitions() throws Exception {
+		File testOutput = new File(testDir);
+		Assert.assertTrue(testOutput.exists());
+		checkPartitionInstance(testDir, "p0-0.csv", "ONE,ONEVALUE\nTWO,TWOVALUE\n");
+		checkPartitionInstance(testDir, "p1-0.csv", "THREE,THREEVALUE\nFOUR,FOURVALUE\n");
+		checkPartitionInstance(testDir, "p2-0.csv", "FIVE,FIVEVALUE\nSIX,SIXVALUE\n");
+	}
+
+	private void checkPartitionInstance(String testDir, final String fileSuffix, String expectedData) throws Exception {
+		File testOutput = new File(testDir);
+		Assert.assertTrue(testOutput.exists());
+		File[] partitionFile = testOutput.listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(fileSuffix);
+			}
+
+		});
+		Assert.assertTrue(partitionFile.length > 0);
+		File dataFile = partitionFile[0];
+		assertNotNull(dataFile);
+		Assert.assertThat(readFile(dataFile.getPath(), Charset.forName("UTF-8")), equalTo(expectedData));
+
+	}
+
+	private String readFile(String path, Charset encoding) throws IOException {
+		byte[] encoded = Files.readAllBytes(Paths.get(path));
+		return new String(encoded, encoding);
+	}
+
+	/**
+	 * @return the largest number of worker steps that were running at the same time,
+	 * from the start and end times the job repository recorded for them.
+	 */
+	protected int getMaxRunningPartitions() {
+		List<Map<String, Object>> steps = new JdbcTemplate(this.dataSource).queryForList(
+				"select START_TIME, END_TIME, STATUS from BATCH_STEP_EXECUTION where STEP_NAME like 'workerStep%'");
+		Assert.assertThat(steps.size(), equalTo(3));
+		int maxRunning = 0;
+		for (Map<String, Object> step : steps) {
+			Assert.assertThat(step.get("STATUS").toString(), equalTo("COMPLETED"));
+			Timestamp start = (Timestamp) step.get("START_TIME");
+			int running = 0;
+			for (Map<String, Object> other : steps) {
+				if (!start.before((Timestamp) other.get("START_TIME"))
+						&& start.before((Timestamp) other.get("END_TIME"))) {
+					running++;
+				}
+			}
+			maxRunning = Math.max(maxRunning, running);
+		}
+		return maxRunning;
+	}
+
 	@IntegrationTest({"spring.cloud.task.closecontext.enable:false",
 			"hadoop.home.dir=/data",
 			"directory=${java.io.tmpdir}/jdbchdfs-task/",
@@ -77,74 +173,35 @@ public abstract class JdbcHdfsTaskIntegrationTests {
 	@Category(JdbcHdfsIntegrationTest.class)
 	public static class JdbcHDFSBasicTest extends JdbcHdfsTaskIntegrationTests {
 
-		@Autowired
-		private DataSource dataSource;
-
-		@Autowired
-		ConfigurableApplicationContext applicationContext;
-
-		@Value("${directory}")
-		private String testDir;
-
-		@Autowired
-		FsShell fsShell;
-
-		@After
-		public void cleanup() {
-			if (fsShell.test(testDir)) {
-				fsShell.rmr(testDir);
-			}
-
-			JdbcTemplate template = new JdbcTemplate(this.dataSource);
-			template.execute("drop table TASK_TASK_BATCH");
-			template.execute("drop table TASK_SEQ");
-			template.execute("drop table TASK_EXECUTION_PARAMS");
-			template.execute("drop table TASK_EXECUTION");
-			template.execute("drop table BATCH_STEP_EXECUTION_SEQ");
-			template.execute("drop table BATCH_STEP_EXECUTION_CONTEXT");
-			template.execute("drop table BATCH_STEP_EXECUTION");
-			template.execute("drop table BATCH_JOB_SEQ");
-			template.execute("drop table BATCH_JOB_EXECUTION_SEQ");
-			template.execute("drop table BATCH_JOB_EXECUTION_PARAMS");
-			template.execute("drop table BATCH_JOB_EXECUTION_CONTEXT");
-			template.execute("drop table BATCH_JOB_EXECUTION");
-			template.execute("drop table BATCH_JOB_INSTANCE");
-			if (applicationContext != null && applicationContext.isActive()) {
-				applicationContext.close();
-			}
-
-		}
-
 		@Test
 		public void testCreateJob() throws Exception {
-			File testOutput = new File(testDir);
-			Assert.assertTrue(testOutput.exists());
-			checkPartitionInstance(testDir, "p0-0.csv", "ONE,ONEVALUE\nTWO,TWOVALUE\n");
-			checkPartitionInstance(testDir, "p1-0.csv", "THREE,THREEVALUE\nFOUR,FOURVALUE\n");
-			checkPartitionInstance(testDir, "p2-0.csv", "FIVE,FIVEVALUE\nSIX,SIXVALUE\n");
+			checkPartitions();
 		}
+	}
 
-		private void checkPartitionInstance(String testDir, final String fileSuffix, String expectedData) throws Exception {
-			File testOutput = new File(testDir);
-			Assert.assertTrue(testOutput.exists());
-			File[] partitionFile = testOutput.listFiles(new FilenameFilter() {
-
-				@Override
-				public boolean accept(File dir, String name) {
-					return name.endsWith(fileSuffix);
-				}
-
-			});
-			Assert.assertTrue(partitionFile.length > 0);
-			File dataFile = partitionFile[0];
-			assertNotNull(dataFile);
-			Assert.assertThat(readFile(dataFile.getPath(), Charset.forName("UTF-8")), equalTo(expectedData));
-
-		}
+	@IntegrationTest({"spring.cloud.task.closecontext.enable:false",
+			"hadoop.home.dir=/data",
+			"directory=${java.io.tmpdir}/jdbchdfs-task/",
+			"spring.profiles.active=master",
+			"spring.datasource.url=jdbc:hsqldb:hsql://localhost:${db.server.port}/test",
+			"spring.datasource.username=sa",
+			"jdbchdfs.fsUri=file:///",
+			"jdbchdfs.directory=${directory}",
+			"jdbchdfs.tableName=FOO",
+			"jdbchdfs.partitionColumn=id",
+			"jdbchdfs.columnNames=PROPKEY,PROPVALUE",
+			"jdbchdfs.partitions=3",
+			"jdbchdfs.maxWorkers=2",
+			"jdbchdfs.partitionHandlerType=THREADS"})
+	@Category(JdbcHdfsIntegrationTest.class)
+	public static class JdbcHDFSThreadsTest extends JdbcHdfsTaskIntegrationTests {
 
-		private String readFile(String path, Charset encoding) throws IOException {
-			byte[] encoded = Files.readAllBytes(Paths.get(path));
-			return new String(encoded, encoding);
+		@Test
+		public void testCreateJob() throws Exception {
+			checkPartitions();
+			int maxRunning = getMaxRunningPartitions();
+			Assert.assertTrue("the partitions ran one after the other", maxRunning > 1);
+			Assert.assertTrue("more than maxWorkers partitions ran at once", maxRunning <= 2);
 		}
 	}
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.StringUtils;
+
+/**
+ * An in memory HSQLDB table of generated rows the benchmarks read.  The table has a
+ * configurable number of columns, either all {@code varchar} or cycling through the
+ * numeric, date and character types a typical extract reads.  The rows are generated
+ * from a fixed seed so that runs are comparable.
+ *
+ * @author Glenn Renfro
+ */
+public class BenchmarkTable {
+
+	/**
+	 * The number of rows of the table, the operations of each benchmark reading it.
+	 */
+	public static final int ROWS = 20000;
+
+	public static final String VARCHAR = "varchar";
+
+	public static final String MIXED = "mixed";
+
+	private static final String[] MIXED_TYPES = {"bigint", "varchar(32)", "double", "timestamp", "decimal(12,2)"};
+
+	private static final int BATCH_SIZE = 1000;
+
+	private final SingleConnectionDataSource dataSource;
+
+	private final String[] columnNames;
+
+	private BenchmarkTable(SingleConnectionDataSource dataSource, String[] columnNames) {
+		this.dataSource = dataSource;
+		this.columnNames = columnNames;
+	}
+
+	/**
+	 * Creates a database holding the table {@code benchmark}.
+	 *
+	 * @param name the name of the in memory database, unique per benchmark.
+	 * @param columns the number of columns of the table.
+	 * @param types {@link #VARCHAR} or {@link #MIXED}.
+	 * @return the table.
+	 */
+	public static BenchmarkTable create(String name, int columns, String types) {
+		SingleConnectionDataSource dataSource =
+				new SingleConnectionDataSource("jdbc:hsqldb:mem:" + name, "sa", "", true);
+		String[] columnNames = new String[columns];
+		String[] columnTypes = new String[columns];
+		StringBuilder ddl = new StringBuilder();
+		StringBuilder parameters = new StringBuilder();
+		for (int i = 0; i < columns; i++) {
+			columnNames[i] = "c" + i;
+			columnTypes[i] = MIXED.equals(types) ? MIXED_TYPES[i % MIXED_TYPES.length] : "varchar(32)";
+			ddl.append(i > 0 ? ", " : "").append(columnNames[i]).append(' ').append(columnTypes[i]);
+			parameters.append(i > 0 ? ", ?" : "?");
+		}
+		JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("create table benchmark (" + ddl + ")");
+
+		String insert = "insert into benchmark values (" + parameters + ")";
+		Random random = new Random(42);
+		List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+		for (int row = 0; row < ROWS; row++) {
+			Object[] values = new Object[columns];
+			for (int i = 0; i < columns; i++) {
+				values[i] = generate(columnTypes[i], row, random);
+			}
+			batch.add(values);
+			if (batch.size() == BATCH_SIZE) {
+				jdbc.batchUpdate(insert, batch);
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty()) {
+			jdbc.batchUpdate(insert, batch);
+		}
+		return new BenchmarkTable(dataSource, columnNames);
+	}
+
+	private static Object generate(String type, int row, Random random) {
+		switch (type) {
+			case "bigint":
+				return (long) row;
+			case "double":
+				return random.nextInt(1000000) / 100.0;
+			case "timestamp":
+				return new Timestamp(1451606400000L + random.nextInt(Integer.MAX_VALUE));
+			case "decimal(12,2)":
+				return BigDecimal.valueOf(random.nextInt(100000000), 2);
+			default:
+				return "customer-" + random.nextInt(100000);
+		}
+	}
+
+	public SingleConnectionDataSource getDataSource() {
+		return dataSource;
+	}
+
+	/**
+	 * @return the columns of the table separated by commas.
+	 */
+	public String getColumnNames() {
+		return StringUtils.arrayToCommaDelimitedString(columnNames);
+	}
+
+	/**
+	 * @return the query reading all rows of the table.
+	 */
+	public String getSql() {
+		return "SELECT " + getColumnNames() + " FROM benchmark";
+	}
+
+	/**
+	 * Drops the table and closes the connection of the database.
+	 */
+	public void destroy() {
+		new JdbcTemplate(dataSource).execute("drop table benchmark");
+		dataSource.destroy();
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.transform.PassThroughLineAggregator;
+import org.springframework.cloud.task.jdbchdfs.common.EncodedRowJdbcItemReader;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriter;
+import org.springframework.data.hadoop.store.DataStoreWriter;
+
+/**
+ * Turns the rows of a {@link BenchmarkTable} into the bytes an {@link HdfsTextItemWriter}
+ * hands to its store writer, in chunks of different sizes.  The items are either the
+ * strings of a named column reader or the encoded bytes of an encoded row reader.  The
+ * store writer discards the bytes, so only the conversion of the chunks is measured.  The
+ * score is in rows per second.
+ *
+ * @author Glenn Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkEncodingBenchmark {
+
+	@Param({"100", "1000", "10000"})
+	private int chunkSize;
+
+	@Param({"string", "bytes"})
+	private String items;
+
+	private List<List<Object>> chunks;
+
+	private HdfsTextItemWriter<Object> writer;
+
+	@Setup
+	public void setup() throws Exception {
+		BenchmarkTable table = BenchmarkTable.create("chunkencoding", 8, BenchmarkTable.MIXED);
+		EncodedRowJdbcItemReader reader = new EncodedRowJdbcItemReader();
+		reader.setDataSource(table.getDataSource());
+		reader.setSql(table.getSql());
+		reader.setDelimiter(",");
+		reader.afterPropertiesSet();
+		reader.open(new ExecutionContext());
+		chunks = new ArrayList<>();
+		List<Object> chunk = new ArrayList<>(chunkSize);
+		byte[] row;
+		while ((row = reader.read()) != null) {
+			chunk.add("string".equals(items) ? new String(row, "UTF-8") : row);
+			if (chunk.size() == chunkSize) {
+				chunks.add(chunk);
+				chunk = new ArrayList<>(chunkSize);
+			}
+		}
+		if (!chunk.isEmpty()) {
+			chunks.add(chunk);
+		}
+		reader.close();
+		table.destroy();
+
+		writer = new HdfsTextItemWriter<>();
+		writer.setLineAggregator(new PassThroughLineAggregator<>());
+		writer.setStoreWriter(new DiscardingDataStoreWriter());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkTable.ROWS)
+	public void write() throws Exception {
+		for (List<Object> chunk : chunks) {
+			writer.write(chunk);
+		}
+	}
+
+	private static class DiscardingDataStoreWriter implements DataStoreWriter<byte[]> {
+
+		@Override
+		public void write(byte[] entity) throws IOException {
+		}
+
+		@Override
+		public void flush() throws IOException {
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.cloud.task.jdbchdfs.common.EncodedRowJdbcItemReader;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriterFactory;
+import org.springframework.cloud.task.jdbchdfs.common.JdbcHdfsTaskProperties;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Copies all rows of a {@link BenchmarkTable} to the local file system compressed with
+ * each {@code codec}, either as compressed text or, when {@code splittable} is set and the
+ * codec can not split its own output, as a block compressed sequence file.  The score is
+ * in rows per second; the size of the output of the last copy is printed when the trial
+ * ends.  Codecs that need the native hadoop libraries fail on machines without them.
+ *
+ * @author Glenn Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodecBenchmark {
+
+	private static final int COMMIT_INTERVAL = 1000;
+
+	@Param({"none", "gzip", "deflate", "bzip2", "snappy", "lz4"})
+	private String codec;
+
+	@Param({"false", "true"})
+	private boolean splittable;
+
+	private BenchmarkTable table;
+
+	private File directory;
+
+	private long outputBytes;
+
+	@Setup
+	public void setup() {
+		table = BenchmarkTable.create("codec", 16, BenchmarkTable.MIXED);
+		directory = new File(System.getProperty("java.io.tmpdir"), "jdbchdfs-codec-benchmark");
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.out.println(String.format("%n%s%s: %d bytes", codec, splittable ? " (splittable)" : "",
+				outputBytes));
+		table.destroy();
+		FileSystemUtils.deleteRecursively(directory);
+	}
+
+	@TearDown(Level.Invocation)
+	public void deleteFiles() {
+		outputBytes = 0;
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				outputBytes += file.length();
+			}
+		}
+		FileSystemUtils.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkTable.ROWS)
+	@SuppressWarnings("unchecked")
+	public void copy() throws Exception {
+		JdbcHdfsTaskProperties props = new JdbcHdfsTaskProperties();
+		props.setFsUri("file:///");
+		props.setDirectory(directory.getAbsolutePath());
+		props.setFileName("benchmark");
+		props.setCodec("none".equals(codec) ? null : codec);
+		props.setSplittable(splittable);
+		HdfsTextItemWriter<Object> writer =
+				new HdfsTextItemWriterFactory(new Configuration(), props, "").getObject();
+
+		EncodedRowJdbcItemReader rowReader = new EncodedRowJdbcItemReader();
+		rowReader.setDataSource(table.getDataSource());
+		rowReader.setSql(table.getSql());
+		rowReader.setDelimiter(",");
+		rowReader.setFetchSize(COMMIT_INTERVAL);
+		rowReader.afterPropertiesSet();
+
+		ExecutionContext executionContext = new ExecutionContext();
+		rowReader.open(executionContext);
+		writer.open(executionContext);
+		List<Object> chunk = new ArrayList<>(COMMIT_INTERVAL);
+		Object row;
+		while ((row = rowReader.read()) != null) {
+			chunk.add(row);
+			if (chunk.size() == COMMIT_INTERVAL) {
+				writer.write(chunk);
+				writer.update(executionContext);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			writer.write(chunk);
+		}
+		writer.close();
+		rowReader.close();
+	}
+}
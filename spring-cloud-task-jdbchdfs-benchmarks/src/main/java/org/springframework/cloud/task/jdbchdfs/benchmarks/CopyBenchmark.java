@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.cloud.task.jdbchdfs.common.AbstractColumnJdbcItemReader;
+import org.springframework.cloud.task.jdbchdfs.common.EncodedRowJdbcItemReader;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriterFactory;
+import org.springframework.cloud.task.jdbchdfs.common.JdbcHdfsTaskProperties;
+import org.springframework.cloud.task.jdbchdfs.common.NamedColumnJdbcItemReader;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Copies all rows of a {@link BenchmarkTable} to the local file system the way a worker
+ * step does: a cursor reader feeds an {@link HdfsTextItemWriter} in chunks of the commit
+ * interval, with the writer flushed after each chunk.  The score is in rows per second.
+ *
+ * @author Glenn Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopyBenchmark {
+
+	private static final int COMMIT_INTERVAL = 1000;
+
+	@Param({"4", "16", "64"})
+	private int columns;
+
+	@Param({"named", "encoded"})
+	private String reader;
+
+	private BenchmarkTable table;
+
+	private File directory;
+
+	@Setup
+	public void setup() {
+		table = BenchmarkTable.create("copy", columns, BenchmarkTable.MIXED);
+		directory = new File(System.getProperty("java.io.tmpdir"), "jdbchdfs-copy-benchmark");
+	}
+
+	@TearDown
+	public void tearDown() {
+		table.destroy();
+		FileSystemUtils.deleteRecursively(directory);
+	}
+
+	@TearDown(Level.Invocation)
+	public void deleteFiles() {
+		FileSystemUtils.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkTable.ROWS)
+	@SuppressWarnings("unchecked")
+	public void copy() throws Exception {
+		JdbcHdfsTaskProperties props = new JdbcHdfsTaskProperties();
+		props.setFsUri("file:///");
+		props.setDirectory(directory.getAbsolutePath());
+		props.setFileName("benchmark");
+		HdfsTextItemWriter<Object> writer =
+				new HdfsTextItemWriterFactory(new Configuration(), props, "").getObject();
+
+		AbstractColumnJdbcItemReader<?> rowReader =
+				"named".equals(reader) ? new NamedColumnJdbcItemReader() : new EncodedRowJdbcItemReader();
+		rowReader.setDataSource(table.getDataSource());
+		rowReader.setSql(table.getSql());
+		rowReader.setDelimiter(",");
+		rowReader.setFetchSize(COMMIT_INTERVAL);
+		rowReader.afterPropertiesSet();
+
+		ExecutionContext executionContext = new ExecutionContext();
+		rowReader.open(executionContext);
+		writer.open(executionContext);
+		List<Object> chunk = new ArrayList<>(COMMIT_INTERVAL);
+		Object row;
+		while ((row = rowReader.read()) != null) {
+			chunk.add(row);
+			if (chunk.size() == COMMIT_INTERVAL) {
+				writer.write(chunk);
+				writer.update(executionContext);
+				chunk.clear();
+			}
+		}
+		if (!chunk.isEmpty()) {
+			writer.write(chunk);
+		}
+		writer.close();
+		rowReader.close();
+	}
+}
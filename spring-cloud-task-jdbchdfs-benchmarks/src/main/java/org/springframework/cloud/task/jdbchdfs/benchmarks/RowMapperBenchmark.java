@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.cloud.task.jdbchdfs.common.EncodedRowJdbcItemReader;
+import org.springframework.cloud.task.jdbchdfs.common.NamedColumnJdbcItemReader;
+
+/**
+ * Reads all rows of a {@link BenchmarkTable} through a cursor, mapping each row to the
+ * delimited line of a {@link NamedColumnJdbcItemReader} or to the encoded bytes of an
+ * {@link EncodedRowJdbcItemReader}.  The score is in rows per second.
+ *
+ * @author Glenn Renfro
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RowMapperBenchmark {
+
+	@Param({"4", "16", "64"})
+	private int columns;
+
+	@Param({BenchmarkTable.VARCHAR, BenchmarkTable.MIXED})
+	private String types;
+
+	private BenchmarkTable table;
+
+	@Setup
+	public void setup() {
+		table = BenchmarkTable.create("rowmapper", columns, types);
+	}
+
+	@TearDown
+	public void tearDown() {
+		table.destroy();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkTable.ROWS)
+	public void namedColumn(Blackhole blackhole) throws Exception {
+		NamedColumnJdbcItemReader reader = new NamedColumnJdbcItemReader();
+		reader.setDataSource(table.getDataSource());
+		reader.setSql(table.getSql());
+		reader.setDelimiter(",");
+		reader.setFetchSize(1000);
+		reader.afterPropertiesSet();
+		reader.open(new ExecutionContext());
+		String row;
+		while ((row = reader.read()) != null) {
+			blackhole.consume(row);
+		}
+		reader.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkTable.ROWS)
+	public void encodedRow(Blackhole blackhole) throws Exception {
+		EncodedRowJdbcItemReader reader = new EncodedRowJdbcItemReader();
+		reader.setDataSource(table.getDataSource());
+		reader.setSql(table.getSql());
+		reader.setDelimiter(",");
+		reader.setFetchSize(1000);
+		reader.afterPropertiesSet();
+		reader.open(new ExecutionContext());
+		byte[] row;
+		while ((row = reader.read()) != null) {
+			blackhole.consume(row);
+		}
+		reader.close();
+	}
+}
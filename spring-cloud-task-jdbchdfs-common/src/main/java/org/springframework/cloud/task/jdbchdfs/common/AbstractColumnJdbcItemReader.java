@@ -0,0 +1,485 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.database.JdbcCursorItemReader;
+import org.springframework.cloud.task.jdbchdfs.common.encoder.RowBuffer;
+import org.springframework.cloud.task.jdbchdfs.common.encoder.RowEncoder;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.LatencyHistogram;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.StepMetrics;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.Assert;
+
+/**
+ * Base class for the readers that turn each row of a cursor into a single item.  Rows
+ * are encoded as delimited text by a {@link RowEncoder} that is created from the metadata
+ * of the cursor when the first row is read, and every row is encoded into the same
+ * {@link RowBuffer}.
+ * <p>
+ * When a fetch memory budget is set, the width of the rows read is measured and after each
+ * fetch the fetch size of the cursor is set to the number of rows of the average width that
+ * fit in the budget, so that wide rows are fetched a few at a time and narrow rows in large
+ * batches.
+ * <p>
+ * When a checkpoint column is set, the rows must be ordered by that unique column and the
+ * value of the column for the last item read is saved in the execution context at each
+ * commit.  A restarted reader then runs the resume query, which only selects the rows
+ * after the last value saved at or before the item the writer reported as durable, instead
+ * of skipping all rows of the query from its start.  The checkpoints are only saved when
+ * this reader runs its own cursor on the step thread, the readers it is a part of, such as
+ * {@link PipelinedItemReader}, {@link KeysetPagingItemReader} and {@link RangeQueueItemReader},
+ * reject a checkpoint column.
+ * <p>
+ * The rows read, the bytes encoded and the time spent waiting for each row of the cursor
+ * are measured and published with {@link StepMetrics} once the step finished.
+ *
+ * @author Michael Minella
+ * @author Glenn Renfro
+ */
+public abstract class AbstractColumnJdbcItemReader<T> extends JdbcCursorItemReader<T> implements StepExecutionListener {
+
+	public static final int DEFAULT_MAX_FETCH_SIZE = 10000;
+
+	// the key AbstractItemCountingItemStreamItemReader saves the read count under
+	private static final String READ_COUNT = "read.count";
+
+	private static final String CHECKPOINTS = "checkpoints";
+
+	private String delimiter;
+
+	private final RowBuffer buffer = new RowBuffer();
+
+	private RowEncoder rowEncoder;
+
+	private long fetchMemoryBudget;
+
+	private int maxFetchSize = DEFAULT_MAX_FETCH_SIZE;
+
+	private int initialFetchSize;
+
+	private boolean cursorAutoCommit = true;
+
+	private Connection cursorConnection;
+
+	private int currentFetchSize;
+
+	private int rowsUntilResize;
+
+	private long sampledRows;
+
+	private long sampledBytes;
+
+	private String checkpointColumn;
+
+	private String resumeSql;
+
+	private String querySql;
+
+	private boolean verifyCursorPosition = true;
+
+	private int checkpointColumnIndex;
+
+	private Object lastValue;
+
+	private int lastValueCount;
+
+	// the item count the cursor of the resume query starts after, 0 when it reads from the start
+	private int resumeCount;
+
+	// the value of the checkpoint column at item counts that may not be durable yet
+	private final Map<Long, Object> checkpoints = new LinkedHashMap<>();
+
+	// the time spent in the driver moving to each row, which includes the fetches
+	private final LatencyHistogram fetchLatencies = new LatencyHistogram();
+
+	private long readStart;
+
+	private long rowsRead;
+
+	private long bytesEncoded;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		setRowMapper(new ItemRowMapper());
+		querySql = getSql();
+
+		super.afterPropertiesSet();
+	}
+
+	/**
+	 * Returns a {@link RowMapper} that creates the items of this reader, for readers that
+	 * run their own queries such as {@link KeysetPagingItemReader}.  The mapper is also a
+	 * {@link StepExecutionListener} that publishes the metrics of this reader.
+	 *
+	 * @return the mapper delegating to {@link #mapRow(ResultSet)}.
+	 * @throws IllegalStateException if a checkpoint column is set, the checkpoints are only
+	 * saved by the cursor of this reader.
+	 */
+	public RowMapper<T> getItemRowMapper() {
+		Assert.state(checkpointColumn == null, "The rows mapped for another reader can not be checkpointed, "
+				+ "checkpointColumn must not be set");
+		return new ItemRowMapper();
+	}
+
+	/**
+	 * Resumes from the number of items the writer reported as durable when it is lower than
+	 * the number of items read, so that items that never reached the store are read again.
+	 */
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		String readCountKey = getExecutionContextKey(READ_COUNT);
+		if (executionContext.containsKey(HdfsTextItemWriter.DURABLE_ITEM_COUNT)
+				&& executionContext.containsKey(readCountKey)) {
+			long durableItems = executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT);
+			if (durableItems < executionContext.getInt(readCountKey)) {
+				log.info("Resuming after item " + durableItems + " which is the last item flushed to the store");
+				executionContext.putInt(readCountKey, (int) durableItems);
+			}
+		}
+		resumeCheckpoint(executionContext);
+		super.open(executionContext);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void resumeCheckpoint(ExecutionContext executionContext) {
+		checkpoints.clear();
+		checkpointColumnIndex = 0;
+		lastValue = null;
+		lastValueCount = 0;
+		resumeCount = 0;
+		String checkpointsKey = getExecutionContextKey(CHECKPOINTS);
+		if (checkpointColumn == null || resumeSql == null || !executionContext.containsKey(checkpointsKey)) {
+			return;
+		}
+		int target = executionContext.getInt(getExecutionContextKey(READ_COUNT), 0);
+		Map<Long, Object> saved = (Map<Long, Object>) executionContext.get(checkpointsKey);
+		for (Map.Entry<Long, Object> checkpoint : saved.entrySet()) {
+			if (checkpoint.getKey() <= target) {
+				checkpoints.put(checkpoint.getKey(), checkpoint.getValue());
+				if (checkpoint.getKey() >= resumeCount) {
+					resumeCount = checkpoint.getKey().intValue();
+					lastValue = checkpoint.getValue();
+				}
+			}
+		}
+		lastValueCount = resumeCount;
+		if (resumeCount > 0) {
+			log.info("Resuming after " + checkpointColumn + " " + lastValue + " at item " + resumeCount);
+		}
+	}
+
+	@Override
+	protected void doOpen() throws Exception {
+		rowEncoder = null;
+		currentFetchSize = initialFetchSize;
+		rowsUntilResize = initialFetchSize > 0 ? initialFetchSize : 1;
+		sampledRows = 0;
+		sampledBytes = 0;
+		if (resumeCount > 0) {
+			// the rows of the resume query are numbered from the checkpoint
+			setSql(resumeSql);
+			setPreparedStatementSetter(new ArgumentPreparedStatementSetter(new Object[] {lastValue}));
+			super.setVerifyCursorPosition(false);
+		}
+		else if (checkpointColumn != null && resumeSql != null) {
+			setSql(querySql);
+			setPreparedStatementSetter(null);
+			super.setVerifyCursorPosition(verifyCursorPosition);
+		}
+		super.doOpen();
+	}
+
+	/**
+	 * Skips the rows read after the checkpoint the cursor starts after.
+	 */
+	@Override
+	protected void jumpToItem(int itemIndex) throws Exception {
+		if (itemIndex > resumeCount) {
+			super.jumpToItem(itemIndex - resumeCount);
+		}
+	}
+
+	@Override
+	protected void openCursor(Connection con) {
+		cursorConnection = con;
+		if (!cursorAutoCommit) {
+			try {
+				con.setAutoCommit(false);
+			}
+			catch (SQLException e) {
+				throw getExceptionTranslator().translate("Disabling auto commit of the cursor connection", getSql(), e);
+			}
+		}
+		super.openCursor(con);
+	}
+
+	@Override
+	protected T doRead() throws Exception {
+		readStart = System.nanoTime();
+		T item = super.doRead();
+		if (item == null) {
+			fetchLatencies.record(System.nanoTime() - readStart);
+		}
+		return item;
+	}
+
+	@Override
+	protected T readCursor(ResultSet rs, int currentRow) throws SQLException {
+		fetchLatencies.record(System.nanoTime() - readStart);
+		T item = super.readCursor(rs, currentRow);
+		if (checkpointColumn != null) {
+			readCheckpointValue(rs, currentRow);
+		}
+		if (fetchMemoryBudget > 0 && --rowsUntilResize <= 0) {
+			resizeFetch(rs);
+		}
+		return item;
+	}
+
+	private void readCheckpointValue(ResultSet rs, int currentRow) throws SQLException {
+		if (checkpointColumnIndex == 0) {
+			try {
+				checkpointColumnIndex = rs.findColumn(checkpointColumn);
+			}
+			catch (SQLException e) {
+				log.warn("The checkpoint column " + checkpointColumn + " is not read, no checkpoints are saved");
+				checkpointColumnIndex = -1;
+			}
+		}
+		if (checkpointColumnIndex > 0) {
+			lastValue = rs.getObject(checkpointColumnIndex);
+			lastValueCount = currentRow;
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		super.update(executionContext);
+		if (checkpointColumn == null || !isSaveState()) {
+			return;
+		}
+		if (lastValueCount > 0) {
+			checkpoints.put((long) lastValueCount, lastValue);
+		}
+		long durableItems = executionContext.containsKey(HdfsTextItemWriter.DURABLE_ITEM_COUNT)
+				? executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT) : lastValueCount;
+		// only the last checkpoint at or before the durable item is needed to resume
+		long resume = 0;
+		for (Long count : checkpoints.keySet()) {
+			if (count <= durableItems) {
+				resume = Math.max(resume, count);
+			}
+		}
+		for (Iterator<Long> counts = checkpoints.keySet().iterator(); counts.hasNext();) {
+			if (counts.next() < resume) {
+				counts.remove();
+			}
+		}
+		executionContext.put(getExecutionContextKey(CHECKPOINTS), new LinkedHashMap<>(checkpoints));
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		long rowsPerSecond = StepMetrics.putCount(stepExecution, "rows", rowsRead);
+		StepMetrics.putLatencies(stepExecution, "fetch", fetchLatencies);
+		String bytes = "";
+		if (bytesEncoded > 0) {
+			bytes = ", " + bytesEncoded + " bytes (" + StepMetrics.putCount(stepExecution, "bytesEncoded", bytesEncoded) + "/s)";
+		}
+		log.info("Partition " + StepMetrics.getPartition(stepExecution) + " read " + rowsRead + " rows ("
+				+ rowsPerSecond + "/s)" + bytes + ", fetch " + fetchLatencies);
+		return null;
+	}
+
+	@Override
+	protected void cleanupOnClose() throws Exception {
+		super.cleanupOnClose();
+		if (!cursorAutoCommit && cursorConnection != null) {
+			// the connection goes back to the pool as it was borrowed
+			cursorConnection.commit();
+			cursorConnection.setAutoCommit(true);
+		}
+		cursorConnection = null;
+	}
+
+	private void resizeFetch(ResultSet rs) throws SQLException {
+		long averageRowBytes = sampledRows > 0 ? Math.max(1, sampledBytes / sampledRows) : 1;
+		int fetchSize = (int) Math.max(1, Math.min(maxFetchSize, fetchMemoryBudget / averageRowBytes));
+		if (fetchSize != currentFetchSize) {
+			log.debug("Fetching " + fetchSize + " rows of " + averageRowBytes + " bytes on average");
+			rs.setFetchSize(fetchSize);
+			currentFetchSize = fetchSize;
+		}
+		rowsUntilResize = fetchSize;
+	}
+
+	/**
+	 * Records the width of a row read, when the fetch size adapts to the width of the rows.
+	 *
+	 * @param bytes the number of bytes of the row.
+	 */
+	protected void sampleRow(int bytes) {
+		if (fetchMemoryBudget > 0) {
+			sampledRows++;
+			sampledBytes += bytes;
+		}
+	}
+
+	/**
+	 * @return whether the widths of the rows are recorded with {@link #sampleRow(int)}.
+	 */
+	protected boolean isSamplingRows() {
+		return fetchMemoryBudget > 0;
+	}
+
+	/**
+	 * Creates the item for the current row.
+	 *
+	 * @param rs the result set positioned on the row to map.
+	 * @return the item for the row.
+	 * @throws SQLException if a column value can not be retrieved.
+	 */
+	protected abstract T mapRow(ResultSet rs) throws SQLException;
+
+	/**
+	 * Encodes the current row as delimited text.  The returned buffer is reused for
+	 * the next row.
+	 *
+	 * @param rs the result set positioned on the row to encode.
+	 * @return the buffer holding the encoded row.
+	 * @throws SQLException if a column value can not be retrieved.
+	 */
+	protected RowBuffer encodeRow(ResultSet rs) throws SQLException {
+		if (rowEncoder == null) {
+			rowEncoder = new RowEncoder(rs.getMetaData(), delimiter);
+		}
+		buffer.reset();
+		rowEncoder.encode(rs, buffer);
+		bytesEncoded += buffer.size();
+		sampleRow(buffer.size());
+		return buffer;
+	}
+
+	public void setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	@Override
+	public void setVerifyCursorPosition(boolean verifyCursorPosition) {
+		super.setVerifyCursorPosition(verifyCursorPosition);
+		this.verifyCursorPosition = verifyCursorPosition;
+	}
+
+	@Override
+	public void setFetchSize(int fetchSize) {
+		super.setFetchSize(fetchSize);
+		this.initialFetchSize = fetchSize;
+	}
+
+	/**
+	 * Sets the number of bytes of the rows fetched at once.  The fetch size set on the reader
+	 * is only used for the first fetch, which measures the width of the rows.
+	 *
+	 * @param fetchMemoryBudget the number of bytes per fetch, 0 to keep the fetch size.
+	 */
+	public void setFetchMemoryBudget(long fetchMemoryBudget) {
+		this.fetchMemoryBudget = fetchMemoryBudget;
+	}
+
+	/**
+	 * @param maxFetchSize the largest fetch size set from the fetch memory budget, defaults
+	 * to {@link #DEFAULT_MAX_FETCH_SIZE}.
+	 */
+	public void setMaxFetchSize(int maxFetchSize) {
+		this.maxFetchSize = maxFetchSize;
+	}
+
+	/**
+	 * Whether the connection of the cursor stays in auto commit mode.  Some drivers, such
+	 * as the one of PostgreSQL, read all rows at once unless auto commit is disabled.
+	 *
+	 * @param cursorAutoCommit false to read the cursor in a transaction.
+	 */
+	public void setCursorAutoCommit(boolean cursorAutoCommit) {
+		this.cursorAutoCommit = cursorAutoCommit;
+	}
+
+	/**
+	 * Sets the column whose value is saved at each commit to resume after.  The rows of the
+	 * query must be ordered by this column and its values must be unique.
+	 *
+	 * @param checkpointColumn the name of the column, {@code null} to skip the rows read on restart.
+	 */
+	public void setCheckpointColumn(String checkpointColumn) {
+		this.checkpointColumn = checkpointColumn;
+	}
+
+	public String getCheckpointColumn() {
+		return checkpointColumn;
+	}
+
+	/**
+	 * @return the number of bytes of the rows encoded by this reader so far.
+	 */
+	public long getBytesEncoded() {
+		return bytesEncoded;
+	}
+
+	/**
+	 * @param resumeSql the query of the rows after a value of the checkpoint column, which is
+	 * its only parameter, in the same order as the query of the reader.
+	 */
+	public void setResumeSql(String resumeSql) {
+		this.resumeSql = resumeSql;
+	}
+
+	private class ItemRowMapper implements RowMapper<T>, StepExecutionListener {
+
+		@Override
+		public T mapRow(ResultSet rs, int rowNum) throws SQLException {
+			rowsRead++;
+			return AbstractColumnJdbcItemReader.this.mapRow(rs);
+		}
+
+		@Override
+		public void beforeStep(StepExecution stepExecution) {
+			AbstractColumnJdbcItemReader.this.beforeStep(stepExecution);
+		}
+
+		@Override
+		public ExitStatus afterStep(StepExecution stepExecution) {
+			return AbstractColumnJdbcItemReader.this.afterStep(stepExecution);
+		}
+	}
+}
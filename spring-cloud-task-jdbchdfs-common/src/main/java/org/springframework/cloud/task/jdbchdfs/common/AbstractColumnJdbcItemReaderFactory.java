@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.EnumMap;
+import java.util.Map;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.batch.item.database.AbstractCursorItemReader;
+import org.springframework.batch.support.DatabaseType;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Base factory for configuring an {@link AbstractColumnJdbcItemReader}.  This factory
+ * will verify the type of database and configure the appropriate properties so that a streaming cursor is
+ * returned.  Specifically, it will configure {@code fetchSize=Integer.MIN_VALUE} for MySql and set
+ * {@code verifyCursorPosition=false } for both MySql and SQLite.
+ * <p>
+ * When a fetch memory budget is set, the fetch size of the reader adapts to the width of
+ * the rows, except on MySql and SQLite.  The first fetch then uses the initial fetch size
+ * of the database when there is one, and on PostgreSQL the cursor is read in a transaction
+ * since the driver fetches all rows at once otherwise.
+ * <p>
+ * When a checkpoint column is set and the query is built from the table, the rows are
+ * ordered by that column and the reader is given the query of the rows after a value of
+ * the column within the same partition, so that it resumes from its last checkpoint.
+ *
+ * @author Michael Minella
+ * @author Thomas Risberg
+ */
+public abstract class AbstractColumnJdbcItemReaderFactory<R extends AbstractColumnJdbcItemReader<?>>
+		implements FactoryBean<R>, InitializingBean {
+
+	private static final Logger log = LoggerFactory.getLogger(AbstractColumnJdbcItemReaderFactory.class);
+
+	// the fetch size measuring the width of the rows, small enough for rows holding large objects
+	private static final Map<DatabaseType, Integer> INITIAL_FETCH_SIZES = new EnumMap<>(DatabaseType.class);
+
+	static {
+		INITIAL_FETCH_SIZES.put(DatabaseType.ORACLE, 100);
+		INITIAL_FETCH_SIZES.put(DatabaseType.DB2, 100);
+		INITIAL_FETCH_SIZES.put(DatabaseType.DB2ZOS, 100);
+		INITIAL_FETCH_SIZES.put(DatabaseType.SQLSERVER, 100);
+		INITIAL_FETCH_SIZES.put(DatabaseType.POSTGRES, 100);
+	}
+
+	private DataSource dataSource;
+
+	private String tableName;
+
+	private String columnNames;
+
+	private String partitionClause;
+
+	private String sql;
+
+	// whether the sql was built from the table, so that it is built again for a new partition clause
+	private boolean generatedSql;
+
+	private int fetchSize;
+
+	private long fetchMemoryBudget;
+
+	private boolean verifyCursorPosition = true;
+
+	private boolean initialized = false;
+
+	private R reader;
+
+	private String delimiter;
+
+	private String checkpointColumn;
+
+	@Override
+	public R getObject() throws Exception {
+
+		if (!initialized) {
+			throw new IllegalStateException("Properties have not been initalized");
+		}
+		return reader;
+	}
+
+	@Override
+	public boolean isSingleton() {
+		return true;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if (!StringUtils.hasText(sql) || generatedSql) {
+			Assert.hasText(tableName, "tableName must be set");
+			Assert.hasText(columnNames, "columns must be set");
+
+			String sql;
+			if (StringUtils.hasText(partitionClause)) {
+				sql = "SELECT " + columnNames + " FROM " + tableName + " " + partitionClause;
+			}
+			else {
+				sql = "SELECT " + columnNames + " FROM " + tableName;
+			}
+			if (StringUtils.hasText(checkpointColumn)) {
+				sql += " ORDER BY " + checkpointColumn;
+			}
+			log.info("Setting SQL to: " + sql);
+			setSql(sql);
+			generatedSql = true;
+		}
+		else if (StringUtils.hasText(columnNames) || StringUtils.hasText(tableName)) {
+			log.warn("You must set either the 'sql' property or 'tableName' and 'columns'.");
+		}
+		String resumeSql = null;
+		if (StringUtils.hasText(checkpointColumn) && generatedSql) {
+			resumeSql = getResumeSql();
+		}
+		else if (StringUtils.hasText(checkpointColumn)) {
+			log.warn("Checkpoints are only saved when the query is built from 'tableName' and 'columns'.");
+		}
+
+		DatabaseType type = DatabaseType.fromMetaData(dataSource);
+		long fetchMemoryBudget = this.fetchMemoryBudget;
+		boolean cursorAutoCommit = true;
+
+		switch (type) {
+			case MYSQL:
+				fetchSize = Integer.MIN_VALUE;
+				// MySql doesn't support getRow for a streaming cursor
+				verifyCursorPosition = false;
+				fetchMemoryBudget = 0;
+				break;
+			case SQLITE:
+				fetchSize = AbstractCursorItemReader.VALUE_NOT_SET;
+				fetchMemoryBudget = 0;
+				break;
+			default:
+				if (fetchMemoryBudget > 0 && INITIAL_FETCH_SIZES.containsKey(type)) {
+					fetchSize = INITIAL_FETCH_SIZES.get(type);
+					cursorAutoCommit = type != DatabaseType.POSTGRES;
+				}
+				// otherwise keep configured fetchSize
+		}
+
+		reader = createReader();
+		reader.setSql(sql);
+		reader.setFetchSize(fetchSize);
+		reader.setFetchMemoryBudget(fetchMemoryBudget);
+		reader.setCursorAutoCommit(cursorAutoCommit);
+		reader.setDataSource(dataSource);
+		reader.setVerifyCursorPosition(verifyCursorPosition);
+		reader.setDelimiter(delimiter);
+		if (resumeSql != null) {
+			reader.setCheckpointColumn(checkpointColumn);
+			reader.setResumeSql(resumeSql);
+		}
+		reader.afterPropertiesSet();
+
+		initialized = true;
+	}
+
+	private String getResumeSql() {
+		String condition = checkpointColumn + " > ?";
+		if (StringUtils.hasText(partitionClause)) {
+			// the partition clause starts with the WHERE keyword
+			condition = "(" + partitionClause.trim().substring("WHERE".length()).trim() + ") AND " + condition;
+		}
+		return "SELECT " + columnNames + " FROM " + tableName + " WHERE " + condition
+				+ " ORDER BY " + checkpointColumn;
+	}
+
+	/**
+	 * Creates the reader that this factory configures.
+	 *
+	 * @return a new unconfigured reader.
+	 */
+	protected abstract R createReader();
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public void setTableName(String tableName) {
+		this.tableName = tableName;
+	}
+
+	public void setColumnNames(String columnNames) {
+		this.columnNames = columnNames;
+	}
+
+	public void setPartitionClause(String partitionClause) {
+		this.partitionClause = partitionClause;
+	}
+
+	public void setSql(String sql) {
+		this.sql = sql;
+		this.generatedSql = false;
+	}
+
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Sets the number of bytes of the rows fetched at once, to adapt the fetch size to the
+	 * width of the rows.
+	 *
+	 * @param fetchMemoryBudget the number of bytes per fetch, 0 to keep the fetch size.
+	 */
+	public void setFetchMemoryBudget(long fetchMemoryBudget) {
+		this.fetchMemoryBudget = fetchMemoryBudget;
+	}
+
+	public void setVerifyCursorPosition(boolean verify) {
+		this.verifyCursorPosition = verify;
+	}
+
+	public void setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Sets the unique column the rows are ordered by and the reader saves checkpoints of.
+	 *
+	 * @param checkpointColumn the name of the column, {@code null} to read the rows unordered.
+	 */
+	public void setCheckpointColumn(String checkpointColumn) {
+		this.checkpointColumn = checkpointColumn;
+	}
+
+	public String getCheckpointColumn() {
+		return checkpointColumn;
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Base class for the writers of file formats that can not be appended to or flushed
+ * part way, such as Parquet.  Items are written to {@code <fileName>-<index>.<extension>}
+ * in the directory, the file carrying a {@code .tmp} suffix until it is closed.  A file is
+ * closed, and the next one started, once the size reported for its items reaches the
+ * rollover size.
+ * <p>
+ * Only the items of closed files are durable, their number is saved in the execution
+ * context under {@link HdfsTextItemWriter#DURABLE_ITEM_COUNT} and the size of the closed
+ * files under {@link HdfsTextItemWriter#DURABLE_BYTE_OFFSET}.  On open, files left in
+ * writing by a previous run are deleted and the index continues after the existing files.
+ *
+ * @param <T> the type of the items.
+ * @param <W> the type of the writer of a single file.
+ * @author Glenn Renfro
+ */
+public abstract class AbstractRollingFileItemWriter<T, W extends Closeable> extends AbstractItemStreamItemWriter<T> {
+
+	private static final String IN_WRITING_SUFFIX = ".tmp";
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Configuration configuration;
+
+	private final Path directory;
+
+	private final String fileName;
+
+	private final String extension;
+
+	private final long rollover;
+
+	private int index;
+
+	private W fileWriter;
+
+	private Path inWritingPath;
+
+	private long fileSize;
+
+	private long itemsWritten;
+
+	private long durableItems;
+
+	private long durableBytes;
+
+	/**
+	 * @param configuration the hadoop configuration.
+	 * @param directory the directory the files are written to.
+	 * @param fileName the name of the files, without the index and extension.
+	 * @param extension the extension of the files.
+	 * @param rollover the size after which the next file is started.
+	 */
+	protected AbstractRollingFileItemWriter(Configuration configuration, Path directory, String fileName,
+			String extension, long rollover) {
+		Assert.notNull(configuration, "configuration must be set");
+		Assert.notNull(directory, "directory must be set");
+		Assert.hasText(fileName, "fileName must be set");
+		this.configuration = configuration;
+		this.directory = directory;
+		this.fileName = fileName;
+		this.extension = extension;
+		this.rollover = rollover;
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) {
+		if (executionContext.containsKey(HdfsTextItemWriter.DURABLE_ITEM_COUNT)) {
+			itemsWritten = executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT);
+			durableItems = itemsWritten;
+		}
+		if (executionContext.containsKey(HdfsTextItemWriter.DURABLE_BYTE_OFFSET)) {
+			durableBytes = executionContext.getLong(HdfsTextItemWriter.DURABLE_BYTE_OFFSET);
+		}
+		try {
+			FileSystem fs = directory.getFileSystem(configuration);
+			index = 0;
+			if (fs.exists(directory)) {
+				String prefix = fileName + "-";
+				for (FileStatus status : fs.listStatus(directory)) {
+					String name = status.getPath().getName();
+					if (!name.startsWith(prefix)) {
+						continue;
+					}
+					if (name.endsWith(IN_WRITING_SUFFIX)) {
+						logger.info("Deleting incomplete file " + status.getPath());
+						fs.delete(status.getPath(), false);
+					}
+					else {
+						index = Math.max(index, parseIndex(name.substring(prefix.length())) + 1);
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new ItemStreamException("Error while listing " + directory, e);
+		}
+	}
+
+	@Override
+	public void write(List<? extends T> items) throws Exception {
+		for (T item : items) {
+			if (fileWriter == null) {
+				Path path = getPath(index);
+				inWritingPath = path.suffix(IN_WRITING_SUFFIX);
+				logger.info("Creating output for path " + inWritingPath);
+				fileWriter = createWriter(configuration, inWritingPath, item);
+				fileSize = 0;
+			}
+			fileSize += write(fileWriter, item);
+			itemsWritten++;
+			if (fileSize >= rollover) {
+				closeFile();
+			}
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) {
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, durableItems);
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_BYTE_OFFSET, durableBytes);
+	}
+
+	@Override
+	public void close() {
+		try {
+			closeFile();
+		}
+		catch (IOException e) {
+			throw new ItemStreamException("Error while closing writer", e);
+		}
+	}
+
+	/**
+	 * Creates the writer of a new file.
+	 *
+	 * @param configuration the hadoop configuration.
+	 * @param path the path of the file.
+	 * @param firstItem the first item that will be written to the file.
+	 * @return the writer for the file.
+	 * @throws IOException if the file can not be created.
+	 */
+	protected abstract W createWriter(Configuration configuration, Path path, T firstItem) throws IOException;
+
+	/**
+	 * Writes an item to the current file.
+	 *
+	 * @param writer the writer of the current file.
+	 * @param item the item to write.
+	 * @return the size the item adds to the file, compared with the rollover size.
+	 * @throws IOException if the item can not be written.
+	 */
+	protected abstract long write(W writer, T item) throws IOException;
+
+	private void closeFile() throws IOException {
+		if (fileWriter != null) {
+			try {
+				fileWriter.close();
+			}
+			finally {
+				fileWriter = null;
+			}
+			FileSystem fs = inWritingPath.getFileSystem(configuration);
+			Path path = getPath(index++);
+			if (!fs.rename(inWritingPath, path)) {
+				throw new IOException("Failed to rename " + inWritingPath + " to " + path);
+			}
+			durableItems = itemsWritten;
+			durableBytes += fs.getFileStatus(path).getLen();
+		}
+	}
+
+	private Path getPath(int index) {
+		return new Path(directory, fileName + "-" + index + (StringUtils.hasText(extension) ? "." + extension : ""));
+	}
+
+	private int parseIndex(String name) {
+		int end = 0;
+		while (end < name.length() && Character.isDigit(name.charAt(end))) {
+			end++;
+		}
+		return end > 0 ? Integer.parseInt(name.substring(0, end)) : -1;
+	}
+}
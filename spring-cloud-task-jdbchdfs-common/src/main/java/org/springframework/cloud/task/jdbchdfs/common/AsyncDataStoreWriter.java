@@ -0,0 +1,269 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.cloud.task.jdbchdfs.common.encoder.RowBuffer;
+import org.springframework.data.hadoop.store.DataStoreWriter;
+import org.springframework.util.Assert;
+
+/**
+ * {@link DataStoreWriter} that hands the data to a dedicated thread which writes it to a
+ * delegate, so the caller can keep reading while the delegate waits on the file system.
+ * The chunks are copied into a ring of at most {@code buffers} buffers that are reused
+ * once the delegate wrote them; {@link #write(byte[])} blocks while all of them are
+ * pending.  A delegate that is a {@link ByteRangeDataStoreWriter} is handed the buffer
+ * itself, any other delegate gets a copy of the exact length.
+ * <p>
+ * {@link #flush(long)} queues a flush of the delegate behind the pending chunks and
+ * returns immediately, the checkpoint passed to it is reported by
+ * {@link #getFlushedCheckpoint()} once the flush completed.  {@link #flush()} and
+ * {@link #close()} wait until all pending chunks are written.  A failure of the writing
+ * thread is rethrown by the next call to this writer.
+ *
+ * @author Glenn Renfro
+ */
+public class AsyncDataStoreWriter implements ByteRangeDataStoreWriter {
+
+	private static final Logger logger = LoggerFactory.getLogger(AsyncDataStoreWriter.class);
+
+	private static final Entry STOP = new Entry(null, -1, null);
+
+	private final DataStoreWriter<byte[]> delegate;
+
+	private final int buffers;
+
+	// the buffers written by the delegate, ready to be filled again
+	private final BlockingQueue<RowBuffer> freeBuffers = new LinkedBlockingQueue<>();
+
+	private int allocatedBuffers;
+
+	private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+
+	private volatile long flushedCheckpoint = -1;
+
+	private volatile Throwable failure;
+
+	private Thread thread;
+
+	/**
+	 * @param delegate the writer that receives the data.
+	 * @param buffers the maximum number of chunks waiting to be written.
+	 */
+	public AsyncDataStoreWriter(DataStoreWriter<byte[]> delegate, int buffers) {
+		Assert.notNull(delegate, "delegate must be set");
+		Assert.isTrue(buffers > 0, "buffers must be greater than 0");
+		this.delegate = delegate;
+		this.buffers = buffers;
+	}
+
+	@Override
+	public void write(byte[] entity) throws IOException {
+		write(entity, 0, entity.length);
+	}
+
+	/**
+	 * Queues a copy of the range, the caller may reuse the array once this returns.
+	 */
+	@Override
+	public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+		checkFailure();
+		start();
+		RowBuffer buffer = takeBuffer(length);
+		buffer.reset();
+		buffer.append(bytes, offset, length);
+		queue.add(new Entry(buffer, -1, null));
+	}
+
+	private RowBuffer takeBuffer(int length) throws IOException {
+		RowBuffer buffer = freeBuffers.poll();
+		if (buffer != null) {
+			return buffer;
+		}
+		if (allocatedBuffers < buffers) {
+			allocatedBuffers++;
+			return new RowBuffer(length);
+		}
+		try {
+			return freeBuffers.take();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a write buffer");
+		}
+	}
+
+	/**
+	 * Requests a flush of the delegate once all data written so far has been handed to it.
+	 *
+	 * @param checkpoint the value reported by {@link #getFlushedCheckpoint()} once the flush completed.
+	 * @throws IOException if a previous write or flush failed.
+	 */
+	public synchronized void flush(long checkpoint) throws IOException {
+		checkFailure();
+		if (thread != null) {
+			queue.add(new Entry(null, checkpoint, null));
+		}
+		else {
+			delegate.flush();
+			flushedCheckpoint = checkpoint;
+		}
+	}
+
+	/**
+	 * @return the checkpoint of the last completed flush, {@code -1} if none completed yet.
+	 */
+	public long getFlushedCheckpoint() {
+		return flushedCheckpoint;
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		checkFailure();
+		if (thread != null) {
+			CountDownLatch latch = new CountDownLatch(1);
+			queue.add(new Entry(null, flushedCheckpoint, latch));
+			await(latch);
+			checkFailure();
+		}
+		else {
+			delegate.flush();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		}
+		finally {
+			if (thread != null) {
+				queue.add(STOP);
+				try {
+					thread.join();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				thread = null;
+			}
+			delegate.close();
+		}
+	}
+
+	private void start() {
+		if (thread == null) {
+			thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			}, "hdfs-writer-" + Integer.toHexString(System.identityHashCode(this)));
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			Entry entry;
+			try {
+				entry = queue.take();
+			}
+			catch (InterruptedException e) {
+				failure = e;
+				return;
+			}
+			if (entry == STOP) {
+				return;
+			}
+			try {
+				if (failure == null) {
+					if (entry.data != null) {
+						write(entry.data);
+					}
+					else {
+						delegate.flush();
+						flushedCheckpoint = Math.max(flushedCheckpoint, entry.checkpoint);
+					}
+				}
+			}
+			catch (Throwable t) {
+				logger.error("Error while writing to store writer", t);
+				failure = t;
+			}
+			finally {
+				if (entry.data != null) {
+					freeBuffers.add(entry.data);
+				}
+				if (entry.latch != null) {
+					entry.latch.countDown();
+				}
+			}
+		}
+	}
+
+	private void write(RowBuffer data) throws IOException {
+		if (delegate instanceof ByteRangeDataStoreWriter) {
+			((ByteRangeDataStoreWriter) delegate).write(data.array(), 0, data.size());
+		}
+		else {
+			// the writers of spring-data-hadoop only take a whole array
+			delegate.write(data.toByteArray());
+		}
+	}
+
+	private void await(CountDownLatch latch) throws IOException {
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for pending writes");
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		Throwable t = failure;
+		if (t != null) {
+			throw new IOException("Asynchronous write failed", t);
+		}
+	}
+
+	private static class Entry {
+
+		private final RowBuffer data;
+
+		private final long checkpoint;
+
+		private final CountDownLatch latch;
+
+		Entry(RowBuffer data, long checkpoint, CountDownLatch latch) {
+			this.data = data;
+			this.checkpoint = checkpoint;
+			this.latch = latch;
+		}
+	}
+}
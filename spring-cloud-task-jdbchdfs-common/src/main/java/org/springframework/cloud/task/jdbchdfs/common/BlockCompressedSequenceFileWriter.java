@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.data.hadoop.store.DataStoreWriter;
+import org.springframework.data.hadoop.store.codec.CodecInfo;
+import org.springframework.data.hadoop.store.event.FileWrittenEvent;
+import org.springframework.data.hadoop.store.event.StoreEventPublisher;
+import org.springframework.data.hadoop.store.output.AbstractSequenceFileWriter;
+import org.springframework.data.hadoop.store.support.OutputContext;
+import org.springframework.data.hadoop.store.support.SequenceFileWriterHolder;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * {@link DataStoreWriter} that writes each line of the data it receives as a record of a
+ * block compressed {@link SequenceFile}.  Records are compressed in blocks separated by
+ * sync markers, so the file can be split by MapReduce and Spark whatever the codec, which
+ * is not the case for a compressed text file.  The records have an empty {@link Text} key
+ * and the line, without its separator, as a {@link Text} value.
+ * <p>
+ * {@link #flush()} compresses the records buffered so far into a block and flushes it,
+ * so flushing after every small chunk lowers the compression ratio.
+ *
+ * @author Glenn Renfro
+ */
+public class BlockCompressedSequenceFileWriter extends AbstractSequenceFileWriter implements ByteRangeDataStoreWriter {
+
+	/**
+	 * The extension of the files written, which are not text files.
+	 */
+	public static final String FILE_EXTENSION = "seq";
+
+	private static final Logger logger = LoggerFactory.getLogger(BlockCompressedSequenceFileWriter.class);
+
+	private static final Text EMPTY_KEY = new Text();
+
+	private final Text value = new Text();
+
+	private byte[] lineSeparator = System.getProperty("line.separator").getBytes(Charset.forName("UTF-8"));
+
+	private SequenceFileWriterHolder<SequenceFile.Writer> holder;
+
+	/**
+	 * @param configuration the hadoop configuration.
+	 * @param basePath the directory the files are written to.
+	 * @param codec the codec used to compress the blocks.
+	 */
+	public BlockCompressedSequenceFileWriter(Configuration configuration, Path basePath, CodecInfo codec) {
+		super(configuration, basePath, codec);
+		Assert.notNull(codec, "codec must be set");
+	}
+
+	/**
+	 * Sets the separator of the lines in the data passed to {@link #write(byte[])}.
+	 *
+	 * @param lineSeparator the line separator, defaults to the platform line separator.
+	 */
+	public void setLineSeparator(String lineSeparator) {
+		Assert.hasLength(lineSeparator, "lineSeparator must be set");
+		this.lineSeparator = lineSeparator.getBytes(Charset.forName("UTF-8"));
+	}
+
+	@Override
+	public void write(byte[] entity) throws IOException {
+		write(entity, 0, entity.length);
+	}
+
+	@Override
+	public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+		if (holder == null) {
+			holder = getOutput();
+		}
+		SequenceFile.Writer writer = holder.getWriter();
+		int start = offset;
+		int limit = offset + length;
+		int end;
+		while ((end = indexOfSeparator(bytes, start, limit)) >= 0) {
+			value.set(bytes, start, end - start);
+			writer.append(EMPTY_KEY, value);
+			start = end + lineSeparator.length;
+		}
+		if (start < limit) {
+			value.set(bytes, start, limit - start);
+			writer.append(EMPTY_KEY, value);
+		}
+		setWritePosition(getPosition(writer));
+		OutputContext context = getOutputContext();
+		if (context.getRolloverState()) {
+			logger.info("After write, rollover state is true");
+			close();
+			context.rollStrategies();
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		if (holder != null) {
+			SequenceFile.Writer writer = holder.getWriter();
+			writer.sync();
+			writer.hflush();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (holder != null) {
+			holder.close();
+			Path path = renameFile(holder.getPath());
+			StoreEventPublisher storeEventPublisher = getStoreEventPublisher();
+			if (storeEventPublisher != null) {
+				storeEventPublisher.publishEvent(new FileWrittenEvent(this, path));
+			}
+			holder = null;
+		}
+	}
+
+	@Override
+	protected SequenceFileWriterHolder<SequenceFile.Writer> getOutput() throws IOException {
+		Class<?> codecClass = ClassUtils.resolveClassName(getCodec().getCodecClass(), getClass().getClassLoader());
+		CompressionCodec compressionCodec = (CompressionCodec) ReflectionUtils.newInstance(codecClass, getConfiguration());
+		Path path = getResolvedPath();
+		logger.info("Creating block compressed sequence file for path " + path);
+		SequenceFile.Writer writer = SequenceFile.createWriter(getConfiguration(), SequenceFile.Writer.file(path),
+				SequenceFile.Writer.keyClass(Text.class), SequenceFile.Writer.valueClass(Text.class),
+				SequenceFile.Writer.compression(SequenceFile.CompressionType.BLOCK, compressionCodec));
+		return new SequenceFileWriterHolder<>(writer, path);
+	}
+
+	private int indexOfSeparator(byte[] data, int from, int limit) {
+		byte first = lineSeparator[0];
+		for (int i = from; i <= limit - lineSeparator.length; i++) {
+			if (data[i] == first) {
+				int j = 1;
+				while (j < lineSeparator.length && data[i + j] == lineSeparator[j]) {
+					j++;
+				}
+				if (j == lineSeparator.length) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+}
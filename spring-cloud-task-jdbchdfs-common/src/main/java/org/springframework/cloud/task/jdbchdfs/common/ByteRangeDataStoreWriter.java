@@ -0,0 +1,41 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.io.IOException;
+
+import org.springframework.data.hadoop.store.DataStoreWriter;
+
+/**
+ * {@link DataStoreWriter} that also writes a range of an array, so that a caller encoding
+ * its data into a buffer it reuses can hand over that buffer instead of a copy of it.
+ *
+ * @author Glenn Renfro
+ */
+public interface ByteRangeDataStoreWriter extends DataStoreWriter<byte[]> {
+
+	/**
+	 * Writes a range of an array.  The array is not referenced once this returns, so the
+	 * caller may write into it again.
+	 *
+	 * @param bytes the array holding the data.
+	 * @param offset the index of the first byte to write.
+	 * @param length the number of bytes to write.
+	 * @throws IOException if the data can not be written.
+	 */
+	void write(byte[] bytes, int offset, int length) throws IOException;
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobExecutionAlreadyRunningException;
+import org.springframework.batch.core.repository.JobInstanceAlreadyCompleteException;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.JobRestartException;
+import org.springframework.util.Assert;
+
+/**
+ * Job repository that writes the updates of running steps less often.  A step updates
+ * its execution and its execution context after each chunk; this repository only passes
+ * those updates on every {@code updateChunks} chunks, or once {@code updateInterval}
+ * milliseconds passed since the last one that was written, to keep the load of many
+ * partitions committing small chunks off the database of the job repository.
+ * <p>
+ * The first update of a step and every update once it stopped running are always
+ * written, as are the updates of a step that was asked to terminate and all updates of
+ * jobs.  A restarted step resumes from the last execution context written, so it reads
+ * again the chunks committed after it.  Requests to stop the job are noticed when the
+ * next update is written.
+ * <p>
+ * A skipped update leaves the step execution in memory, its counts and its execution
+ * context, ahead of its row in the job repository.  Its version is not incremented either,
+ * so the next update written still matches the row.  The chunk transaction commits all the
+ * same, so an {@code ItemStream} whose state is kept outside the execution context, as the
+ * claims of a {@link RangeQueueItemReader}, puts {@link #WRITE_CONTEXT_KEY} in the context
+ * when it changed that state; the execution context is then written with that chunk.
+ *
+ * @author Glenn Renfro
+ */
+public class CoalescingJobRepository implements JobRepository {
+
+	private static final Log log = LogFactory.getLog(CoalescingJobRepository.class);
+
+	/**
+	 * Key an {@code ItemStream} puts in the step execution context to have the context
+	 * written with the current chunk.  The key is removed before the context is written.
+	 */
+	public static final String WRITE_CONTEXT_KEY = "jdbchdfs.writeContext";
+
+	private final JobRepository delegate;
+
+	private final int updateChunks;
+
+	private final long updateInterval;
+
+	// the updates since the last one written, by step execution id
+	private final ConcurrentMap<Long, Updates> stepUpdates = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Long, Updates> contextUpdates = new ConcurrentHashMap<>();
+
+	/**
+	 * @param delegate the repository the updates are written to.
+	 * @param updateChunks the number of chunks between the updates written, 1 to write all.
+	 * @param updateInterval the number of milliseconds after which an update is written
+	 * before {@code updateChunks} chunks were committed, 0 for no limit.
+	 */
+	public CoalescingJobRepository(JobRepository delegate, int updateChunks, long updateInterval) {
+		Assert.notNull(delegate, "delegate must be set");
+		Assert.isTrue(updateChunks > 0, "updateChunks must be greater than 0");
+		Assert.isTrue(updateInterval >= 0, "updateInterval must not be negative");
+		this.delegate = delegate;
+		this.updateChunks = updateChunks;
+		this.updateInterval = updateInterval;
+	}
+
+	@Override
+	public void update(StepExecution stepExecution) {
+		if (isDue(stepUpdates, stepExecution, "updates", false)) {
+			delegate.update(stepExecution);
+		}
+	}
+
+	@Override
+	public void updateExecutionContext(StepExecution stepExecution) {
+		boolean requested = stepExecution.getExecutionContext().containsKey(WRITE_CONTEXT_KEY);
+		if (requested) {
+			stepExecution.getExecutionContext().remove(WRITE_CONTEXT_KEY);
+		}
+		if (isDue(contextUpdates, stepExecution, "execution context updates", requested)) {
+			delegate.updateExecutionContext(stepExecution);
+		}
+	}
+
+	/**
+	 * Tells whether an update of a step has to be written, counting it otherwise.
+	 */
+	private boolean isDue(ConcurrentMap<Long, Updates> pending, StepExecution stepExecution, String kind,
+			boolean requested) {
+		Long id = stepExecution.getId();
+		if (id == null) {
+			return true;
+		}
+		if (stepExecution.getStatus() != BatchStatus.STARTED || stepExecution.isTerminateOnly()) {
+			Updates updates = pending.remove(id);
+			if (updates != null && updates.skipped > 0) {
+				log.info("Wrote " + (updates.written + 1) + " of " + (updates.written + updates.skipped + 1) + " "
+						+ kind + " of step " + stepExecution.getStepName());
+			}
+			return true;
+		}
+		Updates updates = pending.get(id);
+		if (updates == null) {
+			pending.put(id, new Updates());
+			return true;
+		}
+		updates.sinceWritten++;
+		long now = System.currentTimeMillis();
+		if (requested || updates.sinceWritten >= updateChunks
+				|| (updateInterval > 0 && now - updates.writtenAt >= updateInterval)) {
+			updates.sinceWritten = 0;
+			updates.writtenAt = now;
+			updates.written++;
+			return true;
+		}
+		updates.skipped++;
+		return false;
+	}
+
+	@Override
+	public boolean isJobInstanceExists(String jobName, JobParameters jobParameters) {
+		return delegate.isJobInstanceExists(jobName, jobParameters);
+	}
+
+	@Override
+	public JobInstance createJobInstance(String jobName, JobParameters jobParameters) {
+		return delegate.createJobInstance(jobName, jobParameters);
+	}
+
+	@Override
+	public JobExecution createJobExecution(JobInstance jobInstance, JobParameters jobParameters,
+			String jobConfigurationLocation) {
+		return delegate.createJobExecution(jobInstance, jobParameters, jobConfigurationLocation);
+	}
+
+	@Override
+	public JobExecution createJobExecution(String jobName, JobParameters jobParameters)
+			throws JobExecutionAlreadyRunningException, JobRestartException, JobInstanceAlreadyCompleteException {
+		return delegate.createJobExecution(jobName, jobParameters);
+	}
+
+	@Override
+	public void update(JobExecution jobExecution) {
+		delegate.update(jobExecution);
+	}
+
+	@Override
+	public void add(StepExecution stepExecution) {
+		delegate.add(stepExecution);
+	}
+
+	@Override
+	public void addAll(Collection<StepExecution> stepExecutions) {
+		delegate.addAll(stepExecutions);
+	}
+
+	@Override
+	public void updateExecutionContext(JobExecution jobExecution) {
+		delegate.updateExecutionContext(jobExecution);
+	}
+
+	@Override
+	public StepExecution getLastStepExecution(JobInstance jobInstance, String stepName) {
+		return delegate.getLastStepExecution(jobInstance, stepName);
+	}
+
+	@Override
+	public int getStepExecutionCount(JobInstance jobInstance, String stepName) {
+		return delegate.getStepExecutionCount(jobInstance, stepName);
+	}
+
+	@Override
+	public JobExecution getLastJobExecution(String jobName, JobParameters jobParameters) {
+		return delegate.getLastJobExecution(jobName, jobParameters);
+	}
+
+	/**
+	 * The updates of a step, only used by the thread running it.
+	 */
+	private static class Updates {
+
+		private int sinceWritten;
+
+		private long writtenAt = System.currentTimeMillis();
+
+		// the first update is written when this is created
+		private long written = 1;
+
+		private long skipped;
+	}
+}
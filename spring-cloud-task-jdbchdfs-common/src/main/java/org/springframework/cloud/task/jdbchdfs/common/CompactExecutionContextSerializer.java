@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.batch.core.repository.ExecutionContextSerializer;
+import org.springframework.batch.core.repository.dao.XStreamExecutionContextStringSerializer;
+import org.springframework.util.Assert;
+import org.springframework.util.Base64Utils;
+import org.springframework.util.SerializationUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Serializes execution contexts in a compact binary form instead of the JSON written by
+ * the default {@link XStreamExecutionContextStringSerializer}.  Each entry is written as
+ * its key followed by a tag and the value: strings, maps and the primitive wrappers the
+ * readers and writers save are written directly, any other value with Java serialization.  The
+ * bytes are encoded in Base64, since the job repository keeps the contexts in character
+ * columns.
+ * <p>
+ * Contexts written by the default serializer are still read, so the serializer can be
+ * used with a job repository that already holds executions.  Other applications reading
+ * the job repository, such as a dashboard, need this serializer to read the new contexts.
+ *
+ * @author Glenn Renfro
+ */
+public class CompactExecutionContextSerializer implements ExecutionContextSerializer {
+
+	private static final byte VERSION = 1;
+
+	private static final byte STRING = 0;
+
+	private static final byte INTEGER = 1;
+
+	private static final byte LONG = 2;
+
+	private static final byte DOUBLE = 3;
+
+	private static final byte BOOLEAN = 4;
+
+	private static final byte MAP = 5;
+
+	private static final byte SERIALIZED = 6;
+
+	// writeUTF is limited to 65535 bytes, which is at least 21845 characters
+	private static final int MAX_UTF_LENGTH = 21845;
+
+	private final XStreamExecutionContextStringSerializer defaultSerializer;
+
+	public CompactExecutionContextSerializer() {
+		defaultSerializer = new XStreamExecutionContextStringSerializer();
+		try {
+			defaultSerializer.afterPropertiesSet();
+		}
+		catch (Exception e) {
+			throw new IllegalStateException("Unable to create the serializer of the default contexts", e);
+		}
+	}
+
+	@Override
+	public void serialize(Map<String, Object> context, OutputStream out) throws IOException {
+		Assert.notNull(context, "context must not be null");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeByte(VERSION);
+		data.writeInt(context.size());
+		for (Map.Entry<String, Object> entry : context.entrySet()) {
+			data.writeUTF(entry.getKey());
+			writeValue(data, entry.getValue());
+		}
+		data.flush();
+		out.write(Base64Utils.encode(bytes.toByteArray()));
+	}
+
+	private void writeValue(DataOutputStream data, Object value) throws IOException {
+		if (value instanceof String && ((String) value).length() <= MAX_UTF_LENGTH) {
+			data.writeByte(STRING);
+			data.writeUTF((String) value);
+		}
+		else if (value instanceof Integer) {
+			data.writeByte(INTEGER);
+			data.writeInt((Integer) value);
+		}
+		else if (value instanceof Long) {
+			data.writeByte(LONG);
+			data.writeLong((Long) value);
+		}
+		else if (value instanceof Double) {
+			data.writeByte(DOUBLE);
+			data.writeDouble((Double) value);
+		}
+		else if (value instanceof Boolean) {
+			data.writeByte(BOOLEAN);
+			data.writeBoolean((Boolean) value);
+		}
+		else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			data.writeByte(MAP);
+			data.writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				writeValue(data, entry.getKey());
+				writeValue(data, entry.getValue());
+			}
+		}
+		else {
+			Assert.isInstanceOf(Serializable.class, value, "Values of the execution context must be serializable");
+			byte[] serialized = SerializationUtils.serialize(value);
+			data.writeByte(SERIALIZED);
+			data.writeInt(serialized.length);
+			data.write(serialized);
+		}
+	}
+
+	@Override
+	public Map<String, Object> deserialize(InputStream in) throws IOException {
+		byte[] encoded = StreamUtils.copyToByteArray(in);
+		int start = 0;
+		while (start < encoded.length && Character.isWhitespace(encoded[start])) {
+			start++;
+		}
+		if (start < encoded.length && (encoded[start] == '{' || encoded[start] == '<')) {
+			// written by the default serializer, the Base64 alphabet has neither character
+			return defaultSerializer.deserialize(new ByteArrayInputStream(encoded));
+		}
+		DataInputStream data = new DataInputStream(new ByteArrayInputStream(Base64Utils.decode(encoded)));
+		byte version = data.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version + " of a compact execution context");
+		}
+		int size = data.readInt();
+		Map<String, Object> context = new HashMap<>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) {
+			String key = data.readUTF();
+			context.put(key, readValue(data));
+		}
+		return context;
+	}
+
+	private Object readValue(DataInputStream data) throws IOException {
+		byte tag = data.readByte();
+		switch (tag) {
+			case STRING:
+				return data.readUTF();
+			case INTEGER:
+				return data.readInt();
+			case LONG:
+				return data.readLong();
+			case DOUBLE:
+				return data.readDouble();
+			case BOOLEAN:
+				return data.readBoolean();
+			case MAP:
+				int size = data.readInt();
+				Map<Object, Object> map = new LinkedHashMap<>(size * 4 / 3 + 1);
+				for (int i = 0; i < size; i++) {
+					Object key = readValue(data);
+					map.put(key, readValue(data));
+				}
+				return map;
+			case SERIALIZED:
+				byte[] serialized = new byte[data.readInt()];
+				data.readFully(serialized);
+				return SerializationUtils.deserialize(serialized);
+			default:
+				throw new IOException("Unknown value type " + tag + " in a compact execution context");
+		}
+	}
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import org.springframework.data.hadoop.store.strategy.rollover.SizeRolloverStrategy;
+
+/**
+ * {@link SizeRolloverStrategy} that counts how many times the file rolled over, which lets
+ * {@link HdfsTextItemWriter} know when the data written so far has been closed into a file.
+ * The lengths of the files rolled over are summed up as well, so that a writer whose files
+ * are closed on another thread knows up to which byte its data has been closed.
+ *
+ * @author Glenn Renfro
+ */
+public class CountingSizeRolloverStrategy extends SizeRolloverStrategy {
+
+	private volatile int rollovers;
+
+	private volatile long rolledBytes;
+
+	public CountingSizeRolloverStrategy(long rolloverSize) {
+		super(rolloverSize);
+	}
+
+	@Override
+	public void reset() {
+		rolledBytes += getPosition();
+		// a file name that is skipped because it exists is rolled over without any write
+		setWritePosition(0);
+		rollovers++;
+		super.reset();
+	}
+
+	/**
+	 * @return the number of times the file rolled over.
+	 */
+	public int getRollovers() {
+		return rollovers;
+	}
+
+	/**
+	 * @return the number of bytes written to the files that rolled over.
+	 */
+	public long getRolledBytes() {
+		return rolledBytes;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+/**
+ * Factory for configuring a {@link org.springframework.cloud.task.jdbchdfs.common.EncodedRowJdbcItemReader}.
+ *
+ * @author Glenn Renfro
+ * @see AbstractColumnJdbcItemReaderFactory
+ */
+public class EncodedRowJdbcItemReaderFactory extends AbstractColumnJdbcItemReaderFactory<EncodedRowJdbcItemReader> {
+
+	@Override
+	public Class<?> getObjectType() {
+		return EncodedRowJdbcItemReader.class;
+	}
+
+	@Override
+	protected EncodedRowJdbcItemReader createReader() {
+		return new EncodedRowJdbcItemReader();
+	}
+}
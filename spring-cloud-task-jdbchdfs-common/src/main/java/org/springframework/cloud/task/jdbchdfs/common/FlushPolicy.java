@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+/**
+ * Determines when {@link HdfsTextItemWriter} flushes its store writer as chunks are committed.
+ * Data is always flushed when a file rolls over and when the writer is closed.
+ *
+ * @author Glenn Renfro
+ */
+public enum FlushPolicy {
+
+	/**
+	 * Flush once every {@code flushInterval} chunks.
+	 */
+	CHUNK,
+
+	/**
+	 * Flush once at least {@code flushInterval} bytes were written since the last flush.
+	 */
+	BYTES,
+
+	/**
+	 * Flush once at least {@code flushInterval} milliseconds passed since the last flush.
+	 */
+	TIME,
+
+	/**
+	 * Only flush when a file rolls over or the writer is closed.
+	 */
+	CLOSE
+}
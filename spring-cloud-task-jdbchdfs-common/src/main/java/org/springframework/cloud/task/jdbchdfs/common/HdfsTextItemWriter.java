@@ -17,29 +17,57 @@
 package org.springframework.cloud.task.jdbchdfs.common;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.item.ExecutionContext;
-import org.springframework.batch.item.WriteFailedException;
+import org.springframework.batch.item.ItemStreamException;
 import org.springframework.batch.item.file.transform.LineAggregator;
 import org.springframework.batch.item.support.AbstractItemStreamItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.encoder.RowBuffer;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.LatencyHistogram;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.StepMetrics;
 import org.springframework.data.hadoop.store.DataStoreWriter;
 import org.springframework.data.hadoop.store.output.OutputStreamWriter;
 
 /**
- * Writes items as a byte array to a destination as specified by the fsURI.
+ * Writes items as a byte array to a destination as specified by the fsURI.  Items that
+ * are already encoded as a {@code byte[]} are copied as is, all other items are converted
+ * using the {@link LineAggregator}, into a buffer reused from one chunk to the next.  The
+ * items and bytes known to have reached the store are saved in the execution context under
+ * {@link #DURABLE_ITEM_COUNT}, {@link #DURABLE_BYTE_OFFSET} and {@link #DURABLE_FILE_OFFSET}
+ * so that a restarted step resumes after them, and the write metrics are published with
+ * {@link StepMetrics}.
  *
  * @author Glenn Renfro
  */
-public class HdfsTextItemWriter<T> extends AbstractItemStreamItemWriter<T> {
+public class HdfsTextItemWriter<T> extends AbstractItemStreamItemWriter<T> implements StepExecutionListener {
+
+	public static final String DURABLE_ITEM_COUNT = "hdfs.writer.durable.count";
+
+	public static final String DURABLE_BYTE_OFFSET = "hdfs.writer.durable.offset";
+
+	public static final String DURABLE_FILE_OFFSET = "hdfs.writer.durable.file.offset";
 
 	private static final String DEFAULT_LINE_SEPARATOR = System.getProperty("line.separator");
 
-	private volatile String charset = "UTF-8";
+	private Charset charset = RowBuffer.UTF_8;
 
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -49,6 +77,61 @@ public class HdfsTextItemWriter<T> extends AbstractItemStreamItemWriter<T> {
 
 	private String lineSeparator = DEFAULT_LINE_SEPARATOR;
 
+	private final RowBuffer chunkBuffer = new RowBuffer(8192);
+
+	private byte[] lineSeparatorBytes = lineSeparator.getBytes(RowBuffer.UTF_8);
+
+	private boolean utf8 = true;
+
+	private FlushPolicy flushPolicy = FlushPolicy.CHUNK;
+
+	private long flushInterval = 1;
+
+	private CountingSizeRolloverStrategy rolloverStrategy;
+
+	private int rollovers;
+
+	private long itemsWritten;
+
+	private long bytesWritten;
+
+	private long durableItems;
+
+	private long durableBytes;
+
+	// the number of bytes written before the file being written
+	private long fileStartBytes;
+
+	private FileSystem fileSystem;
+
+	private Path directory;
+
+	private Pattern inWritingFileNamePattern;
+
+	private String inWritingSuffix;
+
+	private int chunksSinceFlush;
+
+	private long bytesSinceFlush;
+
+	private long lastFlushTime = System.currentTimeMillis();
+
+	private final LatencyHistogram writeLatencies = new LatencyHistogram();
+
+	private final LatencyHistogram flushLatencies = new LatencyHistogram();
+
+	private long bytesAtOpen;
+
+	private int rolloversAtOpen;
+
+	// item count and byte offset of the asynchronous flushes that did not complete yet
+	private final Deque<long[]> pendingFlushes = new ArrayDeque<>();
+
+	// item count and byte offset at the end of the chunks handed to an asynchronous writer that are not durable yet
+	private final Deque<long[]> pendingChunks = new ArrayDeque<>();
+
+	private long rolledBytesAtOpen;
+
 	/**
 	 * Aggregates the items to a single string and writes the data out using {@link OutputStreamWriter} as a byte array.
 	 *
@@ -56,20 +139,166 @@ public class HdfsTextItemWriter<T> extends AbstractItemStreamItemWriter<T> {
 	 */
 	@Override
 	public void write(List list) throws Exception {
-		storeWriter.write(getItemsAsByte(list));
+		int length = encodeItems(list);
+		long start = System.nanoTime();
+		if (storeWriter instanceof ByteRangeDataStoreWriter) {
+			((ByteRangeDataStoreWriter) storeWriter).write(chunkBuffer.array(), 0, length);
+		}
+		else {
+			storeWriter.write(chunkBuffer.toByteArray());
+		}
+		writeLatencies.record(System.nanoTime() - start);
+		itemsWritten += list.size();
+		bytesWritten += length;
+		chunksSinceFlush++;
+		bytesSinceFlush += length;
+		if (rolloverStrategy != null) {
+			if (storeWriter instanceof AsyncDataStoreWriter) {
+				pendingChunks.add(new long[] {itemsWritten, bytesWritten});
+			}
+			else if (rolloverStrategy.getRollovers() != rollovers) {
+				rollovers = rolloverStrategy.getRollovers();
+				markDurable(itemsWritten, bytesWritten);
+				fileStartBytes = bytesWritten;
+			}
+		}
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) {
+		if (executionContext.containsKey(DURABLE_ITEM_COUNT)) {
+			itemsWritten = executionContext.getLong(DURABLE_ITEM_COUNT);
+			durableItems = itemsWritten;
+		}
+		if (executionContext.containsKey(DURABLE_BYTE_OFFSET)) {
+			bytesWritten = executionContext.getLong(DURABLE_BYTE_OFFSET);
+			durableBytes = bytesWritten;
+		}
+		if (inWritingFileNamePattern != null && executionContext.containsKey(DURABLE_FILE_OFFSET)) {
+			try {
+				recoverInWritingFile(executionContext.getLong(DURABLE_FILE_OFFSET));
+			}
+			catch (IOException e) {
+				throw new ItemStreamException("Unable to recover the file being written", e);
+			}
+		}
+		fileStartBytes = bytesWritten;
+		bytesAtOpen = bytesWritten;
+		rolloversAtOpen = rollovers;
+		rolledBytesAtOpen = rolloverStrategy != null ? rolloverStrategy.getRolledBytes() : 0;
+		lastFlushTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Keeps the durable bytes of the file that was being written when the step failed.  The
+	 * file with the highest rolling index is the last one opened.
+	 */
+	private void recoverInWritingFile(long length) throws IOException {
+		FileStatus inWritingFile = null;
+		int latestIndex = -1;
+		if (fileSystem.exists(directory)) {
+			for (FileStatus status : fileSystem.listStatus(directory)) {
+				Matcher matcher = inWritingFileNamePattern.matcher(status.getPath().getName());
+				if (matcher.matches() && Integer.parseInt(matcher.group(1)) > latestIndex) {
+					latestIndex = Integer.parseInt(matcher.group(1));
+					inWritingFile = status;
+				}
+			}
+		}
+		if (inWritingFile == null) {
+			return;
+		}
+		Path path = inWritingFile.getPath();
+		if (length == 0) {
+			logger.info("Deleting {} which holds no durable items", path);
+			fileSystem.delete(path, false);
+			return;
+		}
+		String name = path.getName();
+		Path target = new Path(path.getParent(), name.substring(0, name.length() - inWritingSuffix.length()));
+		logger.info("Keeping the first {} bytes of {} as {}", length, path, target);
+		if (inWritingFile.getLen() == length || (inWritingFile.getLen() > length && truncate(path, length))) {
+			if (!fileSystem.rename(path, target)) {
+				throw new IOException("Failed renaming " + path + " to " + target);
+			}
+		}
+		else {
+			// the length of a file that was not closed may not be known, its content is
+			long copied;
+			try (FSDataInputStream in = fileSystem.open(path); FSDataOutputStream out = fileSystem.create(target, false)) {
+				IOUtils.copyBytes(in, out, length, false);
+				copied = out.getPos();
+			}
+			if (copied < length) {
+				fileSystem.delete(target, false);
+				throw new IOException(path + " holds " + copied + " of the " + length + " bytes flushed to it");
+			}
+			fileSystem.delete(path, false);
+		}
+	}
+
+	private boolean truncate(Path path, long length) {
+		try {
+			// on hdfs the last block may still be adjusted once this returns, the rename is not affected
+			fileSystem.truncate(path, length);
+			return true;
+		}
+		catch (IOException | UnsupportedOperationException e) {
+			logger.debug("Unable to truncate {}, copying the durable bytes instead", path, e);
+			return false;
+		}
 	}
 
 	@Override
 	public void update(ExecutionContext executionContext) {
-		logger.debug("Flushing store writer");
 		if (storeWriter != null) {
 			try {
-				storeWriter.flush();
+				if (storeWriter instanceof AsyncDataStoreWriter) {
+					AsyncDataStoreWriter asyncWriter = (AsyncDataStoreWriter) storeWriter;
+					if (isFlushDue()) {
+						logger.debug("Requesting flush of store writer");
+						long start = System.nanoTime();
+						asyncWriter.flush(itemsWritten);
+						flushLatencies.record(System.nanoTime() - start);
+						pendingFlushes.add(new long[] {itemsWritten, bytesWritten});
+						resetFlushCounters();
+					}
+					long flushedItems = asyncWriter.getFlushedCheckpoint();
+					if (rolloverStrategy != null) {
+						// the chunks of the files closed so far are durable, the next file starts after them
+						long rolledBytes = bytesAtOpen + rolloverStrategy.getRolledBytes() - rolledBytesAtOpen;
+						while (!pendingChunks.isEmpty() && pendingChunks.peek()[1] <= rolledBytes) {
+							long[] closed = pendingChunks.poll();
+							markDurable(closed[0], closed[1]);
+						}
+						fileStartBytes = Math.max(fileStartBytes, rolledBytes);
+					}
+					while (!pendingFlushes.isEmpty() && pendingFlushes.peek()[0] <= flushedItems) {
+						long[] flushed = pendingFlushes.poll();
+						markDurable(flushed[0], flushed[1]);
+					}
+					while (!pendingChunks.isEmpty() && pendingChunks.peek()[1] <= durableBytes) {
+						pendingChunks.poll();
+					}
+				}
+				else if (isFlushDue()) {
+					logger.debug("Flushing store writer");
+					long start = System.nanoTime();
+					storeWriter.flush();
+					flushLatencies.record(System.nanoTime() - start);
+					markDurable(itemsWritten, bytesWritten);
+					resetFlushCounters();
+				}
 			}
 			catch (IOException e) {
 				throw new IllegalStateException("Error while flushing store writer", e);
 			}
 		}
+		executionContext.putLong(DURABLE_ITEM_COUNT, durableItems);
+		executionContext.putLong(DURABLE_BYTE_OFFSET, durableBytes);
+		if (inWritingFileNamePattern != null) {
+			executionContext.putLong(DURABLE_FILE_OFFSET, Math.max(durableBytes - fileStartBytes, 0));
+		}
 	}
 
 	@Override
@@ -89,24 +318,82 @@ public class HdfsTextItemWriter<T> extends AbstractItemStreamItemWriter<T> {
 		}
 	}
 
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		long bytes = bytesWritten - bytesAtOpen;
+		long bytesPerSecond = StepMetrics.putCount(stepExecution, "bytesWritten", bytes);
+		StepMetrics.putLatencies(stepExecution, "write", writeLatencies);
+		StepMetrics.putLatencies(stepExecution, "flush", flushLatencies);
+		int rolledOver = rolloverStrategy != null ? rolloverStrategy.getRollovers() - rolloversAtOpen : 0;
+		stepExecution.getExecutionContext().putInt(StepMetrics.PREFIX + "rollovers", rolledOver);
+		logger.info("Partition {} wrote {} bytes ({}/s) to {} files rolled over, write {}, flush {}",
+				StepMetrics.getPartition(stepExecution), bytes, bytesPerSecond, rolledOver, writeLatencies, flushLatencies);
+		return null;
+	}
+
+	private boolean isFlushDue() {
+		if (chunksSinceFlush == 0) {
+			return false;
+		}
+		switch (flushPolicy) {
+			case CHUNK:
+				return chunksSinceFlush >= flushInterval;
+			case BYTES:
+				return bytesSinceFlush >= flushInterval;
+			case TIME:
+				return System.currentTimeMillis() - lastFlushTime >= flushInterval;
+			default:
+				return false;
+		}
+	}
+
+	private void resetFlushCounters() {
+		chunksSinceFlush = 0;
+		bytesSinceFlush = 0;
+		lastFlushTime = System.currentTimeMillis();
+	}
+
+	private void markDurable(long items, long bytes) {
+		durableItems = Math.max(durableItems, items);
+		durableBytes = Math.max(durableBytes, bytes);
+	}
+
 	/**
-	 * Converts the list of items to a byte array.
+	 * Encodes the lines of the items into the chunk buffer, which is reused for each chunk.
 	 *
 	 * @param items
-	 * @return string of items
+	 * @return the number of bytes of the lines of the items
 	 */
-	private byte[] getItemsAsByte(List<? extends T> items) {
-
-		StringBuilder lines = new StringBuilder();
+	private int encodeItems(List<? extends T> items) {
+		chunkBuffer.reset();
 		for (T item : items) {
-			lines.append(lineAggregator.aggregate(item) + lineSeparator);
-		}
-		try {
-			return lines.toString().getBytes(this.charset);
-		}
-		catch (UnsupportedEncodingException e) {
-			throw new WriteFailedException("Could not write data.", e);
+			if (item instanceof byte[]) {
+				chunkBuffer.append((byte[]) item);
+			}
+			else if (utf8) {
+				chunkBuffer.appendUtf8(lineAggregator.aggregate(item));
+			}
+			else {
+				chunkBuffer.append(lineAggregator.aggregate(item).getBytes(charset));
+			}
+			chunkBuffer.append(lineSeparatorBytes);
 		}
+		return chunkBuffer.size();
+	}
+
+	/**
+	 * Sets the charset the lines of the items that are not already encoded are written in.
+	 *
+	 * @param charset the name of the charset, defaults to UTF-8.
+	 */
+	public void setCharset(String charset) {
+		this.charset = Charset.forName(charset);
+		this.utf8 = this.charset.equals(RowBuffer.UTF_8);
+		this.lineSeparatorBytes = lineSeparator.getBytes(this.charset);
 	}
 
 	/**
@@ -118,6 +405,54 @@ public class HdfsTextItemWriter<T> extends AbstractItemStreamItemWriter<T> {
 		this.lineAggregator = lineAggregator;
 	}
 
+	/**
+	 * Sets when the store writer is flushed as chunks are committed.
+	 *
+	 * @param flushPolicy the {@link FlushPolicy} to use, defaults to {@link FlushPolicy#CHUNK}.
+	 */
+	public void setFlushPolicy(FlushPolicy flushPolicy) {
+		this.flushPolicy = flushPolicy;
+	}
+
+	/**
+	 * Sets the number of chunks, bytes or milliseconds between flushes, depending on the
+	 * {@link FlushPolicy}.
+	 *
+	 * @param flushInterval the interval between flushes, defaults to 1.
+	 */
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	/**
+	 * Sets the rollover strategy of the store writer, used to detect that a file was closed.
+	 *
+	 * @param rolloverStrategy the {@link CountingSizeRolloverStrategy} of the store writer.
+	 */
+	public void setRolloverStrategy(CountingSizeRolloverStrategy rolloverStrategy) {
+		this.rolloverStrategy = rolloverStrategy;
+		this.rollovers = rolloverStrategy != null ? rolloverStrategy.getRollovers() : 0;
+	}
+
+	/**
+	 * Sets how the file being written is found when the step restarts.  Only set when the
+	 * length of the files is the number of bytes written to them, that is when they are not
+	 * compressed.
+	 *
+	 * @param fileSystem the file system of the files.
+	 * @param directory the directory the files are written to.
+	 * @param inWritingFileNamePattern the pattern of the names of the files being written of
+	 * this writer, its first group being the rolling index.
+	 * @param inWritingSuffix the suffix of the files being written, removed when renaming.
+	 */
+	public void setInWritingFiles(FileSystem fileSystem, Path directory, Pattern inWritingFileNamePattern,
+			String inWritingSuffix) {
+		this.fileSystem = fileSystem;
+		this.directory = directory;
+		this.inWritingFileNamePattern = inWritingFileNamePattern;
+		this.inWritingSuffix = inWritingSuffix;
+	}
+
 	public DataStoreWriter<byte[]> getStoreWriter() {
 		return storeWriter;
 	}
@@ -18,26 +18,47 @@ package org.springframework.cloud.task.jdbchdfs.common;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Pattern;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeysPublic;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.util.ReflectionUtils;
 
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.data.hadoop.store.DataStoreWriter;
+import org.springframework.data.hadoop.store.codec.CodecInfo;
+import org.springframework.data.hadoop.store.codec.Codecs;
+import org.springframework.data.hadoop.store.codec.DefaultCodecInfo;
 import org.springframework.data.hadoop.store.output.OutputStreamWriter;
+import org.springframework.data.hadoop.store.support.OutputStoreObjectSupport;
 import org.springframework.data.hadoop.store.strategy.naming.ChainedFileNamingStrategy;
+import org.springframework.data.hadoop.store.strategy.naming.CodecFileNamingStrategy;
 import org.springframework.data.hadoop.store.strategy.naming.FileNamingStrategy;
 import org.springframework.data.hadoop.store.strategy.naming.RollingFileNamingStrategy;
 import org.springframework.data.hadoop.store.strategy.naming.StaticFileNamingStrategy;
-import org.springframework.data.hadoop.store.strategy.rollover.RolloverStrategy;
-import org.springframework.data.hadoop.store.strategy.rollover.SizeRolloverStrategy;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 
 /**
  * Factory for configuring a {@link org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriter}.  This factory
  * will establish the strategies required for the writer.  Specifically, the name and rollover strategy as well as
  * establish the temporary extension.
+ * <p>
+ * When a codec is configured the text files are compressed with it, or, when splittable
+ * output is requested and the codec can not split its own output, the rows are written to
+ * block compressed sequence files instead.
+ * <p>
+ * Uncompressed text files are recovered on restart: the file that was being written when
+ * the step failed keeps the items that were flushed to it.
+ * <p>
+ * Uncompressed text files of a directory on the local file system, such as when the fsUri
+ * is {@code file:///}, are written with a {@link LocalFileChannelWriter} when enabled.
  *
  * @author Glenn Renfro
  */
@@ -51,33 +72,124 @@ public class HdfsTextItemWriterFactory implements FactoryBean<HdfsTextItemWriter
 	public static final String PROPERTIES_LOCATION = "properties-location";
 	public static final String REGISTER_URL_HANDLER = "register-url-handler";
 
+	private static final String IN_WRITING_SUFFIX = ".tmp";
+
 	private HdfsTextItemWriter hdfsTextItemWriter;
 
 	public HdfsTextItemWriterFactory(Configuration configuration, JdbcHdfsTaskProperties props,
 			String partitionSuffix ) throws Exception{
+		setupConfiguration(configuration, props);
+		CodecInfo codecInfo = getCodecInfo(props.getCodec(), configuration);
+		boolean sequenceFile = codecInfo != null && props.isSplittable() && !codecInfo.isSplittable();
 		List<FileNamingStrategy> strategies = new ArrayList<>();
 		strategies.add(new StaticFileNamingStrategy(props.getFileName() + partitionSuffix));
 		strategies.add(new RollingFileNamingStrategy());
-		strategies.add(new StaticFileNamingStrategy(props.getFileExtension(), "."));
+		strategies.add(new StaticFileNamingStrategy(
+				sequenceFile ? BlockCompressedSequenceFileWriter.FILE_EXTENSION : props.getFileExtension(), "."));
+		if (codecInfo != null && !sequenceFile) {
+			strategies.add(new CodecFileNamingStrategy());
+		}
 		ChainedFileNamingStrategy fileNamingStrategy = new ChainedFileNamingStrategy();
 		fileNamingStrategy.setStrategies(strategies);
-		RolloverStrategy rolloverStrategy = new SizeRolloverStrategy(props.getRollover());
+		CountingSizeRolloverStrategy rolloverStrategy = new CountingSizeRolloverStrategy(props.getRollover());
 		Path baseDirPath = new Path(props.getDirectory());
-		setupConfiguration(configuration, props);
-		OutputStreamWriter writer = new OutputStreamWriter(configuration, baseDirPath, null);
-		writer.setInWritingSuffix(".tmp");
+		OutputStoreObjectSupport writer;
+		boolean localFileChannel = codecInfo == null && props.isLocalFileChannel()
+				&& LocalFileChannelWriter.isSupported(configuration, baseDirPath);
+		if (sequenceFile) {
+			writer = new BlockCompressedSequenceFileWriter(configuration, baseDirPath, codecInfo);
+		}
+		else if (localFileChannel) {
+			LocalFileChannelWriter localWriter = new LocalFileChannelWriter(configuration, baseDirPath);
+			localWriter.setBufferSize(props.getLocalWriteBufferSize());
+			localWriter.setPreallocationSize(props.getLocalPreallocationSize());
+			writer = localWriter;
+		}
+		else {
+			writer = new OutputStreamWriter(configuration, baseDirPath, codecInfo);
+		}
+		writer.setInWritingSuffix(IN_WRITING_SUFFIX);
 		writer.setFileNamingStrategy(fileNamingStrategy);
 		writer.setRolloverStrategy(rolloverStrategy);
 		hdfsTextItemWriter = new HdfsTextItemWriter();
 		hdfsTextItemWriter.setLineAggregator(new org.springframework.batch.item.file.transform.PassThroughLineAggregator());
-		hdfsTextItemWriter.setStoreWriter(writer);
-		if (writer instanceof InitializingBean) {
-			((InitializingBean) writer).afterPropertiesSet();
+		hdfsTextItemWriter.setFlushPolicy(props.getFlushPolicy());
+		hdfsTextItemWriter.setFlushInterval(props.getFlushInterval());
+		hdfsTextItemWriter.setRolloverStrategy(rolloverStrategy);
+		@SuppressWarnings("unchecked")
+		DataStoreWriter<byte[]> storeWriter = (DataStoreWriter<byte[]>) writer;
+		if (props.isAsyncWrite()) {
+			hdfsTextItemWriter.setStoreWriter(new AsyncDataStoreWriter(storeWriter, props.getAsyncWriteBuffers()));
+		}
+		else {
+			hdfsTextItemWriter.setStoreWriter(storeWriter);
 		}
+		if (codecInfo == null) {
+			// the names chained above, of which the rolling index is the only variable part
+			Pattern inWritingFileNamePattern = Pattern.compile(Pattern.quote(props.getFileName() + partitionSuffix)
+					+ "-(\\d+)" + Pattern.quote("." + props.getFileExtension() + IN_WRITING_SUFFIX));
+			// the files written with a channel have no checksum files, they are recovered without
+			FileSystem fileSystem = baseDirPath.getFileSystem(configuration);
+			if (localFileChannel && fileSystem instanceof LocalFileSystem) {
+				fileSystem = ((LocalFileSystem) fileSystem).getRaw();
+			}
+			hdfsTextItemWriter.setInWritingFiles(fileSystem, baseDirPath, inWritingFileNamePattern, IN_WRITING_SUFFIX);
+		}
+		writer.afterPropertiesSet();
 
 	}
 
-	private void setupConfiguration(Configuration configuration, JdbcHdfsTaskProperties props) {
+	/**
+	 * Resolves the codec to compress the output with.  The codec is either one of the
+	 * abbreviations known to {@link Codecs}, {@code deflate}, {@code lz4}, {@code zstd} or
+	 * the class name of a {@link CompressionCodec}.
+	 *
+	 * @param codec the name of the codec, may be empty for uncompressed output.
+	 * @param configuration the hadoop configuration used to create the codec.
+	 * @return the {@link CodecInfo} for the codec, null if no codec is set.
+	 */
+	static CodecInfo getCodecInfo(String codec, Configuration configuration) {
+		if (!StringUtils.hasText(codec)) {
+			return null;
+		}
+		CodecInfo codecInfo = Codecs.getCodecInfo(codec);
+		if (codecInfo != null) {
+			return codecInfo;
+		}
+		String codecClassName;
+		if ("deflate".equalsIgnoreCase(codec)) {
+			codecClassName = "org.apache.hadoop.io.compress.DefaultCodec";
+		}
+		else if ("lz4".equalsIgnoreCase(codec)) {
+			codecClassName = "org.apache.hadoop.io.compress.Lz4Codec";
+		}
+		else if ("zstd".equalsIgnoreCase(codec)) {
+			codecClassName = "org.apache.hadoop.io.compress.ZStandardCodec";
+		}
+		else {
+			codecClassName = codec;
+		}
+		ClassLoader classLoader = HdfsTextItemWriterFactory.class.getClassLoader();
+		if (!ClassUtils.isPresent(codecClassName, classLoader)) {
+			throw new IllegalArgumentException("The compression codec " + codecClassName + " for " + codec
+					+ " is not available with the hadoop version on the classpath");
+		}
+		Class<?> codecClass = ClassUtils.resolveClassName(codecClassName, classLoader);
+		if (!CompressionCodec.class.isAssignableFrom(codecClass)) {
+			throw new IllegalArgumentException(codecClassName + " is not a " + CompressionCodec.class.getName());
+		}
+		CompressionCodec compressionCodec = (CompressionCodec) ReflectionUtils.newInstance(codecClass, configuration);
+		return new DefaultCodecInfo(codecClassName, compressionCodec instanceof SplittableCompressionCodec,
+				compressionCodec.getDefaultExtension().substring(1));
+	}
+
+	/**
+	 * Applies the file system and security properties to the hadoop configuration.
+	 *
+	 * @param configuration the hadoop configuration to update.
+	 * @param props the properties of the task.
+	 */
+	public static void setupConfiguration(Configuration configuration, JdbcHdfsTaskProperties props) {
 		if (StringUtils.hasText(props.getFsUri())) {
 			configuration.set(CommonConfigurationKeysPublic.FS_DEFAULT_NAME_KEY, props.getFsUri());
 		}
@@ -15,14 +15,25 @@
  */
 package org.springframework.cloud.task.jdbchdfs.common;
 
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.sql.DataSource;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.ExitStatus;
 import org.springframework.batch.core.JobExecution;
 import org.springframework.batch.core.JobInstance;
@@ -31,9 +42,14 @@ import org.springframework.batch.core.StepExecutionListener;
 import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.core.partition.support.Partitioner;
 import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.support.DatabaseType;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.util.StringUtils;
 
 /**
@@ -41,6 +57,47 @@ import org.springframework.util.StringUtils;
  * incremental imports.  Incremental imports are supported via the checkColumn attribute.
  * The partitionMax value processed in the current run will be set as the minimum value for the
  * next run.
+ * <p>
+ * By default the values between the minimum and the maximum of the partition column are
+ * split into ranges of equal width.  In {@link PartitionMode#QUANTILE} mode the ranges are
+ * bounded by the quantiles of the column instead, so that each holds about the same
+ * number of rows even when the values are skewed.  The quantiles are computed with an
+ * {@code NTILE} window function on the databases that support it, otherwise by reading
+ * the value at the offset of each quantile in the sorted column with a query of its own,
+ * which reads a single row.  The sorted values are only scanned on databases that
+ * support neither.
+ * <p>
+ * When a {@link JdbcRangeQueue} is set and more than one range per partition is requested,
+ * {@code partitions * rangesPerPartition} ranges are added to the queue instead and each of
+ * the {@code partitions} execution contexts only holds the id of the queue under
+ * {@link #RANGE_QUEUE_ID}.  The workers then claim ranges from the queue until it is empty,
+ * see {@link RangeQueueItemReader}.  The queue is removed once the step completed.
+ * <p>
+ * Numeric partition columns are split into {@code BETWEEN} ranges.  Temporal columns are
+ * split into time buckets of equal length, or holding about the same number of rows in
+ * {@link PartitionMode#QUANTILE} mode, whose end is exclusive.  String columns are always
+ * split at the quantiles of the column, as the width of a range of
+ * strings has no meaning.  See {@link PartitionColumnType}.
+ * <p>
+ * The new watermark of the check column and the bounds of the partition column are read
+ * with a single aggregate query.  Check columns of a temporal type have their watermark
+ * saved as epoch milliseconds.  The time spent computing the partitions is saved in the
+ * step execution context under {@link #PLANNING_TIME}.
+ * <p>
+ * When a target number of rows per partition is set, the number of partitions is chosen
+ * from an estimate of the rows to read instead: the row count of the statistics of the
+ * catalog when those are used, otherwise a {@code COUNT} added to the query reading the
+ * bounds.  There are as many partitions as needed to hold the target number of rows each,
+ * at most the maximum number of partitions, which is meant to be the number of workers
+ * that can run at once.  The plan is logged and saved in the step execution context under
+ * {@link #ESTIMATED_ROWS}, {@link #ESTIMATED_BYTES} when the size of the table is known, and
+ * {@link #PARTITION_COUNT}, which a restarted step keeps.
+ * <p>
+ * When a {@link JdbcWatermarkStore} is set, the watermark of the previous run is looked up
+ * there by the name of the job and the check column.  The new watermark is saved there by a
+ * {@link WatermarkJobExecutionListener} once the job completed.  The execution context of the last job execution of the
+ * previous job instance is only read when the store holds no watermark yet, such as on
+ * the first run after the store was introduced.
  *
  * @author Michael Minella
  * @author Glenn Renfro
@@ -51,6 +108,35 @@ public class IncrementalColumnRangePartitioner implements Partitioner, StepExecu
 
 	public static final String BATCH_INCREMENTAL_MAX_ID = "batch.incremental.maxId";
 
+	public static final String RANGE_QUEUE_ID = "rangeQueueId";
+
+	public static final String PLANNING_TIME = "batch.partition.planningTime";
+
+	public static final String ESTIMATED_ROWS = "batch.partition.estimatedRows";
+
+	public static final String ESTIMATED_BYTES = "batch.partition.estimatedBytes";
+
+	public static final String PARTITION_COUNT = "batch.partition.count";
+
+	// the databases that support the NTILE window function
+	private static final Set<DatabaseType> NTILE_DATABASES = EnumSet.of(DatabaseType.DB2, DatabaseType.DB2ZOS,
+			DatabaseType.ORACLE, DatabaseType.POSTGRES, DatabaseType.SQLSERVER);
+
+	// the clause that limits an ordered query to the row at an offset, on databases without NTILE
+	private static final Map<DatabaseType, String> ROW_AT_OFFSET = new EnumMap<>(DatabaseType.class);
+
+	static {
+		ROW_AT_OFFSET.put(DatabaseType.H2, " LIMIT 1 OFFSET %d");
+		ROW_AT_OFFSET.put(DatabaseType.HSQL, " LIMIT 1 OFFSET %d");
+		ROW_AT_OFFSET.put(DatabaseType.MYSQL, " LIMIT 1 OFFSET %d");
+		ROW_AT_OFFSET.put(DatabaseType.SQLITE, " LIMIT 1 OFFSET %d");
+		ROW_AT_OFFSET.put(DatabaseType.DERBY, " OFFSET %d ROWS FETCH NEXT 1 ROWS ONLY");
+	}
+
+	private static final int SCAN_FETCH_SIZE = 10000;
+
+	private DataSource dataSource;
+
 	private JdbcOperations jdbcTemplate;
 
 	private String table;
@@ -67,16 +153,56 @@ public class IncrementalColumnRangePartitioner implements Partitioner, StepExecu
 
 	private JobExplorer jobExplorer;
 
+	private JdbcWatermarkStore watermarkStore;
+
 	private String checkColumn;
 
 	private Long overrideValue;
 
+	private PartitionMode partitionMode = PartitionMode.UNIFORM;
+
+	private JdbcRangeQueue rangeQueue;
+
+	private int rangesPerPartition = 1;
+
+	private Long queueId;
+
+	private boolean queueCreated;
+
+	private boolean catalogStatistics;
+
+	private boolean estimatedBounds;
+
+	private boolean timestampWatermark;
+
+	private PartitionColumnType partitionColumnType = PartitionColumnType.AUTO;
+
+	private PartitionColumnType columnType = PartitionColumnType.NUMERIC;
+
+	private boolean boundsFound;
+
+	private long planningTime;
+
+	private long targetRowsPerPartition;
+
+	private int maxPartitions = Integer.MAX_VALUE;
+
+	// the number of partitions chosen from the estimated rows, 0 to use the number set
+	private int plannedPartitions;
+
+	private long estimatedRows;
+
+	private long estimatedBytes;
+
+	private ExecutionContext stepContext;
+
 	/**
 	 * The data source for connecting to the database.
 	 *
 	 * @param dataSource a {@link DataSource}
 	 */
 	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
 		jdbcTemplate = new JdbcTemplate(dataSource);
 	}
 
@@ -116,6 +242,16 @@ public class IncrementalColumnRangePartitioner implements Partitioner, StepExecu
 		this.jobExplorer = jobExplorer;
 	}
 
+	/**
+	 * The store the watermarks of incremental imports are looked up in.
+	 *
+	 * @param watermarkStore the {@link JdbcWatermarkStore}, {@code null} to only read the
+	 * watermark from the last job execution.
+	 */
+	public void setWatermarkStore(JdbcWatermarkStore watermarkStore) {
+		this.watermarkStore = watermarkStore;
+	}
+
 	/**
 	 * The name of the check column to be used by the task.
 	 *
@@ -134,15 +270,85 @@ public class IncrementalColumnRangePartitioner implements Partitioner, StepExecu
 	}
 
 	/**
-	 * Partition a database table assuming that the data in the column specified
-	 * are uniformly distributed. The execution context values will have keys
-	 * <code>minValue</code> and <code>maxValue</code> specifying the range of
-	 * values to consider in each partition.
+	 * How the boundaries of the ranges are computed.
+	 *
+	 * @param partitionMode the {@link PartitionMode}, defaults to {@link PartitionMode#UNIFORM}.
+	 */
+	public void setPartitionMode(PartitionMode partitionMode) {
+		this.partitionMode = partitionMode;
+	}
+
+	/**
+	 * The queue the ranges are added to when there is more than one range per partition.
+	 *
+	 * @param rangeQueue the {@link JdbcRangeQueue}.
+	 */
+	public void setRangeQueue(JdbcRangeQueue rangeQueue) {
+		this.rangeQueue = rangeQueue;
+	}
+
+	/**
+	 * The number of ranges created for each partition.  Ranges are only queued when a
+	 * {@link JdbcRangeQueue} is set.
+	 *
+	 * @param rangesPerPartition the number of ranges per partition, defaults to 1.
+	 */
+	public void setRangesPerPartition(int rangesPerPartition) {
+		this.rangesPerPartition = rangesPerPartition;
+	}
+
+	/**
+	 * Whether the bounds of the partition column are read from the statistics of the
+	 * database catalog instead of scanning the table.  Only used when there is no check
+	 * column, since the statistics cover the whole table.
+	 *
+	 * @param catalogStatistics true to use the catalog statistics where available.
+	 */
+	public void setCatalogStatistics(boolean catalogStatistics) {
+		this.catalogStatistics = catalogStatistics;
+	}
+
+	/**
+	 * How the values of the partition column are split into ranges.
+	 *
+	 * @param partitionColumnType the {@link PartitionColumnType}, defaults to
+	 * {@link PartitionColumnType#AUTO} which detects it from the type of the column.
+	 */
+	public void setPartitionColumnType(PartitionColumnType partitionColumnType) {
+		this.partitionColumnType = partitionColumnType;
+	}
+
+	/**
+	 * The number of rows each partition should hold.  When set, the number of partitions is
+	 * chosen from the estimated number of rows to read instead of the number set.
+	 *
+	 * @param targetRowsPerPartition the number of rows per partition, 0 to use the number of partitions set.
+	 */
+	public void setTargetRowsPerPartition(long targetRowsPerPartition) {
+		this.targetRowsPerPartition = targetRowsPerPartition;
+	}
+
+	/**
+	 * The largest number of partitions chosen from the estimated number of rows, usually
+	 * the number of workers that can run at once.
+	 *
+	 * @param maxPartitions the maximum number of partitions.
+	 */
+	public void setMaxPartitions(int maxPartitions) {
+		this.maxPartitions = maxPartitions;
+	}
+
+	/**
+	 * Partition a database table into ranges of the column specified, as computed by the
+	 * {@link PartitionMode}. The execution context values will have keys
+	 * <code>partClause</code> and <code>partSuffix</code> specifying the range of
+	 * values to consider in each partition and the suffix of its files.
 	 *
 	 * @see Partitioner#partition(int)
 	 */
 	@Override
 	public Map<String, ExecutionContext> partition(int gridSize) {
+		long start = System.currentTimeMillis();
 		StringBuilder incrementalClause = new StringBuilder();
 		Map<String, ExecutionContext> result = new HashMap<>();
 
@@ -154,103 +360,551 @@ public class IncrementalColumnRangePartitioner implements Partitioner, StepExecu
 		}
 		else {
 			if (StringUtils.hasText(checkColumn)) {
-				incrementalClause.append(checkColumn).append(" > ").append(this.incrementalMin);
+				incrementalClause.append(getIncrementalCondition());
 			}
 
-			long targetSize = (this.partitionMax - this.partitionMin) / partitions + 1;
+			int partitions = plannedPartitions > 0 ? plannedPartitions : this.partitions;
+			boolean queued = rangeQueue != null && rangesPerPartition > 1;
+			int count = queued ? partitions * rangesPerPartition : partitions;
+			List<String> ranges = getRangeConditions(count);
 
-			int number = 0;
-			long start = this.partitionMin;
-			long end = start + targetSize - 1;
+			if (queued) {
+				List<String> partClauses = new ArrayList<>();
+				for (String range : ranges) {
+					partClauses.add(getPartClause(range, incrementalClause));
+				}
+				if (!queueCreated) {
+					rangeQueue.offer(queueId, partClauses);
+					queueCreated = true;
+				}
 
-			while (start >= 0 && start <= this.partitionMax) {
-				ExecutionContext value = new ExecutionContext();
-				result.put("partition" + number, value);
+				for (int number = 0; number < Math.min(partitions, ranges.size()); number++) {
+					ExecutionContext value = new ExecutionContext();
+					result.put("partition" + number, value);
+					value.putString("partClause", "");
+					value.putString("partSuffix", "-p" + number);
+					value.putLong(RANGE_QUEUE_ID, queueId);
 
-				if (end >= this.partitionMax) {
-					end = this.partitionMax;
+					log.debug("Current ExecutionContext = " + value);
+				}
+			}
+			else {
+				int number = 0;
+				for (String range : ranges) {
+					ExecutionContext value = new ExecutionContext();
+					result.put("partition" + number, value);
+					value.putString("partClause", getPartClause(range, incrementalClause));
+					value.putString("partSuffix", "-p" + number);
+					number++;
+
+					log.debug("Current ExecutionContext = " + value);
 				}
+			}
+		}
+
+		planningTime += System.currentTimeMillis() - start;
+		if (stepContext != null) {
+			stepContext.putLong(PLANNING_TIME, planningTime);
+		}
+		log.info("Planned " + result.size() + " partitions of " + table + " in " + planningTime + " ms");
+		return result;
+	}
 
-				if (StringUtils.hasText(checkColumn)) {
-					value.putString("partClause", String.format("WHERE (%s BETWEEN %s AND %s) AND %s", column, start, end, incrementalClause.toString()));
+	private String getPartClause(String range, StringBuilder incrementalClause) {
+		if (StringUtils.hasText(checkColumn)) {
+			return "WHERE " + range + " AND " + incrementalClause.toString();
+		}
+		return "WHERE " + range;
+	}
+
+	/**
+	 * Computes the conditions selecting the rows of each range, in the form that suits the
+	 * type of the partition column.
+	 */
+	private List<String> getRangeConditions(int count) {
+		List<String> conditions = new ArrayList<>();
+		if (!boundsFound) {
+			return conditions;
+		}
+		if (columnType == PartitionColumnType.STRING) {
+			List<String> lowerBounds = getLowerBounds(count, new RowMapper<String>() {
+
+				@Override
+				public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+					return rs.getString(1);
 				}
-				else {
-					value.putString("partClause", String.format("WHERE (%s BETWEEN %s AND %s)", column, start, end));
+			});
+			String start = null;
+			for (String lowerBound : lowerBounds) {
+				// the bounds are sorted by the collation of the database, repeated values start a single range
+				if (!lowerBound.equals(start)) {
+					conditions.add(start == null ? String.format("(%s < %s)", column, quote(lowerBound))
+							: String.format("(%s >= %s AND %s < %s)", column, quote(start), column, quote(lowerBound)));
+					start = lowerBound;
 				}
+			}
+			conditions.add(start == null ? String.format("(%s IS NOT NULL)", column)
+					: String.format("(%s >= %s)", column, quote(start)));
+			log.debug("String ranges computed from lower bounds " + lowerBounds);
+			return conditions;
+		}
 
-				value.putString("partSuffix", "-p" + number);
-				start += targetSize;
-				end += targetSize;
-				number++;
+		List<long[]> ranges = partitionMode == PartitionMode.QUANTILE ? getQuantileRanges(count) : getUniformRanges(count);
+		if (estimatedBounds && !ranges.isEmpty()) {
+			// the statistics may be stale, the outer ranges take the values beyond their bounds
+			ranges.get(0)[0] = Long.MIN_VALUE;
+			ranges.get(ranges.size() - 1)[1] = Long.MAX_VALUE;
+		}
+		for (long[] range : ranges) {
+			if (columnType == PartitionColumnType.TEMPORAL) {
+				// the end is exclusive since the column may hold fractions of the last millisecond
+				conditions.add(String.format("(%s >= %s AND %s < %s)", column, formatTimestamp(range[0]),
+						column, formatTimestamp(range[1] + 1)));
+			}
+			else {
+				conditions.add(String.format("(%s BETWEEN %s AND %s)", column, range[0], range[1]));
+			}
+		}
+		return conditions;
+	}
 
-				log.debug("Current ExecutionContext = " + value);
+	private List<long[]> getUniformRanges(int count) {
+		List<long[]> ranges = new ArrayList<>();
+		// computed as BigInteger since the width of the range of values may exceed a long
+		BigInteger min = BigInteger.valueOf(this.partitionMin);
+		BigInteger max = BigInteger.valueOf(this.partitionMax);
+		BigInteger targetSize = max.subtract(min).divide(BigInteger.valueOf(count)).add(BigInteger.ONE);
+
+		for (BigInteger start = min; start.compareTo(max) <= 0; start = start.add(targetSize)) {
+			BigInteger end = start.add(targetSize).subtract(BigInteger.ONE).min(max);
+			ranges.add(new long[] {start.longValue(), end.longValue()});
+		}
+		return ranges;
+	}
+
+	/**
+	 * Bounds the ranges by the lowest value of each of the {@code count} groups of
+	 * rows of equal size.  Values that would start several groups start a single range,
+	 * so fewer ranges are returned when a value is repeated across more rows than a group
+	 * holds.
+	 */
+	private List<long[]> getQuantileRanges(int count) {
+		List<Long> lowerBounds = getLowerBounds(count, new RowMapper<Long>() {
+
+			@Override
+			public Long mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return getLong(rs, 1);
+			}
+		});
+		List<long[]> ranges = new ArrayList<>();
+		long start = this.partitionMin;
+		for (Long lowerBound : lowerBounds) {
+			if (lowerBound > start) {
+				ranges.add(new long[] {start, lowerBound - 1});
+				start = lowerBound;
 			}
 		}
+		if (start <= this.partitionMax) {
+			ranges.add(new long[] {start, this.partitionMax});
+		}
+		log.debug("Quantile ranges computed from lower bounds " + lowerBounds);
+		return ranges;
+	}
 
-		return result;
+	/**
+	 * @return the lowest value of each of the {@code count} groups of rows of equal size
+	 * but the first, in ascending order.
+	 */
+	private <T> List<T> getLowerBounds(int count, RowMapper<T> rowMapper) {
+		String where = " WHERE " + column + " IS NOT NULL";
+		if (StringUtils.hasText(checkColumn)) {
+			where += " AND " + getIncrementalCondition();
+		}
+		DatabaseType databaseType = getDatabaseType();
+		if (NTILE_DATABASES.contains(databaseType)) {
+			List<T> lowerBounds = getNtileLowerBounds(where, count, rowMapper);
+			if (!lowerBounds.isEmpty()) {
+				// the lowest value of the first group is the minimum
+				lowerBounds.remove(0);
+			}
+			return lowerBounds;
+		}
+		if (ROW_AT_OFFSET.containsKey(databaseType)) {
+			return getLowerBoundsAtOffsets(where, count, ROW_AT_OFFSET.get(databaseType), rowMapper);
+		}
+		return getScannedLowerBounds(where, count, rowMapper);
+	}
+
+	private <T> List<T> getNtileLowerBounds(String where, int count, RowMapper<T> rowMapper) {
+		return jdbcTemplate.query(String.format("SELECT MIN(%1$s) FROM (SELECT %1$s, NTILE(%2$s) OVER (ORDER BY %1$s) "
+				+ "AS jdbchdfs_tile FROM %3$s%4$s) jdbchdfs_tiles GROUP BY jdbchdfs_tile ORDER BY 1",
+				column, count, table, where), rowMapper);
+	}
+
+	/**
+	 * Reads the first row of each group but the first with a query that skips the rows of
+	 * the groups before it, so only {@code count - 1} rows are returned by the database.
+	 */
+	private <T> List<T> getLowerBoundsAtOffsets(String where, int count, String rowAtOffset, RowMapper<T> rowMapper) {
+		List<T> lowerBounds = new ArrayList<>();
+		Long rows = jdbcTemplate.queryForObject("SELECT COUNT(" + column + ") FROM " + table + where, Long.class);
+		if (rows == null || rows == 0) {
+			return lowerBounds;
+		}
+		String sql = "SELECT " + column + " FROM " + table + where + " ORDER BY " + column + rowAtOffset;
+		for (int tile = 1; tile < count; tile++) {
+			List<T> lowerBound = jdbcTemplate.query(String.format(sql, rows * tile / count), rowMapper);
+			if (lowerBound.isEmpty()) {
+				// rows were deleted since they were counted
+				break;
+			}
+			lowerBounds.add(lowerBound.get(0));
+		}
+		return lowerBounds;
+	}
+
+	/**
+	 * Walks the sorted values of the column to the first row of each group but the first,
+	 * for the databases that can neither number the groups nor skip rows.
+	 */
+	private <T> List<T> getScannedLowerBounds(String where, final int count, final RowMapper<T> rowMapper) {
+		final Long rows = jdbcTemplate.queryForObject("SELECT COUNT(" + column + ") FROM " + table + where, Long.class);
+		if (rows == null || rows == 0) {
+			return new ArrayList<>();
+		}
+		JdbcTemplate scanTemplate = new JdbcTemplate(dataSource);
+		scanTemplate.setFetchSize(SCAN_FETCH_SIZE);
+		return scanTemplate.query("SELECT " + column + " FROM " + table + where + " ORDER BY " + column,
+				new ResultSetExtractor<List<T>>() {
+
+					@Override
+					public List<T> extractData(ResultSet rs) throws SQLException, DataAccessException {
+						List<T> lowerBounds = new ArrayList<>();
+						long row = 0;
+						for (int tile = 1; tile < count; tile++) {
+							// the first row of each group, the first group starts at the minimum
+							long target = rows * tile / count;
+							while (row <= target && rs.next()) {
+								row++;
+							}
+							if (row <= target) {
+								break;
+							}
+							lowerBounds.add(rowMapper.mapRow(rs, (int) row));
+						}
+						return lowerBounds;
+					}
+				});
+	}
+
+	private DatabaseType getDatabaseType() {
+		try {
+			return DatabaseType.fromMetaData(dataSource);
+		}
+		catch (MetaDataAccessException | IllegalArgumentException e) {
+			log.warn("Unable to determine the database type, computing the quantiles by scanning " + column, e);
+			return null;
+		}
 	}
 
 	@Override
 	public void beforeStep(StepExecution stepExecution) {
+		// a restarted step keeps the partitions of the first execution and the queue they refer to
+		if (stepExecution.getExecutionContext().containsKey(RANGE_QUEUE_ID)) {
+			this.queueId = stepExecution.getExecutionContext().getLong(RANGE_QUEUE_ID);
+			this.queueCreated = true;
+		}
+		else {
+			this.queueId = stepExecution.getJobExecutionId();
+			this.queueCreated = false;
+			if (rangeQueue != null && rangesPerPartition > 1) {
+				stepExecution.getExecutionContext().putLong(RANGE_QUEUE_ID, queueId);
+			}
+		}
+
 		if (StringUtils.hasText(checkColumn)) {
 
 			if (overrideValue != null && overrideValue >= 0) {
 				this.incrementalMin = overrideValue;
 			}
 			else {
-				String jobName = stepExecution.getJobExecution().getJobInstance().getJobName();
+				this.incrementalMin = findWatermark(stepExecution.getJobExecution().getJobInstance().getJobName());
+			}
+			this.timestampWatermark = isTimestamp(getColumnType(checkColumn));
+		}
 
-				// Get the last jobInstance...not the current one
-				List<JobInstance> jobInstances = jobExplorer.getJobInstances(jobName, 1, 1);
+		long start = System.currentTimeMillis();
+		this.estimatedBounds = false;
+		this.boundsFound = false;
+		this.estimatedRows = -1;
+		this.estimatedBytes = -1;
+		boolean partitioned = StringUtils.hasText(column) && StringUtils.hasText(table);
+		boolean planned = partitioned && targetRowsPerPartition > 0;
+		if (partitioned) {
+			this.columnType = partitionColumnType != PartitionColumnType.AUTO ? partitionColumnType
+					: PartitionColumnType.fromSqlType(getColumnType(column));
+			log.debug("Partitioning " + table + " on " + columnType + " column " + column);
+		}
+		if (partitioned && catalogStatistics && !StringUtils.hasText(checkColumn)
+				&& columnType == PartitionColumnType.NUMERIC) {
+			this.estimatedBounds = readStatisticsBounds();
+			this.boundsFound = estimatedBounds;
+			if (planned && estimatedBounds) {
+				readStatisticsSize();
+			}
+		}
+		if (StringUtils.hasText(checkColumn) || (partitioned && !estimatedBounds)) {
+			readBounds(stepExecution.getExecutionContext(), partitioned && !estimatedBounds,
+					planned && estimatedRows < 0);
+		}
+		else if (planned && estimatedRows < 0) {
+			estimatedRows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+		}
+		this.plannedPartitions = 0;
+		if (planned) {
+			planPartitions(stepExecution.getExecutionContext());
+		}
+		this.planningTime = System.currentTimeMillis() - start;
+		this.stepContext = stepExecution.getExecutionContext();
+		stepContext.putLong(PLANNING_TIME, planningTime);
+	}
 
-				if (jobInstances.size() > 0) {
-					JobInstance lastInstance = jobInstances.get(jobInstances.size() - 1);
+	/**
+	 * Looks up the watermark saved by the previous run in the watermark store, or reads it
+	 * from the last execution of the previous job instance when the store holds none.
+	 */
+	private long findWatermark(String jobName) {
+		if (watermarkStore != null) {
+			Long watermark = watermarkStore.find(jobName, checkColumn);
+			if (watermark != null) {
+				return watermark;
+			}
+			log.info("No watermark of " + checkColumn + " stored for " + jobName + ", reading the last job execution");
+		}
 
-					List<JobExecution> executions = jobExplorer.getJobExecutions(lastInstance);
+		// Get the last jobInstance...not the current one
+		List<JobInstance> jobInstances = jobExplorer.getJobInstances(jobName, 1, 1);
+		if (jobInstances.isEmpty()) {
+			return Long.MIN_VALUE;
+		}
+		JobExecution lastExecution = null;
+		for (JobExecution execution : jobExplorer.getJobExecutions(jobInstances.get(0))) {
+			if (lastExecution == null || endedAfter(execution, lastExecution)) {
+				lastExecution = execution;
+			}
+		}
+		if (lastExecution != null && lastExecution.getExecutionContext().containsKey(BATCH_INCREMENTAL_MAX_ID)) {
+			return lastExecution.getExecutionContext().getLong(BATCH_INCREMENTAL_MAX_ID);
+		}
+		return Long.MIN_VALUE;
+	}
+
+	/**
+	 * Executions without an end time, such as those of a process that was killed, are
+	 * ordered before the executions that ended and by their id among themselves.
+	 */
+	private static boolean endedAfter(JobExecution execution, JobExecution other) {
+		if (execution.getEndTime() == null) {
+			return other.getEndTime() == null && execution.getId() > other.getId();
+		}
+		return other.getEndTime() == null || execution.getEndTime().after(other.getEndTime());
+	}
 
-					JobExecution lastExecution = executions.get(0);
+	/**
+	 * Chooses the number of partitions from the estimated number of rows, or keeps the one
+	 * chosen by the first execution of a restarted step so that the partitions match.
+	 */
+	private void planPartitions(ExecutionContext executionContext) {
+		if (executionContext.containsKey(PARTITION_COUNT)) {
+			plannedPartitions = executionContext.getInt(PARTITION_COUNT);
+			log.info("Keeping the " + plannedPartitions + " partitions of the previous execution");
+			return;
+		}
+		long count = (Math.max(estimatedRows, 0) + targetRowsPerPartition - 1) / targetRowsPerPartition;
+		plannedPartitions = (int) Math.max(1, Math.min(count, maxPartitions));
+		executionContext.putLong(ESTIMATED_ROWS, estimatedRows);
+		if (estimatedBytes >= 0) {
+			executionContext.putLong(ESTIMATED_BYTES, estimatedBytes);
+		}
+		executionContext.putInt(PARTITION_COUNT, plannedPartitions);
+		log.info("Planned " + plannedPartitions + " partitions for about " + estimatedRows + " rows"
+				+ (estimatedBytes >= 0 ? " and " + estimatedBytes + " bytes" : "") + " of " + table + ", targeting "
+				+ targetRowsPerPartition + " rows per partition with at most " + maxPartitions + " partitions");
+	}
 
-					for (JobExecution execution : executions) {
-						if (lastExecution.getEndTime().getTime() < execution.getEndTime().getTime()) {
-							lastExecution = execution;
-						}
+	/**
+	 * Reads the new watermark and the bounds of the partition column in a single scan of
+	 * the rows added since the last run.
+	 */
+	private void readBounds(final ExecutionContext executionContext, final boolean partitionBounds,
+			final boolean rowCount) {
+		final boolean incremental = StringUtils.hasText(checkColumn);
+		List<String> aggregates = new ArrayList<>();
+		if (rowCount) {
+			aggregates.add("COUNT(*)");
+		}
+		if (incremental) {
+			aggregates.add("MAX(" + checkColumn + ")");
+		}
+		if (partitionBounds) {
+			aggregates.add("MIN(" + column + ")");
+			aggregates.add("MAX(" + column + ")");
+		}
+		String sql = "SELECT " + StringUtils.collectionToDelimitedString(aggregates, ", ") + " FROM " + table;
+		if (incremental) {
+			sql += " WHERE " + getIncrementalCondition();
+		}
+		log.debug("Reading partition bounds with: " + sql);
+		jdbcTemplate.query(sql, new ResultSetExtractor<Void>() {
+
+			@Override
+			public Void extractData(ResultSet rs) throws SQLException, DataAccessException {
+				rs.next();
+				int index = 1;
+				if (rowCount) {
+					estimatedRows = rs.getLong(index++);
+				}
+				if (incremental) {
+					Long watermark = getLong(rs, index++);
+					if (watermark == null && incrementalMin != Long.MIN_VALUE) {
+						// no new rows, the next run starts from the same watermark
+						watermark = incrementalMin;
 					}
-
-					if (lastExecution.getExecutionContext().containsKey(BATCH_INCREMENTAL_MAX_ID)) {
-						this.incrementalMin = lastExecution.getExecutionContext().getLong(BATCH_INCREMENTAL_MAX_ID);
+					if (watermark != null) {
+						executionContext.putLong(BATCH_INCREMENTAL_MAX_ID, watermark);
+					}
+				}
+				if (partitionBounds) {
+					if (columnType == PartitionColumnType.STRING) {
+						// the split points of strings are sampled, the bounds only tell whether there are rows
+						boundsFound = rs.getString(index) != null;
 					}
 					else {
-						this.incrementalMin = Long.MIN_VALUE;
+						Long minResult = getLong(rs, index++);
+						Long maxResult = getLong(rs, index);
+						partitionMin = minResult != null ? minResult : Long.MIN_VALUE;
+						partitionMax = maxResult != null ? maxResult : Long.MAX_VALUE;
+						boundsFound = minResult != null;
 					}
 				}
-				else {
-					this.incrementalMin = Long.MIN_VALUE;
-				}
+				return null;
 			}
+		});
+	}
 
-			long newMin = jdbcTemplate.queryForObject(String.format("select max(%s) from %s", checkColumn, table), Integer.class);
+	/**
+	 * Reads the bounds of the partition column from the statistics the database keeps in
+	 * its catalog, only PostgreSQL exposes them in a usable form.
+	 *
+	 * @return whether the bounds were read from the statistics.
+	 */
+	private boolean readStatisticsBounds() {
+		try {
+			if (DatabaseType.fromMetaData(dataSource) != DatabaseType.POSTGRES) {
+				log.info("Catalog statistics are not supported for this database, scanning " + table);
+				return false;
+			}
+			String sql = "SELECT histogram_bounds::text FROM pg_stats WHERE tablename = ? AND attname = ?";
+			List<String> histograms;
+			int separator = table.lastIndexOf('.');
+			if (separator >= 0) {
+				histograms = jdbcTemplate.queryForList(sql + " AND schemaname = ?", String.class,
+						table.substring(separator + 1).toLowerCase(), column.toLowerCase(),
+						table.substring(0, separator).toLowerCase());
+			}
+			else {
+				histograms = jdbcTemplate.queryForList(sql, String.class, table.toLowerCase(), column.toLowerCase());
+			}
+			if (histograms.size() != 1 || histograms.get(0) == null) {
+				log.info("No statistics available for " + table + "." + column + ", scanning " + table);
+				return false;
+			}
+			String[] bounds = StringUtils.commaDelimitedListToStringArray(
+					StringUtils.trimTrailingCharacter(StringUtils.trimLeadingCharacter(histograms.get(0), '{'), '}'));
+			this.partitionMin = Long.parseLong(bounds[0].trim());
+			this.partitionMax = Long.parseLong(bounds[bounds.length - 1].trim());
+			return true;
+		}
+		catch (MetaDataAccessException | DataAccessException | NumberFormatException e) {
+			log.warn("Unable to read the statistics of " + table + "." + column + ", scanning " + table, e);
+			return false;
+		}
+	}
 
-			stepExecution.getExecutionContext().put(BATCH_INCREMENTAL_MAX_ID, newMin);
+	/**
+	 * Reads the number of rows and the size of the table from the PostgreSQL catalog.  The
+	 * number of rows is left unknown when the table was never analyzed.
+	 */
+	private void readStatisticsSize() {
+		try {
+			jdbcTemplate.query("SELECT reltuples, pg_relation_size(oid) FROM pg_class WHERE oid = CAST(? AS regclass)",
+					new ResultSetExtractor<Void>() {
+
+						@Override
+						public Void extractData(ResultSet rs) throws SQLException, DataAccessException {
+							if (rs.next() && rs.getLong(1) > 0) {
+								estimatedRows = rs.getLong(1);
+								estimatedBytes = rs.getLong(2);
+							}
+							return null;
+						}
+					}, table);
+		}
+		catch (DataAccessException e) {
+			log.warn("Unable to read the size of " + table + " from the statistics, counting its rows", e);
 		}
+	}
 
-		if (StringUtils.hasText(column) && StringUtils.hasText(table)) {
-			if (StringUtils.hasText(checkColumn)) {
-				Long minResult = jdbcTemplate.queryForObject("SELECT MIN(" + column + ") from " + table + " where " + checkColumn + " > " + this.incrementalMin, Long.class);
-				Long maxResult = jdbcTemplate.queryForObject("SELECT MAX(" + column + ") from " + table + " where " + checkColumn + " > " + this.incrementalMin, Long.class);
-				this.partitionMin = minResult != null ? minResult : Long.MIN_VALUE;
-				this.partitionMax = maxResult != null ? maxResult : Long.MAX_VALUE;
-			}
-			else {
-				Long minResult = jdbcTemplate.queryForObject("SELECT MIN(" + column + ") from " + table, Long.class);
-				Long maxResult = jdbcTemplate.queryForObject("SELECT MAX(" + column + ") from " + table, Long.class);
-				this.partitionMin = minResult != null ? minResult : Long.MIN_VALUE;
-				this.partitionMax = maxResult != null ? maxResult : Long.MAX_VALUE;
+	private int getColumnType(String name) {
+		return jdbcTemplate.query("SELECT " + name + " FROM " + table + " WHERE 1 = 0", new ResultSetExtractor<Integer>() {
+
+			@Override
+			public Integer extractData(ResultSet rs) throws SQLException, DataAccessException {
+				return rs.getMetaData().getColumnType(1);
 			}
+		});
+	}
+
+	private String getIncrementalCondition() {
+		if (!timestampWatermark) {
+			return checkColumn + " > " + this.incrementalMin;
 		}
+		if (this.incrementalMin == Long.MIN_VALUE) {
+			return checkColumn + " IS NOT NULL";
+		}
+		return checkColumn + " > " + formatTimestamp(this.incrementalMin);
+	}
+
+	private static String formatTimestamp(long millis) {
+		// JDBC escape syntax, translated by the driver into the literal of the database
+		return "{ts '" + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(millis)) + "'}";
+	}
+
+	private static String quote(String value) {
+		return "'" + value.replace("'", "''") + "'";
+	}
+
+	private static boolean isTimestamp(int sqlType) {
+		return PartitionColumnType.fromSqlType(sqlType) == PartitionColumnType.TEMPORAL;
+	}
+
+	/**
+	 * @return the value of a numeric column, or the epoch milliseconds of a temporal one.
+	 */
+	private static Long getLong(ResultSet rs, int index) throws SQLException {
+		if (isTimestamp(rs.getMetaData().getColumnType(index))) {
+			Timestamp timestamp = rs.getTimestamp(index);
+			return timestamp != null ? timestamp.getTime() : null;
+		}
+		long value = rs.getLong(index);
+		return rs.wasNull() ? null : value;
 	}
 
 	@Override
 	public ExitStatus afterStep(StepExecution stepExecution) {
+		if (rangeQueue != null && rangesPerPartition > 1 && BatchStatus.COMPLETED.equals(stepExecution.getStatus())) {
+			rangeQueue.delete(queueId);
+		}
 		return stepExecution.getExitStatus();
 	}
 
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import javax.sql.DataSource;
+
+import org.springframework.batch.core.configuration.annotation.DefaultBatchConfigurer;
+import org.springframework.batch.core.explore.JobExplorer;
+import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.JobRepositoryFactoryBean;
+
+/**
+ * Batch configurer whose job repository can coalesce the updates of running steps, see
+ * {@link CoalescingJobRepository}, and serialize the execution contexts with a
+ * {@link CompactExecutionContextSerializer}.  With the defaults it creates the same job
+ * repository as {@link DefaultBatchConfigurer}.
+ *
+ * @author Glenn Renfro
+ */
+public class JdbcHdfsBatchConfigurer extends DefaultBatchConfigurer {
+
+	private final DataSource dataSource;
+
+	private int updateChunks = 1;
+
+	private long updateInterval;
+
+	private boolean compactExecutionContext;
+
+	private JobExplorer jobExplorer;
+
+	/**
+	 * @param dataSource the data source of the job repository.
+	 */
+	public JdbcHdfsBatchConfigurer(DataSource dataSource) {
+		super(dataSource);
+		this.dataSource = dataSource;
+	}
+
+	@Override
+	protected JobRepository createJobRepository() throws Exception {
+		JobRepositoryFactoryBean factory = new JobRepositoryFactoryBean();
+		factory.setDataSource(dataSource);
+		factory.setTransactionManager(getTransactionManager());
+		if (compactExecutionContext) {
+			factory.setSerializer(new CompactExecutionContextSerializer());
+		}
+		factory.afterPropertiesSet();
+		JobRepository jobRepository = factory.getObject();
+		if (updateChunks > 1) {
+			return new CoalescingJobRepository(jobRepository, updateChunks, updateInterval);
+		}
+		return jobRepository;
+	}
+
+	/**
+	 * The job explorer of {@link DefaultBatchConfigurer} reads the contexts with the default
+	 * serializer, one reading compact contexts is created instead when they are enabled.
+	 */
+	@Override
+	public JobExplorer getJobExplorer() {
+		if (!compactExecutionContext) {
+			return super.getJobExplorer();
+		}
+		if (jobExplorer == null) {
+			try {
+				JobExplorerFactoryBean factory = new JobExplorerFactoryBean();
+				factory.setDataSource(dataSource);
+				factory.setSerializer(new CompactExecutionContextSerializer());
+				factory.afterPropertiesSet();
+				jobExplorer = factory.getObject();
+			}
+			catch (Exception e) {
+				throw new IllegalStateException("Unable to create the job explorer", e);
+			}
+		}
+		return jobExplorer;
+	}
+
+	/**
+	 * @param updateChunks the number of chunks between the step updates written, defaults
+	 * to 1 which writes all of them.
+	 */
+	public void setUpdateChunks(int updateChunks) {
+		this.updateChunks = updateChunks;
+	}
+
+	/**
+	 * @param updateInterval the number of milliseconds after which a step update is written
+	 * before {@code updateChunks} chunks were committed, defaults to 0 for no limit.
+	 */
+	public void setUpdateInterval(long updateInterval) {
+		this.updateInterval = updateInterval;
+	}
+
+	/**
+	 * @param compactExecutionContext whether the execution contexts are serialized with a
+	 * {@link CompactExecutionContextSerializer}, defaults to false.
+	 */
+	public void setCompactExecutionContext(boolean compactExecutionContext) {
+		this.compactExecutionContext = compactExecutionContext;
+	}
+}
@@ -17,11 +17,15 @@
 package org.springframework.cloud.task.jdbchdfs.common;
 
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 
 import org.springframework.batch.core.Job;
 import org.springframework.batch.core.Step;
@@ -35,7 +39,16 @@ import org.springframework.batch.core.explore.support.JobExplorerFactoryBean;
 import org.springframework.batch.core.job.builder.JobBuilder;
 import org.springframework.batch.core.listener.ExecutionContextPromotionListener;
 import org.springframework.batch.core.partition.PartitionHandler;
+import org.springframework.batch.core.partition.support.SimpleStepExecutionSplitter;
+import org.springframework.batch.core.partition.support.TaskExecutorPartitionHandler;
 import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.item.ItemReader;
+import org.springframework.batch.item.ItemWriter;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
@@ -49,14 +62,21 @@ import org.springframework.cloud.task.batch.partition.SimpleEnvironmentVariables
 import org.springframework.cloud.task.configuration.DefaultTaskConfigurer;
 import org.springframework.cloud.task.configuration.EnableTask;
 import org.springframework.cloud.task.configuration.TaskConfigurer;
+import org.springframework.cloud.task.jdbchdfs.common.avro.AvroItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.avro.AvroItemWriterFactory;
+import org.springframework.cloud.task.jdbchdfs.common.parquet.ParquetItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.parquet.ParquetItemWriterFactory;
 import org.springframework.cloud.task.jdbchdfs.common.support.JdbcHdfsDataSourceConfiguration;
+import org.springframework.cloud.task.jdbchdfs.common.support.JdbcHdfsDataSourceProperties;
 import org.springframework.cloud.task.repository.support.TaskRepositoryInitializer;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
 /**
  * Establishes the beans required to migrate the data from jdbc to hdfs.
@@ -71,6 +91,8 @@ import org.springframework.util.CollectionUtils;
 @Import(JdbcHdfsDataSourceConfiguration.class)
 public class JdbcHdfsConfiguration {
 
+	private static final Log log = LogFactory.getLog(JdbcHdfsConfiguration.class);
+
 	public static final String[] PROMOTION_LISTENER_KEYS = {"batch.incremental.maxId"};
 
 	@Autowired
@@ -102,6 +124,12 @@ public class JdbcHdfsConfiguration {
 	@Autowired(required = false)
 	private ConfigurableApplicationContext context;
 
+	@Autowired(required = false)
+	private JdbcHdfsDataSourceProperties dataSourceProps;
+
+	// whether the rows are copied, found out once since it takes a connection
+	private Boolean postgresCopySupported;
+
 	@Value("${jdbc.hdfs.task.resource:org.springframework.cloud.task.app:"
 			+ "jdbchdfs-local-task:1.0.2.BUILD-SNAPSHOT}")
 	private String taskResource;
@@ -109,29 +137,259 @@ public class JdbcHdfsConfiguration {
 	@Bean
 	@StepScope
 	public NamedColumnJdbcItemReader namedColumnJdbcItemReader(
-			@Value("#{stepExecutionContext['partClause']}") String partClause) throws Exception {
+			@Value("#{stepExecutionContext['partClause']}") String partClause,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
 		NamedColumnJdbcItemReaderFactory namedColumnJdbcItemReaderFactory = new NamedColumnJdbcItemReaderFactory();
 		namedColumnJdbcItemReaderFactory.setDataSource(this.jdbcHdfsDataSource);
 		namedColumnJdbcItemReaderFactory.setPartitionClause(partClause);
-		namedColumnJdbcItemReaderFactory.setTableName(this.props.getTableName());
-		namedColumnJdbcItemReaderFactory.setColumnNames(this.props.getColumnNames());
+		namedColumnJdbcItemReaderFactory.setTableName(getTableName(tableName));
+		namedColumnJdbcItemReaderFactory.setColumnNames(getColumnNames());
 		namedColumnJdbcItemReaderFactory.setSql(this.props.getSql());
 		namedColumnJdbcItemReaderFactory.setFetchSize(this.props.getCommitInterval());
+		namedColumnJdbcItemReaderFactory.setFetchMemoryBudget(this.props.getFetchMemoryBudget());
 		namedColumnJdbcItemReaderFactory.setDelimiter(this.props.getDelimiter());
+		namedColumnJdbcItemReaderFactory.setCheckpointColumn(getCheckpointColumn());
 		namedColumnJdbcItemReaderFactory.afterPropertiesSet();
 		return namedColumnJdbcItemReaderFactory.getObject();
 	}
 
+	@Bean
+	@StepScope
+	public EncodedRowJdbcItemReader encodedRowJdbcItemReader(
+			@Value("#{stepExecutionContext['partClause']}") String partClause,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
+		EncodedRowJdbcItemReaderFactory encodedRowJdbcItemReaderFactory = new EncodedRowJdbcItemReaderFactory();
+		encodedRowJdbcItemReaderFactory.setDataSource(this.jdbcHdfsDataSource);
+		encodedRowJdbcItemReaderFactory.setPartitionClause(partClause);
+		encodedRowJdbcItemReaderFactory.setTableName(getTableName(tableName));
+		encodedRowJdbcItemReaderFactory.setColumnNames(getColumnNames());
+		encodedRowJdbcItemReaderFactory.setSql(this.props.getSql());
+		encodedRowJdbcItemReaderFactory.setFetchSize(this.props.getCommitInterval());
+		encodedRowJdbcItemReaderFactory.setFetchMemoryBudget(this.props.getFetchMemoryBudget());
+		encodedRowJdbcItemReaderFactory.setDelimiter(this.props.getDelimiter());
+		encodedRowJdbcItemReaderFactory.setCheckpointColumn(getCheckpointColumn());
+		encodedRowJdbcItemReaderFactory.afterPropertiesSet();
+		return encodedRowJdbcItemReaderFactory.getObject();
+	}
+
+	@Bean
+	@StepScope
+	public TypedRowJdbcItemReader typedRowJdbcItemReader(
+			@Value("#{stepExecutionContext['partClause']}") String partClause,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
+		TypedRowJdbcItemReaderFactory typedRowJdbcItemReaderFactory = new TypedRowJdbcItemReaderFactory();
+		typedRowJdbcItemReaderFactory.setDataSource(this.jdbcHdfsDataSource);
+		typedRowJdbcItemReaderFactory.setPartitionClause(partClause);
+		typedRowJdbcItemReaderFactory.setTableName(getTableName(tableName));
+		typedRowJdbcItemReaderFactory.setColumnNames(getColumnNames());
+		typedRowJdbcItemReaderFactory.setSql(this.props.getSql());
+		typedRowJdbcItemReaderFactory.setFetchSize(this.props.getCommitInterval());
+		typedRowJdbcItemReaderFactory.setFetchMemoryBudget(this.props.getFetchMemoryBudget());
+		typedRowJdbcItemReaderFactory.setDelimiter(this.props.getDelimiter());
+		typedRowJdbcItemReaderFactory.setCheckpointColumn(getCheckpointColumn());
+		typedRowJdbcItemReaderFactory.afterPropertiesSet();
+		return typedRowJdbcItemReaderFactory.getObject();
+	}
+
+	@Bean
+	@StepScope
+	public PostgresCopyItemReader postgresCopyItemReader(
+			@Value("#{stepExecutionContext['partClause']}") String partClause,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
+		return createPostgresCopyItemReader(partClause, tableName);
+	}
+
+	@Bean
+	@StepScope
+	public PipelinedItemReader<?> pipelinedItemReader(
+			@Value("#{stepExecutionContext['partClause']}") String partClause,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
+		// the delegate is read by another thread, so it must not be a step scoped proxy
+		if (this.props.getOutputFormat() != OutputFormat.TEXT) {
+			return createPipelinedItemReader(createCursorReader(new TypedRowJdbcItemReaderFactory(), partClause, tableName));
+		}
+		else if (isPostgresCopySupported()) {
+			return createPipelinedItemReader(createPostgresCopyItemReader(partClause, tableName));
+		}
+		else if (this.props.isByteRows()) {
+			return createPipelinedItemReader(createCursorReader(new EncodedRowJdbcItemReaderFactory(), partClause, tableName));
+		}
+		return createPipelinedItemReader(createCursorReader(new NamedColumnJdbcItemReaderFactory(), partClause, tableName));
+	}
+
+	private <T> PipelinedItemReader<T> createPipelinedItemReader(AbstractItemCountingItemStreamItemReader<T> delegate)
+			throws Exception {
+		PipelinedItemReader<T> reader = new PipelinedItemReader<>();
+		reader.setDelegate(delegate);
+		reader.setChunkSize(this.props.getCommitInterval());
+		reader.setQueueCapacity(this.props.getReadAheadChunks());
+		reader.afterPropertiesSet();
+		return reader;
+	}
+
+	private <R extends AbstractColumnJdbcItemReader<?>> R createCursorReader(AbstractColumnJdbcItemReaderFactory<R> readerFactory,
+			String partClause, String tableName) throws Exception {
+		readerFactory.setDataSource(this.jdbcHdfsDataSource);
+		readerFactory.setPartitionClause(partClause);
+		readerFactory.setTableName(getTableName(tableName));
+		readerFactory.setColumnNames(getColumnNames());
+		readerFactory.setSql(this.props.getSql());
+		readerFactory.setFetchSize(this.props.getCommitInterval());
+		readerFactory.setFetchMemoryBudget(this.props.getFetchMemoryBudget());
+		readerFactory.setDelimiter(this.props.getDelimiter());
+		readerFactory.afterPropertiesSet();
+		return readerFactory.getObject();
+	}
+
+	/**
+	 * @return the table of the partition when several tables are extracted, otherwise the
+	 * table set.
+	 */
+	private String getTableName(String partitionTableName) {
+		return StringUtils.hasText(partitionTableName) ? partitionTableName : this.props.getTableName();
+	}
+
+	/**
+	 * @return the columns set, or all columns when several tables are extracted without columns.
+	 */
+	private String getColumnNames() {
+		return isMultiTable() && !StringUtils.hasText(this.props.getColumnNames()) ? "*" : this.props.getColumnNames();
+	}
+
+	private boolean isMultiTable() {
+		return StringUtils.hasText(this.props.getTables()) || StringUtils.hasText(this.props.getTableSchema());
+	}
+
+	private String getCheckpointColumn() {
+		return this.props.isPartitionCheckpoints() ? this.props.getPartitionColumn() : null;
+	}
+
+	private boolean isPostgresCopySupported() {
+		if (this.postgresCopySupported == null) {
+			this.postgresCopySupported = this.props.isPostgresCopy()
+					&& PostgresCopyItemReader.isSupported(this.jdbcHdfsDataSource, this.props.getDelimiter());
+		}
+		return this.postgresCopySupported;
+	}
+
+	private PostgresCopyItemReader createPostgresCopyItemReader(String partClause, String tableName) throws Exception {
+		PostgresCopyItemReader postgresCopyItemReader = new PostgresCopyItemReader();
+		postgresCopyItemReader.setDataSource(this.jdbcHdfsDataSource);
+		if (StringUtils.hasText(this.props.getSql())) {
+			postgresCopyItemReader.setSql(this.props.getSql());
+		}
+		else if (StringUtils.hasText(partClause)) {
+			postgresCopyItemReader.setSql("SELECT " + getColumnNames() + " FROM " + getTableName(tableName)
+					+ " " + partClause);
+		}
+		else {
+			postgresCopyItemReader.setSql("SELECT " + getColumnNames() + " FROM " + getTableName(tableName));
+		}
+		postgresCopyItemReader.setDelimiter(this.props.getDelimiter());
+		postgresCopyItemReader.afterPropertiesSet();
+		return postgresCopyItemReader;
+	}
+
+	@Bean
+	@StepScope
+	public RangeQueueItemReader<?> rangeQueueItemReader(
+			@Value("#{stepExecutionContext['" + IncrementalColumnRangePartitioner.RANGE_QUEUE_ID + "']}") Long queueId,
+			@Value("#{stepExecution.stepName}") String owner) throws Exception {
+		if (this.props.getOutputFormat() != OutputFormat.TEXT) {
+			return createRangeQueueItemReader(new TypedRowJdbcItemReaderFactory(), queueId, owner);
+		}
+		else if (this.props.isByteRows()) {
+			return createRangeQueueItemReader(new EncodedRowJdbcItemReaderFactory(), queueId, owner);
+		}
+		return createRangeQueueItemReader(new NamedColumnJdbcItemReaderFactory(), queueId, owner);
+	}
+
+	@Bean
+	@StepScope
+	public KeysetPagingItemReader<?> keysetPagingItemReader(
+			@Value("#{stepExecutionContext['partClause']}") String partClause,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
+		AbstractColumnJdbcItemReader<?> rowReader;
+		if (this.props.getOutputFormat() != OutputFormat.TEXT) {
+			rowReader = new TypedRowJdbcItemReader();
+		}
+		else if (this.props.isByteRows()) {
+			rowReader = new EncodedRowJdbcItemReader();
+		}
+		else {
+			rowReader = new NamedColumnJdbcItemReader();
+		}
+		rowReader.setDelimiter(this.props.getDelimiter());
+		return createKeysetPagingItemReader(rowReader, partClause, tableName);
+	}
+
+	private <T> KeysetPagingItemReader<T> createKeysetPagingItemReader(AbstractColumnJdbcItemReader<T> rowReader,
+			String partClause, String tableName) throws Exception {
+		KeysetPagingItemReader<T> reader = new KeysetPagingItemReader<>();
+		reader.setDataSource(this.jdbcHdfsDataSource);
+		reader.setSelectClause(getColumnNames());
+		reader.setFromClause(getTableName(tableName));
+		if (StringUtils.hasText(partClause)) {
+			// the paging query provider adds the WHERE keyword itself
+			reader.setWhereClause(partClause.trim().substring("WHERE".length()).trim());
+		}
+		reader.setKeyColumn(this.props.getKeysetColumn());
+		reader.setPageSize(this.props.getCommitInterval());
+		reader.setPrefetch(this.props.isPrefetchPages());
+		reader.setRowMapper(rowReader.getItemRowMapper());
+		reader.afterPropertiesSet();
+		return reader;
+	}
+
+	private <T> RangeQueueItemReader<T> createRangeQueueItemReader(
+			AbstractColumnJdbcItemReaderFactory<? extends AbstractColumnJdbcItemReader<T>> readerFactory,
+			Long queueId, String owner) throws Exception {
+		readerFactory.setDataSource(this.jdbcHdfsDataSource);
+		readerFactory.setTableName(this.props.getTableName());
+		readerFactory.setColumnNames(this.props.getColumnNames());
+		readerFactory.setFetchSize(this.props.getCommitInterval());
+		readerFactory.setFetchMemoryBudget(this.props.getFetchMemoryBudget());
+		readerFactory.setDelimiter(this.props.getDelimiter());
+		RangeQueueItemReader<T> reader = new RangeQueueItemReader<>();
+		reader.setReaderFactory(readerFactory);
+		reader.setRangeQueue(new JdbcRangeQueue(this.taskDataSource));
+		reader.setQueueId(queueId);
+		reader.setOwner(owner);
+		reader.afterPropertiesSet();
+		return reader;
+	}
+
 	@Bean
 	public JobExplorerFactoryBean jobExplorer() {
 		JobExplorerFactoryBean jobExplorerFactoryBean = new JobExplorerFactoryBean();
 		jobExplorerFactoryBean.setDataSource(this.taskDataSource);
+		if (this.props.isCompactExecutionContext()) {
+			jobExplorerFactoryBean.setSerializer(new CompactExecutionContextSerializer());
+		}
 		return jobExplorerFactoryBean;
 	}
 
 	@Bean
 	@Profile("!worker")
-	public DeployerPartitionHandler partitionHandler(TaskLauncher taskLauncher, JobExplorer jobExplorer) throws Exception {
+	public PartitionHandler partitionHandler(TaskLauncher taskLauncher, JobExplorer jobExplorer) throws Exception {
+		if (this.props.getPartitionHandlerType() == PartitionHandlerType.THREADS) {
+			// each partition runs in its own step scope, so it gets its own reader, writer and connection
+			int maxConcurrency = getMaxConcurrency();
+			if (maxConcurrency < this.props.getMaxWorkers()) {
+				log.warn(String.format("The jdbchdfsDataSource pool holds %d connections, one of them is left "
+						+ "to the partitioner, so at most %d of the %d maxWorkers run at once.  Set "
+						+ "jdbchdfs.datasource.maxActive to at least %d to run all of them.", getPoolSize(),
+						maxConcurrency, this.props.getMaxWorkers(), this.props.getMaxWorkers() + 1));
+			}
+			SimpleAsyncTaskExecutor taskExecutor = new SimpleAsyncTaskExecutor("jdbchdfs-partition-");
+			taskExecutor.setConcurrencyLimit(maxConcurrency);
+			TaskExecutorPartitionHandler partitionHandler = new TaskExecutorPartitionHandler();
+			partitionHandler.setTaskExecutor(taskExecutor);
+			partitionHandler.setStep(workerStep());
+			partitionHandler.setGridSize(this.props.getPartitions());
+			partitionHandler.afterPropertiesSet();
+			return partitionHandler;
+		}
 		MavenResource resource = MavenResource.parse(this.taskResource);
 
 		DeployerPartitionHandler partitionHandler = new DeployerPartitionHandler(taskLauncher, jobExplorer, resource, "workerStep");
@@ -149,7 +407,7 @@ public class JdbcHdfsConfiguration {
 	@Bean
 	@StepScope
 	@Profile("!worker")
-	public IncrementalColumnRangePartitioner partitioner(JobExplorer jobExplorer, @Value("#{stepExecutionContext['overrideCheckColumnValue']}") Long overrideValue) {
+	public IncrementalColumnRangePartitioner partitioner(JobExplorer jobExplorer, @Value("#{stepExecutionContext['overrideCheckColumnValue']}") Long overrideValue) throws Exception {
 		IncrementalColumnRangePartitioner partitioner = new IncrementalColumnRangePartitioner();
 		partitioner.setTable(this.props.getTableName());
 		partitioner.setColumn(this.props.getPartitionColumn());
@@ -158,9 +416,98 @@ public class JdbcHdfsConfiguration {
 		partitioner.setOverrideValue(overrideValue);
 		partitioner.setDataSource(this.jdbcHdfsDataSource);
 		partitioner.setPartitions(this.props.getPartitions());
+		partitioner.setPartitionMode(this.props.getPartitionMode());
+		partitioner.setCatalogStatistics(this.props.isCatalogStatistics());
+		partitioner.setPartitionColumnType(this.props.getPartitionColumnType());
+		partitioner.setTargetRowsPerPartition(this.props.getTargetRowsPerPartition());
+		partitioner.setMaxPartitions(getMaxConcurrency());
+		if (this.props.getRangesPerPartition() > 1) {
+			JdbcRangeQueue rangeQueue = new JdbcRangeQueue(this.taskDataSource);
+			rangeQueue.setInitializeSchema(this.props.isRangeQueueInitialize());
+			rangeQueue.afterPropertiesSet();
+			partitioner.setRangeQueue(rangeQueue);
+			partitioner.setRangesPerPartition(this.props.getRangesPerPartition());
+		}
+		partitioner.setWatermarkStore(getWatermarkStore());
 		return partitioner;
 	}
 
+	/**
+	 * @return the store of the watermarks of the check column, null when it is not used or
+	 * its table does not exist, in which case the watermark is read from the last job execution.
+	 */
+	private JdbcWatermarkStore getWatermarkStore() throws Exception {
+		if (!StringUtils.hasText(this.props.getCheckColumn()) || !this.props.isWatermarkStore()) {
+			return null;
+		}
+		JdbcWatermarkStore watermarkStore = new JdbcWatermarkStore(this.taskDataSource);
+		watermarkStore.setInitializeSchema(this.props.isWatermarkStoreInitialize());
+		watermarkStore.afterPropertiesSet();
+		return watermarkStore.isAvailable() ? watermarkStore : null;
+	}
+
+	@Bean
+	@StepScope
+	@Profile("!worker")
+	public MultiTablePartitioner multiTablePartitioner() throws Exception {
+		MultiTablePartitioner partitioner = new MultiTablePartitioner();
+		partitioner.setDataSource(this.jdbcHdfsDataSource);
+		if (StringUtils.hasText(this.props.getTables())) {
+			partitioner.setTables(Arrays.asList(StringUtils.trimArrayElements(
+					StringUtils.commaDelimitedListToStringArray(this.props.getTables()))));
+		}
+		partitioner.setSchema(this.props.getTableSchema());
+		partitioner.setIncludePattern(this.props.getIncludeTables());
+		partitioner.setExcludePattern(this.props.getExcludeTables());
+		partitioner.setPartitionColumn(this.props.getPartitionColumn());
+		partitioner.setPartitionerFactory(new ObjectFactory<IncrementalColumnRangePartitioner>() {
+
+			@Override
+			public IncrementalColumnRangePartitioner getObject() {
+				IncrementalColumnRangePartitioner tablePartitioner = new IncrementalColumnRangePartitioner();
+				tablePartitioner.setDataSource(jdbcHdfsDataSource);
+				tablePartitioner.setPartitions(props.getPartitions());
+				tablePartitioner.setPartitionMode(props.getPartitionMode());
+				tablePartitioner.setCatalogStatistics(props.isCatalogStatistics());
+				tablePartitioner.setPartitionColumnType(props.getPartitionColumnType());
+				tablePartitioner.setTargetRowsPerPartition(props.getTargetRowsPerPartition());
+				tablePartitioner.setMaxPartitions(getMaxConcurrency());
+				return tablePartitioner;
+			}
+		});
+		partitioner.afterPropertiesSet();
+		return partitioner;
+	}
+
+	/**
+	 * @return the number of partitions that can run at once, limited by the size of the
+	 * source pool when the partitions share it.
+	 */
+	private int getMaxConcurrency() {
+		int maxConcurrency = this.props.getMaxWorkers();
+		Integer poolSize = getPoolSize();
+		if (this.props.getPartitionHandlerType() == PartitionHandlerType.THREADS && poolSize != null) {
+			// one connection of the pool is left to the partitioner
+			maxConcurrency = Math.min(maxConcurrency, Math.max(1, poolSize - 1));
+		}
+		return maxConcurrency;
+	}
+
+	/**
+	 * @return the maximum number of connections of the source pool, read from the pool
+	 * itself when it has a {@code maxActive} property, null if it is not known.
+	 */
+	private Integer getPoolSize() {
+		BeanWrapper pool = new BeanWrapperImpl(this.jdbcHdfsDataSource);
+		if (pool.isReadableProperty("maxActive")) {
+			Object maxActive = pool.getPropertyValue("maxActive");
+			if (maxActive instanceof Integer && (Integer) maxActive > 0) {
+				return (Integer) maxActive;
+			}
+		}
+		return this.dataSourceProps != null ? this.dataSourceProps.getMaxActive() : null;
+	}
+
 	@Bean
 	@Profile("worker")
 	public DeployerStepExecutionHandler stepExecutionHandler(JobExplorer jobExplorer) {
@@ -171,11 +518,43 @@ public class JdbcHdfsConfiguration {
 
 	@Bean
 	@StepScope
-	public HdfsTextItemWriter writer(@Value("#{stepExecutionContext['partSuffix']}") String suffix) throws Exception {
-		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(this.hadoopConfiguration, this.props, suffix);
+	public HdfsTextItemWriter writer(@Value("#{stepExecutionContext['partSuffix']}") String suffix,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(this.hadoopConfiguration, getTableProperties(tableName), suffix);
 		return factory.getObject();
 	}
 
+	@Bean
+	@StepScope
+	public ParquetItemWriter parquetWriter(@Value("#{stepExecutionContext['partSuffix']}") String suffix,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
+		ParquetItemWriterFactory factory = new ParquetItemWriterFactory(this.hadoopConfiguration, getTableProperties(tableName), suffix);
+		return factory.getObject();
+	}
+
+	@Bean
+	@StepScope
+	public AvroItemWriter avroWriter(@Value("#{stepExecutionContext['partSuffix']}") String suffix,
+			@Value("#{stepExecutionContext['" + MultiTablePartitioner.TABLE_NAME + "']}") String tableName) throws Exception {
+		AvroItemWriterFactory factory = new AvroItemWriterFactory(this.hadoopConfiguration, getTableProperties(tableName), suffix);
+		return factory.getObject();
+	}
+
+	/**
+	 * @return the properties of the files of a table when several tables are extracted,
+	 * which are written to a directory named after the table, otherwise the properties set.
+	 */
+	private JdbcHdfsTaskProperties getTableProperties(String tableName) {
+		if (!StringUtils.hasText(tableName)) {
+			return this.props;
+		}
+		JdbcHdfsTaskProperties tableProps = new JdbcHdfsTaskProperties();
+		BeanUtils.copyProperties(this.props, tableProps);
+		tableProps.setDirectory(new Path(this.props.getDirectory(), tableName).toString());
+		tableProps.setFileName(tableName);
+		return tableProps;
+	}
+
 
 	@Bean
 	public ExecutionContextPromotionListener promotionListener() {
@@ -189,6 +568,20 @@ public class JdbcHdfsConfiguration {
 	public Step step1(PartitionHandler partitionHandler, ExecutionContextPromotionListener promotionListener,
 			IncrementalColumnRangePartitioner partitioner) throws Exception {
 		Step worker = workerStep();
+		if (isMultiTable()) {
+			MultiTablePartitioner multiTablePartitioner = multiTablePartitioner();
+			// the partitions of all the tables share the workers, the largest are started first
+			SimpleStepExecutionSplitter splitter = new SimpleStepExecutionSplitter(this.jobRepository, false,
+					worker.getName(), multiTablePartitioner);
+			return this.stepBuilderFactory.get("step1")
+					.partitioner(worker.getName(), multiTablePartitioner)
+					.splitter(new LargestFirstStepExecutionSplitter(splitter))
+					.step(worker)
+					.partitionHandler(partitionHandler)
+					.listener(promotionListener)
+					.listener(multiTablePartitioner)
+					.build();
+		}
 		Step step1 = this.stepBuilderFactory.get("step1")
 				.partitioner(worker.getName(), partitioner)
 				.step(worker)
@@ -201,10 +594,39 @@ public class JdbcHdfsConfiguration {
 
 	@Bean
 	public Step workerStep() throws Exception {
+		ItemReader<?> reader;
+		ItemWriter<?> writer;
+		if (this.props.getOutputFormat() == OutputFormat.PARQUET) {
+			reader = typedRowJdbcItemReader(null, null);
+			writer = parquetWriter(null, null);
+		}
+		else if (this.props.getOutputFormat() == OutputFormat.AVRO) {
+			reader = typedRowJdbcItemReader(null, null);
+			writer = avroWriter(null, null);
+		}
+		else if (isPostgresCopySupported()) {
+			reader = postgresCopyItemReader(null, null);
+			writer = writer(null, null);
+		}
+		else {
+			reader = this.props.isByteRows() ? encodedRowJdbcItemReader(null, null) : namedColumnJdbcItemReader(null, null);
+			writer = writer(null, null);
+		}
+		if (this.props.getReadAheadChunks() > 0) {
+			reader = pipelinedItemReader(null, null);
+		}
+		if (StringUtils.hasText(this.props.getKeysetColumn())) {
+			reader = keysetPagingItemReader(null, null);
+		}
+		if (this.props.getRangesPerPartition() > 1 && !isMultiTable()) {
+			reader = rangeQueueItemReader(null, null);
+		}
+		@SuppressWarnings("unchecked")
+		ItemWriter<Object> itemWriter = (ItemWriter<Object>) writer;
 		Step step = this.stepBuilderFactory.get("workerStep")
 				.chunk(this.props.getCommitInterval())
-				.reader(namedColumnJdbcItemReader(null))
-				.writer(writer(null))
+				.reader(reader)
+				.writer(itemWriter)
 				.build();
 		return step;
 	}
@@ -219,6 +641,11 @@ public class JdbcHdfsConfiguration {
 		if(!this.props.isRestartable()) {
 			jobBuilder.preventRestart();
 		}
+		JdbcWatermarkStore watermarkStore = isMultiTable() ? null : getWatermarkStore();
+		if (watermarkStore != null) {
+			// the watermark moves on only once the job completed
+			jobBuilder.listener(new WatermarkJobExecutionListener(watermarkStore, this.props.getCheckColumn()));
+		}
 		return jobBuilder.start(step1(partitionHandler, promotionListener, partitioner))
 				.build();
 	}
@@ -230,7 +657,11 @@ public class JdbcHdfsConfiguration {
 
 	@Bean
 	public DefaultBatchConfigurer batchConfigurer() {
-		return new DefaultBatchConfigurer(this.taskDataSource);
+		JdbcHdfsBatchConfigurer batchConfigurer = new JdbcHdfsBatchConfigurer(this.taskDataSource);
+		batchConfigurer.setUpdateChunks(this.props.getRepositoryUpdateChunks());
+		batchConfigurer.setUpdateInterval(this.props.getRepositoryUpdateInterval());
+		batchConfigurer.setCompactExecutionContext(this.props.isCompactExecutionContext());
+		return batchConfigurer;
 	}
 
 	@Bean
@@ -16,14 +16,17 @@
 
 package org.springframework.cloud.task.jdbchdfs.common;
 
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 /**
  * Establishes the Configuration Properties for the JdbcHdfs task.
  * @author Glenn Renfro
  */
 @ConfigurationProperties("jdbchdfs")
-public class JdbcHdfsTaskProperties {
+public class JdbcHdfsTaskProperties implements InitializingBean {
 
 	public static final int DEFAULT_PARTITION_COUNT = 4;
 
@@ -41,6 +44,18 @@ public class JdbcHdfsTaskProperties {
 
 	public static final int DEFAULT_MAX_WORKERS = 2;
 
+	public static final int DEFAULT_ASYNC_WRITE_BUFFERS = 2;
+
+	public static final long DEFAULT_FLUSH_INTERVAL = 1;
+
+	public static final int DEFAULT_PARQUET_ROW_GROUP_SIZE = 128 * 1024 * 1024;
+
+	public static final int DEFAULT_PARQUET_PAGE_SIZE = 1024 * 1024;
+
+	public static final int DEFAULT_AVRO_SYNC_INTERVAL = 64000;
+
+	public static final int DEFAULT_RANGES_PER_PARTITION = 1;
+
 	/**
 	 * The URI to the hadoop file system.
 	 */
@@ -151,6 +166,218 @@ public class JdbcHdfsTaskProperties {
 	 */
 	private int maxWorkers = DEFAULT_MAX_WORKERS;
 
+	/**
+	 * Whether rows are passed from the reader to the writer as encoded bytes instead of strings.
+	 */
+	private boolean byteRows;
+
+	/**
+	 * Whether chunks are written to the file system by a dedicated thread while the next chunk is read.
+	 */
+	private boolean asyncWrite;
+
+	/**
+	 * The maximum number of chunks waiting to be written when asyncWrite is enabled.
+	 */
+	private int asyncWriteBuffers = DEFAULT_ASYNC_WRITE_BUFFERS;
+
+	/**
+	 * When the writer is flushed as chunks are committed, one of CHUNK, BYTES, TIME or CLOSE.
+	 */
+	private FlushPolicy flushPolicy = FlushPolicy.CHUNK;
+
+	/**
+	 * The number of chunks, bytes or milliseconds between flushes for the CHUNK, BYTES and TIME flush policies.
+	 */
+	private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+	/**
+	 * The codec used to compress the output, one of gzip, snappy, bzip2, deflate, lz4, zstd, lzo, lzop or a CompressionCodec class name.
+	 */
+	private String codec;
+
+	/**
+	 * Whether compressed output is written as block compressed sequence files that can be split, unless the codec is splittable itself.  The sequence files are given the seq extension instead of fileExtension.
+	 */
+	private boolean splittable;
+
+	/**
+	 * The format of the files written, TEXT, PARQUET or AVRO.
+	 */
+	private OutputFormat outputFormat = OutputFormat.TEXT;
+
+	/**
+	 * The size in bytes of the row groups of the Parquet files, buffered in memory before they are written.
+	 */
+	private int parquetRowGroupSize = DEFAULT_PARQUET_ROW_GROUP_SIZE;
+
+	/**
+	 * The size in bytes of the pages of the Parquet files.
+	 */
+	private int parquetPageSize = DEFAULT_PARQUET_PAGE_SIZE;
+
+	/**
+	 * The approximate size in bytes of the blocks written between the sync markers of the Avro files.
+	 */
+	private int avroSyncInterval = DEFAULT_AVRO_SYNC_INTERVAL;
+
+	/**
+	 * How the ranges of the partition column are computed, UNIFORM for ranges of equal width or QUANTILE for ranges of about the same number of rows.
+	 */
+	private PartitionMode partitionMode = PartitionMode.UNIFORM;
+
+	/**
+	 * The number of ranges of the partition column created for each partition.  When greater than 1 the ranges are queued in the job repository and each worker claims the next range once it finished the previous one.  Can not be used with keysetColumn, readAheadChunks or postgresCopy unless several tables are read, which do not queue their ranges.
+	 */
+	private int rangesPerPartition = DEFAULT_RANGES_PER_PARTITION;
+
+	/**
+	 * Whether the JDBCHDFS_RANGE_QUEUE table is created when rangesPerPartition is greater than 1 and the table does not exist.
+	 */
+	private boolean rangeQueueInitialize;
+
+	/**
+	 * Whether the bounds of the partition column are read from the statistics of the database catalog instead of scanning the table, where available and when no check column is set.
+	 */
+	private boolean catalogStatistics;
+
+	/**
+	 * How the values of the partition column are split into ranges, NUMERIC, TEMPORAL for time buckets, STRING for sampled split points or AUTO to choose from the type of the column.
+	 */
+	private PartitionColumnType partitionColumnType = PartitionColumnType.AUTO;
+
+	/**
+	 * The unique column the rows are paged by.  When set, each partition is read in pages of commitInterval rows starting after the last key of the previous page instead of with a single cursor.  Can not be used with postgresCopy, readAheadChunks or rangesPerPartition.
+	 */
+	private String keysetColumn;
+
+	/**
+	 * Whether the next page is fetched on a background thread while the current page is written, when keysetColumn is set.
+	 */
+	private boolean prefetchPages;
+
+	/**
+	 * Whether the rows of a PostgreSQL database are streamed with its COPY command instead of a cursor, when writing text, the connections expose the copy API of the driver and the delimiter is a single character.
+	 * The rows are then written as CSV, columns holding the delimiter, quotes or line breaks are quoted.
+	 */
+	private boolean postgresCopy;
+
+	/**
+	 * How the partitions are run, DEPLOYER to launch a task per partition or THREADS to run them on at most maxWorkers threads of this application.
+	 */
+	private PartitionHandlerType partitionHandlerType = PartitionHandlerType.DEPLOYER;
+
+	/**
+	 * The number of bytes of the rows fetched at once by a cursor.  When set, the fetch size adapts to the average width of the rows instead of being commitInterval, except on MySQL and SQLite.
+	 */
+	private long fetchMemoryBudget;
+
+	/**
+	 * The number of chunks of commitInterval rows read ahead by a separate thread while the previous chunks are written, 0 to read the rows on the thread of the step.  Can not be used with keysetColumn or rangesPerPartition, which have their own readers.
+	 */
+	private int readAheadChunks;
+
+	/**
+	 * Whether each partition is read in the order of partitionColumn, saving the last value written at each commit so that a restarted worker only queries the rows after it.  The partition column must be unique and one of the columns read.  Can not be used with sql, readAheadChunks, keysetColumn, rangesPerPartition greater than 1 or postgresCopy.
+	 */
+	private boolean partitionCheckpoints;
+
+	/**
+	 * The number of rows each partition should hold.  When set, the number of partitions is chosen from an estimate of the rows to read, from the catalog statistics or a count, instead of partitions.  At most maxWorkers partitions are created, fewer when the partitions run on threads and the source pool has fewer connections.
+	 */
+	private long targetRowsPerPartition;
+
+	/**
+	 * Whether the watermark of checkColumn is kept in the JDBCHDFS_WATERMARK table of the task database, so that the previous watermark is found with a single row lookup.  Until a run saved it, or when the table does not exist, the watermark is read from the last job execution.
+	 */
+	private boolean watermarkStore;
+
+	/**
+	 * Whether the JDBCHDFS_WATERMARK table is created when watermarkStore is set and the table does not exist.
+	 */
+	private boolean watermarkStoreInitialize;
+
+	/**
+	 * The number of chunks between the updates of a running step written to the job repository, 1 to write them after each chunk.  A restarted worker reads again the chunks committed after the last update written.
+	 */
+	private int repositoryUpdateChunks = 1;
+
+	/**
+	 * The number of milliseconds after which an update of a running step is written to the job repository before repositoryUpdateChunks chunks were committed, 0 for no limit.  Only used when repositoryUpdateChunks is greater than 1.
+	 */
+	private long repositoryUpdateInterval;
+
+	/**
+	 * Whether execution contexts are serialized in a compact binary form instead of JSON.  Contexts already in the job repository are still read, but other applications reading it need the same serializer.
+	 */
+	private boolean compactExecutionContext;
+
+	/**
+	 * The tables extracted by a single task instead of tableName, comma separated.  Their partitions share the workers, largest first, and the files of each table are written to a directory of the same name under directory.
+	 */
+	private String tables;
+
+	/**
+	 * The schema whose tables are extracted by a single task, as with tables, filtered by includeTables and excludeTables.
+	 */
+	private String tableSchema;
+
+	/**
+	 * The regular expression the names of the tables of tableSchema must match to be extracted, all tables when not set.
+	 */
+	private String includeTables;
+
+	/**
+	 * The regular expression of the names of the tables of tableSchema that are not extracted.
+	 */
+	private String excludeTables;
+
+	/**
+	 * Whether uncompressed text files are written with a file channel and a direct buffer instead of the hadoop output streams when the directory is on the local file system.  The files then have no checksum files.
+	 */
+	private boolean localFileChannel;
+
+	/**
+	 * The number of bytes gathered in the direct buffer before they are written to a local file.
+	 */
+	private int localWriteBufferSize = LocalFileChannelWriter.DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * The number of bytes the length of a local file is extended by ahead of the data written to it, 0 not to extend it.  The file is cut back to its data when closed.
+	 */
+	private long localPreallocationSize;
+
+	/**
+	 * Rejects the combinations of readers that can not be used together, each of them
+	 * replacing the reader of the worker step.
+	 */
+	@Override
+	public void afterPropertiesSet() {
+		boolean keyset = StringUtils.hasText(keysetColumn);
+		// the ranges of several tables are not queued, their partitions keep their own reader
+		boolean rangeQueue = rangesPerPartition > 1 && !StringUtils.hasText(tables)
+				&& !StringUtils.hasText(tableSchema);
+		Assert.isTrue(!(keyset && readAheadChunks > 0), "readAheadChunks can not be used with keysetColumn, "
+				+ "set prefetchPages to read the next page ahead instead");
+		Assert.isTrue(!(keyset && postgresCopy), "postgresCopy can not be used with keysetColumn, "
+				+ "the pages are read with queries");
+		Assert.isTrue(!(rangeQueue && keyset), "keysetColumn can not be used with rangesPerPartition greater than 1, "
+				+ "the queued ranges are read with a cursor each");
+		Assert.isTrue(!(rangeQueue && readAheadChunks > 0), "readAheadChunks can not be used with "
+				+ "rangesPerPartition greater than 1, the queued ranges are read with a cursor each");
+		Assert.isTrue(!(rangeQueue && postgresCopy), "postgresCopy can not be used with rangesPerPartition "
+				+ "greater than 1, the queued ranges are read with a cursor each");
+		if (partitionCheckpoints) {
+			String message = " can not be used with partitionCheckpoints, the partitions are checkpointed "
+					+ "by a cursor reading them in the order of partitionColumn";
+			Assert.isTrue(!StringUtils.hasText(sql), "sql" + message);
+			Assert.isTrue(readAheadChunks == 0, "readAheadChunks" + message);
+			Assert.isTrue(!keyset, "keysetColumn" + message);
+			Assert.isTrue(rangesPerPartition <= 1, "rangesPerPartition greater than 1" + message);
+			Assert.isTrue(!postgresCopy, "postgresCopy" + message);
+		}
+	}
+
 	public String getFsUri() {
 		return fsUri;
 	}
@@ -326,4 +553,292 @@ public class JdbcHdfsTaskProperties {
 	public void setMaxWorkers(int maxWorkers) {
 		this.maxWorkers = maxWorkers;
 	}
+
+	public boolean isByteRows() {
+		return byteRows;
+	}
+
+	public void setByteRows(boolean byteRows) {
+		this.byteRows = byteRows;
+	}
+
+	public boolean isAsyncWrite() {
+		return asyncWrite;
+	}
+
+	public void setAsyncWrite(boolean asyncWrite) {
+		this.asyncWrite = asyncWrite;
+	}
+
+	public int getAsyncWriteBuffers() {
+		return asyncWriteBuffers;
+	}
+
+	public void setAsyncWriteBuffers(int asyncWriteBuffers) {
+		this.asyncWriteBuffers = asyncWriteBuffers;
+	}
+
+	public FlushPolicy getFlushPolicy() {
+		return flushPolicy;
+	}
+
+	public void setFlushPolicy(FlushPolicy flushPolicy) {
+		this.flushPolicy = flushPolicy;
+	}
+
+	public long getFlushInterval() {
+		return flushInterval;
+	}
+
+	public void setFlushInterval(long flushInterval) {
+		this.flushInterval = flushInterval;
+	}
+
+	public String getCodec() {
+		return codec;
+	}
+
+	public void setCodec(String codec) {
+		this.codec = codec;
+	}
+
+	public boolean isSplittable() {
+		return splittable;
+	}
+
+	public void setSplittable(boolean splittable) {
+		this.splittable = splittable;
+	}
+
+	public OutputFormat getOutputFormat() {
+		return outputFormat;
+	}
+
+	public void setOutputFormat(OutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+	public int getParquetRowGroupSize() {
+		return parquetRowGroupSize;
+	}
+
+	public void setParquetRowGroupSize(int parquetRowGroupSize) {
+		this.parquetRowGroupSize = parquetRowGroupSize;
+	}
+
+	public int getParquetPageSize() {
+		return parquetPageSize;
+	}
+
+	public void setParquetPageSize(int parquetPageSize) {
+		this.parquetPageSize = parquetPageSize;
+	}
+
+	public int getAvroSyncInterval() {
+		return avroSyncInterval;
+	}
+
+	public void setAvroSyncInterval(int avroSyncInterval) {
+		this.avroSyncInterval = avroSyncInterval;
+	}
+
+	public PartitionMode getPartitionMode() {
+		return partitionMode;
+	}
+
+	public void setPartitionMode(PartitionMode partitionMode) {
+		this.partitionMode = partitionMode;
+	}
+
+	public int getRangesPerPartition() {
+		return rangesPerPartition;
+	}
+
+	public void setRangesPerPartition(int rangesPerPartition) {
+		this.rangesPerPartition = rangesPerPartition;
+	}
+
+	public boolean isCatalogStatistics() {
+		return catalogStatistics;
+	}
+
+	public void setCatalogStatistics(boolean catalogStatistics) {
+		this.catalogStatistics = catalogStatistics;
+	}
+
+	public PartitionColumnType getPartitionColumnType() {
+		return partitionColumnType;
+	}
+
+	public void setPartitionColumnType(PartitionColumnType partitionColumnType) {
+		this.partitionColumnType = partitionColumnType;
+	}
+
+	public String getKeysetColumn() {
+		return keysetColumn;
+	}
+
+	public void setKeysetColumn(String keysetColumn) {
+		this.keysetColumn = keysetColumn;
+	}
+
+	public boolean isPrefetchPages() {
+		return prefetchPages;
+	}
+
+	public void setPrefetchPages(boolean prefetchPages) {
+		this.prefetchPages = prefetchPages;
+	}
+
+	public boolean isPostgresCopy() {
+		return postgresCopy;
+	}
+
+	public void setPostgresCopy(boolean postgresCopy) {
+		this.postgresCopy = postgresCopy;
+	}
+
+	public PartitionHandlerType getPartitionHandlerType() {
+		return partitionHandlerType;
+	}
+
+	public void setPartitionHandlerType(PartitionHandlerType partitionHandlerType) {
+		this.partitionHandlerType = partitionHandlerType;
+	}
+
+	public long getFetchMemoryBudget() {
+		return fetchMemoryBudget;
+	}
+
+	public void setFetchMemoryBudget(long fetchMemoryBudget) {
+		this.fetchMemoryBudget = fetchMemoryBudget;
+	}
+
+	public int getReadAheadChunks() {
+		return readAheadChunks;
+	}
+
+	public void setReadAheadChunks(int readAheadChunks) {
+		this.readAheadChunks = readAheadChunks;
+	}
+
+	public boolean isPartitionCheckpoints() {
+		return partitionCheckpoints;
+	}
+
+	public void setPartitionCheckpoints(boolean partitionCheckpoints) {
+		this.partitionCheckpoints = partitionCheckpoints;
+	}
+
+	public long getTargetRowsPerPartition() {
+		return targetRowsPerPartition;
+	}
+
+	public void setTargetRowsPerPartition(long targetRowsPerPartition) {
+		this.targetRowsPerPartition = targetRowsPerPartition;
+	}
+
+	public boolean isWatermarkStore() {
+		return watermarkStore;
+	}
+
+	public void setWatermarkStore(boolean watermarkStore) {
+		this.watermarkStore = watermarkStore;
+	}
+
+	public int getRepositoryUpdateChunks() {
+		return repositoryUpdateChunks;
+	}
+
+	public void setRepositoryUpdateChunks(int repositoryUpdateChunks) {
+		this.repositoryUpdateChunks = repositoryUpdateChunks;
+	}
+
+	public long getRepositoryUpdateInterval() {
+		return repositoryUpdateInterval;
+	}
+
+	public void setRepositoryUpdateInterval(long repositoryUpdateInterval) {
+		this.repositoryUpdateInterval = repositoryUpdateInterval;
+	}
+
+	public boolean isCompactExecutionContext() {
+		return compactExecutionContext;
+	}
+
+	public void setCompactExecutionContext(boolean compactExecutionContext) {
+		this.compactExecutionContext = compactExecutionContext;
+	}
+
+	public String getTables() {
+		return tables;
+	}
+
+	public void setTables(String tables) {
+		this.tables = tables;
+	}
+
+	public String getTableSchema() {
+		return tableSchema;
+	}
+
+	public void setTableSchema(String tableSchema) {
+		this.tableSchema = tableSchema;
+	}
+
+	public String getIncludeTables() {
+		return includeTables;
+	}
+
+	public void setIncludeTables(String includeTables) {
+		this.includeTables = includeTables;
+	}
+
+	public String getExcludeTables() {
+		return excludeTables;
+	}
+
+	public void setExcludeTables(String excludeTables) {
+		this.excludeTables = excludeTables;
+	}
+
+	public boolean isLocalFileChannel() {
+		return localFileChannel;
+	}
+
+	public void setLocalFileChannel(boolean localFileChannel) {
+		this.localFileChannel = localFileChannel;
+	}
+
+	public int getLocalWriteBufferSize() {
+		return localWriteBufferSize;
+	}
+
+	public void setLocalWriteBufferSize(int localWriteBufferSize) {
+		this.localWriteBufferSize = localWriteBufferSize;
+	}
+
+	public long getLocalPreallocationSize() {
+		return localPreallocationSize;
+	}
+
+	public void setLocalPreallocationSize(long localPreallocationSize) {
+		this.localPreallocationSize = localPreallocationSize;
+	}
+
+	public boolean isWatermarkStoreInitialize() {
+		return watermarkStoreInitialize;
+	}
+
+	public void setWatermarkStoreInitialize(boolean watermarkStoreInitialize) {
+		this.watermarkStoreInitialize = watermarkStoreInitialize;
+	}
+
+	public boolean isRangeQueueInitialize() {
+		return rangeQueueInitialize;
+	}
+
+	public void setRangeQueueInitialize(boolean rangeQueueInitialize) {
+		this.rangeQueueInitialize = rangeQueueInitialize;
+	}
 }
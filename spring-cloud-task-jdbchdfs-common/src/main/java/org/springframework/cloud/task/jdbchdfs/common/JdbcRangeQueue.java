@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.Assert;
+
+/**
+ * Queue of the ranges of a partitioned step, kept in a table of the job repository so that
+ * workers running in other processes can share it.  Each queue is identified by the id of
+ * the job execution that created it and holds the partition clause of each range.
+ * <p>
+ * A worker claims the range with the lowest id that has no owner yet by setting itself as
+ * its owner.  The update only succeeds when the range is still unclaimed, so two workers
+ * racing for the same range never both get it and the loser simply tries the next one.
+ * Claimed ranges are never released, so each worker claims ranges of increasing ids.
+ * <p>
+ * The table is created by {@link #SCHEMA_LOCATION}, which is only run by the queue when
+ * schema initialization is enabled.  Otherwise the table is expected to exist.
+ *
+ * @author Glenn Renfro
+ */
+public class JdbcRangeQueue implements InitializingBean {
+
+	private static final Log log = LogFactory.getLog(JdbcRangeQueue.class);
+
+	public static final String TABLE_NAME = "JDBCHDFS_RANGE_QUEUE";
+
+	public static final String SCHEMA_LOCATION = "classpath:org/springframework/cloud/task/jdbchdfs/common/schema-range-queue.sql";
+
+	private final DataSource dataSource;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private boolean initializeSchema;
+
+	/**
+	 * @param dataSource the data source of the job repository.
+	 */
+	public JdbcRangeQueue(DataSource dataSource) {
+		Assert.notNull(dataSource, "dataSource must be set");
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Checks that the queue table exists, creating it first when schema initialization is
+	 * enabled.
+	 */
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		if (tableExists()) {
+			return;
+		}
+		Assert.state(initializeSchema, "The range queue table " + TABLE_NAME + " does not exist, create it with "
+				+ SCHEMA_LOCATION + " or enable the initialization of its schema");
+		log.info("Creating range queue table " + TABLE_NAME + " with " + SCHEMA_LOCATION);
+		DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(
+				new DefaultResourceLoader().getResource(SCHEMA_LOCATION)), dataSource);
+	}
+
+	private boolean tableExists() {
+		try {
+			jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE 1 = 0", Integer.class);
+			return true;
+		}
+		catch (DataAccessException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Adds the ranges to a queue, replacing the ranges it held before.
+	 *
+	 * @param queueId the id of the queue.
+	 * @param partClauses the partition clause of each range, in the order they are claimed.
+	 */
+	public void offer(final long queueId, final List<String> partClauses) {
+		delete(queueId);
+		jdbcTemplate.batchUpdate("INSERT INTO " + TABLE_NAME + " (QUEUE_ID, RANGE_ID, PART_CLAUSE) VALUES (?, ?, ?)",
+				new BatchPreparedStatementSetter() {
+
+					@Override
+					public void setValues(PreparedStatement ps, int i) throws SQLException {
+						ps.setLong(1, queueId);
+						ps.setInt(2, i);
+						ps.setString(3, partClauses.get(i));
+					}
+
+					@Override
+					public int getBatchSize() {
+						return partClauses.size();
+					}
+				});
+		log.debug("Queued " + partClauses.size() + " ranges in queue " + queueId);
+	}
+
+	/**
+	 * Claims the next range of a queue.
+	 *
+	 * @param queueId the id of the queue.
+	 * @param owner the name of the worker claiming the range.
+	 * @return the id of the claimed range or {@code null} if all ranges are claimed.
+	 */
+	public Integer claim(long queueId, String owner) {
+		while (true) {
+			Integer rangeId = jdbcTemplate.queryForObject("SELECT MIN(RANGE_ID) FROM " + TABLE_NAME
+					+ " WHERE QUEUE_ID = ? AND OWNER IS NULL", Integer.class, queueId);
+			if (rangeId == null) {
+				return null;
+			}
+			if (jdbcTemplate.update("UPDATE " + TABLE_NAME + " SET OWNER = ? WHERE QUEUE_ID = ? AND RANGE_ID = ? "
+					+ "AND OWNER IS NULL", owner, queueId, rangeId) == 1) {
+				log.debug(owner + " claimed range " + rangeId + " of queue " + queueId);
+				return rangeId;
+			}
+		}
+	}
+
+	/**
+	 * @param queueId the id of the queue.
+	 * @param owner the name of the worker.
+	 * @param afterRangeId the id of the range the claims are returned after.
+	 * @return the ids of the ranges claimed by the worker after the given range, in the
+	 * order they were claimed.
+	 */
+	public List<Integer> getClaimed(long queueId, String owner, long afterRangeId) {
+		return jdbcTemplate.queryForList("SELECT RANGE_ID FROM " + TABLE_NAME + " WHERE QUEUE_ID = ? AND OWNER = ? "
+				+ "AND RANGE_ID > ? ORDER BY RANGE_ID", Integer.class, queueId, owner, afterRangeId);
+	}
+
+	/**
+	 * @param queueId the id of the queue.
+	 * @param rangeId the id of the range.
+	 * @return the partition clause of the range.
+	 */
+	public String getPartClause(long queueId, int rangeId) {
+		return jdbcTemplate.queryForObject("SELECT PART_CLAUSE FROM " + TABLE_NAME + " WHERE QUEUE_ID = ? AND RANGE_ID = ?",
+				String.class, queueId, rangeId);
+	}
+
+	/**
+	 * Removes all ranges of a queue.
+	 *
+	 * @param queueId the id of the queue.
+	 */
+	public void delete(long queueId) {
+		jdbcTemplate.update("DELETE FROM " + TABLE_NAME + " WHERE QUEUE_ID = ?", queueId);
+	}
+
+	/**
+	 * Whether the queue table is created by {@link #afterPropertiesSet()} when it does not
+	 * exist.
+	 *
+	 * @param initializeSchema true to run {@link #SCHEMA_LOCATION}, defaults to false.
+	 */
+	public void setInitializeSchema(boolean initializeSchema) {
+		this.initializeSchema = initializeSchema;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.Timestamp;
+import java.util.List;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.util.Assert;
+
+/**
+ * Store of the watermarks of incremental imports, kept in a table of the job repository
+ * with one row per task and check column.  The row is looked up by its primary key, so
+ * finding the watermark of the previous run does not depend on the number of executions
+ * the job repository holds.
+ * <p>
+ * Each row also holds the id of the job execution that saved it.  A watermark is only
+ * replaced by a later job execution, so a run that completes after a newer one can not
+ * move the watermark back.
+ * <p>
+ * The table is created by {@link #SCHEMA_LOCATION}, which is only run by the store when
+ * schema initialization is enabled.  Otherwise the table is expected to exist, when it
+ * does not {@link #isAvailable()} tells the store can not be used.
+ *
+ * @author Glenn Renfro
+ */
+public class JdbcWatermarkStore implements InitializingBean {
+
+	private static final Log log = LogFactory.getLog(JdbcWatermarkStore.class);
+
+	public static final String TABLE_NAME = "JDBCHDFS_WATERMARK";
+
+	public static final String SCHEMA_LOCATION = "classpath:org/springframework/cloud/task/jdbchdfs/common/schema-watermark.sql";
+
+	private final DataSource dataSource;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private boolean initializeSchema;
+
+	private boolean available;
+
+	/**
+	 * @param dataSource the data source of the job repository.
+	 */
+	public JdbcWatermarkStore(DataSource dataSource) {
+		Assert.notNull(dataSource, "dataSource must be set");
+		this.dataSource = dataSource;
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * Checks that the watermark table exists, creating it first when schema initialization
+	 * is enabled.
+	 */
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		available = tableExists();
+		if (!available && initializeSchema) {
+			log.info("Creating watermark table " + TABLE_NAME + " with " + SCHEMA_LOCATION);
+			try {
+				DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(
+						new DefaultResourceLoader().getResource(SCHEMA_LOCATION)), dataSource);
+				available = true;
+			}
+			catch (DataAccessException e) {
+				log.warn("Unable to create watermark table " + TABLE_NAME, e);
+			}
+		}
+		else if (!available) {
+			log.warn("The watermark table " + TABLE_NAME + " does not exist, it is created by " + SCHEMA_LOCATION);
+		}
+	}
+
+	/**
+	 * @return whether the watermark table exists, as found by {@link #afterPropertiesSet()}.
+	 */
+	public boolean isAvailable() {
+		return available;
+	}
+
+	private boolean tableExists() {
+		try {
+			jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE 1 = 0", Integer.class);
+			return true;
+		}
+		catch (DataAccessException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param taskName the name of the task.
+	 * @param checkColumn the check column of the import.
+	 * @return the watermark saved by the last run or {@code null} if none was saved.
+	 */
+	public Long find(String taskName, String checkColumn) {
+		List<Long> watermarks = jdbcTemplate.queryForList("SELECT WATERMARK FROM " + TABLE_NAME
+				+ " WHERE TASK_NAME = ? AND CHECK_COLUMN = ?", Long.class, taskName, checkColumn);
+		return watermarks.isEmpty() ? null : watermarks.get(0);
+	}
+
+	/**
+	 * Saves the watermark of a run, unless a later job execution already saved one.
+	 *
+	 * @param taskName the name of the task.
+	 * @param checkColumn the check column of the import.
+	 * @param watermark the largest value of the check column the run read.
+	 * @param jobExecutionId the id of the job execution of the run.
+	 * @return whether the watermark was saved.
+	 */
+	public boolean save(String taskName, String checkColumn, long watermark, long jobExecutionId) {
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		String update = "UPDATE " + TABLE_NAME + " SET WATERMARK = ?, JOB_EXECUTION_ID = ?, LAST_UPDATED = ? "
+				+ "WHERE TASK_NAME = ? AND CHECK_COLUMN = ? AND JOB_EXECUTION_ID <= ?";
+		if (jdbcTemplate.update(update, watermark, jobExecutionId, now, taskName, checkColumn, jobExecutionId) == 1) {
+			return true;
+		}
+		try {
+			jdbcTemplate.update("INSERT INTO " + TABLE_NAME + " (TASK_NAME, CHECK_COLUMN, WATERMARK, JOB_EXECUTION_ID, "
+					+ "LAST_UPDATED) VALUES (?, ?, ?, ?, ?)", taskName, checkColumn, watermark, jobExecutionId, now);
+			return true;
+		}
+		catch (DuplicateKeyException e) {
+			// a later job execution saved its watermark, or another run inserted the row first
+			return jdbcTemplate.update(update, watermark, jobExecutionId, now, taskName, checkColumn, jobExecutionId) == 1;
+		}
+	}
+
+	/**
+	 * @param initializeSchema whether the watermark table is created by
+	 * {@link #afterPropertiesSet()} when it does not exist, defaults to false.
+	 */
+	public void setInitializeSchema(boolean initializeSchema) {
+		this.initializeSchema = initializeSchema;
+	}
+}
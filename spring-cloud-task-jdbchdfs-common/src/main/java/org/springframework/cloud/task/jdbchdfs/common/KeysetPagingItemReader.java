@@ -0,0 +1,449 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.database.Order;
+import org.springframework.batch.item.database.PagingQueryProvider;
+import org.springframework.batch.item.database.support.SqlPagingQueryProviderFactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.LatencyHistogram;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.StepMetrics;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Reader that fetches the rows in pages ordered by a unique key column, each page starting
+ * after the last key of the previous one ({@code WHERE key > ? ORDER BY key}, limited to
+ * the page size in the dialect of the database).  Unlike a cursor, no connection or
+ * transaction is held open between pages.
+ * <p>
+ * The key of the last item read is saved in the execution context at each commit, so a
+ * restarted reader seeks directly to the first item that the writer did not report as
+ * durable instead of reading the partition again from its start.  When prefetching is
+ * enabled, the next page is fetched on a background thread while the items of the
+ * current page are processed.
+ * <p>
+ * The key column must be selected and unique, rows that share a key with the last row of
+ * a page would be skipped by the next one.  A key repeated within a page fails the read,
+ * and so does the last key of a full page when a count of its rows finds more than one.
+ * A row mapper that is a {@link StepExecutionListener} is notified of the step along with
+ * this reader, so that it publishes its metrics.  The time spent waiting for each row, the
+ * queries of the pages included, is then published with {@link StepMetrics} as the fetch
+ * latencies, in place of those of a cursor.
+ *
+ * @author Glenn Renfro
+ */
+public class KeysetPagingItemReader<T> extends ItemStreamSupport
+		implements ItemStreamReader<T>, StepExecutionListener, InitializingBean {
+
+	private static final Log log = LogFactory.getLog(KeysetPagingItemReader.class);
+
+	private static final String READ_COUNT = "read.count";
+
+	private static final String KEYS = "keys";
+
+	private DataSource dataSource;
+
+	private String selectClause;
+
+	private String fromClause;
+
+	private String whereClause;
+
+	private String keyColumn;
+
+	private int pageSize = 1000;
+
+	private boolean prefetch;
+
+	private RowMapper<T> rowMapper;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private String firstPageQuery;
+
+	private String remainingPagesQuery;
+
+	private String keyCountQuery;
+
+	private ExecutorService executor;
+
+	private Future<Page<T>> nextPage;
+
+	private Page<T> page;
+
+	private int current;
+
+	private long readCount;
+
+	private Object lastKey;
+
+	// the key of the last item read at each commit that may not be durable yet
+	private final Map<Long, Object> checkpoints = new LinkedHashMap<>();
+
+	private final LatencyHistogram fetchLatencies = new LatencyHistogram();
+
+	private long pagesRead;
+
+	public KeysetPagingItemReader() {
+		setName(KeysetPagingItemReader.class.getSimpleName());
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(dataSource, "dataSource must be set");
+		Assert.hasText(selectClause, "selectClause must be set");
+		Assert.hasText(fromClause, "fromClause must be set");
+		Assert.hasText(keyColumn, "keyColumn must be set");
+		Assert.notNull(rowMapper, "rowMapper must be set");
+		Assert.isTrue(pageSize > 0, "pageSize must be greater than 0");
+		Assert.isTrue(isSelected(keyColumn), "The key column " + keyColumn + " must be one of the columns selected, "
+				+ selectClause);
+
+		SqlPagingQueryProviderFactoryBean providerFactory = new SqlPagingQueryProviderFactoryBean();
+		providerFactory.setDataSource(dataSource);
+		providerFactory.setSelectClause(selectClause);
+		providerFactory.setFromClause(fromClause);
+		providerFactory.setWhereClause(whereClause);
+		Map<String, Order> sortKeys = new LinkedHashMap<>();
+		sortKeys.put(keyColumn, Order.ASCENDING);
+		providerFactory.setSortKeys(sortKeys);
+		PagingQueryProvider queryProvider = providerFactory.getObject();
+		firstPageQuery = queryProvider.generateFirstPageQuery(pageSize);
+		remainingPagesQuery = queryProvider.generateRemainingPagesQuery(pageSize);
+		log.debug("Reading pages with: " + remainingPagesQuery);
+		keyCountQuery = "SELECT COUNT(*) FROM " + fromClause + " WHERE "
+				+ (StringUtils.hasText(whereClause) ? "(" + whereClause + ") AND " : "") + keyColumn + " = ?";
+
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate.setFetchSize(pageSize);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		page = null;
+		nextPage = null;
+		readCount = 0;
+		lastKey = null;
+		checkpoints.clear();
+		if (prefetch && executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "keyset-prefetch-" + Integer.toHexString(System.identityHashCode(KeysetPagingItemReader.this)));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		if (executionContext.containsKey(getExecutionContextKey(KEYS))) {
+			long target = executionContext.getLong(getExecutionContextKey(READ_COUNT));
+			if (executionContext.containsKey(HdfsTextItemWriter.DURABLE_ITEM_COUNT)) {
+				target = Math.min(target, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+			}
+			Map<Long, Object> saved = (Map<Long, Object>) executionContext.get(getExecutionContextKey(KEYS));
+			for (Map.Entry<Long, Object> checkpoint : saved.entrySet()) {
+				if (checkpoint.getKey() <= target) {
+					checkpoints.put(checkpoint.getKey(), checkpoint.getValue());
+					if (checkpoint.getKey() >= readCount) {
+						readCount = checkpoint.getKey();
+						lastKey = checkpoint.getValue();
+					}
+				}
+			}
+			log.info("Resuming after key " + lastKey + " at item " + readCount);
+			try {
+				while (readCount < target && read() != null) {
+					// skip the items read after the checkpoint
+				}
+			}
+			catch (Exception e) {
+				throw new ItemStreamException("Unable to resume after key " + lastKey, e);
+			}
+		}
+	}
+
+	@Override
+	public T read() throws Exception {
+		long start = System.nanoTime();
+		T item = readNext();
+		fetchLatencies.record(System.nanoTime() - start);
+		return item;
+	}
+
+	private T readNext() throws Exception {
+		if (page == null || current >= page.size()) {
+			if (page != null && page.size() < pageSize) {
+				return null;
+			}
+			page = nextPage != null ? await(nextPage) : fetch(page != null ? page.getLastKey() : lastKey);
+			nextPage = null;
+			current = 0;
+			pagesRead++;
+			if (page.size() == 0) {
+				return null;
+			}
+			if (executor != null && page.size() == pageSize) {
+				final Object after = page.getLastKey();
+				nextPage = executor.submit(new Callable<Page<T>>() {
+
+					@Override
+					public Page<T> call() throws Exception {
+						return fetch(after);
+					}
+				});
+			}
+		}
+		lastKey = page.keys.get(current);
+		readCount++;
+		return page.items.get(current++);
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		checkpoints.put(readCount, lastKey);
+		long durableItems = executionContext.containsKey(HdfsTextItemWriter.DURABLE_ITEM_COUNT)
+				? executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT) : readCount;
+		// only the last checkpoint at or before the durable item is needed to resume
+		long resume = 0;
+		for (Long count : checkpoints.keySet()) {
+			if (count <= durableItems) {
+				resume = Math.max(resume, count);
+			}
+		}
+		for (Iterator<Long> counts = checkpoints.keySet().iterator(); counts.hasNext();) {
+			if (counts.next() < resume) {
+				counts.remove();
+			}
+		}
+		executionContext.put(getExecutionContextKey(KEYS), new LinkedHashMap<>(checkpoints));
+		executionContext.putLong(getExecutionContextKey(READ_COUNT), readCount);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (nextPage != null) {
+			nextPage.cancel(true);
+			nextPage = null;
+		}
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+		page = null;
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		if (rowMapper instanceof StepExecutionListener) {
+			((StepExecutionListener) rowMapper).beforeStep(stepExecution);
+		}
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		ExitStatus exitStatus = null;
+		if (rowMapper instanceof StepExecutionListener) {
+			exitStatus = ((StepExecutionListener) rowMapper).afterStep(stepExecution);
+		}
+		// the rows are not read from a cursor of the row mapper, the pages replace its fetches
+		StepMetrics.putLatencies(stepExecution, "fetch", fetchLatencies);
+		log.info("Partition " + StepMetrics.getPartition(stepExecution) + " read " + pagesRead + " pages, fetch "
+				+ fetchLatencies);
+		return exitStatus;
+	}
+
+	private Page<T> fetch(Object after) {
+		ResultSetExtractor<Page<T>> extractor = new ResultSetExtractor<Page<T>>() {
+
+			@Override
+			public Page<T> extractData(ResultSet rs) throws SQLException, DataAccessException {
+				Page<T> rows = new Page<>(pageSize);
+				int rowNum = 0;
+				while (rs.next()) {
+					Object key = rs.getObject(keyColumn);
+					if (rowNum > 0 && key != null && key.equals(rows.getLastKey())) {
+						throw new IllegalStateException(getDuplicateKeyMessage(key));
+					}
+					rows.items.add(rowMapper.mapRow(rs, rowNum++));
+					rows.keys.add(key);
+				}
+				return rows;
+			}
+		};
+		Page<T> page;
+		if (after == null) {
+			page = jdbcTemplate.query(firstPageQuery, extractor);
+		}
+		else {
+			page = jdbcTemplate.query(remainingPagesQuery, extractor, after);
+		}
+		if (page.size() == pageSize) {
+			// the next page starts after the last key, which must not have rows left behind
+			Long rows = jdbcTemplate.queryForObject(keyCountQuery, Long.class, page.getLastKey());
+			if (rows != null && rows > 1) {
+				throw new IllegalStateException(getDuplicateKeyMessage(page.getLastKey()));
+			}
+		}
+		return page;
+	}
+
+	private String getDuplicateKeyMessage(Object key) {
+		return "The key column " + keyColumn + " is not unique, " + key + " is the key of more than one row "
+				+ "and the rows after the first would be skipped";
+	}
+
+	/**
+	 * @return whether the column is one of the columns of the select clause, as named in
+	 * the result set.
+	 */
+	private boolean isSelected(String column) {
+		for (String selected : StringUtils.commaDelimitedListToStringArray(selectClause)) {
+			String label = selected.trim();
+			if (label.equals("*") || label.endsWith(".*")) {
+				return true;
+			}
+			// the alias of an expression, otherwise the column without its table
+			label = label.substring(label.lastIndexOf(' ') + 1);
+			label = label.substring(label.lastIndexOf('.') + 1);
+			if (label.equalsIgnoreCase(column)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Page<T> await(Future<Page<T>> future) throws Exception {
+		try {
+			return future.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * @param selectClause the columns to select, including the key column.
+	 */
+	public void setSelectClause(String selectClause) {
+		this.selectClause = selectClause;
+	}
+
+	/**
+	 * @param fromClause the table to read.
+	 */
+	public void setFromClause(String fromClause) {
+		this.fromClause = fromClause;
+	}
+
+	/**
+	 * @param whereClause the condition of the rows to read without the {@code WHERE} keyword,
+	 * {@code null} to read all rows.
+	 */
+	public void setWhereClause(String whereClause) {
+		this.whereClause = whereClause;
+	}
+
+	/**
+	 * @param keyColumn the unique column the pages are ordered by, ideally indexed, which
+	 * must be selected.
+	 */
+	public void setKeyColumn(String keyColumn) {
+		this.keyColumn = keyColumn;
+	}
+
+	/**
+	 * @param pageSize the number of rows fetched by each query, defaults to 1000.
+	 */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @param prefetch whether the next page is fetched on a background thread while the
+	 * current page is processed.
+	 */
+	public void setPrefetch(boolean prefetch) {
+		this.prefetch = prefetch;
+	}
+
+	/**
+	 * @param rowMapper the mapper creating the items from the rows.
+	 */
+	public void setRowMapper(RowMapper<T> rowMapper) {
+		this.rowMapper = rowMapper;
+	}
+
+	private static class Page<T> {
+
+		private final List<T> items;
+
+		private final List<Object> keys;
+
+		Page(int pageSize) {
+			items = new ArrayList<>(pageSize);
+			keys = new ArrayList<>(pageSize);
+		}
+
+		int size() {
+			return items.size();
+		}
+
+		Object getLastKey() {
+			return keys.get(keys.size() - 1);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.batch.core.JobExecutionException;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.partition.StepExecutionSplitter;
+
+/**
+ * Orders the step executions of the partitions by their estimated number of rows, from
+ * the largest to the smallest, as saved by {@link MultiTablePartitioner}.  The partition
+ * handlers start the workers in the order of the step executions, so that with fewer
+ * workers than partitions each free worker takes the largest partition left, which keeps
+ * the last partitions to finish short.  Partitions of the same size are ordered by name.
+ *
+ * @author Glenn Renfro
+ */
+public class LargestFirstStepExecutionSplitter implements StepExecutionSplitter {
+
+	private final StepExecutionSplitter delegate;
+
+	/**
+	 * @param delegate the splitter creating the step executions, usually a
+	 * {@link org.springframework.batch.core.partition.support.SimpleStepExecutionSplitter}.
+	 */
+	public LargestFirstStepExecutionSplitter(StepExecutionSplitter delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public String getStepName() {
+		return delegate.getStepName();
+	}
+
+	@Override
+	public Set<StepExecution> split(StepExecution stepExecution, int gridSize) throws JobExecutionException {
+		List<StepExecution> stepExecutions = new ArrayList<>(delegate.split(stepExecution, gridSize));
+		Collections.sort(stepExecutions, new Comparator<StepExecution>() {
+
+			@Override
+			public int compare(StepExecution left, StepExecution right) {
+				int bySize = Long.compare(MultiTablePartitioner.getEstimatedRows(right.getExecutionContext()),
+						MultiTablePartitioner.getEstimatedRows(left.getExecutionContext()));
+				return bySize != 0 ? bySize : left.getStepName().compareTo(right.getStepName());
+			}
+		});
+		return new LinkedHashSet<>(stepExecutions);
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.springframework.data.hadoop.store.DataStoreWriter;
+import org.springframework.data.hadoop.store.StoreException;
+import org.springframework.data.hadoop.store.event.FileWrittenEvent;
+import org.springframework.data.hadoop.store.event.StoreEventPublisher;
+import org.springframework.data.hadoop.store.support.OutputContext;
+import org.springframework.data.hadoop.store.support.OutputStoreObjectSupport;
+import org.springframework.util.Assert;
+
+/**
+ * {@link DataStoreWriter} that writes uncompressed files of the local file system, or of
+ * a file system mounted locally, with a {@link FileChannel} instead of the output streams
+ * of the hadoop file system.  The data is gathered in a direct buffer that is written to
+ * the channel once full, without the checksum files and the layers of buffering of the
+ * hadoop local file system.  The names of the files, their rollover and the suffix of the
+ * file being written are handled as by
+ * {@link org.springframework.data.hadoop.store.output.OutputStreamWriter}.
+ * <p>
+ * {@link #flush()} hands the buffered data to the operating system, as flushing a stream
+ * of the hadoop local file system does, and does not force it to the disk.  When a
+ * preallocation size is set, the length of the file is extended by that many bytes
+ * whenever the data reaches its end and cut back to the data written when it is closed.
+ * On file systems that allocate the blocks of a file lazily only the length is reserved.
+ *
+ * @author Glenn Renfro
+ */
+public class LocalFileChannelWriter extends OutputStoreObjectSupport implements ByteRangeDataStoreWriter {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalFileChannelWriter.class);
+
+	public static final int DEFAULT_BUFFER_SIZE = 1048576;
+
+	private static final int MAX_OPEN_ATTEMPTS = 10;
+
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	private long preallocationSize;
+
+	private ByteBuffer buffer;
+
+	private RandomAccessFile file;
+
+	private FileChannel channel;
+
+	private Path path;
+
+	private long position;
+
+	private long allocated;
+
+	/**
+	 * @param configuration the hadoop configuration.
+	 * @param basePath the directory the files are written to, on a local file system.
+	 */
+	public LocalFileChannelWriter(Configuration configuration, Path basePath) {
+		super(configuration, basePath, null);
+	}
+
+	/**
+	 * Tells whether the files of a directory can be written by a {@link LocalFileChannelWriter},
+	 * which is when the directory resolves to the local file system.
+	 *
+	 * @param configuration the hadoop configuration holding the default file system.
+	 * @param basePath the directory the files are written to.
+	 * @return whether the directory is on the local file system.
+	 * @throws IOException if the file system of the directory can not be resolved.
+	 */
+	public static boolean isSupported(Configuration configuration, Path basePath) throws IOException {
+		return "file".equals(basePath.getFileSystem(configuration).getUri().getScheme());
+	}
+
+	/**
+	 * @param bufferSize the number of bytes gathered before they are written to the file,
+	 * defaults to {@link #DEFAULT_BUFFER_SIZE}.
+	 */
+	public void setBufferSize(int bufferSize) {
+		Assert.isTrue(bufferSize > 0, "bufferSize must be greater than 0");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @param preallocationSize the number of bytes the length of a file is extended by
+	 * ahead of the data, 0 not to extend it.
+	 */
+	public void setPreallocationSize(long preallocationSize) {
+		this.preallocationSize = preallocationSize;
+	}
+
+	@Override
+	public void write(byte[] entity) throws IOException {
+		write(entity, 0, entity.length);
+	}
+
+	@Override
+	public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+		if (channel == null) {
+			open();
+		}
+		if (length > buffer.remaining()) {
+			drain();
+		}
+		if (length > buffer.capacity()) {
+			// larger than the buffer, written as is rather than copied in pieces
+			reserve(length);
+			writeFully(ByteBuffer.wrap(bytes, offset, length));
+		}
+		else {
+			buffer.put(bytes, offset, length);
+		}
+		position += length;
+		setWritePosition(position);
+		OutputContext context = getOutputContext();
+		if (context.getRolloverState()) {
+			logger.info("Rolling over " + path + " after " + position + " bytes");
+			close();
+			context.rollStrategies();
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		if (channel != null) {
+			drain();
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			try {
+				drain();
+				if (allocated > position) {
+					channel.truncate(position);
+				}
+			}
+			finally {
+				file.close();
+				channel = null;
+				file = null;
+			}
+			Path writtenPath = renameFile(path);
+			StoreEventPublisher storeEventPublisher = getStoreEventPublisher();
+			if (storeEventPublisher != null) {
+				storeEventPublisher.publishEvent(new FileWrittenEvent(this, writtenPath));
+			}
+			path = null;
+		}
+	}
+
+	/**
+	 * Opens the first file whose name is free, rolling the naming strategies past the
+	 * files that already exist.
+	 */
+	private void open() throws IOException {
+		Path candidate = getResolvedPath();
+		File target = new File(candidate.toUri().getPath());
+		int attempts = 1;
+		while (target.exists() && !isOverwrite()) {
+			if (attempts++ >= MAX_OPEN_ATTEMPTS) {
+				throw new StoreException("Unable to find a free file name after " + MAX_OPEN_ATTEMPTS
+						+ " attempts, last tried " + candidate);
+			}
+			getOutputContext().rollStrategies();
+			candidate = getResolvedPath();
+			target = new File(candidate.toUri().getPath());
+		}
+		File directory = target.getParentFile();
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Unable to create the directory " + directory);
+		}
+		logger.info("Creating output for path " + candidate);
+		file = new RandomAccessFile(target, "rw");
+		file.setLength(0);
+		channel = file.getChannel();
+		path = candidate;
+		position = 0;
+		allocated = 0;
+		if (buffer == null || buffer.capacity() != bufferSize) {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+		buffer.clear();
+	}
+
+	private void drain() throws IOException {
+		if (buffer.position() > 0) {
+			buffer.flip();
+			reserve(buffer.remaining());
+			writeFully(buffer);
+			buffer.clear();
+		}
+	}
+
+	private void writeFully(ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) {
+			channel.write(data);
+		}
+	}
+
+	/**
+	 * Extends the length of the file ahead of the data when it would be written past it.
+	 */
+	private void reserve(int length) throws IOException {
+		if (preallocationSize > 0) {
+			long end = channel.position() + length;
+			if (end > allocated) {
+				allocated = end + preallocationSize;
+				file.setLength(allocated);
+			}
+		}
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.core.partition.support.Partitioner;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.DatabaseMetaDataCallback;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.util.Assert;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Partitions several tables at once, so that a single task extracts all of them.  The
+ * tables are either listed or found in the catalog of a schema, keeping those whose name
+ * matches the include pattern and not the exclude pattern.  Each table is planned up front
+ * by an {@link IncrementalColumnRangePartitioner} of its own, on the partition column set
+ * or otherwise on its primary key when it is made of a single column.  Tables without a
+ * partition column are read by a single partition.
+ * <p>
+ * The partitions of all the tables are returned together, ordered by their estimated
+ * number of rows from the largest to the smallest, and hold the name of their table under
+ * {@link #TABLE_NAME}.  Once the workers are started in that order, see
+ * {@link LargestFirstStepExecutionSplitter}, the largest partitions do not end up running
+ * alone at the end of the step.  The rows of a table are estimated as planned by its
+ * partitioner when a target number of rows per partition is set, otherwise they are
+ * counted, and split evenly among its partitions.
+ * <p>
+ * The plan of each table is saved in the step execution context under the name of the
+ * table, along with the tables found, so that a restarted step has the same partitions.
+ * Incremental imports and range queues are not supported across tables.
+ *
+ * @author Glenn Renfro
+ */
+public class MultiTablePartitioner implements Partitioner, StepExecutionListener, InitializingBean {
+
+	private static final Log log = LogFactory.getLog(MultiTablePartitioner.class);
+
+	public static final String TABLE_NAME = "tableName";
+
+	public static final String TABLES = "batch.partition.tables";
+
+	private DataSource dataSource;
+
+	private JdbcOperations jdbcTemplate;
+
+	private List<String> tables;
+
+	private String schema;
+
+	private Pattern includePattern;
+
+	private Pattern excludePattern;
+
+	private String partitionColumn;
+
+	private ObjectFactory<IncrementalColumnRangePartitioner> partitionerFactory;
+
+	// the partitioner and the planning step execution of each table, in the order of the tables
+	private final Map<String, IncrementalColumnRangePartitioner> tablePartitioners = new LinkedHashMap<>();
+
+	private final Map<String, StepExecution> tableExecutions = new LinkedHashMap<>();
+
+	private long planningTime;
+
+	private ExecutionContext stepContext;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(dataSource, "dataSource must be set");
+		Assert.notNull(partitionerFactory, "partitionerFactory must be set");
+		Assert.isTrue(!CollectionUtils.isEmpty(tables) || StringUtils.hasText(schema), "tables or schema must be set");
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		long start = System.currentTimeMillis();
+		this.stepContext = stepExecution.getExecutionContext();
+		List<String> names;
+		if (stepContext.containsKey(TABLES)) {
+			// a restarted step keeps the tables of the first execution so that the partitions match
+			names = Arrays.asList(StringUtils.commaDelimitedListToStringArray(stepContext.getString(TABLES)));
+		}
+		else {
+			names = findTables();
+			stepContext.putString(TABLES, StringUtils.collectionToCommaDelimitedString(names));
+		}
+		if (names.isEmpty()) {
+			throw new IllegalStateException("No table of " + schema + " matches " + includePattern
+					+ (excludePattern != null ? " but not " + excludePattern : ""));
+		}
+
+		tablePartitioners.clear();
+		tableExecutions.clear();
+		for (String table : names) {
+			IncrementalColumnRangePartitioner partitioner = partitionerFactory.getObject();
+			partitioner.setTable(table);
+			partitioner.setColumn(StringUtils.hasText(partitionColumn) ? partitionColumn : findPrimaryKey(table));
+			StepExecution tableExecution = new StepExecution(stepExecution.getStepName(), stepExecution.getJobExecution());
+			String prefix = getPrefix(table);
+			for (Map.Entry<String, Object> entry : stepContext.entrySet()) {
+				if (entry.getKey().startsWith(prefix)) {
+					tableExecution.getExecutionContext().put(entry.getKey().substring(prefix.length()), entry.getValue());
+				}
+			}
+			partitioner.beforeStep(tableExecution);
+			ExecutionContext tableContext = tableExecution.getExecutionContext();
+			if (!tableContext.containsKey(IncrementalColumnRangePartitioner.ESTIMATED_ROWS)) {
+				tableContext.putLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS,
+						jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class));
+			}
+			for (Map.Entry<String, Object> entry : tableContext.entrySet()) {
+				stepContext.put(prefix + entry.getKey(), entry.getValue());
+			}
+			tablePartitioners.put(table, partitioner);
+			tableExecutions.put(table, tableExecution);
+		}
+		this.planningTime = System.currentTimeMillis() - start;
+		stepContext.putLong(IncrementalColumnRangePartitioner.PLANNING_TIME, planningTime);
+	}
+
+	/**
+	 * Partitions each table and orders the partitions of all the tables from the largest
+	 * to the smallest.  The partitions are named after their table, their execution
+	 * contexts hold {@link #TABLE_NAME} along with the keys set by
+	 * {@link IncrementalColumnRangePartitioner}.
+	 *
+	 * @see Partitioner#partition(int)
+	 */
+	@Override
+	public Map<String, ExecutionContext> partition(int gridSize) {
+		long start = System.currentTimeMillis();
+		List<Map.Entry<String, ExecutionContext>> partitions = new ArrayList<>();
+		long rows = 0;
+		for (Map.Entry<String, IncrementalColumnRangePartitioner> tablePartitioner : tablePartitioners.entrySet()) {
+			String table = tablePartitioner.getKey();
+			Map<String, ExecutionContext> tablePartitions = tablePartitioner.getValue().partition(gridSize);
+			long tableRows = tableExecutions.get(table).getExecutionContext()
+					.getLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS);
+			rows += tableRows;
+			for (Map.Entry<String, ExecutionContext> partition : tablePartitions.entrySet()) {
+				ExecutionContext value = partition.getValue();
+				value.putString(TABLE_NAME, table);
+				value.putLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS, tableRows / tablePartitions.size());
+				partitions.add(new AbstractMap.SimpleEntry<>(table + "-" + partition.getKey(), value));
+			}
+		}
+		Collections.sort(partitions, new Comparator<Map.Entry<String, ExecutionContext>>() {
+
+			@Override
+			public int compare(Map.Entry<String, ExecutionContext> left, Map.Entry<String, ExecutionContext> right) {
+				int bySize = Long.compare(getEstimatedRows(right.getValue()), getEstimatedRows(left.getValue()));
+				return bySize != 0 ? bySize : left.getKey().compareTo(right.getKey());
+			}
+		});
+		Map<String, ExecutionContext> result = new LinkedHashMap<>();
+		for (Map.Entry<String, ExecutionContext> partition : partitions) {
+			result.put(partition.getKey(), partition.getValue());
+		}
+
+		planningTime += System.currentTimeMillis() - start;
+		if (stepContext != null) {
+			stepContext.putLong(IncrementalColumnRangePartitioner.PLANNING_TIME, planningTime);
+		}
+		log.info("Planned " + result.size() + " partitions of " + tablePartitioners.size() + " tables holding about "
+				+ rows + " rows in " + planningTime + " ms");
+		return result;
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		return stepExecution.getExitStatus();
+	}
+
+	/**
+	 * @return the estimated number of rows of a partition, 0 when unknown.
+	 */
+	static long getEstimatedRows(ExecutionContext executionContext) {
+		return executionContext.getLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS, 0);
+	}
+
+	private static String getPrefix(String table) {
+		return TABLES + "[" + table + "].";
+	}
+
+	/**
+	 * @return the tables set, or the tables of the schema whose name matches the patterns.
+	 */
+	private List<String> findTables() {
+		if (!CollectionUtils.isEmpty(tables)) {
+			return tables;
+		}
+		try {
+			@SuppressWarnings("unchecked")
+			List<String> found = (List<String>) JdbcUtils.extractDatabaseMetaData(dataSource, new DatabaseMetaDataCallback() {
+
+				@Override
+				public Object processMetaData(DatabaseMetaData metaData) throws SQLException {
+					List<String> found = new ArrayList<>();
+					try (ResultSet rs = metaData.getTables(null, toStoredCase(metaData, schema), "%", new String[] {"TABLE"})) {
+						while (rs.next()) {
+							String name = rs.getString("TABLE_NAME");
+							if ((includePattern == null || includePattern.matcher(name).matches())
+									&& (excludePattern == null || !excludePattern.matcher(name).matches())) {
+								found.add(schema + "." + name);
+							}
+						}
+					}
+					return found;
+				}
+			});
+			log.info("Found " + found.size() + " tables to extract in " + schema + ": " + found);
+			return found;
+		}
+		catch (MetaDataAccessException e) {
+			throw new IllegalStateException("Unable to read the tables of " + schema, e);
+		}
+	}
+
+	/**
+	 * @return the column of the primary key of a table, or {@code null} when it has none
+	 * or it is made of several columns.
+	 */
+	private String findPrimaryKey(final String table) {
+		try {
+			String primaryKey = (String) JdbcUtils.extractDatabaseMetaData(dataSource, new DatabaseMetaDataCallback() {
+
+				@Override
+				public Object processMetaData(DatabaseMetaData metaData) throws SQLException {
+					int separator = table.lastIndexOf('.');
+					String tableSchema = separator >= 0 ? toStoredCase(metaData, table.substring(0, separator)) : null;
+					List<String> columns = new ArrayList<>();
+					try (ResultSet rs = metaData.getPrimaryKeys(null, tableSchema,
+							toStoredCase(metaData, table.substring(separator + 1)))) {
+						while (rs.next()) {
+							columns.add(rs.getString("COLUMN_NAME"));
+						}
+					}
+					return columns.size() == 1 ? columns.get(0) : null;
+				}
+			});
+			if (primaryKey == null) {
+				log.info("No single column primary key found for " + table + ", it is read by a single partition");
+			}
+			return primaryKey;
+		}
+		catch (MetaDataAccessException e) {
+			log.warn("Unable to read the primary key of " + table + ", it is read by a single partition", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the name as the database stores unquoted identifiers.
+	 */
+	private static String toStoredCase(DatabaseMetaData metaData, String name) throws SQLException {
+		if (name == null) {
+			return null;
+		}
+		if (metaData.storesUpperCaseIdentifiers()) {
+			return name.toUpperCase();
+		}
+		if (metaData.storesLowerCaseIdentifiers()) {
+			return name.toLowerCase();
+		}
+		return name;
+	}
+
+	/**
+	 * The data source for connecting to the database.
+	 *
+	 * @param dataSource a {@link DataSource}
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * @param tables the names of the tables to partition, schema qualified or not.
+	 */
+	public void setTables(List<String> tables) {
+		this.tables = tables;
+	}
+
+	/**
+	 * The schema whose tables are partitioned when no tables are set.
+	 *
+	 * @param schema the name of the schema.
+	 */
+	public void setSchema(String schema) {
+		this.schema = schema;
+	}
+
+	/**
+	 * @param includePattern the regular expression the names of the tables of the schema
+	 * must match, all tables when {@code null}.
+	 */
+	public void setIncludePattern(String includePattern) {
+		this.includePattern = StringUtils.hasText(includePattern)
+				? Pattern.compile(includePattern, Pattern.CASE_INSENSITIVE) : null;
+	}
+
+	/**
+	 * @param excludePattern the regular expression of the names of the tables of the schema
+	 * that are not partitioned.
+	 */
+	public void setExcludePattern(String excludePattern) {
+		this.excludePattern = StringUtils.hasText(excludePattern)
+				? Pattern.compile(excludePattern, Pattern.CASE_INSENSITIVE) : null;
+	}
+
+	/**
+	 * The column every table is partitioned on.
+	 *
+	 * @param partitionColumn the column name, {@code null} to partition each table on its
+	 * primary key.
+	 */
+	public void setPartitionColumn(String partitionColumn) {
+		this.partitionColumn = partitionColumn;
+	}
+
+	/**
+	 * The factory of the partitioners of the tables, configured but for their table and
+	 * column.
+	 *
+	 * @param partitionerFactory the factory of {@link IncrementalColumnRangePartitioner}.
+	 */
+	public void setPartitionerFactory(ObjectFactory<IncrementalColumnRangePartitioner> partitionerFactory) {
+		this.partitionerFactory = partitionerFactory;
+	}
+}
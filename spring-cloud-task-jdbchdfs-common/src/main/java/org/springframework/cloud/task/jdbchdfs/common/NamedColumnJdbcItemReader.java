@@ -18,9 +18,7 @@ package org.springframework.cloud.task.jdbchdfs.common;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import org.springframework.batch.item.database.JdbcCursorItemReader;
-import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.cloud.task.jdbchdfs.common.encoder.RowBuffer;
 
 /**
  * Reader which reads a row from a database as a delimited string from a
@@ -30,30 +28,10 @@ import org.springframework.jdbc.support.JdbcUtils;
  * @author Thomas Risberg
  * @author Michael Minella
  */
-public class NamedColumnJdbcItemReader extends JdbcCursorItemReader<String> {
-
-	private String delimiter;
+public class NamedColumnJdbcItemReader extends AbstractColumnJdbcItemReader<String> {
 
 	@Override
-	public void afterPropertiesSet() throws Exception {
-		setRowMapper(new RowMapper<String>() {
-			@Override
-			public String mapRow(ResultSet rs, int rowNum) throws SQLException {
-				StringBuilder builder = new StringBuilder();
-
-				for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
-					builder.append(JdbcUtils.getResultSetValue(rs, i, String.class))
-							.append(delimiter);
-				}
-
-				return builder.substring(0, builder.length() - delimiter.length());
-			}
-		});
-
-		super.afterPropertiesSet();
-	}
-
-	public void setDelimiter(String delimiter) {
-		this.delimiter = delimiter;
+	protected String mapRow(ResultSet rs) throws SQLException {
+		return encodeRow(rs).toString(RowBuffer.UTF_8);
 	}
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.Types;
+
+/**
+ * How {@link IncrementalColumnRangePartitioner} splits the values of the partition column
+ * into ranges.
+ *
+ * @author Glenn Renfro
+ */
+public enum PartitionColumnType {
+
+	/**
+	 * Chooses the type from the SQL type of the partition column.
+	 */
+	AUTO,
+
+	/**
+	 * Integral values, split into ranges of equal width or quantiles.
+	 */
+	NUMERIC,
+
+	/**
+	 * Dates and timestamps, split into time buckets of equal length or quantiles.
+	 */
+	TEMPORAL,
+
+	/**
+	 * Character values, split at points sampled from the sorted values.
+	 */
+	STRING;
+
+	/**
+	 * @param sqlType the type of the column as defined by {@link Types}.
+	 * @return the type the ranges of a column of the SQL type are computed for.
+	 */
+	public static PartitionColumnType fromSqlType(int sqlType) {
+		switch (sqlType) {
+			case Types.DATE:
+			case Types.TIME:
+			case Types.TIMESTAMP:
+				return TEMPORAL;
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+				return STRING;
+			default:
+				return NUMERIC;
+		}
+	}
+}
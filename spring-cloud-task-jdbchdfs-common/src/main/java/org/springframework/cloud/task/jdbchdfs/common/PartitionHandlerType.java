@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common;
+
+
+/**
+ * How the partitions of the extraction are run.
+ *
+ * @author Glenn Renfro
+ */
+public enum PartitionHandlerType {
+
+	/**
+	 * Launches a task for each partition with the {@code TaskLauncher} of the application,
+	 * so that the workers can run on other hosts.
+	 */
+	DEPLOYER,
+
+	/**
+	 * Runs the partitions on threads of the application itself, avoiding the startup of a
+	 * new application for each partition.
+	 */
+	THREADS
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * Reader that reads ahead of the step on a dedicated thread.  The thread reads the items of
+ * the delegate in chunks and queues them, so that the cursor is drained while the previous
+ * chunks are written.  At most {@code queueCapacity} chunks are queued, the thread waits
+ * once that limit is reached.  A failure of the delegate is rethrown by the read that
+ * reaches the chunk it failed on.
+ * <p>
+ * The delegate is only used by the reading thread once opened, its state is not saved.
+ * Instead the number of items returned by this reader is saved as the read count of the
+ * delegate, so that a restarted delegate resumes after the last item the step received,
+ * or after the last item the writer reported as durable when that is lower.  A delegate
+ * that is a {@link StepExecutionListener} is notified of the step along with this reader,
+ * so that it publishes its metrics.
+ *
+ * @author Glenn Renfro
+ */
+public class PipelinedItemReader<T> extends ItemStreamSupport
+		implements ItemStreamReader<T>, StepExecutionListener, InitializingBean {
+
+	private static final Log log = LogFactory.getLog(PipelinedItemReader.class);
+
+	// the key AbstractItemCountingItemStreamItemReader saves the read count under
+	private static final String READ_COUNT = "read.count";
+
+	// queued once all items were read, compared by identity
+	private final List<T> end = new ArrayList<>(0);
+
+	private AbstractItemCountingItemStreamItemReader<T> delegate;
+
+	private int chunkSize = 1000;
+
+	private int queueCapacity = 2;
+
+	private BlockingQueue<List<T>> queue;
+
+	private volatile Throwable failure;
+
+	private volatile boolean stopped;
+
+	private Thread thread;
+
+	private List<T> chunk;
+
+	private int current;
+
+	private int readCount;
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(delegate, "delegate must be set");
+		Assert.isTrue(chunkSize > 0, "chunkSize must be greater than 0");
+		Assert.isTrue(queueCapacity > 0, "queueCapacity must be greater than 0");
+		// the checkpoints of the delegate would be taken on the reading thread, ahead of the step
+		Assert.isTrue(!(delegate instanceof AbstractColumnJdbcItemReader)
+				|| ((AbstractColumnJdbcItemReader<?>) delegate).getCheckpointColumn() == null,
+				"The delegate can not save checkpoints when it is read ahead, checkpointColumn must not be set");
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		delegate.open(executionContext);
+		// the delegate moved its read count back to the durable item when it was ahead
+		readCount = executionContext.getInt(delegate.getExecutionContextKey(READ_COUNT), 0);
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		failure = null;
+		stopped = false;
+		chunk = null;
+		current = 0;
+		thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				produce();
+			}
+		}, "pipelined-reader-" + Integer.toHexString(System.identityHashCode(this)));
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public T read() throws Exception {
+		while (chunk == null || current >= chunk.size()) {
+			if (chunk == end) {
+				return null;
+			}
+			chunk = queue.take();
+			current = 0;
+			if (chunk == end && failure != null) {
+				if (failure instanceof Exception) {
+					throw (Exception) failure;
+				}
+				throw new IllegalStateException("Reading thread failed", failure);
+			}
+		}
+		readCount++;
+		return chunk.get(current++);
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		executionContext.putInt(delegate.getExecutionContextKey(READ_COUNT), readCount);
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		if (thread != null) {
+			stopped = true;
+			thread.interrupt();
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			thread = null;
+		}
+		queue = null;
+		chunk = null;
+		delegate.close();
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+		if (delegate instanceof StepExecutionListener) {
+			((StepExecutionListener) delegate).beforeStep(stepExecution);
+		}
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		if (delegate instanceof StepExecutionListener) {
+			return ((StepExecutionListener) delegate).afterStep(stepExecution);
+		}
+		return null;
+	}
+
+	private void produce() {
+		try {
+			while (!stopped) {
+				List<T> items = new ArrayList<>(chunkSize);
+				T item = null;
+				while (items.size() < chunkSize && (item = delegate.read()) != null) {
+					items.add(item);
+				}
+				if (!items.isEmpty()) {
+					queue.put(items);
+				}
+				if (item == null) {
+					break;
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			// closed before all items were read
+			return;
+		}
+		catch (Throwable t) {
+			log.debug("Reading thread failed", t);
+			failure = t;
+		}
+		try {
+			queue.put(end);
+		}
+		catch (InterruptedException e) {
+			// closed before the end was read
+		}
+	}
+
+	/**
+	 * The reader the items are read from.  It must not be used by anything else once opened.
+	 *
+	 * @param delegate the reader to read ahead of.
+	 */
+	public void setDelegate(AbstractItemCountingItemStreamItemReader<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param chunkSize the number of items queued at once, usually the commit interval.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * @param queueCapacity the maximum number of chunks read ahead, defaults to 2.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+}
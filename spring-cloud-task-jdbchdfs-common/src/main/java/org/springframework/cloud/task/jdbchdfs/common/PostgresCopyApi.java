@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The part of the copy API of the PostgreSQL driver that {@link PostgresCopyItemReader}
+ * uses, so that the driver is only required at runtime.
+ *
+ * @author Glenn Renfro
+ */
+public interface PostgresCopyApi {
+
+	/**
+	 * @param connection a connection of the data source to read from.
+	 * @return whether the connection unwraps to a connection exposing the copy API.
+	 * @throws SQLException if the connection can not be inspected.
+	 */
+	boolean isCopySupported(Connection connection) throws SQLException;
+
+	/**
+	 * Starts copying the rows of a {@code COPY ... TO STDOUT} statement.
+	 *
+	 * @param connection the connection to run the statement on.
+	 * @param copySql the copy statement.
+	 * @return the stream of the copied rows.
+	 * @throws Exception if the copy could not be started.
+	 */
+	CopyStream copyOut(Connection connection, String copySql) throws Exception;
+
+	/**
+	 * The rows of a running copy, each one the message sent by the server for it.
+	 */
+	interface CopyStream {
+
+		/**
+		 * @return the next row including its line separator, {@code null} once all rows were read.
+		 * @throws Exception if the row could not be read.
+		 */
+		byte[] read() throws Exception;
+
+		/**
+		 * @return whether rows are left to read.
+		 * @throws Exception if the state of the copy could not be read.
+		 */
+		boolean isActive() throws Exception;
+
+		/**
+		 * Discards the rows left so that the connection can be used again.
+		 *
+		 * @throws Exception if the copy could not be cancelled.
+		 */
+		void cancel() throws Exception;
+	}
+}
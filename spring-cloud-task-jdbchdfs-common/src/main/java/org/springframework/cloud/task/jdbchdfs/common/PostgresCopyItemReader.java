@@ -0,0 +1,324 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.support.AbstractItemCountingItemStreamItemReader;
+import org.springframework.batch.support.DatabaseType;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.task.jdbchdfs.common.encoder.RowBuffer;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.LatencyHistogram;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.StepMetrics;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Reader for PostgreSQL that streams the rows of a query with
+ * {@code COPY (SELECT ...) TO STDOUT WITH (FORMAT csv)} instead of a cursor.  The server
+ * formats the columns and each row arrives as a single message that is returned as the
+ * bytes of a delimited line without the line separator, the same items as
+ * {@link EncodedRowJdbcItemReader} produces, so no result set or row mapper is involved.
+ * <p>
+ * The copy API is reached through a {@link PostgresCopyApi}, by default the one of the
+ * {@code PGConnection} the connection unwraps to, called reflectively so that the
+ * PostgreSQL driver is only required at runtime.  {@link #isSupported(DataSource, String)}
+ * tells whether a data source can be read this way, otherwise a cursor based reader has to
+ * be used.  A copy can not start in the middle of its rows, so on restart the whole query is
+ * streamed again from its start and the rows up to the number of items the writer reported
+ * as durable are read and discarded: a restart costs the time of copying the rows already
+ * written once more.  The rows and bytes copied and
+ * the time spent waiting for each row are published with {@link StepMetrics} once the
+ * step finished.
+ *
+ * @author Glenn Renfro
+ */
+public class PostgresCopyItemReader extends AbstractItemCountingItemStreamItemReader<byte[]>
+		implements StepExecutionListener, InitializingBean {
+
+	private static final Log log = LogFactory.getLog(PostgresCopyItemReader.class);
+
+	private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+
+	private static final String COPY_OUT = "org.postgresql.copy.CopyOut";
+
+	// the key AbstractItemCountingItemStreamItemReader saves the read count under
+	private static final String READ_COUNT = "read.count";
+
+	private static final String NULL = "null";
+
+	private DataSource dataSource;
+
+	private String sql;
+
+	private String delimiter;
+
+	private String copySql;
+
+	private PostgresCopyApi copyApi = new DriverCopyApi();
+
+	private Connection connection;
+
+	private PostgresCopyApi.CopyStream copyStream;
+
+	private final LatencyHistogram fetchLatencies = new LatencyHistogram();
+
+	private long rowsRead;
+
+	private long bytesRead;
+
+	public PostgresCopyItemReader() {
+		setName(ClassUtils.getShortName(PostgresCopyItemReader.class));
+	}
+
+	/**
+	 * Tells whether the rows of a data source can be copied: the database must be PostgreSQL,
+	 * its connections must unwrap to the {@code PGConnection} of the driver and the delimiter
+	 * must be a single byte, as required by the {@code COPY} command.
+	 *
+	 * @param dataSource the data source to read from.
+	 * @param delimiter the delimiter of the columns.
+	 * @return whether a {@link PostgresCopyItemReader} can read from the data source.
+	 */
+	public static boolean isSupported(DataSource dataSource, String delimiter) {
+		return isSupported(dataSource, delimiter, new DriverCopyApi());
+	}
+
+	/**
+	 * Tells whether the rows of a data source can be copied with a given copy API.
+	 *
+	 * @param dataSource the data source to read from.
+	 * @param delimiter the delimiter of the columns.
+	 * @param copyApi the copy API the reader is going to use.
+	 * @return whether a {@link PostgresCopyItemReader} can read from the data source.
+	 */
+	public static boolean isSupported(DataSource dataSource, String delimiter, PostgresCopyApi copyApi) {
+		if (delimiter == null || delimiter.getBytes(RowBuffer.UTF_8).length != 1) {
+			return false;
+		}
+		Connection connection = null;
+		try {
+			if (DatabaseType.fromMetaData(dataSource) != DatabaseType.POSTGRES) {
+				return false;
+			}
+			connection = dataSource.getConnection();
+			return copyApi.isCopySupported(connection);
+		}
+		catch (MetaDataAccessException | SQLException e) {
+			log.warn("Unable to find out whether the rows can be copied, a cursor is used", e);
+			return false;
+		}
+		finally {
+			JdbcUtils.closeConnection(connection);
+		}
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(dataSource, "dataSource must be set");
+		Assert.hasText(sql, "sql must be set");
+		Assert.isTrue(delimiter != null && delimiter.getBytes(RowBuffer.UTF_8).length == 1,
+				"delimiter must be a single byte");
+		copySql = "COPY (" + sql + ") TO STDOUT WITH (FORMAT csv, DELIMITER " + quote(delimiter)
+				+ ", NULL " + quote(NULL) + ")";
+		log.info("Copying rows with: " + copySql);
+	}
+
+	/**
+	 * Resumes from the number of items the writer reported as durable when it is lower than
+	 * the number of items read, so that items that never reached the store are read again.
+	 */
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		String readCountKey = getExecutionContextKey(READ_COUNT);
+		if (executionContext.containsKey(HdfsTextItemWriter.DURABLE_ITEM_COUNT)
+				&& executionContext.containsKey(readCountKey)) {
+			long durableItems = executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT);
+			if (durableItems < executionContext.getInt(readCountKey)) {
+				log.info("Resuming after item " + durableItems + " which is the last item flushed to the store");
+				executionContext.putInt(readCountKey, (int) durableItems);
+			}
+		}
+		super.open(executionContext);
+	}
+
+	@Override
+	protected void doOpen() throws Exception {
+		connection = dataSource.getConnection();
+		copyStream = copyApi.copyOut(connection, copySql);
+	}
+
+	@Override
+	protected byte[] doRead() throws Exception {
+		long start = System.nanoTime();
+		byte[] row = copyStream.read();
+		fetchLatencies.record(System.nanoTime() - start);
+		if (row == null) {
+			return null;
+		}
+		rowsRead++;
+		bytesRead += row.length;
+		// each message holds one row terminated by a newline, the writer adds its own separator
+		int length = row.length;
+		if (length > 0 && row[length - 1] == '\n') {
+			length--;
+		}
+		if (length > 0 && row[length - 1] == '\r') {
+			length--;
+		}
+		return length == row.length ? row : Arrays.copyOf(row, length);
+	}
+
+	@Override
+	protected void doClose() throws Exception {
+		try {
+			if (copyStream != null && copyStream.isActive()) {
+				// the rows left must be discarded before the connection can be used again
+				copyStream.cancel();
+			}
+		}
+		finally {
+			copyStream = null;
+			JdbcUtils.closeConnection(connection);
+			connection = null;
+		}
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		long rowsPerSecond = StepMetrics.putCount(stepExecution, "rows", rowsRead);
+		long bytesPerSecond = StepMetrics.putCount(stepExecution, "bytesEncoded", bytesRead);
+		StepMetrics.putLatencies(stepExecution, "fetch", fetchLatencies);
+		log.info("Partition " + StepMetrics.getPartition(stepExecution) + " copied " + rowsRead + " rows ("
+				+ rowsPerSecond + "/s), " + bytesRead + " bytes (" + bytesPerSecond + "/s), fetch " + fetchLatencies);
+		return null;
+	}
+
+	private static String quote(String value) {
+		return "'" + value.replace("'", "''") + "'";
+	}
+
+	/**
+	 * The copy command for the query, available once the properties are set.
+	 *
+	 * @return the {@code COPY ... TO STDOUT} statement.
+	 */
+	public String getCopySql() {
+		return copySql;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * @param sql the query whose rows are copied.
+	 */
+	public void setSql(String sql) {
+		this.sql = sql;
+	}
+
+	/**
+	 * @param delimiter the single byte delimiter of the columns.
+	 */
+	public void setDelimiter(String delimiter) {
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * @param copyApi the copy API the rows are streamed with, by default the one of the
+	 * PostgreSQL driver.
+	 */
+	public void setCopyApi(PostgresCopyApi copyApi) {
+		this.copyApi = copyApi;
+	}
+
+	/**
+	 * Calls the copy API of the {@code PGConnection} a connection unwraps to reflectively.
+	 */
+	private static class DriverCopyApi implements PostgresCopyApi {
+
+		@Override
+		public boolean isCopySupported(Connection connection) throws SQLException {
+			ClassLoader classLoader = PostgresCopyItemReader.class.getClassLoader();
+			if (!ClassUtils.isPresent(PG_CONNECTION, classLoader)) {
+				return false;
+			}
+			return connection.isWrapperFor(ClassUtils.resolveClassName(PG_CONNECTION, classLoader));
+		}
+
+		@Override
+		public CopyStream copyOut(Connection connection, String copySql) throws Exception {
+			ClassLoader classLoader = PostgresCopyItemReader.class.getClassLoader();
+			Class<?> pgConnectionClass = ClassUtils.forName(PG_CONNECTION, classLoader);
+			Class<?> copyOutClass = ClassUtils.forName(COPY_OUT, classLoader);
+			final Method readFromCopy = copyOutClass.getMethod("readFromCopy");
+			final Method isActive = copyOutClass.getMethod("isActive");
+			final Method cancelCopy = copyOutClass.getMethod("cancelCopy");
+			Object copyManager = invoke(pgConnectionClass.getMethod("getCopyAPI"), connection.unwrap(pgConnectionClass));
+			final Object copyOut = invoke(copyManager.getClass().getMethod("copyOut", String.class), copyManager, copySql);
+			return new CopyStream() {
+
+				@Override
+				public byte[] read() throws Exception {
+					return (byte[]) invoke(readFromCopy, copyOut);
+				}
+
+				@Override
+				public boolean isActive() throws Exception {
+					return (Boolean) invoke(isActive, copyOut);
+				}
+
+				@Override
+				public void cancel() throws Exception {
+					invoke(cancelCopy, copyOut);
+				}
+			};
+		}
+
+		private static Object invoke(Method method, Object target, Object... args) throws Exception {
+			try {
+				return method.invoke(target, args);
+			}
+			catch (InvocationTargetException e) {
+				if (e.getTargetException() instanceof Exception) {
+					throw (Exception) e.getTargetException();
+				}
+				throw e;
+			}
+		}
+	}
+}
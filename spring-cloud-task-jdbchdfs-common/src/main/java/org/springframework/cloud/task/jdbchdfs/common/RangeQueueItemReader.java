@@ -0,0 +1,301 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.batch.core.ExitStatus;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.StepExecutionListener;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.ItemStreamException;
+import org.springframework.batch.item.ItemStreamReader;
+import org.springframework.batch.item.ItemStreamSupport;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.LatencyHistogram;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.StepMetrics;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * Reader that claims ranges from a {@link JdbcRangeQueue} until none is left and reads the
+ * rows of each range with a reader created by an {@link AbstractColumnJdbcItemReaderFactory}.
+ * A worker that finishes its ranges early keeps claiming new ones, so the ranges of a slow
+ * worker are taken over by the others.
+ * <p>
+ * The ranges claimed since the last item the writer reported as durable are saved in the
+ * execution context along with the number of items read before each of them.  On restart
+ * the reader resumes within the range holding the first item that did not reach the store
+ * and reads the other ranges it had claimed before it claims new ones.
+ * <p>
+ * A claim is saved by the queue as soon as it is made while the execution context may be
+ * saved later or not at all, so the context also holds the id of the last range claimed.
+ * Since a worker claims ranges of increasing ids, the ranges the queue holds as claimed by
+ * this worker after that id were claimed after the context was saved.  On restart they are
+ * read again from their start before new ranges are claimed.  The context is asked to be
+ * written with the chunk of each new claim, see {@link CoalescingJobRepository}.
+ * <p>
+ * The rows read, the bytes encoded and the time spent waiting for each row, claims
+ * included, are published with {@link StepMetrics} once the step finished.
+ *
+ * @author Glenn Renfro
+ */
+public class RangeQueueItemReader<T> extends ItemStreamSupport
+		implements ItemStreamReader<T>, StepExecutionListener, InitializingBean {
+
+	private static final Log log = LogFactory.getLog(RangeQueueItemReader.class);
+
+	private static final String READ_COUNT = "read.count";
+
+	private static final String RANGES = "ranges";
+
+	private static final String LAST_RANGE = "last.range";
+
+	private AbstractColumnJdbcItemReaderFactory<? extends AbstractColumnJdbcItemReader<T>> readerFactory;
+
+	private JdbcRangeQueue rangeQueue;
+
+	private Long queueId;
+
+	private String owner;
+
+	// the id of each range claimed and the number of items read before it
+	private final List<long[]> ranges = new ArrayList<>();
+
+	private int position = -1;
+
+	private long readCount;
+
+	private long lastRangeId = -1;
+
+	// the last claim the execution context was updated with
+	private long updatedRangeId = -1;
+
+	private AbstractColumnJdbcItemReader<T> delegate;
+
+	private final LatencyHistogram fetchLatencies = new LatencyHistogram();
+
+	private long rowsRead;
+
+	// the bytes encoded by the readers of the ranges already closed
+	private long bytesEncoded;
+
+	private long rangesRead;
+
+	public RangeQueueItemReader() {
+		setName(RangeQueueItemReader.class.getSimpleName());
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		Assert.notNull(readerFactory, "readerFactory must be set");
+		Assert.notNull(rangeQueue, "rangeQueue must be set");
+		Assert.notNull(queueId, "queueId must be set");
+		Assert.hasText(owner, "owner must be set");
+		// each range is read by a new reader that never saves its state in the step execution context
+		Assert.isNull(readerFactory.getCheckpointColumn(), "The queued ranges can not be checkpointed, "
+				+ "checkpointColumn of the readerFactory must not be set");
+	}
+
+	@Override
+	public void open(ExecutionContext executionContext) throws ItemStreamException {
+		ranges.clear();
+		position = -1;
+		readCount = executionContext.getLong(getExecutionContextKey(READ_COUNT), 0);
+		if (executionContext.containsKey(HdfsTextItemWriter.DURABLE_ITEM_COUNT)) {
+			readCount = Math.min(readCount, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		}
+		String saved = executionContext.getString(getExecutionContextKey(RANGES), "");
+		for (String range : StringUtils.commaDelimitedListToStringArray(saved)) {
+			String[] values = StringUtils.split(range, ":");
+			ranges.add(new long[] {Long.parseLong(values[0]), Long.parseLong(values[1])});
+		}
+		while (position + 1 < ranges.size() && ranges.get(position + 1)[1] <= readCount) {
+			position++;
+		}
+		if (position >= 0) {
+			log.info("Resuming range " + ranges.get(position)[0] + " of queue " + queueId + " after item " + readCount);
+			openRange(readCount - ranges.get(position)[1]);
+		}
+		lastRangeId = executionContext.getLong(getExecutionContextKey(LAST_RANGE), -1);
+		updatedRangeId = lastRangeId;
+		// the number of items read before the ranges claimed since is only known once they are reached
+		for (Integer rangeId : rangeQueue.getClaimed(queueId, owner, lastRangeId)) {
+			log.info("Reading again range " + rangeId + " of queue " + queueId + " claimed before the restart");
+			ranges.add(new long[] {rangeId, -1});
+			lastRangeId = rangeId;
+		}
+	}
+
+	@Override
+	public T read() throws Exception {
+		long start = System.nanoTime();
+		T item = readNext();
+		fetchLatencies.record(System.nanoTime() - start);
+		if (item != null) {
+			rowsRead++;
+		}
+		return item;
+	}
+
+	private T readNext() throws Exception {
+		while (true) {
+			if (delegate != null) {
+				T item = delegate.read();
+				if (item != null) {
+					readCount++;
+					return item;
+				}
+				closeDelegate();
+			}
+			if (position + 1 < ranges.size()) {
+				// a range claimed before the restart
+				position++;
+				if (ranges.get(position)[1] < 0) {
+					ranges.get(position)[1] = readCount;
+				}
+			}
+			else {
+				Integer rangeId = rangeQueue.claim(queueId, owner);
+				if (rangeId == null) {
+					return null;
+				}
+				ranges.add(new long[] {rangeId, readCount});
+				lastRangeId = rangeId;
+				position = ranges.size() - 1;
+			}
+			openRange(0);
+		}
+	}
+
+	@Override
+	public void update(ExecutionContext executionContext) throws ItemStreamException {
+		long durableItems = executionContext.containsKey(HdfsTextItemWriter.DURABLE_ITEM_COUNT)
+				? executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT) : readCount;
+		// ranges that end before the first item that may not be durable are not needed on restart
+		while (position > 0 && ranges.get(1)[1] <= durableItems) {
+			ranges.remove(0);
+			position--;
+		}
+		StringBuilder saved = new StringBuilder();
+		for (long[] range : ranges) {
+			if (saved.length() > 0) {
+				saved.append(',');
+			}
+			saved.append(range[0]).append(':').append(range[1]);
+		}
+		executionContext.putString(getExecutionContextKey(RANGES), saved.toString());
+		executionContext.putLong(getExecutionContextKey(READ_COUNT), readCount);
+		executionContext.putLong(getExecutionContextKey(LAST_RANGE), lastRangeId);
+		if (lastRangeId != updatedRangeId) {
+			executionContext.putString(CoalescingJobRepository.WRITE_CONTEXT_KEY, "true");
+			updatedRangeId = lastRangeId;
+		}
+	}
+
+	@Override
+	public void close() throws ItemStreamException {
+		closeDelegate();
+	}
+
+	@Override
+	public void beforeStep(StepExecution stepExecution) {
+	}
+
+	@Override
+	public ExitStatus afterStep(StepExecution stepExecution) {
+		// the stream is closed after the listeners, the range being read still counts
+		long bytes = bytesEncoded + (delegate != null ? delegate.getBytesEncoded() : 0);
+		long rowsPerSecond = StepMetrics.putCount(stepExecution, "rows", rowsRead);
+		StepMetrics.putLatencies(stepExecution, "fetch", fetchLatencies);
+		String encoded = "";
+		if (bytes > 0) {
+			encoded = ", " + bytes + " bytes (" + StepMetrics.putCount(stepExecution, "bytesEncoded", bytes) + "/s)";
+		}
+		log.info("Partition " + StepMetrics.getPartition(stepExecution) + " read " + rowsRead + " rows ("
+				+ rowsPerSecond + "/s) of " + rangesRead + " ranges" + encoded + ", fetch " + fetchLatencies);
+		return null;
+	}
+
+	private void openRange(long skip) {
+		int rangeId = (int) ranges.get(position)[0];
+		try {
+			readerFactory.setPartitionClause(rangeQueue.getPartClause(queueId, rangeId));
+			readerFactory.afterPropertiesSet();
+			delegate = readerFactory.getObject();
+		}
+		catch (Exception e) {
+			throw new ItemStreamException("Unable to create the reader of range " + rangeId, e);
+		}
+		delegate.setCurrentItemCount((int) skip);
+		delegate.open(new ExecutionContext());
+	}
+
+	private void closeDelegate() {
+		if (delegate != null) {
+			bytesEncoded += delegate.getBytesEncoded();
+			rangesRead++;
+			try {
+				delegate.close();
+			}
+			finally {
+				delegate = null;
+			}
+		}
+	}
+
+	/**
+	 * The factory of the readers of the ranges.  Its partition clause is set to the clause of
+	 * each range before it creates the reader of that range.
+	 *
+	 * @param readerFactory the factory of the range readers.
+	 */
+	public void setReaderFactory(AbstractColumnJdbcItemReaderFactory<? extends AbstractColumnJdbcItemReader<T>> readerFactory) {
+		this.readerFactory = readerFactory;
+	}
+
+	/**
+	 * The queue to claim the ranges from.
+	 *
+	 * @param rangeQueue the {@link JdbcRangeQueue}.
+	 */
+	public void setRangeQueue(JdbcRangeQueue rangeQueue) {
+		this.rangeQueue = rangeQueue;
+	}
+
+	/**
+	 * The id of the queue the ranges of the step were added to.
+	 *
+	 * @param queueId the queue id.
+	 */
+	public void setQueueId(Long queueId) {
+		this.queueId = queueId;
+	}
+
+	/**
+	 * The name recorded as the owner of the claimed ranges.
+	 *
+	 * @param owner the name of this worker.
+	 */
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+}
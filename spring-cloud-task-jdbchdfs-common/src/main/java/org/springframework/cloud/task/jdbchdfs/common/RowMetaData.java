@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+/**
+ * The names and SQL types of the columns of a query, captured from its
+ * {@link ResultSetMetaData} so that writers can derive the schema of their output.
+ * Columns are indexed from 0.
+ *
+ * @author Glenn Renfro
+ */
+public class RowMetaData {
+
+	private final String[] columnNames;
+
+	private final int[] sqlTypes;
+
+	private final String[] sqlTypeNames;
+
+	public RowMetaData(String[] columnNames, int[] sqlTypes, String[] sqlTypeNames) {
+		this.columnNames = columnNames;
+		this.sqlTypes = sqlTypes;
+		this.sqlTypeNames = sqlTypeNames;
+	}
+
+	/**
+	 * Captures the column labels and types of a result set.
+	 *
+	 * @param metaData the metadata of the result set.
+	 * @return the {@link RowMetaData} for the result set.
+	 * @throws SQLException if the metadata can not be retrieved.
+	 */
+	public static RowMetaData from(ResultSetMetaData metaData) throws SQLException {
+		int columnCount = metaData.getColumnCount();
+		String[] columnNames = new String[columnCount];
+		int[] sqlTypes = new int[columnCount];
+		String[] sqlTypeNames = new String[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			columnNames[i] = metaData.getColumnLabel(i + 1);
+			sqlTypes[i] = metaData.getColumnType(i + 1);
+			sqlTypeNames[i] = metaData.getColumnTypeName(i + 1);
+		}
+		return new RowMetaData(columnNames, sqlTypes, sqlTypeNames);
+	}
+
+	public int getColumnCount() {
+		return columnNames.length;
+	}
+
+	public String getColumnName(int column) {
+		return columnNames[column];
+	}
+
+	/**
+	 * @param column the index of the column.
+	 * @return the {@link java.sql.Types} constant of the column.
+	 */
+	public int getSqlType(int column) {
+		return sqlTypes[column];
+	}
+
+	public String getSqlTypeName(int column) {
+		return sqlTypeNames[column];
+	}
+}
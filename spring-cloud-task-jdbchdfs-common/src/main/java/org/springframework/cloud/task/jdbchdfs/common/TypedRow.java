@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * A row read from the database with each column kept as a typed value, see
+ * {@link TypedRowJdbcItemReader} for the types used.  All rows of a query share the
+ * same {@link RowMetaData}.
+ *
+ * @author Glenn Renfro
+ */
+public class TypedRow {
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	private final RowMetaData metaData;
+
+	private final Object[] values;
+
+	public TypedRow(RowMetaData metaData, Object[] values) {
+		this.metaData = metaData;
+		this.values = values;
+	}
+
+	public RowMetaData getMetaData() {
+		return metaData;
+	}
+
+	/**
+	 * @param column the index of the column, starting at 0.
+	 * @return the value of the column, null if it is SQL NULL.
+	 */
+	public Object getValue(int column) {
+		return values[column];
+	}
+
+	/**
+	 * Converts a date read from a DATE column, which holds the midnight of the default
+	 * time zone, to the number of days since the epoch.
+	 *
+	 * @param date the date to convert.
+	 * @return the number of days between 1970-01-01 and the date.
+	 */
+	public static int toEpochDay(Date date) {
+		long millis = date.getTime();
+		long localMillis = millis + TimeZone.getDefault().getOffset(millis);
+		long days = localMillis / MILLIS_PER_DAY;
+		if (localMillis % MILLIS_PER_DAY < 0) {
+			days--;
+		}
+		return (int) days;
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Reader which reads a row from a database as a {@link TypedRow}, for writers of typed
+ * formats.  Values are retrieved with the getter matching the SQL type of the column:
+ * BIGINT as {@link Long}, INTEGER, SMALLINT and TINYINT as {@link Integer}, DOUBLE and
+ * FLOAT as {@link Double}, REAL as {@link Float}, BOOLEAN and BIT as {@link Boolean},
+ * DECIMAL and NUMERIC as {@link java.math.BigDecimal}, DATE as {@link java.sql.Date},
+ * TIMESTAMP as {@link java.sql.Timestamp}, binary types as {@code byte[]} and all
+ * other types as {@link String}.
+ *
+ * @author Glenn Renfro
+ */
+public class TypedRowJdbcItemReader extends AbstractColumnJdbcItemReader<TypedRow> {
+
+	private RowMetaData metaData;
+
+	@Override
+	protected void doOpen() throws Exception {
+		metaData = null;
+		super.doOpen();
+	}
+
+	@Override
+	protected TypedRow mapRow(ResultSet rs) throws SQLException {
+		if (metaData == null) {
+			metaData = RowMetaData.from(rs.getMetaData());
+		}
+		Object[] values = new Object[metaData.getColumnCount()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = getValue(rs, i + 1, metaData.getSqlType(i));
+		}
+		if (isSamplingRows()) {
+			sampleRow(getWidth(values));
+		}
+		return new TypedRow(metaData, values);
+	}
+
+	private int getWidth(Object[] values) {
+		// strings and binary values are counted at their length, all other values as a long
+		int width = 0;
+		for (Object value : values) {
+			if (value instanceof String) {
+				width += ((String) value).length();
+			}
+			else if (value instanceof byte[]) {
+				width += ((byte[]) value).length;
+			}
+			else {
+				width += 8;
+			}
+		}
+		return width;
+	}
+
+	private Object getValue(ResultSet rs, int column, int sqlType) throws SQLException {
+		Object value;
+		switch (sqlType) {
+			case Types.BIGINT:
+				value = rs.getLong(column);
+				break;
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				value = rs.getInt(column);
+				break;
+			case Types.DOUBLE:
+			case Types.FLOAT:
+				value = rs.getDouble(column);
+				break;
+			case Types.REAL:
+				value = rs.getFloat(column);
+				break;
+			case Types.BOOLEAN:
+			case Types.BIT:
+				value = rs.getBoolean(column);
+				break;
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				return rs.getBigDecimal(column);
+			case Types.DATE:
+				return rs.getDate(column);
+			case Types.TIMESTAMP:
+				return rs.getTimestamp(column);
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+				return rs.getBytes(column);
+			default:
+				return rs.getString(column);
+		}
+		return rs.wasNull() ? null : value;
+	}
+}
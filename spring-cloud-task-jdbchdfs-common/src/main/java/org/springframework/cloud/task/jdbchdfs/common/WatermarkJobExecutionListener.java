@@ -0,0 +1,76 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobExecutionListener;
+import org.springframework.util.Assert;
+
+/**
+ * Saves the watermark of an incremental import in a {@link JdbcWatermarkStore} once the
+ * job completed.  The watermark is the one {@link IncrementalColumnRangePartitioner} put
+ * in the context of its step, promoted to the job execution context when the step
+ * completed, so it is only saved when all partitions were written and the job itself
+ * completed.
+ *
+ * @author Glenn Renfro
+ */
+public class WatermarkJobExecutionListener implements JobExecutionListener {
+
+	private static final Log log = LogFactory.getLog(WatermarkJobExecutionListener.class);
+
+	private final JdbcWatermarkStore watermarkStore;
+
+	private final String checkColumn;
+
+	/**
+	 * @param watermarkStore the store the watermark is saved to.
+	 * @param checkColumn the check column of the import.
+	 */
+	public WatermarkJobExecutionListener(JdbcWatermarkStore watermarkStore, String checkColumn) {
+		Assert.notNull(watermarkStore, "watermarkStore must be set");
+		Assert.hasText(checkColumn, "checkColumn must be set");
+		this.watermarkStore = watermarkStore;
+		this.checkColumn = checkColumn;
+	}
+
+	@Override
+	public void beforeJob(JobExecution jobExecution) {
+	}
+
+	@Override
+	public void afterJob(JobExecution jobExecution) {
+		if (!BatchStatus.COMPLETED.equals(jobExecution.getStatus())
+				|| !jobExecution.getExecutionContext().containsKey(IncrementalColumnRangePartitioner.BATCH_INCREMENTAL_MAX_ID)) {
+			return;
+		}
+		String jobName = jobExecution.getJobInstance().getJobName();
+		long watermark = jobExecution.getExecutionContext().getLong(IncrementalColumnRangePartitioner.BATCH_INCREMENTAL_MAX_ID);
+		if (watermarkStore.save(jobName, checkColumn, watermark, jobExecution.getId())) {
+			log.info("Saved watermark " + watermark + " of " + checkColumn + " for " + jobName);
+		}
+		else {
+			log.info("Not saving watermark " + watermark + " of " + checkColumn + " for " + jobName
+					+ ", a later job execution saved its own");
+		}
+	}
+}
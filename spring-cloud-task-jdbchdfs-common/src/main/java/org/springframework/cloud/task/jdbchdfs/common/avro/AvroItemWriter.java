@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common.avro;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.Path;
+
+import org.springframework.cloud.task.jdbchdfs.common.AbstractRollingFileItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRow;
+
+/**
+ * Writes {@link TypedRow}s to Avro container files, with a schema derived from the
+ * {@link org.springframework.cloud.task.jdbchdfs.common.RowMetaData} of the rows by
+ * {@link TypedRowDatumWriter}.  Files roll over once the size of the values written,
+ * before encoding and compression, reaches the rollover size.
+ *
+ * @author Glenn Renfro
+ */
+public class AvroItemWriter extends AbstractRollingFileItemWriter<TypedRow, AvroItemWriter.AvroFile> {
+
+	private CodecFactory codec = CodecFactory.nullCodec();
+
+	private int syncInterval = DataFileConstants.DEFAULT_SYNC_INTERVAL;
+
+	/**
+	 * @param configuration the hadoop configuration.
+	 * @param directory the directory the files are written to.
+	 * @param fileName the name of the files, without the index and extension.
+	 * @param extension the extension of the files.
+	 * @param rollover the size after which the next file is started.
+	 */
+	public AvroItemWriter(Configuration configuration, Path directory, String fileName, String extension,
+			long rollover) {
+		super(configuration, directory, fileName, extension, rollover);
+	}
+
+	@Override
+	protected AvroFile createWriter(Configuration configuration, Path path, TypedRow firstItem) throws IOException {
+		FSDataOutputStream out = path.getFileSystem(configuration).create(path, false);
+		try {
+			TypedRowDatumWriter datumWriter = new TypedRowDatumWriter();
+			DataFileWriter<TypedRow> writer = new DataFileWriter<>(datumWriter);
+			writer.setCodec(codec);
+			writer.setSyncInterval(syncInterval);
+			writer.create(TypedRowDatumWriter.createSchema(firstItem.getMetaData()), out);
+			return new AvroFile(writer, datumWriter);
+		}
+		catch (IOException | RuntimeException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	@Override
+	protected long write(AvroFile file, TypedRow item) throws IOException {
+		file.writer.append(item);
+		return file.datumWriter.getRecordSize();
+	}
+
+	/**
+	 * @param codec the codec used to compress the blocks of the files.
+	 */
+	public void setCodec(CodecFactory codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * @param syncInterval the approximate size in bytes of the blocks written between sync markers.
+	 */
+	public void setSyncInterval(int syncInterval) {
+		this.syncInterval = syncInterval;
+	}
+
+	/**
+	 * The writer of a single Avro file.
+	 */
+	protected static class AvroFile implements Closeable {
+
+		private final DataFileWriter<TypedRow> writer;
+
+		private final TypedRowDatumWriter datumWriter;
+
+		AvroFile(DataFileWriter<TypedRow> writer, TypedRowDatumWriter datumWriter) {
+			this.writer = writer;
+			this.datumWriter = datumWriter;
+		}
+
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common.avro;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.file.CodecFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriterFactory;
+import org.springframework.cloud.task.jdbchdfs.common.JdbcHdfsTaskProperties;
+import org.springframework.util.StringUtils;
+
+/**
+ * Factory for configuring an {@link AvroItemWriter} from the properties of the task.
+ * The files are named like the text files and use the {@code avro} extension unless
+ * another extension than the default one is set.  The codec, when set, must be one
+ * supported by Avro: deflate (or gzip), snappy, bzip2 or xz.
+ *
+ * @author Glenn Renfro
+ */
+public class AvroItemWriterFactory implements FactoryBean<AvroItemWriter> {
+
+	public static final String AVRO_FILE_EXTENSION = "avro";
+
+	private AvroItemWriter avroItemWriter;
+
+	public AvroItemWriterFactory(Configuration configuration, JdbcHdfsTaskProperties props, String partitionSuffix) {
+		HdfsTextItemWriterFactory.setupConfiguration(configuration, props);
+		String extension = JdbcHdfsTaskProperties.DEFAULT_FILE_EXTENSION.equals(props.getFileExtension())
+				? AVRO_FILE_EXTENSION : props.getFileExtension();
+		avroItemWriter = new AvroItemWriter(configuration, new Path(props.getDirectory()),
+				props.getFileName() + partitionSuffix, extension, props.getRollover());
+		avroItemWriter.setCodec(getCodec(props.getCodec()));
+		avroItemWriter.setSyncInterval(props.getAvroSyncInterval());
+	}
+
+	private static CodecFactory getCodec(String codec) {
+		if (!StringUtils.hasText(codec)) {
+			return CodecFactory.nullCodec();
+		}
+		if ("gzip".equalsIgnoreCase(codec)) {
+			return CodecFactory.fromString("deflate");
+		}
+		try {
+			return CodecFactory.fromString(codec.toLowerCase());
+		}
+		catch (AvroRuntimeException e) {
+			throw new IllegalArgumentException("Avro output supports the deflate, snappy, bzip2 and xz codecs, not " + codec, e);
+		}
+	}
+
+	@Override
+	public AvroItemWriter getObject() throws Exception {
+		return avroItemWriter;
+	}
+
+	@Override
+	public Class<?> getObjectType() {
+		return AvroItemWriter.class;
+	}
+
+	@Override
+	public boolean isSingleton() {
+		return true;
+	}
+}
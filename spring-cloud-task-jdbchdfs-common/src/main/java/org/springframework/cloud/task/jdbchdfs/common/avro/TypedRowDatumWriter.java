@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common.avro;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+
+import org.springframework.cloud.task.jdbchdfs.common.RowMetaData;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRow;
+
+/**
+ * {@link DatumWriter} that encodes {@link TypedRow}s directly, without building an
+ * intermediate record.  The schema created by {@link #createSchema(RowMetaData)} has a
+ * field per column holding a union of null and the type matching the SQL type: integer
+ * types as int or long, floating point types as float or double, BOOLEAN and BIT as
+ * boolean and binary types as bytes.  DATE is written as the int number of days since the
+ * epoch and TIMESTAMP as the long number of milliseconds since the epoch, as the Avro
+ * version in use has no logical types, DECIMAL, NUMERIC and all other types as strings.
+ * Each field carries the SQL type name of its column in the {@link #SQL_TYPE_PROP}
+ * property.
+ *
+ * @author Glenn Renfro
+ */
+public class TypedRowDatumWriter implements DatumWriter<TypedRow> {
+
+	public static final String SQL_TYPE_PROP = "sqlType";
+
+	private Schema.Type[] types;
+
+	private long recordSize;
+
+	@Override
+	public void setSchema(Schema schema) {
+		List<Schema.Field> fields = schema.getFields();
+		types = new Schema.Type[fields.size()];
+		for (int i = 0; i < types.length; i++) {
+			// the second branch of the union holds the type of the value
+			types[i] = fields.get(i).schema().getTypes().get(1).getType();
+		}
+	}
+
+	@Override
+	public void write(TypedRow row, Encoder out) throws IOException {
+		long size = 0;
+		for (int i = 0; i < types.length; i++) {
+			Object value = row.getValue(i);
+			if (value == null) {
+				out.writeIndex(0);
+				out.writeNull();
+				continue;
+			}
+			out.writeIndex(1);
+			switch (types[i]) {
+				case LONG:
+					out.writeLong(value instanceof java.util.Date
+							? ((java.util.Date) value).getTime() : ((Number) value).longValue());
+					size += 8;
+					break;
+				case INT:
+					out.writeInt(value instanceof java.util.Date
+							? TypedRow.toEpochDay((java.util.Date) value) : ((Number) value).intValue());
+					size += 4;
+					break;
+				case DOUBLE:
+					out.writeDouble(((Number) value).doubleValue());
+					size += 8;
+					break;
+				case FLOAT:
+					out.writeFloat(((Number) value).floatValue());
+					size += 4;
+					break;
+				case BOOLEAN:
+					out.writeBoolean((Boolean) value);
+					size += 1;
+					break;
+				case BYTES:
+					byte[] bytes = (byte[]) value;
+					out.writeBytes(ByteBuffer.wrap(bytes));
+					size += bytes.length;
+					break;
+				default:
+					String string = value instanceof BigDecimal
+							? ((BigDecimal) value).toPlainString() : value.toString();
+					out.writeString(string);
+					size += string.length();
+			}
+		}
+		recordSize = size;
+	}
+
+	/**
+	 * @return the size of the values of the last row written, before encoding and compression.
+	 */
+	public long getRecordSize() {
+		return recordSize;
+	}
+
+	/**
+	 * Creates the record schema for rows with the given metadata.  Column names that are
+	 * not valid Avro names have their invalid characters replaced by underscores.
+	 *
+	 * @param metaData the metadata of the rows.
+	 * @return the record schema.
+	 */
+	public static Schema createSchema(RowMetaData metaData) {
+		List<Schema.Field> fields = new ArrayList<>(metaData.getColumnCount());
+		for (int i = 0; i < metaData.getColumnCount(); i++) {
+			Schema type = Schema.createUnion(Arrays.asList(Schema.create(Schema.Type.NULL),
+					Schema.create(getType(metaData.getSqlType(i)))));
+			Schema.Field field = new Schema.Field(toAvroName(metaData.getColumnName(i)), type, null, null);
+			field.addProp(SQL_TYPE_PROP, metaData.getSqlTypeName(i));
+			fields.add(field);
+		}
+		Schema schema = Schema.createRecord("Row", null, "org.springframework.cloud.task.jdbchdfs", false);
+		schema.setFields(fields);
+		return schema;
+	}
+
+	private static Schema.Type getType(int sqlType) {
+		switch (sqlType) {
+			case Types.BIGINT:
+			case Types.TIMESTAMP:
+				return Schema.Type.LONG;
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+			case Types.DATE:
+				return Schema.Type.INT;
+			case Types.DOUBLE:
+			case Types.FLOAT:
+				return Schema.Type.DOUBLE;
+			case Types.REAL:
+				return Schema.Type.FLOAT;
+			case Types.BOOLEAN:
+			case Types.BIT:
+				return Schema.Type.BOOLEAN;
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+				return Schema.Type.BYTES;
+			default:
+				return Schema.Type.STRING;
+		}
+	}
+
+	private static String toAvroName(String columnName) {
+		StringBuilder name = new StringBuilder(columnName.length());
+		for (int i = 0; i < columnName.length(); i++) {
+			char c = columnName.charAt(i);
+			boolean valid = c == '_' || (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (i > 0 && c >= '0' && c <= '9');
+			name.append(valid ? c : '_');
+		}
+		return name.length() > 0 ? name.toString() : "_";
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common.encoder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Writes the value of a single column of the current row of a {@link ResultSet} into a
+ * {@link RowBuffer}.  Implementations are selected once per cursor based on the SQL type
+ * of the column and are not required to be thread safe.
+ *
+ * @author Glenn Renfro
+ */
+public interface ColumnEncoder {
+
+	/**
+	 * Encodes the value of the column at the current row.
+	 *
+	 * @param rs the result set positioned on the row to encode.
+	 * @param column the 1 based index of the column.
+	 * @param buffer the buffer the encoded value is appended to.
+	 * @throws SQLException if the value can not be retrieved.
+	 */
+	void encode(ResultSet rs, int column, RowBuffer buffer) throws SQLException;
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common.encoder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Selects the {@link ColumnEncoder} for a SQL type.  Integer columns are read with their
+ * primitive accessor and written straight to the buffer; every other type is read with
+ * {@link ResultSet#getString(int)}.  The text drivers return for floating point numbers,
+ * decimals, binary and temporal values varies from one driver to the next, so it is kept as
+ * is rather than formatted again.  A SQL {@code NULL} is written as {@code null} which matches the
+ * output of the string based mapper these encoders replace.
+ *
+ * @author Glenn Renfro
+ */
+public final class ColumnEncoders {
+
+	static final byte[] NULL = "null".getBytes(RowBuffer.UTF_8);
+
+	private ColumnEncoders() {
+	}
+
+	/**
+	 * Returns the encoder for a column of the given type.
+	 *
+	 * @param sqlType the type of the column as defined in {@link Types}.
+	 * @return a new encoder.
+	 */
+	public static ColumnEncoder forSqlType(int sqlType) {
+		switch (sqlType) {
+			case Types.BIGINT:
+				return new LongColumnEncoder();
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				return new IntColumnEncoder();
+			default:
+				return new StringColumnEncoder();
+		}
+	}
+
+	static class LongColumnEncoder implements ColumnEncoder {
+
+		@Override
+		public void encode(ResultSet rs, int column, RowBuffer buffer) throws SQLException {
+			long value = rs.getLong(column);
+			if (rs.wasNull()) {
+				buffer.append(NULL);
+			}
+			else {
+				buffer.appendLong(value);
+			}
+		}
+	}
+
+	static class IntColumnEncoder implements ColumnEncoder {
+
+		@Override
+		public void encode(ResultSet rs, int column, RowBuffer buffer) throws SQLException {
+			int value = rs.getInt(column);
+			if (rs.wasNull()) {
+				buffer.append(NULL);
+			}
+			else {
+				buffer.appendLong(value);
+			}
+		}
+	}
+
+	static class StringColumnEncoder implements ColumnEncoder {
+
+		@Override
+		public void encode(ResultSet rs, int column, RowBuffer buffer) throws SQLException {
+			String value = rs.getString(column);
+			if (value == null) {
+				buffer.append(NULL);
+			}
+			else {
+				buffer.appendUtf8(value);
+			}
+		}
+	}
+}
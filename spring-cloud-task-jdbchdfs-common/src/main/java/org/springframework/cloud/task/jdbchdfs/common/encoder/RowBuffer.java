@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common.encoder;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that column encoders write into.  The buffer is meant to be reset and
+ * reused for every row so that encoding a row does not allocate once the buffer has grown
+ * to the width of the widest row.  Text is always written as UTF-8.
+ *
+ * @author Glenn Renfro
+ */
+public class RowBuffer {
+
+	public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int DEFAULT_CAPACITY = 256;
+
+	private static final byte[] DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+
+	private static final byte[] MIN_LONG = "-9223372036854775808".getBytes(UTF_8);
+
+	private byte[] bytes;
+
+	private int size;
+
+	public RowBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public RowBuffer(int initialCapacity) {
+		this.bytes = new byte[Math.max(initialCapacity, 16)];
+	}
+
+	/**
+	 * Discards the content of the buffer while keeping its capacity.
+	 */
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * @return the number of bytes written since the last reset.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the backing array, valid from index 0 up to {@link #size()}.
+	 */
+	public byte[] array() {
+		return bytes;
+	}
+
+	/**
+	 * @return a copy of the bytes written since the last reset.
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(bytes, size);
+	}
+
+	/**
+	 * Decodes the content of the buffer.
+	 *
+	 * @param charset the charset to decode the content with.
+	 * @return the content of the buffer as a string.
+	 */
+	public String toString(Charset charset) {
+		return new String(bytes, 0, size, charset);
+	}
+
+	@Override
+	public String toString() {
+		return toString(UTF_8);
+	}
+
+	public RowBuffer append(byte b) {
+		ensureCapacity(size + 1);
+		bytes[size++] = b;
+		return this;
+	}
+
+	public RowBuffer append(byte[] src) {
+		return append(src, 0, src.length);
+	}
+
+	public RowBuffer append(byte[] src, int offset, int length) {
+		ensureCapacity(size + length);
+		System.arraycopy(src, offset, bytes, size, length);
+		size += length;
+		return this;
+	}
+
+	/**
+	 * Writes the decimal representation of the value without creating an intermediate string.
+	 *
+	 * @param value the value to write.
+	 * @return this buffer.
+	 */
+	public RowBuffer appendLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			return append(MIN_LONG);
+		}
+		if (value < 0) {
+			append((byte) '-');
+			value = -value;
+		}
+		int digits = 1;
+		for (long remaining = value / 10; remaining > 0; remaining /= 10) {
+			digits++;
+		}
+		ensureCapacity(size + digits);
+		for (int i = size + digits - 1; i >= size; i--) {
+			bytes[i] = DIGITS[(int) (value % 10)];
+			value /= 10;
+		}
+		size += digits;
+		return this;
+	}
+
+	/**
+	 * Writes the UTF-8 encoding of the characters without creating an intermediate byte array.
+	 * Unpaired surrogates are replaced with {@code '?'}, as {@link String#getBytes(Charset)} does.
+	 *
+	 * @param chars the characters to write.
+	 * @return this buffer.
+	 */
+	public RowBuffer appendUtf8(CharSequence chars) {
+		int length = chars.length();
+		ensureCapacity(size + length);
+		for (int i = 0; i < length; i++) {
+			char c = chars.charAt(i);
+			if (c < 0x80) {
+				ensureCapacity(size + 1);
+				bytes[size++] = (byte) c;
+			}
+			else if (c < 0x800) {
+				ensureCapacity(size + 2);
+				bytes[size++] = (byte) (0xc0 | (c >> 6));
+				bytes[size++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(chars.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+				ensureCapacity(size + 4);
+				bytes[size++] = (byte) (0xf0 | (codePoint >> 18));
+				bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				bytes[size++] = (byte) (0x80 | (codePoint & 0x3f));
+			}
+			else if (Character.isSurrogate(c)) {
+				ensureCapacity(size + 1);
+				bytes[size++] = '?';
+			}
+			else {
+				ensureCapacity(size + 3);
+				bytes[size++] = (byte) (0xe0 | (c >> 12));
+				bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				bytes[size++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		return this;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length << 1));
+		}
+	}
+}
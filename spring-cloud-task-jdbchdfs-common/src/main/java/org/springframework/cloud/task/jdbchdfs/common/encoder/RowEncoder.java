@@ -0,0 +1,66 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common.encoder;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import org.springframework.util.Assert;
+
+/**
+ * Encodes the rows of a cursor as delimited text.  The {@link ResultSetMetaData} is read once
+ * when the encoder is created and a {@link ColumnEncoder} is selected for each column, so a
+ * new encoder must be created for every cursor.
+ *
+ * @author Glenn Renfro
+ */
+public class RowEncoder {
+
+	private final ColumnEncoder[] encoders;
+
+	private final byte[] delimiter;
+
+	public RowEncoder(ResultSetMetaData metaData, String delimiter) throws SQLException {
+		Assert.notNull(delimiter, "delimiter must be set");
+		this.delimiter = delimiter.getBytes(RowBuffer.UTF_8);
+		this.encoders = new ColumnEncoder[metaData.getColumnCount()];
+		for (int i = 0; i < encoders.length; i++) {
+			encoders[i] = ColumnEncoders.forSqlType(metaData.getColumnType(i + 1));
+		}
+	}
+
+	/**
+	 * Appends the delimited columns of the current row to the buffer.
+	 *
+	 * @param rs the result set positioned on the row to encode.
+	 * @param buffer the buffer the row is appended to.
+	 * @throws SQLException if a column value can not be retrieved.
+	 */
+	public void encode(ResultSet rs, RowBuffer buffer) throws SQLException {
+		for (int i = 0; i < encoders.length; i++) {
+			if (i > 0) {
+				buffer.append(delimiter);
+			}
+			encoders[i].encode(rs, i + 1, buffer);
+		}
+	}
+
+	public int getColumnCount() {
+		return encoders.length;
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.batch.item.ExecutionContext;
+
+/**
+ * Histogram of latencies in buckets of powers of two microseconds, from which the count,
+ * total, maximum and approximate percentiles are published.  Latencies may be recorded
+ * and read by different threads.
+ *
+ * @author Glenn Renfro
+ */
+public class LatencyHistogram {
+
+	// the last bucket holds all latencies of 2^30 microseconds, about 18 minutes, and more
+	private static final int BUCKETS = 32;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong totalNanos = new AtomicLong();
+
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos the latency in nanoseconds.
+	 */
+	public void record(long nanos) {
+		long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+		// bucket i holds the latencies below 2^i microseconds
+		buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		long max;
+		while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+			// another thread recorded a latency, compare again
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Approximates a percentile by the upper bound of the bucket it falls in.
+	 *
+	 * @param percentile the percentile, between 0 and 1.
+	 * @return the latency in microseconds below which the percentile of latencies are,
+	 * 0 if none was recorded.
+	 */
+	public long getPercentileMicros(double percentile) {
+		long rank = (long) Math.ceil(percentile * count.get());
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank && seen > 0) {
+				return Math.min(1L << i, TimeUnit.NANOSECONDS.toMicros(maxNanos.get()) + 1);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Puts the count, total and maximum of the latencies and their median and 99th
+	 * percentile in an execution context, under keys starting with the name.
+	 *
+	 * @param executionContext the context to put the values in.
+	 * @param name the name of the latencies.
+	 */
+	public void publish(ExecutionContext executionContext, String name) {
+		executionContext.putLong(name + ".count", getCount());
+		executionContext.putLong(name + ".totalMillis", TimeUnit.NANOSECONDS.toMillis(getTotalNanos()));
+		executionContext.putLong(name + ".p50Micros", getPercentileMicros(0.5));
+		executionContext.putLong(name + ".p99Micros", getPercentileMicros(0.99));
+		executionContext.putLong(name + ".maxMicros", TimeUnit.NANOSECONDS.toMicros(getMaxNanos()));
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + getCount() + " total=" + TimeUnit.NANOSECONDS.toMillis(getTotalNanos()) + "ms p50="
+				+ getPercentileMicros(0.5) + "us p99=" + getPercentileMicros(0.99) + "us max="
+				+ TimeUnit.NANOSECONDS.toMicros(getMaxNanos()) + "us";
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common.metrics;
+
+import java.util.Date;
+
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.util.StringUtils;
+
+/**
+ * Publishes the metrics of a worker step into its execution context once it finished, so
+ * that they are kept with the step in the job repository.  All keys start with
+ * {@link #PREFIX}, counts are published with their rate per second over the duration of
+ * the step.
+ *
+ * @author Glenn Renfro
+ */
+public final class StepMetrics {
+
+	public static final String PREFIX = "jdbchdfs.metrics.";
+
+	public static final String DURATION = PREFIX + "durationMillis";
+
+	private StepMetrics() {
+	}
+
+	/**
+	 * @param stepExecution the step of a partition.
+	 * @return the suffix of the files of the partition the step reads, which tags its
+	 * metrics, or the name of the step when it is not partitioned.
+	 */
+	public static String getPartition(StepExecution stepExecution) {
+		String partSuffix = stepExecution.getExecutionContext().getString("partSuffix", null);
+		return StringUtils.hasText(partSuffix) ? partSuffix : stepExecution.getStepName();
+	}
+
+	/**
+	 * Puts the time since the step started.
+	 *
+	 * @param stepExecution the step that finished.
+	 * @return the duration of the step in milliseconds, at least 1.
+	 */
+	public static long putDuration(StepExecution stepExecution) {
+		Date startTime = stepExecution.getStartTime();
+		long duration = startTime != null ? Math.max(1, System.currentTimeMillis() - startTime.getTime()) : 1;
+		stepExecution.getExecutionContext().putLong(DURATION, duration);
+		return duration;
+	}
+
+	/**
+	 * Puts a count and its rate per second.
+	 *
+	 * @param stepExecution the step that finished.
+	 * @param name the name of the count.
+	 * @param count the value counted while the step ran.
+	 * @return the rate per second.
+	 */
+	public static long putCount(StepExecution stepExecution, String name, long count) {
+		long perSecond = count * 1000 / putDuration(stepExecution);
+		ExecutionContext executionContext = stepExecution.getExecutionContext();
+		executionContext.putLong(PREFIX + name, count);
+		executionContext.putLong(PREFIX + name + ".perSecond", perSecond);
+		return perSecond;
+	}
+
+	/**
+	 * Puts the summary of latencies.
+	 *
+	 * @param stepExecution the step that finished.
+	 * @param name the name of the latencies.
+	 * @param latencies the latencies recorded while the step ran.
+	 */
+	public static void putLatencies(StepExecution stepExecution, String name, LatencyHistogram latencies) {
+		latencies.publish(stepExecution.getExecutionContext(), PREFIX + name);
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common.parquet;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import parquet.column.ParquetProperties;
+import parquet.hadoop.ParquetWriter;
+import parquet.hadoop.metadata.CompressionCodecName;
+
+import org.springframework.cloud.task.jdbchdfs.common.AbstractRollingFileItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRow;
+
+/**
+ * Writes {@link TypedRow}s to Parquet files, with a schema derived from the
+ * {@link org.springframework.cloud.task.jdbchdfs.common.RowMetaData} of the rows by
+ * {@link TypedRowWriteSupport}.  Files roll over once the size of the values written,
+ * before encoding and compression, reaches the rollover size.
+ *
+ * @author Glenn Renfro
+ */
+public class ParquetItemWriter extends AbstractRollingFileItemWriter<TypedRow, ParquetWriter<TypedRow>> {
+
+	private CompressionCodecName compressionCodec = CompressionCodecName.UNCOMPRESSED;
+
+	private int rowGroupSize = ParquetWriter.DEFAULT_BLOCK_SIZE;
+
+	private int pageSize = ParquetWriter.DEFAULT_PAGE_SIZE;
+
+	private TypedRowWriteSupport writeSupport;
+
+	/**
+	 * @param configuration the hadoop configuration.
+	 * @param directory the directory the files are written to.
+	 * @param fileName the name of the files, without the index and extension.
+	 * @param extension the extension of the files.
+	 * @param rollover the size after which the next file is started.
+	 */
+	public ParquetItemWriter(Configuration configuration, Path directory, String fileName, String extension,
+			long rollover) {
+		super(configuration, directory, fileName, extension, rollover);
+	}
+
+	@Override
+	protected ParquetWriter<TypedRow> createWriter(Configuration configuration, Path path, TypedRow firstItem)
+			throws IOException {
+		writeSupport = new TypedRowWriteSupport(firstItem.getMetaData());
+		return new ParquetWriter<>(path, writeSupport, compressionCodec, rowGroupSize, pageSize, pageSize,
+				ParquetWriter.DEFAULT_IS_DICTIONARY_ENABLED, ParquetWriter.DEFAULT_IS_VALIDATING_ENABLED,
+				ParquetProperties.WriterVersion.PARQUET_1_0, configuration);
+	}
+
+	@Override
+	protected long write(ParquetWriter<TypedRow> writer, TypedRow item) throws IOException {
+		writer.write(item);
+		return writeSupport.getRecordSize();
+	}
+
+	public void setCompressionCodec(CompressionCodecName compressionCodec) {
+		this.compressionCodec = compressionCodec;
+	}
+
+	/**
+	 * @param rowGroupSize the size of the row groups buffered in memory before they are written.
+	 */
+	public void setRowGroupSize(int rowGroupSize) {
+		this.rowGroupSize = rowGroupSize;
+	}
+
+	/**
+	 * @param pageSize the size of the pages within a column chunk, also used for the dictionary pages.
+	 */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+}
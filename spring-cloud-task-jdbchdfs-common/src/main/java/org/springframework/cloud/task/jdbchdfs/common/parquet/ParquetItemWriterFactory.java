@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common.parquet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import parquet.hadoop.metadata.CompressionCodecName;
+
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriterFactory;
+import org.springframework.cloud.task.jdbchdfs.common.JdbcHdfsTaskProperties;
+import org.springframework.util.StringUtils;
+
+/**
+ * Factory for configuring a {@link ParquetItemWriter} from the properties of the task.
+ * The files are named like the text files and use the {@code parquet} extension unless
+ * another extension than the default one is set.  The codec, when set, must be one
+ * supported by Parquet: gzip, snappy or lzo.
+ *
+ * @author Glenn Renfro
+ */
+public class ParquetItemWriterFactory implements FactoryBean<ParquetItemWriter> {
+
+	public static final String PARQUET_FILE_EXTENSION = "parquet";
+
+	private ParquetItemWriter parquetItemWriter;
+
+	public ParquetItemWriterFactory(Configuration configuration, JdbcHdfsTaskProperties props,
+			String partitionSuffix) {
+		HdfsTextItemWriterFactory.setupConfiguration(configuration, props);
+		String extension = JdbcHdfsTaskProperties.DEFAULT_FILE_EXTENSION.equals(props.getFileExtension())
+				? PARQUET_FILE_EXTENSION : props.getFileExtension();
+		parquetItemWriter = new ParquetItemWriter(configuration, new Path(props.getDirectory()),
+				props.getFileName() + partitionSuffix, extension, props.getRollover());
+		parquetItemWriter.setCompressionCodec(getCompressionCodec(props.getCodec()));
+		parquetItemWriter.setRowGroupSize(props.getParquetRowGroupSize());
+		parquetItemWriter.setPageSize(props.getParquetPageSize());
+	}
+
+	private static CompressionCodecName getCompressionCodec(String codec) {
+		if (!StringUtils.hasText(codec)) {
+			return CompressionCodecName.UNCOMPRESSED;
+		}
+		try {
+			return CompressionCodecName.valueOf(codec.toUpperCase());
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Parquet output supports the gzip, snappy and lzo codecs, not " + codec, e);
+		}
+	}
+
+	@Override
+	public ParquetItemWriter getObject() throws Exception {
+		return parquetItemWriter;
+	}
+
+	@Override
+	public Class<?> getObjectType() {
+		return ParquetItemWriter.class;
+	}
+
+	@Override
+	public boolean isSingleton() {
+		return true;
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common.parquet;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import parquet.hadoop.api.WriteSupport;
+import parquet.io.api.Binary;
+import parquet.io.api.RecordConsumer;
+import parquet.schema.MessageType;
+import parquet.schema.OriginalType;
+import parquet.schema.PrimitiveType;
+import parquet.schema.PrimitiveType.PrimitiveTypeName;
+import parquet.schema.Type;
+
+import org.springframework.cloud.task.jdbchdfs.common.RowMetaData;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRow;
+
+/**
+ * {@link WriteSupport} that writes {@link TypedRow}s with a schema derived from their
+ * {@link RowMetaData}.  Every column is an optional field of the matching primitive type:
+ * integer types as INT32 or INT64, floating point types as FLOAT or DOUBLE, BOOLEAN and
+ * BIT as BOOLEAN and binary types as BINARY.  DATE is written as the INT32 number of days
+ * since the epoch and TIMESTAMP as the INT64 number of milliseconds since the epoch, as the
+ * Parquet version in use has no annotation for them, DECIMAL, NUMERIC and all other types
+ * as UTF8 strings.  The SQL type names of the columns are kept in the file metadata under
+ * {@link #SQL_TYPES_KEY}.
+ *
+ * @author Glenn Renfro
+ */
+public class TypedRowWriteSupport extends WriteSupport<TypedRow> {
+
+	public static final String SQL_TYPES_KEY = "jdbchdfs.sql.types";
+
+	private final RowMetaData metaData;
+
+	private final MessageType schema;
+
+	private final PrimitiveTypeName[] types;
+
+	private RecordConsumer recordConsumer;
+
+	private long recordSize;
+
+	public TypedRowWriteSupport(RowMetaData metaData) {
+		this.metaData = metaData;
+		this.types = new PrimitiveTypeName[metaData.getColumnCount()];
+		List<Type> fields = new ArrayList<>(types.length);
+		for (int i = 0; i < types.length; i++) {
+			types[i] = getPrimitiveType(metaData.getSqlType(i));
+			fields.add(new PrimitiveType(Type.Repetition.OPTIONAL, types[i], metaData.getColumnName(i),
+					types[i] == PrimitiveTypeName.BINARY && !isBinary(metaData.getSqlType(i)) ? OriginalType.UTF8 : null));
+		}
+		this.schema = new MessageType("jdbchdfs", fields);
+	}
+
+	public MessageType getSchema() {
+		return schema;
+	}
+
+	@Override
+	public WriteContext init(Configuration configuration) {
+		StringBuilder sqlTypes = new StringBuilder();
+		for (int i = 0; i < metaData.getColumnCount(); i++) {
+			if (i > 0) {
+				sqlTypes.append(',');
+			}
+			sqlTypes.append(metaData.getSqlTypeName(i));
+		}
+		Map<String, String> extraMetaData = new HashMap<>();
+		extraMetaData.put(SQL_TYPES_KEY, sqlTypes.toString());
+		return new WriteContext(schema, extraMetaData);
+	}
+
+	@Override
+	public void prepareForWrite(RecordConsumer recordConsumer) {
+		this.recordConsumer = recordConsumer;
+	}
+
+	@Override
+	public void write(TypedRow row) {
+		long size = 0;
+		recordConsumer.startMessage();
+		for (int i = 0; i < types.length; i++) {
+			Object value = row.getValue(i);
+			if (value == null) {
+				continue;
+			}
+			String name = metaData.getColumnName(i);
+			recordConsumer.startField(name, i);
+			switch (types[i]) {
+				case INT64:
+					recordConsumer.addLong(value instanceof java.util.Date
+							? ((java.util.Date) value).getTime() : ((Number) value).longValue());
+					size += 8;
+					break;
+				case INT32:
+					recordConsumer.addInteger(value instanceof java.util.Date
+							? TypedRow.toEpochDay((java.util.Date) value) : ((Number) value).intValue());
+					size += 4;
+					break;
+				case DOUBLE:
+					recordConsumer.addDouble(((Number) value).doubleValue());
+					size += 8;
+					break;
+				case FLOAT:
+					recordConsumer.addFloat(((Number) value).floatValue());
+					size += 4;
+					break;
+				case BOOLEAN:
+					recordConsumer.addBoolean((Boolean) value);
+					size += 1;
+					break;
+				default:
+					Binary binary = toBinary(value);
+					recordConsumer.addBinary(binary);
+					size += binary.length();
+			}
+			recordConsumer.endField(name, i);
+		}
+		recordConsumer.endMessage();
+		recordSize = size;
+	}
+
+	/**
+	 * @return the size of the values of the last row written, before encoding and compression.
+	 */
+	public long getRecordSize() {
+		return recordSize;
+	}
+
+	private static PrimitiveTypeName getPrimitiveType(int sqlType) {
+		switch (sqlType) {
+			case Types.BIGINT:
+			case Types.TIMESTAMP:
+				return PrimitiveTypeName.INT64;
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+			case Types.DATE:
+				return PrimitiveTypeName.INT32;
+			case Types.DOUBLE:
+			case Types.FLOAT:
+				return PrimitiveTypeName.DOUBLE;
+			case Types.REAL:
+				return PrimitiveTypeName.FLOAT;
+			case Types.BOOLEAN:
+			case Types.BIT:
+				return PrimitiveTypeName.BOOLEAN;
+			default:
+				return PrimitiveTypeName.BINARY;
+		}
+	}
+
+	private static boolean isBinary(int sqlType) {
+		return sqlType == Types.BINARY || sqlType == Types.VARBINARY || sqlType == Types.LONGVARBINARY;
+	}
+
+	private static Binary toBinary(Object value) {
+		if (value instanceof byte[]) {
+			return Binary.fromByteArray((byte[]) value);
+		}
+		if (value instanceof BigDecimal) {
+			return Binary.fromString(((BigDecimal) value).toPlainString());
+		}
+		return Binary.fromString(value.toString());
+	}
+}
@@ -16,33 +16,57 @@
 
 package org.springframework.cloud.task.jdbchdfs.common.support;
 
+import java.sql.Connection;
 import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.task.jdbchdfs.common.JdbcHdfsTaskProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.Constants;
 import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
 
 /**
- * Supports the datasource configurations required for the JdbcHdfs application.
+ * Supports the datasource configurations required for the JdbcHdfs application.  The
+ * task and the table input each get their own pool, sized from the number of workers, so
+ * that the updates of the job repository never wait for a connection reading the table.
+ * The pools are configured through their bean properties, properties the pool in use does
+ * not have are left to their defaults.
  *
  * @author Glenn Renfro
  */
 @EnableConfigurationProperties({JdbcHdfsDataSourceProperties.class})
 public class JdbcHdfsDataSourceConfiguration {
 
+	private static final Log log = LogFactory.getLog(JdbcHdfsDataSourceConfiguration.class);
+
+	private static final Constants ISOLATION_LEVELS = new Constants(Connection.class);
+
 	@Autowired
 	private JdbcHdfsDataSourceProperties props;
 
+	@Autowired(required = false)
+	private JdbcHdfsTaskProperties taskProps;
+
 	@Autowired
 	private Environment environment;
 
 	@Bean(name="taskDataSource")
 	@Primary
 	public DataSource taskDataSource() {
-		return getDefaultDataSource();
+		DataSource dataSource = getDefaultDataSource();
+		// each worker commits its chunks while the partitioned step polls the repository
+		configurePool(dataSource, props.getTaskMaxActive() != null
+				? props.getTaskMaxActive() : getMaxWorkers() + 2);
+		return dataSource;
 	}
 
 
@@ -57,9 +81,50 @@ public class JdbcHdfsDataSourceConfiguration {
 		} else {
 			dataSource = getDefaultDataSource();
 		}
+		// each worker holds a connection while the partitioner reads the bounds of the table
+		BeanWrapper pool = configurePool(dataSource, props.getMaxActive() != null
+				? props.getMaxActive() : getMaxWorkers() + 1);
+		setPoolProperty(pool, "defaultReadOnly", props.isReadOnly());
+		if (StringUtils.hasText(props.getTransactionIsolation())) {
+			setPoolProperty(pool, "defaultTransactionIsolation",
+					ISOLATION_LEVELS.asNumber("TRANSACTION_" + props.getTransactionIsolation().toUpperCase()).intValue());
+		}
+		if (StringUtils.hasText(props.getConnectionProperties())) {
+			setPoolProperty(pool, "connectionProperties", props.getConnectionProperties());
+		}
 		return dataSource;
 	}
 
+	private int getMaxWorkers() {
+		return taskProps != null ? taskProps.getMaxWorkers() : JdbcHdfsTaskProperties.DEFAULT_MAX_WORKERS;
+	}
+
+	private BeanWrapper configurePool(DataSource dataSource, int maxActive) {
+		BeanWrapper pool = new BeanWrapperImpl(dataSource);
+		setPoolProperty(pool, "maxActive", maxActive);
+		setPoolProperty(pool, "maxIdle", maxActive);
+		// connections are opened as the workers start instead of all at once
+		setPoolProperty(pool, "initialSize", 0);
+		setPoolProperty(pool, "minIdle", 0);
+		if (props.getMaxWait() != null) {
+			setPoolProperty(pool, "maxWait", props.getMaxWait());
+		}
+		if (props.getPreparedStatementCacheSize() > 0) {
+			setPoolProperty(pool, "jdbcInterceptors",
+					"StatementCache(prepared=true,callable=false,max=" + props.getPreparedStatementCacheSize() + ")");
+		}
+		return pool;
+	}
+
+	private void setPoolProperty(BeanWrapper pool, String name, Object value) {
+		if (pool.isWritableProperty(name)) {
+			pool.setPropertyValue(name, value);
+		}
+		else {
+			log.warn(pool.getWrappedClass().getName() + " has no " + name + " property, it is left to its default");
+		}
+	}
+
 	private DataSource getDefaultDataSource() {
 		return DataSourceBuilder.create().driverClassName(environment.getProperty("spring.datasource.driverClassName"))
 				.url(environment.getProperty("spring.datasource.url"))
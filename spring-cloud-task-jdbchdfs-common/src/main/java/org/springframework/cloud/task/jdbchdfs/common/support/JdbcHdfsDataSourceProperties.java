@@ -45,6 +45,41 @@ public class JdbcHdfsDataSourceProperties {
 	 */
 	private String password;
 
+	/**
+	 * The maximum number of connections of the datasource that retrieves table input.  Defaults to one connection per worker plus one for the partitioner.
+	 */
+	private Integer maxActive;
+
+	/**
+	 * The maximum number of connections of the datasource that records task and job information.  Defaults to one connection per worker plus two for the partitioned step.
+	 */
+	private Integer taskMaxActive;
+
+	/**
+	 * Whether the connections that retrieve table input are read only.
+	 */
+	private boolean readOnly = true;
+
+	/**
+	 * The transaction isolation of the connections that retrieve table input, such as READ_COMMITTED, defaults to the isolation of the driver.
+	 */
+	private String transactionIsolation;
+
+	/**
+	 * The number of prepared statements cached by each connection, 0 to disable the cache.
+	 */
+	private int preparedStatementCacheSize;
+
+	/**
+	 * The number of milliseconds to wait for a free connection before failing, defaults to the wait of the pool.
+	 */
+	private Integer maxWait;
+
+	/**
+	 * The properties passed to the driver when connecting to retrieve table input, such as the socket and login timeouts of the driver, formatted as [name=value;]*.
+	 */
+	private String connectionProperties;
+
 	public String getUrl() {
 		return url;
 	}
@@ -76,4 +111,60 @@ public class JdbcHdfsDataSourceProperties {
 	public void setPassword(String password) {
 		this.password = password;
 	}
+
+	public Integer getMaxActive() {
+		return maxActive;
+	}
+
+	public void setMaxActive(Integer maxActive) {
+		this.maxActive = maxActive;
+	}
+
+	public Integer getTaskMaxActive() {
+		return taskMaxActive;
+	}
+
+	public void setTaskMaxActive(Integer taskMaxActive) {
+		this.taskMaxActive = taskMaxActive;
+	}
+
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	public void setReadOnly(boolean readOnly) {
+		this.readOnly = readOnly;
+	}
+
+	public String getTransactionIsolation() {
+		return transactionIsolation;
+	}
+
+	public void setTransactionIsolation(String transactionIsolation) {
+		this.transactionIsolation = transactionIsolation;
+	}
+
+	public int getPreparedStatementCacheSize() {
+		return preparedStatementCacheSize;
+	}
+
+	public void setPreparedStatementCacheSize(int preparedStatementCacheSize) {
+		this.preparedStatementCacheSize = preparedStatementCacheSize;
+	}
+
+	public Integer getMaxWait() {
+		return maxWait;
+	}
+
+	public void setMaxWait(Integer maxWait) {
+		this.maxWait = maxWait;
+	}
+
+	public String getConnectionProperties() {
+		return connectionProperties;
+	}
+
+	public void setConnectionProperties(String connectionProperties) {
+		this.connectionProperties = connectionProperties;
+	}
 }
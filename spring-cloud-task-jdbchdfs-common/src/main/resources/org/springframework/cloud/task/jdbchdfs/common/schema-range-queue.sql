@@ -0,0 +1,9 @@
+-- Ranges of the partitioned steps of the jdbchdfs task that are claimed by the workers, one row per range
+
+CREATE TABLE JDBCHDFS_RANGE_QUEUE (
+	QUEUE_ID NUMERIC(19) NOT NULL,
+	RANGE_ID INTEGER NOT NULL,
+	PART_CLAUSE VARCHAR(2500) NOT NULL,
+	OWNER VARCHAR(250),
+	PRIMARY KEY (QUEUE_ID, RANGE_ID)
+);
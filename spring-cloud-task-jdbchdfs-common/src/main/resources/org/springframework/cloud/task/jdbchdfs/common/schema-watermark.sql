@@ -0,0 +1,10 @@
+-- Watermarks of the incremental imports of the jdbchdfs task, one row per task and check column
+
+CREATE TABLE JDBCHDFS_WATERMARK (
+	TASK_NAME VARCHAR(100) NOT NULL,
+	CHECK_COLUMN VARCHAR(250) NOT NULL,
+	WATERMARK NUMERIC(19) NOT NULL,
+	JOB_EXECUTION_ID NUMERIC(19) NOT NULL,
+	LAST_UPDATED TIMESTAMP NOT NULL,
+	PRIMARY KEY (TASK_NAME, CHECK_COLUMN)
+);
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.junit.Test;
+
+import org.springframework.data.hadoop.store.DataStoreWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Glenn Renfro
+ */
+public class AsyncDataStoreWriterTests {
+
+	@Test
+	public void testWritesInOrder() throws Exception {
+		RecordingDataStoreWriter delegate = new RecordingDataStoreWriter();
+		AsyncDataStoreWriter writer = new AsyncDataStoreWriter(delegate, 1);
+		for (int i = 0; i < 100; i++) {
+			writer.write(String.valueOf(i % 10).getBytes("UTF-8"));
+			writer.flush(i);
+		}
+		writer.flush();
+		assertEquals(99, writer.getFlushedCheckpoint());
+		writer.close();
+		assertTrue(delegate.closed);
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			expected.append(i % 10);
+		}
+		assertEquals(expected.toString(), delegate.out.toString("UTF-8"));
+	}
+
+	@Test
+	public void testBuffersReused() throws Exception {
+		RecordingRangeWriter delegate = new RecordingRangeWriter();
+		AsyncDataStoreWriter writer = new AsyncDataStoreWriter(delegate, 2);
+		byte[] chunk = "0123456789".getBytes("UTF-8");
+		for (int i = 0; i < 10; i++) {
+			writer.write(chunk, i, 1);
+		}
+		writer.close();
+		assertEquals("0123456789", ((RecordingDataStoreWriter) delegate).out.toString("UTF-8"));
+		assertTrue(delegate.arrays.size() <= 2);
+	}
+
+	@Test
+	public void testFailureIsRethrown() throws Exception {
+		RecordingDataStoreWriter delegate = new RecordingDataStoreWriter();
+		delegate.fail = true;
+		AsyncDataStoreWriter writer = new AsyncDataStoreWriter(delegate, 2);
+		writer.write(new byte[1]);
+		try {
+			writer.flush();
+			fail("Expected the write failure to be rethrown");
+		}
+		catch (IOException e) {
+			assertEquals("expected", e.getCause().getMessage());
+		}
+		assertEquals(-1, writer.getFlushedCheckpoint());
+		try {
+			writer.close();
+			fail("Expected the write failure to be rethrown");
+		}
+		catch (IOException e) {
+			assertTrue(delegate.closed);
+		}
+	}
+
+	private static class RecordingDataStoreWriter implements DataStoreWriter<byte[]> {
+
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private boolean fail;
+
+		private boolean closed;
+
+		@Override
+		public void write(byte[] entity) throws IOException {
+			if (fail) {
+				throw new IOException("expected");
+			}
+			out.write(entity);
+		}
+
+		@Override
+		public void flush() throws IOException {
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+		}
+	}
+
+	private static class RecordingRangeWriter extends RecordingDataStoreWriter implements ByteRangeDataStoreWriter {
+
+		private final Set<byte[]> arrays = Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			arrays.add(bytes);
+			write(Arrays.copyOfRange(bytes, offset, offset + length));
+		}
+	}
+}
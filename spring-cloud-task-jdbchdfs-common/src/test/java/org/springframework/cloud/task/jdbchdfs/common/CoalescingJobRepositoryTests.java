@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import org.junit.Test;
+
+import org.springframework.batch.core.BatchStatus;
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobParameters;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.repository.JobRepository;
+import org.springframework.batch.core.repository.support.MapJobRepositoryFactoryBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Glenn Renfro
+ */
+public class CoalescingJobRepositoryTests {
+
+	@Test
+	public void testCoalescedUpdates() {
+		JobRepository delegate = mock(JobRepository.class);
+		CoalescingJobRepository jobRepository = new CoalescingJobRepository(delegate, 10, 0);
+		// a million rows with a commit interval of 1000
+		StepExecution stepExecution = runStep(jobRepository, 1000);
+		// the first update, one of every 10 chunks and the last one
+		verify(delegate, times(102)).update(stepExecution);
+		verify(delegate, times(102)).updateExecutionContext(stepExecution);
+	}
+
+	@Test
+	public void testAllUpdatesWritten() {
+		JobRepository delegate = mock(JobRepository.class);
+		CoalescingJobRepository jobRepository = new CoalescingJobRepository(delegate, 1, 0);
+		StepExecution stepExecution = runStep(jobRepository, 1000);
+		verify(delegate, times(1002)).update(stepExecution);
+		verify(delegate, times(1002)).updateExecutionContext(stepExecution);
+	}
+
+	@Test
+	public void testUpdateInterval() throws Exception {
+		JobRepository delegate = mock(JobRepository.class);
+		CoalescingJobRepository jobRepository = new CoalescingJobRepository(delegate, 1000, 1);
+		StepExecution stepExecution = new StepExecution("workerStep", new JobExecution(1l), 2l);
+		stepExecution.setStatus(BatchStatus.STARTED);
+		jobRepository.update(stepExecution);
+		Thread.sleep(5);
+		jobRepository.update(stepExecution);
+		verify(delegate, times(2)).update(stepExecution);
+	}
+
+	@Test
+	public void testTerminatedStepWritten() {
+		JobRepository delegate = mock(JobRepository.class);
+		CoalescingJobRepository jobRepository = new CoalescingJobRepository(delegate, 10, 0);
+		StepExecution stepExecution = new StepExecution("workerStep", new JobExecution(1l), 2l);
+		stepExecution.setStatus(BatchStatus.STARTED);
+		jobRepository.update(stepExecution);
+		jobRepository.update(stepExecution);
+		stepExecution.setTerminateOnly();
+		jobRepository.update(stepExecution);
+		verify(delegate, times(2)).update(stepExecution);
+	}
+
+	/**
+	 * A restarted step finds the execution context of the last update written.
+	 */
+	@Test
+	public void testRestartAfterSkippedUpdate() throws Exception {
+		JobRepository delegate = new MapJobRepositoryFactoryBean().getObject();
+		CoalescingJobRepository jobRepository = new CoalescingJobRepository(delegate, 10, 0);
+		JobExecution jobExecution = jobRepository.createJobExecution("job", new JobParameters());
+		StepExecution stepExecution = jobExecution.createStepExecution("workerStep");
+		jobRepository.add(stepExecution);
+		stepExecution.setStatus(BatchStatus.STARTED);
+		stepExecution.getExecutionContext().putLong("read.count", 1000);
+		jobRepository.updateExecutionContext(stepExecution);
+		stepExecution.getExecutionContext().putLong("read.count", 2000);
+		jobRepository.updateExecutionContext(stepExecution);
+		jobRepository.update(stepExecution);
+
+		StepExecution saved = delegate.getLastStepExecution(jobExecution.getJobInstance(), "workerStep");
+		assertEquals(1000, saved.getExecutionContext().getLong("read.count"));
+		assertEquals(stepExecution.getVersion(), saved.getVersion());
+
+		// a stream asks for the context of its chunk to be written
+		stepExecution.getExecutionContext().putString(CoalescingJobRepository.WRITE_CONTEXT_KEY, "true");
+		jobRepository.updateExecutionContext(stepExecution);
+		saved = delegate.getLastStepExecution(jobExecution.getJobInstance(), "workerStep");
+		assertEquals(2000, saved.getExecutionContext().getLong("read.count"));
+		assertFalse(saved.getExecutionContext().containsKey(CoalescingJobRepository.WRITE_CONTEXT_KEY));
+		assertFalse(stepExecution.getExecutionContext().containsKey(CoalescingJobRepository.WRITE_CONTEXT_KEY));
+	}
+
+	private StepExecution runStep(JobRepository jobRepository, int chunks) {
+		StepExecution stepExecution = new StepExecution("workerStep", new JobExecution(1l), 2l);
+		stepExecution.setStatus(BatchStatus.STARTED);
+		jobRepository.update(stepExecution);
+		jobRepository.updateExecutionContext(stepExecution);
+		for (int i = 0; i < chunks; i++) {
+			jobRepository.updateExecutionContext(stepExecution);
+			jobRepository.update(stepExecution);
+		}
+		stepExecution.setStatus(BatchStatus.COMPLETED);
+		jobRepository.updateExecutionContext(stepExecution);
+		jobRepository.update(stepExecution);
+		return stepExecution;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.springframework.batch.core.repository.dao.XStreamExecutionContextStringSerializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Glenn Renfro
+ */
+public class CompactExecutionContextSerializerTests {
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Map<String, Object> context = createContext();
+		CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(context, out);
+		assertEquals(context, serializer.deserialize(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	@Test
+	public void testReadDefaultContext() throws Exception {
+		Map<String, Object> context = createContext();
+		XStreamExecutionContextStringSerializer defaultSerializer = new XStreamExecutionContextStringSerializer();
+		defaultSerializer.afterPropertiesSet();
+		ByteArrayOutputStream defaultOut = new ByteArrayOutputStream();
+		defaultSerializer.serialize(context, defaultOut);
+
+		CompactExecutionContextSerializer serializer = new CompactExecutionContextSerializer();
+		assertEquals(context, serializer.deserialize(new ByteArrayInputStream(defaultOut.toByteArray())));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.serialize(context, out);
+		assertTrue("compact context of " + out.size() + " bytes, default of " + defaultOut.size(),
+				out.size() < defaultOut.size());
+	}
+
+	private Map<String, Object> createContext() {
+		Map<Long, Object> checkpoints = new LinkedHashMap<>();
+		checkpoints.put(1000l, 5000000001l);
+		Map<String, Object> context = new HashMap<>();
+		context.put("partClause", "WHERE (id BETWEEN 1 AND 1000)");
+		context.put("partSuffix", "-p0");
+		context.put("NamedColumnJdbcItemReader.read.count", 1000);
+		context.put(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 1000l);
+		context.put(HdfsTextItemWriter.DURABLE_BYTE_OFFSET, 52000l);
+		context.put("jdbchdfs.metrics.fetch.p99Micros", 12.5d);
+		context.put("batch.taskletType", "org.springframework.batch.core.step.item.ChunkOrientedTasklet");
+		context.put("batch.stepType", "org.springframework.batch.core.step.tasklet.TaskletStep");
+		context.put("restarted", true);
+		context.put("NamedColumnJdbcItemReader.checkpoints", checkpoints);
+		return context;
+	}
+}
@@ -17,23 +17,45 @@
 package org.springframework.cloud.task.jdbchdfs.common;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RawLocalFileSystem;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.batch.item.file.transform.PassThroughLineAggregator;
+import org.springframework.data.hadoop.store.output.OutputStreamWriter;
 import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StreamUtils;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 /**
  * @author Glenn Renfro
@@ -90,6 +112,25 @@ public class HdfsTextWriterTests {
 		checkPartitionInstance(tmpDir, "-0.csv", ROW_1 + ROW_TERMINATOR + ROW_2 + ROW_TERMINATOR);
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testChunkBufferHandedToStoreWriter() throws Exception {
+		ByteRangeDataStoreWriter storeWriter = mock(ByteRangeDataStoreWriter.class);
+		HdfsTextItemWriter<String> textWriter = new HdfsTextItemWriter<>();
+		textWriter.setStoreWriter(storeWriter);
+		textWriter.setLineAggregator(new PassThroughLineAggregator<String>());
+		textWriter.setCharset("ISO-8859-1");
+		textWriter.write(Arrays.asList("\u00e9t\u00e9"));
+		textWriter.write(Arrays.asList("hiver"));
+		int separator = System.getProperty("line.separator").length();
+		ArgumentCaptor<byte[]> chunks = ArgumentCaptor.forClass(byte[].class);
+		// one byte per character in ISO-8859-1, the same buffer for both chunks
+		verify(storeWriter).write(chunks.capture(), eq(0), eq(3 + separator));
+		verify(storeWriter).write(chunks.capture(), eq(0), eq(5 + separator));
+		assertSame(chunks.getAllValues().get(0), chunks.getAllValues().get(1));
+		verify(storeWriter, never()).write(any(byte[].class));
+	}
+
 	@Test
 	public void testDataWriterRollover() throws Exception {
 		props.setRollover(1);
@@ -106,6 +147,292 @@ public class HdfsTextWriterTests {
 		checkPartitionInstance(tmpDir, "-1.csv", ROW_2 + ROW_TERMINATOR);
 	}
 
+	@Test
+	public void testDataWriterByteRows() throws Exception {
+		props.setRollover(100);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+		writer = factory.getObject();
+		List<byte[]> list = new ArrayList<byte[]>();
+		list.add(ROW_1.getBytes("UTF-8"));
+		list.add(ROW_2.getBytes("UTF-8"));
+		writer.write(list);
+		writer.close();
+		checkPartitionInstance(tmpDir, "-0.csv", ROW_1 + ROW_TERMINATOR + ROW_2 + ROW_TERMINATOR);
+	}
+
+	@Test
+	public void testDataWriterAsync() throws Exception {
+		props.setRollover(100);
+		props.setAsyncWrite(true);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+		writer = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		writer.open(executionContext);
+		List<String> list = new ArrayList<String>();
+		list.add(ROW_1);
+		writer.write(list);
+		writer.update(executionContext);
+		list = new ArrayList<String>();
+		list.add(ROW_2);
+		writer.write(list);
+		writer.update(executionContext);
+		assertTrue(executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT) <= 2);
+		writer.close();
+		checkPartitionInstance(tmpDir, "-0.csv", ROW_1 + ROW_TERMINATOR + ROW_2 + ROW_TERMINATOR);
+	}
+
+	@Test
+	public void testFlushPolicyChunkInterval() throws Exception {
+		props.setRollover(100);
+		props.setFlushInterval(2);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+		writer = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		writer.open(executionContext);
+		List<String> list = new ArrayList<String>();
+		list.add(ROW_1);
+		writer.write(list);
+		writer.update(executionContext);
+		assertEquals(0, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		assertEquals(0, executionContext.getLong(HdfsTextItemWriter.DURABLE_BYTE_OFFSET));
+		list = new ArrayList<String>();
+		list.add(ROW_2);
+		writer.write(list);
+		writer.update(executionContext);
+		assertEquals(2, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		assertEquals(ROW_1.length() + ROW_2.length() + 2 * ROW_TERMINATOR.length(),
+				executionContext.getLong(HdfsTextItemWriter.DURABLE_BYTE_OFFSET));
+	}
+
+	@Test
+	public void testFlushPolicyCloseOnRollover() throws Exception {
+		props.setRollover(1);
+		props.setFlushPolicy(FlushPolicy.CLOSE);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+		writer = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		writer.open(executionContext);
+		List<String> list = new ArrayList<String>();
+		list.add(ROW_1);
+		writer.write(list);
+		writer.update(executionContext);
+		assertEquals(1, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		assertEquals(ROW_1.length() + ROW_TERMINATOR.length(),
+				executionContext.getLong(HdfsTextItemWriter.DURABLE_BYTE_OFFSET));
+		writer.close();
+		checkPartitionInstance(tmpDir, "-0.csv", ROW_1 + ROW_TERMINATOR);
+	}
+
+	@Test
+	public void testFlushPolicyCloseWithoutRollover() throws Exception {
+		props.setRollover(100);
+		props.setFlushPolicy(FlushPolicy.CLOSE);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+		writer = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 5);
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_BYTE_OFFSET, 50);
+		writer.open(executionContext);
+		List<String> list = new ArrayList<String>();
+		list.add(ROW_1);
+		writer.write(list);
+		writer.update(executionContext);
+		assertEquals(5, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		assertEquals(50, executionContext.getLong(HdfsTextItemWriter.DURABLE_BYTE_OFFSET));
+	}
+
+	@Test
+	public void testDataWriterGzip() throws Exception {
+		props.setRollover(1000);
+		props.setCodec("gzip");
+		writeRows();
+		File[] files = listFiles(tmpDir, "-0.csv.gz");
+		assertEquals(1, files.length);
+		try (InputStream in = new GZIPInputStream(new FileInputStream(files[0]))) {
+			assertEquals(ROW_1 + ROW_TERMINATOR + ROW_2 + ROW_TERMINATOR,
+					StreamUtils.copyToString(in, Charset.forName("UTF-8")));
+		}
+	}
+
+	@Test
+	public void testDataWriterSplittableBlockCompressed() throws Exception {
+		props.setRollover(1000);
+		props.setCodec("deflate");
+		props.setSplittable(true);
+		writeRows();
+		assertEquals(0, listFiles(tmpDir, "-0.csv").length);
+		File[] files = listFiles(tmpDir, "-0.seq");
+		assertEquals(1, files.length);
+		org.apache.hadoop.conf.Configuration configuration = new org.apache.hadoop.conf.Configuration();
+		try (SequenceFile.Reader reader = new SequenceFile.Reader(configuration,
+				SequenceFile.Reader.file(new Path(files[0].toURI())))) {
+			assertEquals(SequenceFile.CompressionType.BLOCK, reader.getCompressionType());
+			Text key = new Text();
+			Text value = new Text();
+			List<String> rows = new ArrayList<String>();
+			while (reader.next(key, value)) {
+				rows.add(value.toString());
+			}
+			assertEquals(Arrays.asList(ROW_1, ROW_2), rows);
+		}
+	}
+
+	@Test
+	public void testDataWriterSplittableCodec() throws Exception {
+		props.setRollover(1000);
+		props.setCodec("bzip2");
+		props.setSplittable(true);
+		writeRows();
+		assertEquals(1, listFiles(tmpDir, "-0.csv.bz2").length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDataWriterUnknownCodec() throws Exception {
+		props.setCodec("org.example.NoSuchCodec");
+		new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+	}
+
+	@Test
+	public void testRecoverInWritingFile() throws Exception {
+		props.setRollover(100);
+		// the checksummed local file system keeps partial chunks from being flushed
+		org.apache.hadoop.conf.Configuration configuration = new org.apache.hadoop.conf.Configuration();
+		configuration.setClass("fs.file.impl", RawLocalFileSystem.class, FileSystem.class);
+		configuration.setBoolean("fs.file.impl.disable.cache", true);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(configuration, props, "part1");
+		HdfsTextItemWriter failed = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		failed.open(executionContext);
+		List<String> list = new ArrayList<String>();
+		list.add(ROW_1);
+		failed.write(list);
+		failed.update(executionContext);
+		assertEquals(ROW_1.length() + 1, executionContext.getLong(HdfsTextItemWriter.DURABLE_FILE_OFFSET));
+		// the second chunk reaches the file but the step fails before it is committed
+		list = new ArrayList<String>();
+		list.add(ROW_2);
+		failed.write(list);
+		failed.getStoreWriter().flush();
+		assertEquals(1, listFiles(tmpDir, "-0.csv.tmp").length);
+
+		factory = new HdfsTextItemWriterFactory(configuration, props, "part1");
+		writer = factory.getObject();
+		writer.open(executionContext);
+		assertEquals(0, listFiles(tmpDir, ".tmp").length);
+		checkPartitionInstance(tmpDir, "-0.csv", ROW_1 + ROW_TERMINATOR);
+		writer.write(list);
+		writer.update(executionContext);
+		assertEquals(2, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		writer.close();
+		checkPartitionInstance(tmpDir, "-1.csv", ROW_2 + ROW_TERMINATOR);
+	}
+
+	@Test
+	public void testRecoverInWritingFileAsync() throws Exception {
+		// the first file rolls over once the second row is written
+		props.setRollover(ROW_1.length() + ROW_2.length() + 2);
+		props.setAsyncWrite(true);
+		org.apache.hadoop.conf.Configuration configuration = new org.apache.hadoop.conf.Configuration();
+		configuration.setClass("fs.file.impl", RawLocalFileSystem.class, FileSystem.class);
+		configuration.setBoolean("fs.file.impl.disable.cache", true);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(configuration, props, "part1");
+		HdfsTextItemWriter failed = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		failed.open(executionContext);
+		List<String> list = new ArrayList<String>();
+		list.add(ROW_1);
+		failed.write(list);
+		failed.update(executionContext);
+		// waits for the flush requested by the update, the next update sees it completed
+		failed.getStoreWriter().flush();
+		failed.update(executionContext);
+		assertEquals(1, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		assertEquals(ROW_1.length() + 1, executionContext.getLong(HdfsTextItemWriter.DURABLE_FILE_OFFSET));
+		List<String> rolledList = new ArrayList<String>();
+		rolledList.add(ROW_2);
+		failed.write(rolledList);
+		failed.write(rolledList);
+		failed.update(executionContext);
+		failed.getStoreWriter().flush();
+		failed.update(executionContext);
+		assertEquals(3, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		assertEquals(ROW_2.length() + 1, executionContext.getLong(HdfsTextItemWriter.DURABLE_FILE_OFFSET));
+		// the fourth chunk reaches the file but the step fails before it is committed
+		failed.write(rolledList);
+		failed.getStoreWriter().flush();
+		assertEquals(1, listFiles(tmpDir, "-1.csv.tmp").length);
+
+		factory = new HdfsTextItemWriterFactory(configuration, props, "part1");
+		writer = factory.getObject();
+		writer.open(executionContext);
+		assertEquals(0, listFiles(tmpDir, ".tmp").length);
+		checkPartitionInstance(tmpDir, "-0.csv", ROW_1 + ROW_TERMINATOR + ROW_2 + ROW_TERMINATOR);
+		checkPartitionInstance(tmpDir, "-1.csv", ROW_2 + ROW_TERMINATOR);
+	}
+
+	@Test
+	public void testLocalFileChannel() throws Exception {
+		props.setRollover(100);
+		props.setLocalFileChannel(true);
+		// rows larger than the buffer are written as is, the others are gathered
+		props.setLocalWriteBufferSize(16);
+		props.setLocalPreallocationSize(1000);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+		writer = factory.getObject();
+		assertTrue(writer.getStoreWriter() instanceof LocalFileChannelWriter);
+		ExecutionContext executionContext = new ExecutionContext();
+		writer.open(executionContext);
+		List<String> list = new ArrayList<String>();
+		list.add(ROW_1);
+		writer.write(list);
+		writer.update(executionContext);
+		File[] inWriting = listFiles(tmpDir, "-0.csv.tmp");
+		assertEquals(1, inWriting.length);
+		// the length is reserved ahead of the flushed row
+		assertEquals(ROW_1.length() + 1 + 1000, inWriting[0].length());
+		list = new ArrayList<String>();
+		list.add(ROW_2);
+		writer.write(list);
+		writer.close();
+		checkPartitionInstance(tmpDir, "-0.csv", ROW_1 + ROW_TERMINATOR + ROW_2 + ROW_TERMINATOR);
+		assertEquals(ROW_1.length() + ROW_2.length() + 2, listFiles(tmpDir, "-0.csv")[0].length());
+		assertEquals(0, listFiles(tmpDir, ".crc").length);
+	}
+
+	@Test
+	public void testOutputStreamByDefault() throws Exception {
+		props.setRollover(100);
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+		writer = factory.getObject();
+		assertTrue(writer.getStoreWriter() instanceof OutputStreamWriter);
+		writeRows();
+		checkPartitionInstance(tmpDir, "-0.csv", ROW_1 + ROW_TERMINATOR + ROW_2 + ROW_TERMINATOR);
+	}
+
+	private void writeRows() throws Exception {
+		HdfsTextItemWriterFactory factory = new HdfsTextItemWriterFactory(new org.apache.hadoop.conf.Configuration(), props, "part1");
+		writer = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		writer.open(executionContext);
+		List<String> list = new ArrayList<String>();
+		list.add(ROW_1);
+		list.add(ROW_2);
+		writer.write(list);
+		writer.update(executionContext);
+		writer.close();
+	}
+
+	private File[] listFiles(String testDir, final String fileSuffix) {
+		return new File(testDir).listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(fileSuffix);
+			}
+
+		});
+	}
+
 	private void checkPartitionInstance(String testDir, final String fileSuffix, String expectedData) throws Exception {
 		File testOutput = new File(testDir);
 		Assert.assertTrue(testOutput.exists());
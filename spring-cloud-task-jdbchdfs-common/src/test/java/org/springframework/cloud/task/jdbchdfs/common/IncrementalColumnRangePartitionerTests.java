@@ -16,6 +16,10 @@
 
 package org.springframework.cloud.task.jdbchdfs.common;
 
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Map;
 import javax.sql.DataSource;
 
@@ -24,8 +28,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import org.springframework.batch.core.BatchStatus;
 import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.JobInstance;
 import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.explore.JobExplorer;
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -36,7 +43,12 @@ import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
 
 /**
  * @author Glenn Renfro
@@ -110,6 +122,268 @@ public class IncrementalColumnRangePartitionerTests {
 		assertEquals("WHERE (foo BETWEEN 5 AND 5)", partitions.get("partition4").get("partClause"));
 		assertEquals("-p4", partitions.get("partition4").get("partSuffix"));
 	}
+	@Test
+	public void testTargetRowsPerPartition() {
+		jdbc.execute("insert into bar (foo) values (1), (2), (3), (4), (5), (6), (7), (8), (9), (10)");
+		partitioner.setColumn("foo");
+		partitioner.setTable("bar");
+		partitioner.setPartitions(1);
+		partitioner.setTargetRowsPerPartition(4);
+		partitioner.setMaxPartitions(8);
+		StepExecution stepExecution = new StepExecution("step1", new JobExecution(5l));
+		partitioner.beforeStep(stepExecution);
+		Map<String, ExecutionContext> partitions = partitioner.partition(1);
+		assertEquals(3, partitions.size());
+		assertEquals(10, stepExecution.getExecutionContext().getLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS));
+		assertEquals(3, stepExecution.getExecutionContext().getInt(IncrementalColumnRangePartitioner.PARTITION_COUNT));
+
+		// capped by the number of partitions that can run at once
+		partitioner.setMaxPartitions(2);
+		partitioner.beforeStep(new StepExecution("step1", new JobExecution(6l)));
+		assertEquals(2, partitioner.partition(1).size());
+
+		// a restarted step keeps the partitions of the first execution
+		jdbc.execute("insert into bar (foo) values (11), (12), (13), (14), (15), (16)");
+		partitioner.setMaxPartitions(8);
+		partitioner.beforeStep(stepExecution);
+		assertEquals(3, partitioner.partition(1).size());
+	}
+
+	@Test
+	public void testQuantilePartitions() {
+		jdbc.execute("insert into bar (foo) values (1), (2), (3), (4), (5), (6), (1000), (1001)");
+		partitioner.setColumn("foo");
+		partitioner.setTable("bar");
+		partitioner.setPartitions(2);
+		partitioner.setPartitionMode(PartitionMode.QUANTILE);
+		partitioner.beforeStep(new StepExecution("step1", new JobExecution(5l)));
+		Map<String, ExecutionContext> partitions = partitioner.partition(1);
+		assertEquals(2, partitions.size());
+		assertEquals("WHERE (foo BETWEEN 1 AND 4)", partitions.get("partition0").get("partClause"));
+		assertEquals("WHERE (foo BETWEEN 5 AND 1001)", partitions.get("partition1").get("partClause"));
+	}
+
+	@Test
+	public void testQuantilePartitionsRepeatedValues() {
+		jdbc.execute("insert into bar (foo) values (1), (7), (7), (7), (7), (7), (7), (9)");
+		partitioner.setColumn("foo");
+		partitioner.setTable("bar");
+		partitioner.setPartitions(4);
+		partitioner.setPartitionMode(PartitionMode.QUANTILE);
+		partitioner.beforeStep(new StepExecution("step1", new JobExecution(5l)));
+		Map<String, ExecutionContext> partitions = partitioner.partition(1);
+		assertEquals(2, partitions.size());
+		assertEquals("WHERE (foo BETWEEN 1 AND 6)", partitions.get("partition0").get("partClause"));
+		assertEquals("WHERE (foo BETWEEN 7 AND 9)", partitions.get("partition1").get("partClause"));
+	}
+
+	@Test
+	public void testBigintWatermark() {
+		jdbc.execute("create table big (id bigint, foo int)");
+		try {
+			jdbc.execute("insert into big (id, foo) values (5000000000, 1), (5000000001, 2), (5000000002, 3), (5000000003, 4)");
+			partitioner.setColumn("foo");
+			partitioner.setCheckColumn("id");
+			partitioner.setTable("big");
+			partitioner.setPartitions(2);
+			partitioner.setOverrideValue(5000000000l);
+			StepExecution stepExecution = new StepExecution("step1", new JobExecution(5l));
+			partitioner.beforeStep(stepExecution);
+			assertEquals(5000000003l, stepExecution.getExecutionContext().getLong(IncrementalColumnRangePartitioner.BATCH_INCREMENTAL_MAX_ID));
+			Map<String, ExecutionContext> partitions = partitioner.partition(1);
+			assertEquals(2, partitions.size());
+			assertEquals("WHERE (foo BETWEEN 2 AND 3) AND id > 5000000000", partitions.get("partition0").get("partClause"));
+			assertEquals("WHERE (foo BETWEEN 4 AND 4) AND id > 5000000000", partitions.get("partition1").get("partClause"));
+			assertTrue(stepExecution.getExecutionContext().containsKey(IncrementalColumnRangePartitioner.PLANNING_TIME));
+		}
+		finally {
+			jdbc.execute("drop table big");
+		}
+	}
+
+	@Test
+	public void testTimestampWatermark() {
+		jdbc.execute("create table events (created timestamp, foo int)");
+		try {
+			jdbc.execute("insert into events (created, foo) values ('2016-01-01 10:00:00', 1), ('2016-01-02 10:00:00', 2)");
+			long watermark = Timestamp.valueOf("2016-01-01 10:00:00").getTime();
+			partitioner.setColumn("foo");
+			partitioner.setCheckColumn("created");
+			partitioner.setTable("events");
+			partitioner.setPartitions(1);
+			partitioner.setOverrideValue(watermark);
+			StepExecution stepExecution = new StepExecution("step1", new JobExecution(5l));
+			partitioner.beforeStep(stepExecution);
+			assertEquals(Timestamp.valueOf("2016-01-02 10:00:00").getTime(),
+					stepExecution.getExecutionContext().getLong(IncrementalColumnRangePartitioner.BATCH_INCREMENTAL_MAX_ID));
+			Map<String, ExecutionContext> partitions = partitioner.partition(1);
+			assertEquals(1, partitions.size());
+			String partClause = partitions.get("partition0").getString("partClause");
+			assertEquals("WHERE (foo BETWEEN 2 AND 2) AND created > {ts '2016-01-01 10:00:00.000'}", partClause);
+			assertEquals(Integer.valueOf(1), jdbc.queryForObject("select count(*) from events " + partClause, Integer.class));
+		}
+		finally {
+			jdbc.execute("drop table events");
+		}
+	}
+
+	@Test
+	public void testNegativeKeys() {
+		jdbc.execute("insert into bar (foo) values (-4), (-3), (-2), (-1), (0), (1), (2), (3)");
+		partitioner.setColumn("foo");
+		partitioner.setTable("bar");
+		partitioner.setPartitions(2);
+		partitioner.beforeStep(new StepExecution("step1", new JobExecution(5l)));
+		Map<String, ExecutionContext> partitions = partitioner.partition(1);
+		assertEquals(2, partitions.size());
+		assertEquals("WHERE (foo BETWEEN -4 AND -1)", partitions.get("partition0").get("partClause"));
+		assertEquals("WHERE (foo BETWEEN 0 AND 3)", partitions.get("partition1").get("partClause"));
+	}
+
+	@Test
+	public void testTimestampPartitions() {
+		jdbc.execute("create table events (created timestamp)");
+		try {
+			jdbc.execute("insert into events (created) values ('2016-01-01 00:00:00'), ('2016-01-01 12:00:00.5'), "
+					+ "('2016-01-02 00:00:00.999999')");
+			partitioner.setColumn("created");
+			partitioner.setTable("events");
+			partitioner.setPartitions(2);
+			partitioner.beforeStep(new StepExecution("step1", new JobExecution(5l)));
+			Map<String, ExecutionContext> partitions = partitioner.partition(1);
+			assertEquals(2, partitions.size());
+			assertEquals("WHERE (created >= {ts '2016-01-01 00:00:00.000'} AND created < {ts '2016-01-01 12:00:00.500'})",
+					partitions.get("partition0").get("partClause"));
+			assertEquals("WHERE (created >= {ts '2016-01-01 12:00:00.500'} AND created < {ts '2016-01-02 00:00:01.000'})",
+					partitions.get("partition1").get("partClause"));
+			int rows = 0;
+			for (ExecutionContext partition : partitions.values()) {
+				rows += jdbc.queryForObject("select count(*) from events " + partition.getString("partClause"), Integer.class);
+			}
+			assertEquals(3, rows);
+		}
+		finally {
+			jdbc.execute("drop table events");
+		}
+	}
+
+	@Test
+	public void testStringPartitions() {
+		jdbc.execute("create table users (name varchar(20))");
+		try {
+			jdbc.execute("insert into users (name) values ('alice'), ('bob'), ('carol'), ('dave'), ('erin'), ('frank'), "
+					+ "('o''brien'), ('zed')");
+			partitioner.setColumn("name");
+			partitioner.setTable("users");
+			partitioner.setPartitions(4);
+			partitioner.beforeStep(new StepExecution("step1", new JobExecution(5l)));
+			Map<String, ExecutionContext> partitions = partitioner.partition(1);
+			assertEquals(4, partitions.size());
+			assertEquals("WHERE (name < 'carol')", partitions.get("partition0").get("partClause"));
+			assertEquals("WHERE (name >= 'carol' AND name < 'erin')", partitions.get("partition1").get("partClause"));
+			assertEquals("WHERE (name >= 'erin' AND name < 'o''brien')", partitions.get("partition2").get("partClause"));
+			assertEquals("WHERE (name >= 'o''brien')", partitions.get("partition3").get("partClause"));
+			int rows = 0;
+			for (ExecutionContext partition : partitions.values()) {
+				rows += jdbc.queryForObject("select count(*) from users " + partition.getString("partClause"), Integer.class);
+			}
+			assertEquals(8, rows);
+		}
+		finally {
+			jdbc.execute("drop table users");
+		}
+	}
+
+	@Test
+	public void testQueuedRanges() throws Exception {
+		jdbc.execute("insert into bar (foo) values (1), (2), (3), (4), (5), (6), (7), (8)");
+		JdbcRangeQueue rangeQueue = new JdbcRangeQueue(dataSource);
+		rangeQueue.setInitializeSchema(true);
+		rangeQueue.afterPropertiesSet();
+		partitioner.setColumn("foo");
+		partitioner.setTable("bar");
+		partitioner.setPartitions(2);
+		partitioner.setRangeQueue(rangeQueue);
+		partitioner.setRangesPerPartition(2);
+		StepExecution stepExecution = new StepExecution("step1", new JobExecution(5l));
+		partitioner.beforeStep(stepExecution);
+		Map<String, ExecutionContext> partitions = partitioner.partition(1);
+		assertEquals(2, partitions.size());
+		assertEquals("", partitions.get("partition1").get("partClause"));
+		assertEquals("-p1", partitions.get("partition1").get("partSuffix"));
+		assertEquals(5l, partitions.get("partition1").getLong(IncrementalColumnRangePartitioner.RANGE_QUEUE_ID));
+		assertEquals(5l, stepExecution.getExecutionContext().getLong(IncrementalColumnRangePartitioner.RANGE_QUEUE_ID));
+		assertEquals(Integer.valueOf(0), rangeQueue.claim(5l, "worker"));
+		assertEquals("WHERE (foo BETWEEN 1 AND 2)", rangeQueue.getPartClause(5l, 0));
+		assertEquals("WHERE (foo BETWEEN 7 AND 8)", rangeQueue.getPartClause(5l, 3));
+
+		stepExecution.setStatus(BatchStatus.COMPLETED);
+		partitioner.afterStep(stepExecution);
+		assertEquals(Integer.valueOf(0), jdbc.queryForObject("select count(*) from "
+				+ JdbcRangeQueue.TABLE_NAME + " where QUEUE_ID = 5", Integer.class));
+	}
+
+	@Test
+	public void testWatermarkStore() throws Exception {
+		jdbc.execute("insert into bar (foo) values (1), (2), (3), (4)");
+		JdbcWatermarkStore watermarkStore = new JdbcWatermarkStore(dataSource);
+		watermarkStore.afterPropertiesSet();
+		assertFalse(watermarkStore.isAvailable());
+		watermarkStore.setInitializeSchema(true);
+		watermarkStore.afterPropertiesSet();
+		assertTrue(watermarkStore.isAvailable());
+		JobInstance jobInstance = new JobInstance(1l, "import");
+
+		// nothing stored yet, the watermark is read from the last execution that ended
+		JobExecution ended = new JobExecution(jobInstance, 1l, null, null);
+		ended.setEndTime(new Date());
+		ended.getExecutionContext().putLong(IncrementalColumnRangePartitioner.BATCH_INCREMENTAL_MAX_ID, 2);
+		JobExecution killed = new JobExecution(jobInstance, 2l, null, null);
+		killed.getExecutionContext().putLong(IncrementalColumnRangePartitioner.BATCH_INCREMENTAL_MAX_ID, 1);
+		JobExplorer jobExplorer = mock(JobExplorer.class);
+		when(jobExplorer.getJobInstances("import", 1, 1)).thenReturn(Collections.singletonList(jobInstance));
+		when(jobExplorer.getJobExecutions(jobInstance)).thenReturn(Arrays.asList(killed, ended));
+		partitioner.setColumn("foo");
+		partitioner.setCheckColumn("foo");
+		partitioner.setTable("bar");
+		partitioner.setPartitions(1);
+		partitioner.setJobExplorer(jobExplorer);
+		partitioner.setWatermarkStore(watermarkStore);
+		JobExecution jobExecution = new JobExecution(new JobInstance(2l, "import"), 3l, null, null);
+		StepExecution stepExecution = new StepExecution("step1", jobExecution);
+		partitioner.beforeStep(stepExecution);
+		assertEquals("WHERE (foo BETWEEN 3 AND 4) AND foo > 2", partitioner.partition(1).get("partition0").get("partClause"));
+		stepExecution.setStatus(BatchStatus.COMPLETED);
+		partitioner.afterStep(stepExecution);
+		// the step completed but the job did not yet
+		assertNull(watermarkStore.find("import", "foo"));
+		jobExecution.getExecutionContext().putLong(IncrementalColumnRangePartitioner.BATCH_INCREMENTAL_MAX_ID,
+				stepExecution.getExecutionContext().getLong(IncrementalColumnRangePartitioner.BATCH_INCREMENTAL_MAX_ID));
+		WatermarkJobExecutionListener listener = new WatermarkJobExecutionListener(watermarkStore, "foo");
+		jobExecution.setStatus(BatchStatus.FAILED);
+		listener.afterJob(jobExecution);
+		assertNull(watermarkStore.find("import", "foo"));
+		jobExecution.setStatus(BatchStatus.COMPLETED);
+		listener.afterJob(jobExecution);
+		assertEquals(Long.valueOf(4), watermarkStore.find("import", "foo"));
+
+		// the next run only looks up the store
+		jdbc.execute("insert into bar (foo) values (5)");
+		jobExplorer = mock(JobExplorer.class);
+		partitioner.setJobExplorer(jobExplorer);
+		stepExecution = new StepExecution("step1", new JobExecution(new JobInstance(3l, "import"), 4l, null, null));
+		partitioner.beforeStep(stepExecution);
+		assertEquals("WHERE (foo BETWEEN 5 AND 5) AND foo > 4", partitioner.partition(1).get("partition0").get("partClause"));
+		verifyZeroInteractions(jobExplorer);
+
+		// an earlier job execution completing last does not move the watermark back
+		assertFalse(watermarkStore.save("import", "foo", 3, 2l));
+		assertEquals(Long.valueOf(4), watermarkStore.find("import", "foo"));
+		assertTrue(watermarkStore.save("import", "foo", 5, 4l));
+		assertEquals(Long.valueOf(5), watermarkStore.find("import", "foo"));
+		jdbc.execute("drop table " + JdbcWatermarkStore.TABLE_NAME);
+	}
+
 	@Configuration
 	public static class IncrementalColumnRangePartitionerConfiguration {
 
@@ -32,7 +32,10 @@ import org.springframework.context.annotation.AnnotationConfigApplicationContext
 import org.springframework.core.env.PropertiesPropertySource;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -120,6 +123,34 @@ public class JdbcHdfsDataSourceConfigurationTests {
 		assertTrue(connection.getMetaData().getURL().endsWith("jdbchdfs"));
 	}
 
+	/**
+	 * Verify that the pools are sized from the number of workers and the JdbcHdfs DataSource is read only.
+	 */
+	@Test
+	public void testPoolSettings() throws SQLException{
+		this.props.setUrl("jdbc:hsqldb:mem:jdbchdfs");
+		this.props.setPassword("");
+		this.props.setUsername("sa");
+		this.props.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+		this.props.setTransactionIsolation("read_committed");
+		this.props.setPreparedStatementCacheSize(25);
+
+		context.register(JdbcHdfsDataSourceConfiguration.class);
+		JdbcHdfsDataSourceConfiguration config = context.getBean(JdbcHdfsDataSourceConfiguration.class);
+		org.apache.tomcat.jdbc.pool.DataSource dataSource = (org.apache.tomcat.jdbc.pool.DataSource) config.jdbcHdfsDataSource();
+		assertEquals(JdbcHdfsTaskProperties.DEFAULT_MAX_WORKERS + 1, dataSource.getMaxActive());
+		assertEquals(0, dataSource.getInitialSize());
+		assertEquals(Connection.TRANSACTION_READ_COMMITTED, dataSource.getDefaultTransactionIsolation());
+		assertEquals("StatementCache(prepared=true,callable=false,max=25)", dataSource.getJdbcInterceptors());
+		connection = dataSource.getConnection();
+		assertTrue(connection.isReadOnly());
+
+		org.apache.tomcat.jdbc.pool.DataSource taskDataSource = (org.apache.tomcat.jdbc.pool.DataSource) config.taskDataSource();
+		assertNotSame(dataSource, taskDataSource);
+		assertEquals(JdbcHdfsTaskProperties.DEFAULT_MAX_WORKERS + 2, taskDataSource.getMaxActive());
+		assertNull(taskDataSource.getDefaultReadOnly());
+	}
+
 	/**
 	 * Verify that the JdbcHdfs DataSource Fails to create if properties are not set.
 	 */
@@ -38,6 +38,12 @@ public class JdbcHdfsDataSourcePropertiesTests {
 	private static final String USER_NAME_ONE= "userNameOne";
 	private static final String PASSWORD_ONE= "passwordOne";
 	private static final String URL_ONE= "urlOne";
+	private static final Integer MAX_ACTIVE = 8;
+	private static final Integer TASK_MAX_ACTIVE = 9;
+	private static final String TRANSACTION_ISOLATION = "READ_UNCOMMITTED";
+	private static final int PREPARED_STATEMENT_CACHE_SIZE = 50;
+	private static final Integer MAX_WAIT = 5000;
+	private static final String CONNECTION_PROPERTIES = "socketTimeout=600";
 
 
 	/**
@@ -53,6 +59,13 @@ public class JdbcHdfsDataSourcePropertiesTests {
 		assertNull(properties.getPassword());
 		assertNull(properties.getUrl());
 		assertNull(properties.getUsername());
+		assertNull(properties.getMaxActive());
+		assertNull(properties.getTaskMaxActive());
+		assertEquals(true, properties.isReadOnly());
+		assertNull(properties.getTransactionIsolation());
+		assertEquals(0, properties.getPreparedStatementCacheSize());
+		assertNull(properties.getMaxWait());
+		assertNull(properties.getConnectionProperties());
 	}
 
 	/**
@@ -65,10 +78,24 @@ public class JdbcHdfsDataSourcePropertiesTests {
 		properties.setUsername(USER_NAME_ONE);
 		properties.setPassword(PASSWORD_ONE);
 		properties.setUrl(URL_ONE);
+		properties.setMaxActive(MAX_ACTIVE);
+		properties.setTaskMaxActive(TASK_MAX_ACTIVE);
+		properties.setReadOnly(false);
+		properties.setTransactionIsolation(TRANSACTION_ISOLATION);
+		properties.setPreparedStatementCacheSize(PREPARED_STATEMENT_CACHE_SIZE);
+		properties.setMaxWait(MAX_WAIT);
+		properties.setConnectionProperties(CONNECTION_PROPERTIES);
 		assertEquals(DRIVER_CLASS_ONE, properties.getDriverClassName());
 		assertEquals(USER_NAME_ONE, properties.getUsername());
 		assertEquals(PASSWORD_ONE, properties.getPassword());
 		assertEquals(URL_ONE, properties.getUrl());
+		assertEquals(MAX_ACTIVE, properties.getMaxActive());
+		assertEquals(TASK_MAX_ACTIVE, properties.getTaskMaxActive());
+		assertFalse(properties.isReadOnly());
+		assertEquals(TRANSACTION_ISOLATION, properties.getTransactionIsolation());
+		assertEquals(PREPARED_STATEMENT_CACHE_SIZE, properties.getPreparedStatementCacheSize());
+		assertEquals(MAX_WAIT, properties.getMaxWait());
+		assertEquals(CONNECTION_PROPERTIES, properties.getConnectionProperties());
 
 	}
 
@@ -57,6 +57,43 @@ public class JdbcHdfsTaskPropertyTests {
 	public static final String SECURITY_METHOD = "SECURITY METHOD";
 	public static final String USER_KEY_TAB = "USER KEY TAB";
 	public static final int MAX_WORKERS= 9999999;
+	public static final int ASYNC_WRITE_BUFFERS = 9999999;
+
+	public static final long FLUSH_INTERVAL = 4096;
+
+	public static final String CODEC = "snappy";
+
+	public static final int PARQUET_ROW_GROUP_SIZE = 4096;
+
+	public static final int PARQUET_PAGE_SIZE = 512;
+
+	public static final int AVRO_SYNC_INTERVAL = 2048;
+
+	public static final int RANGES_PER_PARTITION = 20;
+
+	public static final String KEYSET_COLUMN = "id";
+
+	public static final long FETCH_MEMORY_BUDGET = 8388608;
+
+	public static final int READ_AHEAD_CHUNKS = 3;
+
+	public static final long TARGET_ROWS_PER_PARTITION = 5000000;
+
+	public static final int REPOSITORY_UPDATE_CHUNKS = 10;
+
+	public static final long REPOSITORY_UPDATE_INTERVAL = 30000;
+
+	public static final String TABLES = "orders,customers";
+
+	public static final String TABLE_SCHEMA = "sales";
+
+	public static final String INCLUDE_TABLES = "order.*";
+
+	public static final String EXCLUDE_TABLES = ".*_archive";
+
+	public static final int LOCAL_WRITE_BUFFER_SIZE = 4194304;
+
+	public static final long LOCAL_PREALLOCATION_SIZE = 134217728;
 
 	/**
 	 * Verify that the defaults are set properly.
@@ -78,6 +115,42 @@ public class JdbcHdfsTaskPropertyTests {
 		assertEquals(JdbcHdfsTaskProperties.DEFAULT_MAX_WORKERS, properties.getMaxWorkers());
 
 		assertFalse(properties.isRestartable());
+		assertFalse(properties.isByteRows());
+		assertFalse(properties.isAsyncWrite());
+		assertEquals(JdbcHdfsTaskProperties.DEFAULT_ASYNC_WRITE_BUFFERS, properties.getAsyncWriteBuffers());
+		assertEquals(FlushPolicy.CHUNK, properties.getFlushPolicy());
+		assertEquals(JdbcHdfsTaskProperties.DEFAULT_FLUSH_INTERVAL, properties.getFlushInterval());
+		assertNull(properties.getCodec());
+		assertFalse(properties.isSplittable());
+		assertEquals(OutputFormat.TEXT, properties.getOutputFormat());
+		assertEquals(JdbcHdfsTaskProperties.DEFAULT_PARQUET_ROW_GROUP_SIZE, properties.getParquetRowGroupSize());
+		assertEquals(JdbcHdfsTaskProperties.DEFAULT_PARQUET_PAGE_SIZE, properties.getParquetPageSize());
+		assertEquals(JdbcHdfsTaskProperties.DEFAULT_AVRO_SYNC_INTERVAL, properties.getAvroSyncInterval());
+		assertEquals(PartitionMode.UNIFORM, properties.getPartitionMode());
+		assertEquals(JdbcHdfsTaskProperties.DEFAULT_RANGES_PER_PARTITION, properties.getRangesPerPartition());
+		assertFalse(properties.isCatalogStatistics());
+		assertEquals(PartitionColumnType.AUTO, properties.getPartitionColumnType());
+		assertNull(properties.getKeysetColumn());
+		assertFalse(properties.isPrefetchPages());
+		assertFalse(properties.isPostgresCopy());
+		assertEquals(PartitionHandlerType.DEPLOYER, properties.getPartitionHandlerType());
+		assertEquals(0, properties.getFetchMemoryBudget());
+		assertEquals(0, properties.getReadAheadChunks());
+		assertFalse(properties.isPartitionCheckpoints());
+		assertEquals(0, properties.getTargetRowsPerPartition());
+		assertFalse(properties.isWatermarkStore());
+		assertFalse(properties.isWatermarkStoreInitialize());
+		assertFalse(properties.isRangeQueueInitialize());
+		assertEquals(1, properties.getRepositoryUpdateChunks());
+		assertEquals(0, properties.getRepositoryUpdateInterval());
+		assertFalse(properties.isCompactExecutionContext());
+		assertNull(properties.getTables());
+		assertNull(properties.getTableSchema());
+		assertNull(properties.getIncludeTables());
+		assertNull(properties.getExcludeTables());
+		assertFalse(properties.isLocalFileChannel());
+		assertEquals(LocalFileChannelWriter.DEFAULT_BUFFER_SIZE, properties.getLocalWriteBufferSize());
+		assertEquals(0, properties.getLocalPreallocationSize());
 		assertNull(properties.getCheckColumn());
 		assertNull(properties.getColumnNames());
 		assertNull(properties.getTableName());
@@ -125,6 +198,42 @@ public class JdbcHdfsTaskPropertyTests {
 		properties.setUserKeyTab(USER_KEY_TAB);
 		properties.setSecurityMethod(SECURITY_METHOD);
 		properties.setMaxWorkers(MAX_WORKERS);
+		properties.setByteRows(true);
+		properties.setAsyncWrite(true);
+		properties.setAsyncWriteBuffers(ASYNC_WRITE_BUFFERS);
+		properties.setFlushPolicy(FlushPolicy.BYTES);
+		properties.setFlushInterval(FLUSH_INTERVAL);
+		properties.setCodec(CODEC);
+		properties.setSplittable(true);
+		properties.setOutputFormat(OutputFormat.PARQUET);
+		properties.setParquetRowGroupSize(PARQUET_ROW_GROUP_SIZE);
+		properties.setParquetPageSize(PARQUET_PAGE_SIZE);
+		properties.setAvroSyncInterval(AVRO_SYNC_INTERVAL);
+		properties.setPartitionMode(PartitionMode.QUANTILE);
+		properties.setRangesPerPartition(RANGES_PER_PARTITION);
+		properties.setCatalogStatistics(true);
+		properties.setPartitionColumnType(PartitionColumnType.STRING);
+		properties.setKeysetColumn(KEYSET_COLUMN);
+		properties.setPrefetchPages(true);
+		properties.setPostgresCopy(true);
+		properties.setPartitionHandlerType(PartitionHandlerType.THREADS);
+		properties.setFetchMemoryBudget(FETCH_MEMORY_BUDGET);
+		properties.setReadAheadChunks(READ_AHEAD_CHUNKS);
+		properties.setPartitionCheckpoints(true);
+		properties.setTargetRowsPerPartition(TARGET_ROWS_PER_PARTITION);
+		properties.setWatermarkStore(true);
+		properties.setWatermarkStoreInitialize(true);
+		properties.setRangeQueueInitialize(true);
+		properties.setRepositoryUpdateChunks(REPOSITORY_UPDATE_CHUNKS);
+		properties.setRepositoryUpdateInterval(REPOSITORY_UPDATE_INTERVAL);
+		properties.setCompactExecutionContext(true);
+		properties.setTables(TABLES);
+		properties.setTableSchema(TABLE_SCHEMA);
+		properties.setIncludeTables(INCLUDE_TABLES);
+		properties.setExcludeTables(EXCLUDE_TABLES);
+		properties.setLocalFileChannel(true);
+		properties.setLocalWriteBufferSize(LOCAL_WRITE_BUFFER_SIZE);
+		properties.setLocalPreallocationSize(LOCAL_PREALLOCATION_SIZE);
 
 		assertEquals(FS_URI, properties.getFsUri());
 		assertEquals(DELIMITER, properties.getDelimiter());
@@ -150,6 +259,127 @@ public class JdbcHdfsTaskPropertyTests {
 		assertEquals(USER_KEY_TAB, properties.getUserKeyTab());
 		assertEquals(USER_PRINCIPLE, properties.getUserPrincipal());
 		assertEquals(MAX_WORKERS, properties.getMaxWorkers());
+		assertEquals(true, properties.isByteRows());
+		assertEquals(true, properties.isAsyncWrite());
+		assertEquals(ASYNC_WRITE_BUFFERS, properties.getAsyncWriteBuffers());
+		assertEquals(FlushPolicy.BYTES, properties.getFlushPolicy());
+		assertEquals(FLUSH_INTERVAL, properties.getFlushInterval());
+		assertEquals(CODEC, properties.getCodec());
+		assertEquals(true, properties.isSplittable());
+		assertEquals(OutputFormat.PARQUET, properties.getOutputFormat());
+		assertEquals(PARQUET_ROW_GROUP_SIZE, properties.getParquetRowGroupSize());
+		assertEquals(PARQUET_PAGE_SIZE, properties.getParquetPageSize());
+		assertEquals(AVRO_SYNC_INTERVAL, properties.getAvroSyncInterval());
+		assertEquals(PartitionMode.QUANTILE, properties.getPartitionMode());
+		assertEquals(RANGES_PER_PARTITION, properties.getRangesPerPartition());
+		assertEquals(true, properties.isCatalogStatistics());
+		assertEquals(PartitionColumnType.STRING, properties.getPartitionColumnType());
+		assertEquals(KEYSET_COLUMN, properties.getKeysetColumn());
+		assertEquals(true, properties.isPrefetchPages());
+		assertEquals(true, properties.isPostgresCopy());
+		assertEquals(PartitionHandlerType.THREADS, properties.getPartitionHandlerType());
+		assertEquals(FETCH_MEMORY_BUDGET, properties.getFetchMemoryBudget());
+		assertEquals(READ_AHEAD_CHUNKS, properties.getReadAheadChunks());
+		assertEquals(true, properties.isPartitionCheckpoints());
+		assertEquals(TARGET_ROWS_PER_PARTITION, properties.getTargetRowsPerPartition());
+		assertEquals(true, properties.isWatermarkStore());
+		assertEquals(true, properties.isWatermarkStoreInitialize());
+		assertEquals(true, properties.isRangeQueueInitialize());
+		assertEquals(REPOSITORY_UPDATE_CHUNKS, properties.getRepositoryUpdateChunks());
+		assertEquals(REPOSITORY_UPDATE_INTERVAL, properties.getRepositoryUpdateInterval());
+		assertEquals(true, properties.isCompactExecutionContext());
+		assertEquals(TABLES, properties.getTables());
+		assertEquals(TABLE_SCHEMA, properties.getTableSchema());
+		assertEquals(INCLUDE_TABLES, properties.getIncludeTables());
+		assertEquals(EXCLUDE_TABLES, properties.getExcludeTables());
+		assertEquals(true, properties.isLocalFileChannel());
+		assertEquals(LOCAL_WRITE_BUFFER_SIZE, properties.getLocalWriteBufferSize());
+		assertEquals(LOCAL_PREALLOCATION_SIZE, properties.getLocalPreallocationSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeysetWithReadAhead() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setKeysetColumn(KEYSET_COLUMN);
+		properties.setReadAheadChunks(READ_AHEAD_CHUNKS);
+		properties.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeysetWithPostgresCopy() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setKeysetColumn(KEYSET_COLUMN);
+		properties.setPostgresCopy(true);
+		properties.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRangesWithKeyset() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setRangesPerPartition(RANGES_PER_PARTITION);
+		properties.setKeysetColumn(KEYSET_COLUMN);
+		properties.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRangesWithReadAhead() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setRangesPerPartition(RANGES_PER_PARTITION);
+		properties.setReadAheadChunks(READ_AHEAD_CHUNKS);
+		properties.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartitionCheckpointsWithSql() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setPartitionCheckpoints(true);
+		properties.setSql(SQL);
+		properties.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartitionCheckpointsWithReadAhead() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setPartitionCheckpoints(true);
+		properties.setReadAheadChunks(READ_AHEAD_CHUNKS);
+		properties.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartitionCheckpointsWithKeyset() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setPartitionCheckpoints(true);
+		properties.setKeysetColumn(KEYSET_COLUMN);
+		properties.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartitionCheckpointsWithRanges() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setPartitionCheckpoints(true);
+		properties.setRangesPerPartition(RANGES_PER_PARTITION);
+		properties.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPartitionCheckpointsWithPostgresCopy() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setPartitionCheckpoints(true);
+		properties.setPostgresCopy(true);
+		properties.afterPropertiesSet();
+	}
+
+	/**
+	 * The ranges of several tables are not queued, so they leave the reader alone.
+	 */
+	@Test
+	public void testRangesOfTablesWithReadAhead() {
+		JdbcHdfsTaskProperties properties = new JdbcHdfsTaskProperties();
+		properties.setRangesPerPartition(RANGES_PER_PARTITION);
+		properties.setReadAheadChunks(READ_AHEAD_CHUNKS);
+		properties.setTables(TABLES);
+		properties.afterPropertiesSet();
+		assertEquals(READ_AHEAD_CHUNKS, properties.getReadAheadChunks());
 	}
 
 	@Configuration
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.StepMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Glenn Renfro
+ */
+public class KeysetPagingItemReaderTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbc;
+
+	@Before
+	public void setUp() {
+		dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:keyset", "sa", "", true);
+		jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("create table test (id int primary key, name varchar(10))");
+		// inserted out of order, the pages follow the key
+		for (int i = 25; i >= 1; i--) {
+			jdbc.update("insert into test (id, name) values (?, ?)", i, "name" + i);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		jdbc.execute("drop table test");
+		dataSource.destroy();
+	}
+
+	@Test
+	public void testReadPages() throws Exception {
+		KeysetPagingItemReader<String> reader = createReader(null, false);
+		reader.open(new ExecutionContext());
+		List<String> items = readAll(reader);
+		reader.close();
+		assertEquals(25, items.size());
+		assertEquals("1,name1", items.get(0));
+		assertEquals("25,name25", items.get(24));
+	}
+
+	@Test
+	public void testPrefetchWithWhereClause() throws Exception {
+		KeysetPagingItemReader<String> reader = createReader("(id BETWEEN 3 AND 22)", true);
+		reader.open(new ExecutionContext());
+		List<String> items = readAll(reader);
+		reader.close();
+		assertEquals(20, items.size());
+		for (int i = 0; i < items.size(); i++) {
+			assertEquals((i + 3) + ",name" + (i + 3), items.get(i));
+		}
+	}
+
+	@Test
+	public void testRestartFromDurableKey() throws Exception {
+		KeysetPagingItemReader<String> reader = createReader(null, false);
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		for (int chunk = 0; chunk < 3; chunk++) {
+			for (int i = 0; i < 4; i++) {
+				reader.read();
+			}
+			// the writer only made the first chunk durable
+			executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 4);
+			reader.update(executionContext);
+		}
+		reader.close();
+
+		KeysetPagingItemReader<String> restarted = createReader(null, true);
+		restarted.open(executionContext);
+		List<String> items = readAll(restarted);
+		restarted.close();
+		assertEquals(21, items.size());
+		assertEquals("5,name5", items.get(0));
+	}
+
+	@Test
+	public void testPublishRowMapperMetrics() throws Exception {
+		KeysetPagingItemReader<String> reader = createReader(null, false);
+		StepExecution stepExecution = new StepExecution("workerStep", new JobExecution(1L));
+		reader.beforeStep(stepExecution);
+		reader.open(new ExecutionContext());
+		readAll(reader);
+		reader.close();
+		reader.afterStep(stepExecution);
+		assertEquals(25, stepExecution.getExecutionContext().getLong(StepMetrics.PREFIX + "rows"));
+		// the read returning null waits too
+		assertEquals(26, stepExecution.getExecutionContext().getLong(StepMetrics.PREFIX + "fetch.count"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeyColumnNotSelected() throws Exception {
+		KeysetPagingItemReader<String> reader = new KeysetPagingItemReader<>();
+		reader.setDataSource(dataSource);
+		reader.setSelectClause("name, idle");
+		reader.setFromClause("test");
+		reader.setKeyColumn("id");
+		reader.setRowMapper(new NamedColumnJdbcItemReader().getItemRowMapper());
+		reader.afterPropertiesSet();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCheckpointedRowMapper() throws Exception {
+		NamedColumnJdbcItemReader rowReader = new NamedColumnJdbcItemReader();
+		rowReader.setCheckpointColumn("id");
+		rowReader.getItemRowMapper();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testKeyRepeatedWithinPage() throws Exception {
+		jdbc.execute("create table repeated (id int, name varchar(10))");
+		try {
+			jdbc.update("insert into repeated (id, name) values (1, 'a'), (2, 'b'), (2, 'c'), (3, 'd')");
+			KeysetPagingItemReader<String> reader = createReader("repeated", null, false);
+			reader.open(new ExecutionContext());
+			readAll(reader);
+		}
+		finally {
+			jdbc.execute("drop table repeated");
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testKeyRepeatedAcrossPages() throws Exception {
+		jdbc.execute("create table repeated (id int, name varchar(10))");
+		try {
+			for (int i = 1; i <= 10; i++) {
+				jdbc.update("insert into repeated (id, name) values (?, ?)", i, "name" + i);
+			}
+			// the second row of the last key of the first page would be skipped by the next page
+			jdbc.update("insert into repeated (id, name) values (10, 'again')");
+			KeysetPagingItemReader<String> reader = createReader("repeated", null, false);
+			reader.open(new ExecutionContext());
+			readAll(reader);
+		}
+		finally {
+			jdbc.execute("drop table repeated");
+		}
+	}
+
+	private List<String> readAll(KeysetPagingItemReader<String> reader) throws Exception {
+		List<String> items = new ArrayList<>();
+		String item;
+		while ((item = reader.read()) != null) {
+			items.add(item);
+		}
+		return items;
+	}
+
+	private KeysetPagingItemReader<String> createReader(String whereClause, boolean prefetch) throws Exception {
+		return createReader("test", whereClause, prefetch);
+	}
+
+	private KeysetPagingItemReader<String> createReader(String table, String whereClause, boolean prefetch)
+			throws Exception {
+		NamedColumnJdbcItemReader rowReader = new NamedColumnJdbcItemReader();
+		rowReader.setDelimiter(",");
+		KeysetPagingItemReader<String> reader = new KeysetPagingItemReader<>();
+		reader.setDataSource(dataSource);
+		reader.setSelectClause("id, name");
+		reader.setFromClause(table);
+		reader.setWhereClause(whereClause);
+		reader.setKeyColumn("id");
+		reader.setPageSize(10);
+		reader.setPrefetch(prefetch);
+		reader.setRowMapper(rowReader.getItemRowMapper());
+		reader.afterPropertiesSet();
+		return reader;
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.core.partition.StepExecutionSplitter;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Glenn Renfro
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = MultiTablePartitionerTests.MultiTablePartitionerConfiguration.class)
+public class MultiTablePartitionerTests {
+
+	private MultiTablePartitioner partitioner;
+
+	private DataSource dataSource;
+
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+		this.jdbc = new JdbcTemplate(dataSource);
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		jdbc.execute("create table mt_big (id int primary key, foo varchar(10))");
+		jdbc.execute("insert into mt_big (id, foo) values (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd'), (5, 'e'), (6, 'f')");
+		jdbc.execute("create table mt_small (id int primary key, foo varchar(10))");
+		jdbc.execute("insert into mt_small (id, foo) values (1, 'a'), (2, 'b')");
+		jdbc.execute("create table mt_nokey (foo varchar(10))");
+		jdbc.execute("insert into mt_nokey (foo) values ('a'), ('b'), ('c')");
+		partitioner = new MultiTablePartitioner();
+		partitioner.setDataSource(dataSource);
+		partitioner.setPartitionerFactory(new ObjectFactory<IncrementalColumnRangePartitioner>() {
+
+			@Override
+			public IncrementalColumnRangePartitioner getObject() {
+				IncrementalColumnRangePartitioner tablePartitioner = new IncrementalColumnRangePartitioner();
+				tablePartitioner.setDataSource(dataSource);
+				tablePartitioner.setPartitions(2);
+				return tablePartitioner;
+			}
+		});
+	}
+
+	@After
+	public void tearDown() {
+		jdbc.execute("drop table mt_big");
+		jdbc.execute("drop table mt_small");
+		jdbc.execute("drop table mt_nokey");
+	}
+
+	@Test
+	public void testTablesLargestFirst() throws Exception {
+		partitioner.setTables(Arrays.asList("mt_small", "mt_big", "mt_nokey"));
+		partitioner.afterPropertiesSet();
+		partitioner.beforeStep(new StepExecution("step1", new JobExecution(5l)));
+		Map<String, ExecutionContext> partitions = partitioner.partition(1);
+
+		assertEquals(Arrays.asList("mt_big-partition0", "mt_big-partition1", "mt_nokey-partition0",
+				"mt_small-partition0", "mt_small-partition1"), new ArrayList<>(partitions.keySet()));
+		ExecutionContext big = partitions.get("mt_big-partition0");
+		assertEquals("mt_big", big.getString(MultiTablePartitioner.TABLE_NAME));
+		assertEquals("WHERE (ID BETWEEN 1 AND 3)", big.getString("partClause"));
+		assertEquals("-p0", big.getString("partSuffix"));
+		assertEquals(3, big.getLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS));
+		// without a single column primary key the table is read by a single partition
+		ExecutionContext noKey = partitions.get("mt_nokey-partition0");
+		assertEquals("mt_nokey", noKey.getString(MultiTablePartitioner.TABLE_NAME));
+		assertEquals("", noKey.getString("partClause"));
+		assertEquals(3, noKey.getLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS));
+		assertEquals("WHERE (ID BETWEEN 2 AND 2)", partitions.get("mt_small-partition1").getString("partClause"));
+		assertEquals(1, partitions.get("mt_small-partition1").getLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS));
+	}
+
+	@Test
+	public void testSchemaPatterns() throws Exception {
+		partitioner.setSchema("PUBLIC");
+		partitioner.setIncludePattern("mt_.*");
+		partitioner.setExcludePattern(".*small");
+		partitioner.afterPropertiesSet();
+		StepExecution stepExecution = new StepExecution("step1", new JobExecution(5l));
+		partitioner.beforeStep(stepExecution);
+		Map<String, ExecutionContext> partitions = partitioner.partition(1);
+		assertEquals(Arrays.asList("PUBLIC.MT_BIG-partition0", "PUBLIC.MT_BIG-partition1", "PUBLIC.MT_NOKEY-partition0"),
+				new ArrayList<>(partitions.keySet()));
+		assertEquals("PUBLIC.MT_BIG,PUBLIC.MT_NOKEY", stepExecution.getExecutionContext().getString(MultiTablePartitioner.TABLES));
+
+		// a restarted step keeps the tables found by the first execution
+		jdbc.execute("create table mt_new (id int primary key)");
+		try {
+			partitioner.beforeStep(stepExecution);
+			assertEquals(3, partitioner.partition(1).size());
+		}
+		finally {
+			jdbc.execute("drop table mt_new");
+		}
+	}
+
+	@Test
+	public void testLargestFirstSplitter() throws Exception {
+		JobExecution jobExecution = new JobExecution(5l);
+		Set<StepExecution> stepExecutions = new HashSet<>();
+		for (int partition = 0; partition < 10; partition++) {
+			StepExecution stepExecution = new StepExecution("workerStep:partition" + partition, jobExecution);
+			stepExecution.getExecutionContext().putLong(IncrementalColumnRangePartitioner.ESTIMATED_ROWS, partition % 5);
+			stepExecutions.add(stepExecution);
+		}
+		StepExecution masterStepExecution = new StepExecution("step1", jobExecution);
+		StepExecutionSplitter delegate = mock(StepExecutionSplitter.class);
+		when(delegate.split(masterStepExecution, 1)).thenReturn(stepExecutions);
+
+		Iterator<StepExecution> ordered = new LargestFirstStepExecutionSplitter(delegate)
+				.split(masterStepExecution, 1).iterator();
+		List<String> names = new ArrayList<>();
+		while (ordered.hasNext()) {
+			names.add(ordered.next().getStepName());
+		}
+		assertEquals(Arrays.asList("workerStep:partition4", "workerStep:partition9", "workerStep:partition3",
+				"workerStep:partition8", "workerStep:partition2", "workerStep:partition7", "workerStep:partition1",
+				"workerStep:partition6", "workerStep:partition0", "workerStep:partition5"), names);
+	}
+
+	@Configuration
+	public static class MultiTablePartitionerConfiguration {
+
+		@Bean
+		DataSource dataSource() {
+			return new SingleConnectionDataSource("jdbc:hsqldb:mem:test", "sa", "", true);
+		}
+
+	}
+}
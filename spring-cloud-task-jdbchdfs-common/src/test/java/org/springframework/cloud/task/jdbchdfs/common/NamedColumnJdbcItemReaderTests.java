@@ -16,6 +16,7 @@
 
 package org.springframework.cloud.task.jdbchdfs.common;
 
+import java.util.Date;
 import java.util.HashMap;
 import javax.sql.DataSource;
 
@@ -23,10 +24,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
 import org.springframework.batch.item.ExecutionContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.StepMetrics;
 import org.springframework.jdbc.datasource.SingleConnectionDataSource;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -102,6 +106,21 @@ public class NamedColumnJdbcItemReaderTests {
 				ReflectionTestUtils.getField(factory, "sql"));
 	}
 
+	@Test
+	public void testPartitionedSqlWithCheckpoints() throws Exception {
+		factory.setColumnNames("foo, bar");
+		factory.setTableName("baz");
+		factory.setPartitionClause("WHERE foo BETWEEN 17 AND 42");
+		factory.setCheckpointColumn("foo");
+		DataSource dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:test", "sa", "", false);
+		factory.setDataSource(dataSource);
+		factory.afterPropertiesSet();
+		assertEquals("SELECT foo, bar FROM baz WHERE foo BETWEEN 17 AND 42 ORDER BY foo",
+				ReflectionTestUtils.getField(factory, "sql"));
+		assertEquals("SELECT foo, bar FROM baz WHERE (foo BETWEEN 17 AND 42) AND foo > ? ORDER BY foo",
+				ReflectionTestUtils.getField(factory.getObject(), "resumeSql"));
+	}
+
 	@Test
 	public void testGetTableRows() throws Exception {
 		factory.setTableName("test");
@@ -134,6 +153,117 @@ public class NamedColumnJdbcItemReaderTests {
 		verifyRead(reader, null);
 	}
 
+	@Test
+	public void testGetEncodedRows() throws Exception {
+		EncodedRowJdbcItemReaderFactory factory = new EncodedRowJdbcItemReaderFactory();
+		factory.setDataSource(dataSource);
+		factory.setTableName("test");
+		factory.setColumnNames("id, name");
+		factory.setDelimiter("|");
+		factory.afterPropertiesSet();
+
+		EncodedRowJdbcItemReader reader = factory.getObject();
+		reader.open(new ExecutionContext(new HashMap<String, Object>()));
+		assertEquals("1|Bob", new String(reader.read(), "UTF-8"));
+		assertEquals("2|Jane", new String(reader.read(), "UTF-8"));
+		assertEquals("3|John", new String(reader.read(), "UTF-8"));
+		assertNull(reader.read());
+		reader.close();
+	}
+
+	@Test
+	public void testRestartFromDurableCount() throws Exception {
+		factory.setTableName("test");
+		factory.setColumnNames("id, name");
+		factory.afterPropertiesSet();
+		NamedColumnJdbcItemReader reader = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		executionContext.putInt(reader.getExecutionContextKey("read.count"), 2);
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 1);
+		reader.open(executionContext);
+
+		verifyRead(reader, "2,Jane");
+		verifyRead(reader, "3,John");
+		verifyRead(reader, null);
+		reader.close();
+	}
+
+	@Test
+	public void testRestartFromCheckpoint() throws Exception {
+		factory.setTableName("test");
+		factory.setColumnNames("id, name");
+		factory.setPartitionClause("WHERE id BETWEEN 1 AND 3");
+		factory.setCheckpointColumn("id");
+		factory.afterPropertiesSet();
+		NamedColumnJdbcItemReader reader = factory.getObject();
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		verifyRead(reader, "1,Bob");
+		reader.update(executionContext);
+		verifyRead(reader, "2,Jane");
+		// the writer only made the first item durable
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 1);
+		reader.update(executionContext);
+		reader.close();
+
+		factory.afterPropertiesSet();
+		NamedColumnJdbcItemReader restarted = factory.getObject();
+		restarted.open(executionContext);
+		assertEquals(1, ReflectionTestUtils.getField(restarted, "resumeCount"));
+		verifyRead(restarted, "2,Jane");
+		verifyRead(restarted, "3,John");
+		verifyRead(restarted, null);
+		restarted.close();
+	}
+
+	@Test
+	public void testFetchSizeAdaptsToRowWidth() throws Exception {
+		factory.setTableName("test");
+		factory.setColumnNames("id, name");
+		factory.setFetchSize(2);
+		factory.setFetchMemoryBudget(55);
+		factory.afterPropertiesSet();
+		NamedColumnJdbcItemReader reader = factory.getObject();
+		reader.open(new ExecutionContext());
+
+		verifyRead(reader, "1,Bob");
+		assertEquals(2, ReflectionTestUtils.getField(reader, "currentFetchSize"));
+		verifyRead(reader, "2,Jane");
+		// the first two rows are 11 bytes, 5 bytes per row on average
+		assertEquals(11, ReflectionTestUtils.getField(reader, "currentFetchSize"));
+		verifyRead(reader, "3,John");
+		verifyRead(reader, null);
+		reader.close();
+	}
+
+	@Test
+	public void testPublishMetrics() throws Exception {
+		EncodedRowJdbcItemReaderFactory factory = new EncodedRowJdbcItemReaderFactory();
+		factory.setDataSource(dataSource);
+		factory.setTableName("test");
+		factory.setColumnNames("id, name");
+		factory.setDelimiter("|");
+		factory.afterPropertiesSet();
+		EncodedRowJdbcItemReader reader = factory.getObject();
+		reader.open(new ExecutionContext());
+		while (reader.read() != null) {
+			// read all rows
+		}
+		reader.close();
+
+		StepExecution stepExecution = new StepExecution("worker", new JobExecution(1L));
+		stepExecution.setStartTime(new Date());
+		stepExecution.getExecutionContext().putString("partSuffix", "-p1");
+		assertNull(reader.afterStep(stepExecution));
+		assertEquals("-p1", StepMetrics.getPartition(stepExecution));
+		ExecutionContext executionContext = stepExecution.getExecutionContext();
+		assertEquals(3, executionContext.getLong(StepMetrics.PREFIX + "rows"));
+		assertEquals(17, executionContext.getLong(StepMetrics.PREFIX + "bytesEncoded"));
+		// the end of the cursor is timed as well
+		assertEquals(4, executionContext.getLong(StepMetrics.PREFIX + "fetch.count"));
+		assertTrue(executionContext.containsKey(StepMetrics.DURATION));
+	}
+
 	private void verifyRead(NamedColumnJdbcItemReader reader, String expectedResult) throws Exception {
 		String result = reader.read();
 		if (expectedResult == null) {
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Glenn Renfro
+ */
+public class PipelinedItemReaderTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbc;
+
+	@Before
+	public void setUp() {
+		dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:pipelined", "sa", "", true);
+		jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("create table test (id int)");
+		for (int i = 1; i <= 25; i++) {
+			jdbc.update("insert into test (id) values (?)", i);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		jdbc.execute("drop table test");
+		dataSource.destroy();
+	}
+
+	@Test
+	public void testReadAhead() throws Exception {
+		PipelinedItemReader<String> reader = createReader("SELECT id FROM test ORDER BY id");
+		reader.open(new ExecutionContext());
+		List<String> items = readAll(reader);
+		assertNull(reader.read());
+		reader.close();
+		assertEquals(25, items.size());
+		for (int i = 0; i < items.size(); i++) {
+			assertEquals(String.valueOf(i + 1), items.get(i));
+		}
+	}
+
+	@Test
+	public void testRestartFromDurableItem() throws Exception {
+		PipelinedItemReader<String> reader = createReader("SELECT id FROM test ORDER BY id");
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		for (int i = 0; i < 8; i++) {
+			reader.read();
+		}
+		// the reading thread is ahead, only the items returned count
+		reader.update(executionContext);
+		reader.close();
+
+		PipelinedItemReader<String> restarted = createReader("SELECT id FROM test ORDER BY id");
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 6);
+		restarted.open(executionContext);
+		List<String> items = readAll(restarted);
+		restarted.close();
+		assertEquals(19, items.size());
+		assertEquals("7", items.get(0));
+	}
+
+	@Test(expected = Exception.class)
+	public void testFailureIsRethrown() throws Exception {
+		PipelinedItemReader<String> reader = createReader("SELECT 10 / (id - 15) FROM test ORDER BY id");
+		reader.open(new ExecutionContext());
+		try {
+			readAll(reader);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCheckpointedDelegate() throws Exception {
+		NamedColumnJdbcItemReaderFactory factory = new NamedColumnJdbcItemReaderFactory();
+		factory.setDataSource(dataSource);
+		factory.setTableName("test");
+		factory.setColumnNames("id");
+		factory.setCheckpointColumn("id");
+		factory.setDelimiter(",");
+		factory.afterPropertiesSet();
+		PipelinedItemReader<String> reader = new PipelinedItemReader<>();
+		reader.setDelegate(factory.getObject());
+		reader.setChunkSize(4);
+		reader.setQueueCapacity(2);
+		reader.afterPropertiesSet();
+	}
+
+	private List<String> readAll(PipelinedItemReader<String> reader) throws Exception {
+		List<String> items = new ArrayList<>();
+		String item;
+		while ((item = reader.read()) != null) {
+			items.add(item);
+		}
+		return items;
+	}
+
+	private PipelinedItemReader<String> createReader(String sql) throws Exception {
+		NamedColumnJdbcItemReaderFactory factory = new NamedColumnJdbcItemReaderFactory();
+		factory.setDataSource(dataSource);
+		factory.setSql(sql);
+		factory.setDelimiter(",");
+		factory.afterPropertiesSet();
+		PipelinedItemReader<String> reader = new PipelinedItemReader<>();
+		reader.setDelegate(factory.getObject());
+		reader.setChunkSize(4);
+		reader.setQueueCapacity(2);
+		reader.afterPropertiesSet();
+		return reader;
+	}
+}
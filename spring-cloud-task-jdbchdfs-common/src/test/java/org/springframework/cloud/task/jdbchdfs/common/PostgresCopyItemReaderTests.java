@@ -0,0 +1,216 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.cloud.task.jdbchdfs.common.encoder.RowBuffer;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the reader against a mock of the copy API of the PostgreSQL driver.
+ *
+ * @author Glenn Renfro
+ */
+public class PostgresCopyItemReaderTests {
+
+	private List<byte[]> rows;
+
+	private PostgresCopyApi copyApi;
+
+	private DataSource dataSource;
+
+	@Before
+	public void setUp() throws Exception {
+		rows = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			rows.add((i + ",name" + i + "\n").getBytes(RowBuffer.UTF_8));
+		}
+		copyApi = mock(PostgresCopyApi.class);
+		when(copyApi.isCopySupported(any(Connection.class))).thenReturn(true);
+		dataSource = createDataSource("PostgreSQL");
+	}
+
+	@Test
+	public void testCopyRows() throws Exception {
+		PostgresCopyApi.CopyStream copyStream = mockCopyStream(rows);
+		when(copyApi.copyOut(any(Connection.class), anyString())).thenReturn(copyStream);
+		PostgresCopyItemReader reader = createReader();
+		reader.open(new ExecutionContext());
+		List<String> items = readAll(reader);
+		reader.close();
+		verify(copyApi).copyOut(any(Connection.class),
+				eq("COPY (SELECT id, name FROM test WHERE id > 0) TO STDOUT WITH (FORMAT csv, DELIMITER ',', NULL 'null')"));
+		assertEquals(10, items.size());
+		assertEquals("1,name1", items.get(0));
+		assertEquals("10,name10", items.get(9));
+		verify(copyStream, never()).cancel();
+	}
+
+	@Test
+	public void testRestartFromDurableItem() throws Exception {
+		PostgresCopyApi.CopyStream copyStream = mockCopyStream(rows);
+		PostgresCopyApi.CopyStream restartedStream = mockCopyStream(rows);
+		when(copyApi.copyOut(any(Connection.class), anyString())).thenReturn(copyStream, restartedStream);
+		PostgresCopyItemReader reader = createReader();
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		for (int i = 0; i < 6; i++) {
+			reader.read();
+		}
+		// the writer only made the first 4 items durable
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 4);
+		reader.update(executionContext);
+		reader.close();
+		verify(copyStream).cancel();
+
+		PostgresCopyItemReader restarted = createReader();
+		restarted.open(executionContext);
+		List<String> items = readAll(restarted);
+		restarted.close();
+		// the copy starts over, the rows already written are read again and skipped
+		assertEquals(6, items.size());
+		assertEquals("5,name5", items.get(0));
+		verify(restartedStream, never()).cancel();
+	}
+
+	@Test
+	public void testIsSupported() {
+		assertEquals(true, PostgresCopyItemReader.isSupported(dataSource, ",", copyApi));
+		assertFalse(PostgresCopyItemReader.isSupported(dataSource, "::", copyApi));
+		assertFalse(PostgresCopyItemReader.isSupported(dataSource, null, copyApi));
+		assertFalse(PostgresCopyItemReader.isSupported(createDataSource("MySQL"), ",", copyApi));
+		// without the driver the connections never expose the copy API
+		assertFalse(PostgresCopyItemReader.isSupported(dataSource, ","));
+		SingleConnectionDataSource hsqldb = new SingleConnectionDataSource("jdbc:hsqldb:mem:copy", "sa", "", true);
+		assertFalse(PostgresCopyItemReader.isSupported(hsqldb, ","));
+		hsqldb.destroy();
+	}
+
+	@Test
+	public void testEmptyCopy() throws Exception {
+		PostgresCopyApi.CopyStream copyStream = mockCopyStream(new ArrayList<byte[]>());
+		when(copyApi.copyOut(any(Connection.class), anyString())).thenReturn(copyStream);
+		PostgresCopyItemReader reader = createReader();
+		reader.open(new ExecutionContext());
+		assertNull(reader.read());
+		reader.close();
+	}
+
+	private List<String> readAll(PostgresCopyItemReader reader) throws Exception {
+		List<String> items = new ArrayList<>();
+		byte[] item;
+		while ((item = reader.read()) != null) {
+			items.add(new String(item, RowBuffer.UTF_8));
+		}
+		return items;
+	}
+
+	private PostgresCopyApi.CopyStream mockCopyStream(List<byte[]> rows) throws Exception {
+		final Iterator<byte[]> iterator = rows.iterator();
+		PostgresCopyApi.CopyStream copyStream = mock(PostgresCopyApi.CopyStream.class);
+		when(copyStream.read()).thenAnswer(new Answer<byte[]>() {
+
+			@Override
+			public byte[] answer(InvocationOnMock invocation) {
+				return iterator.hasNext() ? iterator.next() : null;
+			}
+		});
+		when(copyStream.isActive()).thenAnswer(new Answer<Boolean>() {
+
+			@Override
+			public Boolean answer(InvocationOnMock invocation) {
+				return iterator.hasNext();
+			}
+		});
+		return copyStream;
+	}
+
+	private PostgresCopyItemReader createReader() throws Exception {
+		PostgresCopyItemReader reader = new PostgresCopyItemReader();
+		reader.setDataSource(dataSource);
+		reader.setCopyApi(copyApi);
+		reader.setSql("SELECT id, name FROM test WHERE id > 0");
+		reader.setDelimiter(",");
+		reader.afterPropertiesSet();
+		return reader;
+	}
+
+	private DataSource createDataSource(final String productName) {
+		final DatabaseMetaData metaData = proxy(DatabaseMetaData.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return method.getName().equals("getDatabaseProductName") ? productName : defaultValue(method);
+			}
+		});
+		final Connection connection = proxy(Connection.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return method.getName().equals("getMetaData") ? metaData : defaultValue(method);
+			}
+		});
+		return proxy(DataSource.class, new InvocationHandler() {
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				return method.getName().equals("getConnection") ? connection : defaultValue(method);
+			}
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T proxy(Class<T> type, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {type}, handler);
+	}
+
+	private static Object defaultValue(Method method) {
+		if (method.getReturnType() == boolean.class) {
+			return false;
+		}
+		if (method.getReturnType() == int.class) {
+			return 0;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.batch.core.JobExecution;
+import org.springframework.batch.core.StepExecution;
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.cloud.task.jdbchdfs.common.metrics.StepMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Glenn Renfro
+ */
+public class RangeQueueItemReaderTests {
+
+	private static final long QUEUE_ID = 7;
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbc;
+
+	private JdbcRangeQueue rangeQueue;
+
+	@Before
+	public void setUp() throws Exception {
+		dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:rangequeue", "sa", "", true);
+		jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("create table test (id int)");
+		for (int i = 1; i <= 20; i++) {
+			jdbc.update("insert into test (id) values (?)", i);
+		}
+		rangeQueue = new JdbcRangeQueue(dataSource);
+		rangeQueue.setInitializeSchema(true);
+		rangeQueue.afterPropertiesSet();
+		rangeQueue.offer(QUEUE_ID, Arrays.asList("WHERE (id BETWEEN 1 AND 5)", "WHERE (id BETWEEN 6 AND 10)",
+				"WHERE (id BETWEEN 11 AND 15)", "WHERE (id BETWEEN 16 AND 20)"));
+	}
+
+	@After
+	public void tearDown() {
+		jdbc.execute("drop table test");
+		jdbc.execute("drop table " + JdbcRangeQueue.TABLE_NAME);
+		dataSource.destroy();
+	}
+
+	@Test
+	public void testWorkersShareRanges() throws Exception {
+		RangeQueueItemReader<String> first = createReader("worker0");
+		RangeQueueItemReader<String> second = createReader("worker1");
+		first.open(new ExecutionContext());
+		second.open(new ExecutionContext());
+
+		List<String> firstItems = new ArrayList<>();
+		List<String> secondItems = new ArrayList<>();
+		String item;
+		// the first worker stalls after one item while the second drains the queue
+		firstItems.add(first.read());
+		while ((item = second.read()) != null) {
+			secondItems.add(item);
+		}
+		while ((item = first.read()) != null) {
+			firstItems.add(item);
+		}
+		first.close();
+		second.close();
+
+		assertEquals(5, firstItems.size());
+		assertEquals(15, secondItems.size());
+		List<String> all = new ArrayList<>(firstItems);
+		all.addAll(secondItems);
+		Collections.sort(all, new Comparator<String>() {
+			@Override
+			public int compare(String o1, String o2) {
+				return Integer.valueOf(o1).compareTo(Integer.valueOf(o2));
+			}
+		});
+		for (int i = 1; i <= 20; i++) {
+			assertEquals(String.valueOf(i), all.get(i - 1));
+		}
+	}
+
+	@Test
+	public void testPublishMetrics() throws Exception {
+		RangeQueueItemReader<String> reader = createReader("worker0");
+		StepExecution stepExecution = new StepExecution("workerStep", new JobExecution(1L));
+		reader.beforeStep(stepExecution);
+		reader.open(new ExecutionContext());
+		while (reader.read() != null) {
+		}
+		reader.close();
+		reader.afterStep(stepExecution);
+		ExecutionContext executionContext = stepExecution.getExecutionContext();
+		assertEquals(20, executionContext.getLong(StepMetrics.PREFIX + "rows"));
+		// the ids 1 to 9 take one byte, 10 to 20 two
+		assertEquals(31, executionContext.getLong(StepMetrics.PREFIX + "bytesEncoded"));
+		assertEquals(21, executionContext.getLong(StepMetrics.PREFIX + "fetch.count"));
+	}
+
+	@Test
+	public void testRestartFromDurableItem() throws Exception {
+		RangeQueueItemReader<String> reader = createReader("worker0");
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		for (int i = 0; i < 7; i++) {
+			reader.read();
+		}
+		// the writer made the first 3 items durable, two ranges were claimed since
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 3);
+		reader.update(executionContext);
+		// the claims are in the queue already, the context holding them has to be written too
+		assertTrue(executionContext.containsKey(CoalescingJobRepository.WRITE_CONTEXT_KEY));
+		reader.close();
+
+		RangeQueueItemReader<String> restarted = createReader("worker0");
+		restarted.open(executionContext);
+		List<String> items = new ArrayList<>();
+		String item;
+		while ((item = restarted.read()) != null) {
+			items.add(item);
+		}
+		restarted.close();
+
+		assertEquals(17, items.size());
+		assertEquals("4", items.get(0));
+		assertEquals("20", items.get(16));
+		assertNull(rangeQueue.claim(QUEUE_ID, "worker1"));
+	}
+
+	/**
+	 * The claims made after the last execution context that was saved are found in the queue.
+	 */
+	@Test
+	public void testRestartAfterLostContext() throws Exception {
+		RangeQueueItemReader<String> reader = createReader("worker0");
+		ExecutionContext executionContext = new ExecutionContext();
+		reader.open(executionContext);
+		for (int i = 0; i < 3; i++) {
+			reader.read();
+		}
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 3);
+		reader.update(executionContext);
+		ExecutionContext saved = new ExecutionContext(executionContext);
+		// two more ranges are claimed, the context holding them is never saved
+		for (int i = 0; i < 10; i++) {
+			reader.read();
+		}
+		executionContext.putLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT, 10);
+		reader.update(executionContext);
+		reader.close();
+
+		RangeQueueItemReader<String> restarted = createReader("worker0");
+		restarted.open(saved);
+		List<String> items = new ArrayList<>();
+		String item;
+		while ((item = restarted.read()) != null) {
+			items.add(item);
+		}
+		restarted.close();
+
+		assertEquals(17, items.size());
+		for (int i = 0; i < 17; i++) {
+			assertEquals(String.valueOf(i + 4), items.get(i));
+		}
+		assertNull(rangeQueue.claim(QUEUE_ID, "worker1"));
+	}
+
+	@Test
+	public void testTableNotCreatedByDefault() throws Exception {
+		jdbc.execute("drop table " + JdbcRangeQueue.TABLE_NAME);
+		try {
+			new JdbcRangeQueue(dataSource).afterPropertiesSet();
+			fail("the queue table is only created when its schema is initialized");
+		}
+		catch (IllegalStateException e) {
+			assertTrue(e.getMessage().contains(JdbcRangeQueue.SCHEMA_LOCATION));
+		}
+		rangeQueue.afterPropertiesSet();
+		assertNull(rangeQueue.claim(QUEUE_ID, "worker0"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCheckpointedRanges() throws Exception {
+		NamedColumnJdbcItemReaderFactory factory = new NamedColumnJdbcItemReaderFactory();
+		factory.setDataSource(dataSource);
+		factory.setTableName("test");
+		factory.setColumnNames("id");
+		factory.setCheckpointColumn("id");
+		RangeQueueItemReader<String> reader = new RangeQueueItemReader<>();
+		reader.setReaderFactory(factory);
+		reader.setRangeQueue(rangeQueue);
+		reader.setQueueId(QUEUE_ID);
+		reader.setOwner("worker0");
+		reader.afterPropertiesSet();
+	}
+
+	private RangeQueueItemReader<String> createReader(String owner) throws Exception {
+		NamedColumnJdbcItemReaderFactory factory = new NamedColumnJdbcItemReaderFactory();
+		factory.setDataSource(dataSource);
+		factory.setTableName("test");
+		factory.setColumnNames("id");
+		factory.setDelimiter(",");
+		RangeQueueItemReader<String> reader = new RangeQueueItemReader<>();
+		reader.setReaderFactory(factory);
+		reader.setRangeQueue(rangeQueue);
+		reader.setQueueId(QUEUE_ID);
+		reader.setOwner(owner);
+		reader.afterPropertiesSet();
+		return reader;
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common.avro;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.JdbcHdfsTaskProperties;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRow;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRowJdbcItemReader;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRowJdbcItemReaderFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Glenn Renfro
+ */
+public class AvroItemWriterTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbc;
+
+	private String tmpDir;
+
+	private JdbcHdfsTaskProperties props;
+
+	@Before
+	public void setup() {
+		dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:avro", "sa", "", true);
+		jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("create table typed (id bigint, qty int, price double, ok boolean, amount decimal(10,2), "
+				+ "created timestamp, day date, bin varbinary(4), \"first name\" varchar(20))");
+		jdbc.update("insert into typed values (1, 7, 1.5, true, 12.34, '2016-03-04 05:06:07.250', "
+				+ "'1970-01-02', X'0aff', 'one')");
+		jdbc.update("insert into typed values (2, null, null, null, null, null, null, null, null)");
+		tmpDir = System.getProperty("java.io.tmpdir") + "/jdbchdfs-avro";
+		FileSystemUtils.deleteRecursively(new File(tmpDir));
+		props = new JdbcHdfsTaskProperties();
+		props.setFsUri("file:///");
+		props.setDirectory(tmpDir);
+		props.setFileName("avroTest");
+	}
+
+	@After
+	public void tearDown() {
+		jdbc.execute("drop table typed");
+		dataSource.destroy();
+		FileSystemUtils.deleteRecursively(new File(tmpDir));
+	}
+
+	@Test
+	public void testTypedValues() throws Exception {
+		props.setCodec("deflate");
+		copy(new ExecutionContext());
+		File[] files = listFiles("part1-0.avro");
+		assertEquals(1, files.length);
+
+		DataFileReader<GenericRecord> reader = new DataFileReader<>(files[0], new GenericDatumReader<GenericRecord>());
+		try {
+			assertEquals("deflate", reader.getMetaString("avro.codec"));
+			Schema schema = reader.getSchema();
+			assertEquals(Schema.Type.LONG, schema.getField("ID").schema().getTypes().get(1).getType());
+			assertEquals("TIMESTAMP", schema.getField("CREATED").getProp(TypedRowDatumWriter.SQL_TYPE_PROP));
+			assertEquals(Schema.Type.STRING, schema.getField("first_name").schema().getTypes().get(1).getType());
+
+			GenericRecord first = reader.next();
+			assertEquals(1L, first.get("ID"));
+			assertEquals(7, first.get("QTY"));
+			assertEquals(1.5, first.get("PRICE"));
+			assertEquals(true, first.get("OK"));
+			assertEquals("12.34", first.get("AMOUNT").toString());
+			assertEquals(java.sql.Timestamp.valueOf("2016-03-04 05:06:07.250").getTime(), first.get("CREATED"));
+			assertEquals(1, first.get("DAY"));
+			assertArrayEquals(new byte[] {0x0a, (byte) 0xff}, ((ByteBuffer) first.get("BIN")).array());
+			assertEquals("one", first.get("first_name").toString());
+
+			GenericRecord second = reader.next();
+			assertEquals(2L, second.get("ID"));
+			assertNull(second.get("QTY"));
+			assertNull(second.get("first_name"));
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testRollover() throws Exception {
+		props.setRollover(1);
+		props.setAvroSyncInterval(32);
+		ExecutionContext executionContext = new ExecutionContext();
+		copy(executionContext);
+		assertEquals(2, listFiles(".avro").length);
+		assertEquals(2, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedCodec() throws Exception {
+		props.setCodec("lz4");
+		new AvroItemWriterFactory(new Configuration(), props, "part1");
+	}
+
+	private void copy(ExecutionContext executionContext) throws Exception {
+		TypedRowJdbcItemReaderFactory readerFactory = new TypedRowJdbcItemReaderFactory();
+		readerFactory.setDataSource(dataSource);
+		readerFactory.setSql("select id, qty, price, ok, amount, created, day, bin, \"first name\" from typed order by id");
+		readerFactory.setDelimiter(",");
+		readerFactory.afterPropertiesSet();
+		TypedRowJdbcItemReader reader = readerFactory.getObject();
+		AvroItemWriter writer = new AvroItemWriterFactory(new Configuration(), props, "part1").getObject();
+		reader.open(executionContext);
+		writer.open(executionContext);
+		List<TypedRow> rows = new ArrayList<>();
+		TypedRow row;
+		while ((row = reader.read()) != null) {
+			rows.add(row);
+		}
+		writer.write(rows);
+		writer.update(executionContext);
+		writer.close();
+		reader.close();
+	}
+
+	private File[] listFiles(final String suffix) {
+		return new File(tmpDir).listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(suffix);
+			}
+		});
+	}
+}
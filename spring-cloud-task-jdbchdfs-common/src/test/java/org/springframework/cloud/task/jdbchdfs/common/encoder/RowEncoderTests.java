@@ -0,0 +1,169 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.springframework.cloud.task.jdbchdfs.common.encoder;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verifies that the column encoders produce the expected text for each SQL type.
+ *
+ * @author Glenn Renfro
+ */
+public class RowEncoderTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbc;
+
+	@Before
+	public void setup() {
+		dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:encoder", "sa", "", true);
+		jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("create table typed (l bigint, i int, d double, b varbinary(4), t timestamp, "
+				+ "dt date, s varchar(20))");
+	}
+
+	@After
+	public void tearDown() {
+		jdbc.execute("drop table typed");
+		dataSource.destroy();
+	}
+
+	@Test
+	public void testTypedColumns() {
+		jdbc.update("insert into typed values (-9223372036854775808, 42, 1.5, X'0aff', "
+				+ "'2016-03-04 05:06:07.250', '2016-12-31', 'café 😀')");
+		assertEquals("-9223372036854775808|42|1.5E0|0aff|2016-03-04 05:06:07.250000|2016-12-31|café 😀",
+				encodeAll("|").get(0));
+	}
+
+	@Test
+	public void testRealColumns() throws SQLException {
+		// the text of the driver is kept, as the string based mapper wrote it
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getString(1)).thenReturn("0.1", "1.0E7", null);
+		ColumnEncoder encoder = ColumnEncoders.forSqlType(Types.REAL);
+		RowBuffer buffer = new RowBuffer();
+		encoder.encode(rs, 1, buffer);
+		assertEquals("0.1", buffer.toString());
+		buffer.reset();
+		encoder.encode(rs, 1, buffer);
+		assertEquals("1.0E7", buffer.toString());
+		buffer.reset();
+		encoder.encode(rs, 1, buffer);
+		assertEquals("null", buffer.toString());
+		verify(rs, never()).getFloat(1);
+	}
+
+	@Test
+	public void testNullColumns() {
+		jdbc.update("insert into typed values (null, null, null, null, null, null, null)");
+		assertEquals("null,null,null,null,null,null,null", encodeAll(",").get(0));
+	}
+
+	@Test
+	public void testMultiCharacterDelimiter() {
+		jdbc.update("insert into typed (l, s) values (1, 'one')");
+		assertEquals("1::null::null::null::null::null::one", encodeAll("::").get(0));
+	}
+
+	/**
+	 * Compares the encoded rows with the rows of the mapper the encoders replace, which
+	 * reads every column with {@link ResultSet#getString(int)}.
+	 */
+	@Test
+	public void testMatchesStringMapper() {
+		SingleConnectionDataSource baselineDataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:encoder-baseline",
+				"sa", "", true);
+		try {
+			JdbcTemplate baseline = new JdbcTemplate(baselineDataSource);
+			baseline.execute("create table typed (l bigint, i int, si smallint, ti tinyint, d double, f float, "
+					+ "r real, n decimal(10,3), bo boolean, b varbinary(4), bi binary(1), t timestamp, "
+					+ "dt date, tm time, s varchar(20))");
+			String[] rows = {
+					"-9223372036854775808, -2147483648, -32768, -128, 0.1, 0.1, 0.1, 1.5, true, X'0aff', X'01', "
+							+ "'2016-03-04 05:06:07.250', '2016-12-31', '05:06:07', 'café'",
+					"0, 0, 0, 0, 1e7, 12345678.0, 1e7, 0, false, X'', X'ff', '2016-03-04 05:06:07', '0001-01-01', "
+							+ "'00:00:00', ''",
+					"1, 1, 1, 1, -0.0, 1e-5, 3.4028235e38, -0.001, true, X'00', X'00', "
+							+ "'1970-01-01 00:00:00.000000001', '1582-10-15', '23:59:59', 'x'",
+					"1, 1, 1, 1, 3.0, 1e100, 16777217, 1, false, X'7f', X'7f', "
+							+ "'2016-03-27 02:30:00.5', '2016-03-27', '12:00:00', 'y'",
+					"null, null, null, null, null, null, null, null, null, null, null, null, null, null, null" };
+			for (String row : rows) {
+				baseline.update("insert into typed values (" + row + ")");
+			}
+			String query = "select * from typed";
+			List<String> expected = baseline.query(query, new RowMapper<String>() {
+
+				@Override
+				public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+					StringBuilder builder = new StringBuilder();
+					for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+						builder.append(JdbcUtils.getResultSetValue(rs, i, String.class)).append(',');
+					}
+					return builder.substring(0, builder.length() - 1);
+				}
+			});
+			assertEquals(expected, encodeAll(baseline, query, ","));
+		}
+		finally {
+			baselineDataSource.destroy();
+		}
+	}
+
+	private List<String> encodeAll(final String delimiter) {
+		return encodeAll(jdbc, "select l, i, d, b, t, dt, s from typed order by d", delimiter);
+	}
+
+	private List<String> encodeAll(JdbcTemplate jdbc, String query, final String delimiter) {
+		return jdbc.query(query, new RowMapper<String>() {
+
+			private RowEncoder encoder;
+
+			private final RowBuffer buffer = new RowBuffer(1);
+
+			@Override
+			public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+				if (encoder == null) {
+					encoder = new RowEncoder(rs.getMetaData(), delimiter);
+				}
+				buffer.reset();
+				encoder.encode(rs, buffer);
+				return buffer.toString();
+			}
+		});
+	}
+}
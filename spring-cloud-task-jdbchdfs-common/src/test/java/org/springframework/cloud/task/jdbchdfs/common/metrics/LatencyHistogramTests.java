@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+
+package org.springframework.cloud.task.jdbchdfs.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.batch.item.ExecutionContext;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Glenn Renfro
+ */
+public class LatencyHistogramTests {
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentileMicros(0.5));
+		assertEquals(0, histogram.getPercentileMicros(0.99));
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 98; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+		}
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals(100, histogram.getCount());
+		// 100us falls in the bucket below 128us
+		assertEquals(128, histogram.getPercentileMicros(0.5));
+		assertEquals(16384, histogram.getPercentileMicros(0.99));
+		// the last bucket is bounded by the maximum
+		assertEquals(50001, histogram.getPercentileMicros(1));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(50), histogram.getMaxNanos());
+	}
+
+	@Test
+	public void testPublish() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+		ExecutionContext executionContext = new ExecutionContext();
+		histogram.publish(executionContext, "write");
+		assertEquals(2, executionContext.getLong("write.count"));
+		assertEquals(5, executionContext.getLong("write.totalMillis"));
+		assertEquals(2048, executionContext.getLong("write.p50Micros"));
+		assertEquals(3001, executionContext.getLong("write.p99Micros"));
+		assertEquals(3000, executionContext.getLong("write.maxMicros"));
+	}
+}
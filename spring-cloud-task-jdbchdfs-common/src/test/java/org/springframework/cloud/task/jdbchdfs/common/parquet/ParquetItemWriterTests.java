@@ -0,0 +1,189 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.springframework.cloud.task.jdbchdfs.common.parquet;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import parquet.avro.AvroParquetReader;
+import parquet.hadoop.ParquetFileReader;
+import parquet.schema.MessageType;
+import parquet.schema.PrimitiveType.PrimitiveTypeName;
+
+import org.springframework.batch.item.ExecutionContext;
+import org.springframework.cloud.task.jdbchdfs.common.HdfsTextItemWriter;
+import org.springframework.cloud.task.jdbchdfs.common.JdbcHdfsTaskProperties;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRow;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRowJdbcItemReader;
+import org.springframework.cloud.task.jdbchdfs.common.TypedRowJdbcItemReaderFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.FileSystemUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Glenn Renfro
+ */
+public class ParquetItemWriterTests {
+
+	private SingleConnectionDataSource dataSource;
+
+	private JdbcTemplate jdbc;
+
+	private String tmpDir;
+
+	private JdbcHdfsTaskProperties props;
+
+	@Before
+	public void setup() {
+		dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:parquet", "sa", "", true);
+		jdbc = new JdbcTemplate(dataSource);
+		jdbc.execute("create table typed (id bigint, qty int, price double, ok boolean, amount decimal(10,2), "
+				+ "created timestamp, day date, bin varbinary(4), name varchar(20))");
+		jdbc.update("insert into typed values (1, 7, 1.5, true, 12.34, '2016-03-04 05:06:07.250', "
+				+ "'1970-01-02', X'0aff', 'one')");
+		jdbc.update("insert into typed values (2, null, null, null, null, null, null, null, null)");
+		tmpDir = System.getProperty("java.io.tmpdir") + "/jdbchdfs-parquet";
+		FileSystemUtils.deleteRecursively(new File(tmpDir));
+		props = new JdbcHdfsTaskProperties();
+		props.setFsUri("file:///");
+		props.setDirectory(tmpDir);
+		props.setFileName("parquetTest");
+	}
+
+	@After
+	public void tearDown() {
+		jdbc.execute("drop table typed");
+		dataSource.destroy();
+		FileSystemUtils.deleteRecursively(new File(tmpDir));
+	}
+
+	@Test
+	public void testTypedValues() throws Exception {
+		copy(new ExecutionContext());
+		File[] files = listFiles("part1-0.parquet");
+		assertEquals(1, files.length);
+
+		MessageType schema = ParquetFileReader.readFooter(new Configuration(), new Path(files[0].toURI()))
+				.getFileMetaData().getSchema();
+		assertEquals(PrimitiveTypeName.INT64, schema.getType("ID").asPrimitiveType().getPrimitiveTypeName());
+		assertEquals(PrimitiveTypeName.INT32, schema.getType("QTY").asPrimitiveType().getPrimitiveTypeName());
+		assertEquals(PrimitiveTypeName.DOUBLE, schema.getType("PRICE").asPrimitiveType().getPrimitiveTypeName());
+		assertEquals(PrimitiveTypeName.BOOLEAN, schema.getType("OK").asPrimitiveType().getPrimitiveTypeName());
+		assertEquals(PrimitiveTypeName.INT64, schema.getType("CREATED").asPrimitiveType().getPrimitiveTypeName());
+		assertEquals(PrimitiveTypeName.INT32, schema.getType("DAY").asPrimitiveType().getPrimitiveTypeName());
+
+		List<GenericRecord> records = readAll(files[0]);
+		assertEquals(2, records.size());
+		GenericRecord first = records.get(0);
+		assertEquals(1L, first.get("ID"));
+		assertEquals(7, first.get("QTY"));
+		assertEquals(1.5, first.get("PRICE"));
+		assertEquals(true, first.get("OK"));
+		assertEquals("12.34", first.get("AMOUNT").toString());
+		assertEquals(java.sql.Timestamp.valueOf("2016-03-04 05:06:07.250").getTime(), first.get("CREATED"));
+		assertEquals(1, first.get("DAY"));
+		assertEquals("one", first.get("NAME").toString());
+		GenericRecord second = records.get(1);
+		assertEquals(2L, second.get("ID"));
+		assertNull(second.get("QTY"));
+		assertNull(second.get("NAME"));
+	}
+
+	@Test
+	public void testRolloverAndRestart() throws Exception {
+		props.setRollover(1);
+		ExecutionContext executionContext = new ExecutionContext();
+		copy(executionContext);
+		assertEquals(2, listFiles(".parquet").length);
+		assertEquals(2, executionContext.getLong(HdfsTextItemWriter.DURABLE_ITEM_COUNT));
+		assertTrue(executionContext.getLong(HdfsTextItemWriter.DURABLE_BYTE_OFFSET) > 0);
+
+		// a file left in writing by a failed run is removed and the index continues
+		assertTrue(new File(tmpDir, "parquetTestpart1-2.parquet.tmp").createNewFile());
+		copy(new ExecutionContext());
+		assertEquals(0, listFiles(".tmp").length);
+		assertEquals(Arrays.asList("parquetTestpart1-0.parquet", "parquetTestpart1-1.parquet",
+				"parquetTestpart1-2.parquet", "parquetTestpart1-3.parquet"), sortedNames(listFiles(".parquet")));
+	}
+
+	private void copy(ExecutionContext executionContext) throws Exception {
+		TypedRowJdbcItemReaderFactory readerFactory = new TypedRowJdbcItemReaderFactory();
+		readerFactory.setDataSource(dataSource);
+		readerFactory.setSql("select id, qty, price, ok, amount, created, day, bin, name from typed order by id");
+		readerFactory.setDelimiter(",");
+		readerFactory.afterPropertiesSet();
+		TypedRowJdbcItemReader reader = readerFactory.getObject();
+		ParquetItemWriter writer = new ParquetItemWriterFactory(new Configuration(), props, "part1").getObject();
+		reader.open(executionContext);
+		writer.open(executionContext);
+		List<TypedRow> rows = new ArrayList<>();
+		TypedRow row;
+		while ((row = reader.read()) != null) {
+			rows.add(row);
+		}
+		writer.write(rows);
+		writer.update(executionContext);
+		writer.close();
+		reader.close();
+	}
+
+	private List<GenericRecord> readAll(File file) throws Exception {
+		List<GenericRecord> records = new ArrayList<>();
+		AvroParquetReader<GenericRecord> reader = new AvroParquetReader<>(new Path(file.toURI()));
+		try {
+			GenericRecord record;
+			while ((record = reader.read()) != null) {
+				records.add(record);
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return records;
+	}
+
+	private File[] listFiles(final String suffix) {
+		return new File(tmpDir).listFiles(new FilenameFilter() {
+
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(suffix);
+			}
+		});
+	}
+
+	private List<String> sortedNames(File[] files) {
+		List<String> names = new ArrayList<>();
+		for (File file : files) {
+			names.add(file.getName());
+		}
+		java.util.Collections.sort(names);
+		return names;
+	}
+}